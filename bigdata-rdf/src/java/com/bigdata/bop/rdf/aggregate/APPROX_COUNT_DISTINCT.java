@@ -0,0 +1,302 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.rdf.aggregate;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IValueExpression;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.aggregate.AggregateBase;
+import com.bigdata.bop.aggregate.HyperLogLog;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+import com.bigdata.rdf.internal.NotMaterializedException;
+import com.bigdata.rdf.internal.constraints.INeedsMaterialization;
+import com.bigdata.rdf.internal.constraints.INeedsMaterialization.Requirement;
+import com.bigdata.rdf.internal.impl.literal.XSDIntegerIV;
+import com.bigdata.rdf.model.BigdataLiteral;
+import com.bigdata.rdf.model.BigdataValue;
+
+/**
+ * Operator estimates the number of distinct non-null values over the presented
+ * binding sets for the given value expression using a {@link HyperLogLog}
+ * sketch over the byte[] encoding of the {@link IV}s.
+ * <p>
+ * Values computed by the value expression which can not be inlined (e.g., the
+ * results of <code>STR()</code> or <code>CONCAT()</code>) are carried by mock
+ * {@link IV}s which all have the same encoding. For those, the sketch is
+ * offered an encoding of the cached RDF Value instead.
+ * <p>
+ * Unlike <code>COUNT(DISTINCT x)</code>, the distinct values are never
+ * collected, so the memory demand is fixed by {@link Annotations#LOG2M}
+ * regardless of the cardinality of the group and the aggregate may be
+ * evaluated by pipelined aggregation. The {@link #isDistinct()} marker is
+ * always <code>false</code> since duplicates are already eliminated by the
+ * sketch.
+ * <p>
+ * Note: Two different {@link IV}s for the same RDF Value are counted as two
+ * distinct values. The {@link IV} of an RDF Value in a given triple store is
+ * canonical, but a computed value which is also in the lexicon may be counted
+ * twice if it is presented both as a mock {@link IV} and with its
+ * {@link IV} from the lexicon.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+@SuppressWarnings("rawtypes")
+public class APPROX_COUNT_DISTINCT extends AggregateBase<IV> {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    public interface Annotations extends AggregateBase.Annotations {
+
+        /**
+         * The #of bits of the hash code used to select a register of the
+         * {@link HyperLogLog} sketch. The sketch uses <code>2^log2m</code>
+         * bytes.
+         */
+        String LOG2M = APPROX_COUNT_DISTINCT.class.getName() + ".log2m";
+
+        int DEFAULT_LOG2M = HyperLogLog.DEFAULT_LOG2M;
+
+    }
+
+    public APPROX_COUNT_DISTINCT(APPROX_COUNT_DISTINCT op) {
+        super(op);
+    }
+
+    public APPROX_COUNT_DISTINCT(BOp[] args, Map<String, Object> annotations) {
+        super(args, annotations);
+    }
+
+    public APPROX_COUNT_DISTINCT(final IValueExpression<IV> expr) {
+        this(new BOp[] { expr }, NV.asMap(new NV(Annotations.DISTINCT, false)));
+    }
+
+    /**
+     * The sketch.
+     * <p>
+     * Note: This field is guarded by the monitor on the
+     * {@link APPROX_COUNT_DISTINCT} instance.
+     */
+    private transient HyperLogLog sketch = null;
+
+    /**
+     * Used to encode the {@link IV}s.
+     */
+    private transient IKeyBuilder keyBuilder = null;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The first error encountered since the last {@link #reset()}.
+     */
+    private transient Throwable firstCause = null;
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Note: No intermediate value is returned to minimize churn.
+     */
+    synchronized public IV get(final IBindingSet bindingSet) {
+
+        try {
+
+            return doGet(bindingSet);
+
+        } catch (Throwable t) {
+
+            if (firstCause == null) {
+
+                firstCause = t;
+
+            }
+
+            throw new RuntimeException(t);
+
+        }
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private IV doGet(final IBindingSet bindingSet) {
+
+        final IValueExpression<IV> expr = (IValueExpression<IV>) get(0);
+
+        // evaluate the expression (typically just a variable, but who knows).
+        final IV<?, ?> val = expr.get(bindingSet);
+
+        if (val != null) {
+
+            if (sketch == null) {
+
+                sketch = new HyperLogLog(getProperty(Annotations.LOG2M,
+                        Annotations.DEFAULT_LOG2M));
+
+                keyBuilder = KeyBuilder.newInstance();
+
+            }
+
+            if (val.isNullIV()) {
+
+                // A computed value: the IV does not identify the value.
+                if (!val.hasValue())
+                    throw new NotMaterializedException();
+
+                sketch.offer(encodeValue(val.getValue()));
+
+            } else {
+
+                keyBuilder.reset();
+
+                sketch.offer(IVUtility.encode(keyBuilder, val).getKey());
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Return an encoding of an RDF Value which distinguishes URIs, blank
+     * nodes, and literals by their label, language code and datatype.
+     */
+    private static byte[] encodeValue(final BigdataValue v) {
+
+        final StringBuilder sb = new StringBuilder();
+
+        if (v instanceof Literal) {
+
+            final Literal lit = (Literal) v;
+
+            sb.append('L').append(lit.getLabel()).append('\u0000');
+
+            if (lit.getLanguage() != null) {
+
+                sb.append('@').append(lit.getLanguage());
+
+            } else if (lit.getDatatype() != null) {
+
+                sb.append('^').append(lit.getDatatype().stringValue());
+
+            }
+
+        } else if (v instanceof URI) {
+
+            sb.append('U').append(v.stringValue());
+
+        } else {
+
+            sb.append('B').append(v.stringValue());
+
+        }
+
+        return sb.toString().getBytes(UTF8);
+
+    }
+
+    /**
+     * Merge a sketch computed elsewhere (for example, for another partition
+     * of the same group) into this aggregate.
+     *
+     * @param o
+     *            The other sketch.
+     */
+    synchronized public void merge(final HyperLogLog o) {
+
+        if (sketch == null) {
+
+            sketch = new HyperLogLog(o);
+
+        } else {
+
+            sketch.merge(o);
+
+        }
+
+    }
+
+    /**
+     * Return a copy of the current sketch -or- <code>null</code> if no
+     * non-null values have been presented since the last {@link #reset()}.
+     */
+    synchronized public HyperLogLog getSketch() {
+
+        return sketch == null ? null : new HyperLogLog(sketch);
+
+    }
+
+    synchronized public void reset() {
+
+        if (sketch != null)
+            sketch.clear();
+
+        firstCause = null;
+
+    }
+
+    synchronized public IV done() {
+
+        if (firstCause != null) {
+
+            throw new RuntimeException(firstCause);
+
+        }
+
+        final long n = sketch == null ? 0L : sketch.cardinality();
+
+        return new XSDIntegerIV<BigdataLiteral>(BigInteger.valueOf(n));
+
+    }
+
+    /**
+     * The {@link IV}s are hashed, so they only need to be materialized when
+     * they are mock {@link IV}s for computed values, and those carry their
+     * RDF Value.
+     */
+    public Requirement getRequirement() {
+
+        return INeedsMaterialization.Requirement.SOMETIMES;
+
+    }
+
+}
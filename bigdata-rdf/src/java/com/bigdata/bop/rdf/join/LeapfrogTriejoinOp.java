@@ -0,0 +1,1443 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+package com.bigdata.bop.rdf.join;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.BOpEvaluationContext;
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IConstraint;
+import com.bigdata.bop.IPredicate;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.join.JoinAnnotations;
+import com.bigdata.btree.BytesUtil;
+import com.bigdata.btree.IIndex;
+import com.bigdata.btree.IRangeQuery;
+import com.bigdata.btree.ITuple;
+import com.bigdata.btree.ITupleCursor;
+import com.bigdata.btree.ITupleIterator;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.btree.keys.SuccessorUtil;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+import com.bigdata.rdf.spo.ISPO;
+import com.bigdata.rdf.spo.SPOKeyOrder;
+import com.bigdata.rdf.spo.SPORelation;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+import com.bigdata.relation.accesspath.UnsynchronizedArrayBuffer;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * A worst-case optimal multiway join (leapfrog triejoin) for a set of
+ * statement patterns. This is intended for cyclic join groups (triangles, etc.)
+ * for which any plan of binary joins can produce intermediate results which
+ * are much larger than the final result.
+ * <p>
+ * Each statement pattern is read as a trie over one of the statement indices.
+ * The {@link SPOKeyOrder} for each pattern is chosen such that the variables
+ * of that pattern appear in the key in the same order in which they appear in
+ * a global {@link Annotations#VARIABLE_ORDER}. The variables are then bound
+ * one at a time in that order. For each variable, the tries of the patterns
+ * in which it appears are intersected by a leapfrog search which uses
+ * {@link ITupleCursor#seek(byte[])} to skip over keys which can not join.
+ * Constants and variables which are already bound are simply appended to the
+ * key prefix of the trie, which is verified to exist before going deeper.
+ * <p>
+ * Since the encoded {@link IV}s are self-delimiting and the same encoding is
+ * used by all statement indices, the values of a variable may be compared as
+ * unsigned byte[]s without decoding them.
+ * <p>
+ * Variables which are already bound in a source solution are treated as
+ * constants. The output solutions are the source solution extended with the
+ * bindings for the remaining variables which satisfy the optional
+ * {@link Annotations#CONSTRAINTS}.
+ * <p>
+ * Note: The access paths are read using an {@link ITupleCursor} against the
+ * local index. This operator is not designed for scale-out.
+ * 
+ * @see #isCyclic(IPredicate[], Set)
+ * @see #getVariableOrder(IPredicate[], Set, SPOKeyOrder[])
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class LeapfrogTriejoinOp extends PipelineOp {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1L;
+
+    public interface Annotations extends PipelineOp.Annotations {
+
+        /**
+         * The {@link IPredicate}[] for the statement patterns to be joined.
+         */
+        String PREDICATES = LeapfrogTriejoinOp.class.getName() + ".predicates";
+
+        /**
+         * The {@link SPOKeyOrder}[] giving the index which is used to read
+         * each of the {@link #PREDICATES} (one per predicate).
+         * 
+         * @see LeapfrogTriejoinOp#getKeyOrder(IPredicate, IVariable[], Set,
+         *      SPOKeyOrder[])
+         */
+        String KEY_ORDERS = LeapfrogTriejoinOp.class.getName() + ".keyOrders";
+
+        /**
+         * The {@link IVariable}[] specifying the order in which the variables
+         * are bound. The variables of each predicate must appear in the key
+         * for the corresponding {@link #KEY_ORDERS} in this order.
+         * 
+         * @see LeapfrogTriejoinOp#getVariableOrder(IPredicate[], Set,
+         *      SPOKeyOrder[])
+         */
+        String VARIABLE_ORDER = LeapfrogTriejoinOp.class.getName()
+                + ".variableOrder";
+
+        /**
+         * Constraints to be applied to the join solutions (optional).
+         */
+        String CONSTRAINTS = JoinAnnotations.CONSTRAINTS;
+
+    }
+
+    /**
+     * Deep copy constructor.
+     */
+    public LeapfrogTriejoinOp(final LeapfrogTriejoinOp op) {
+
+        super(op);
+
+    }
+
+    /**
+     * Shallow copy constructor.
+     * 
+     * @param args
+     * @param annotations
+     */
+    public LeapfrogTriejoinOp(final BOp[] args,
+            final Map<String, Object> annotations) {
+
+        super(args, annotations);
+
+        if (getEvaluationContext() == BOpEvaluationContext.SHARDED)
+            throw new UnsupportedOperationException(
+                    Annotations.EVALUATION_CONTEXT + "="
+                            + getEvaluationContext());
+
+        final IPredicate<?>[] preds = getPredicates();
+
+        final SPOKeyOrder[] keyOrders = getKeyOrders();
+
+        if (preds.length == 0)
+            throw new IllegalArgumentException(Annotations.PREDICATES);
+
+        if (keyOrders.length != preds.length)
+            throw new IllegalArgumentException(Annotations.KEY_ORDERS);
+
+        for (int i = 0; i < preds.length; i++) {
+
+            if (preds[i].arity() != keyOrders[i].getKeyArity())
+                throw new IllegalArgumentException(Annotations.KEY_ORDERS);
+
+        }
+
+        getVariableOrder();
+
+    }
+
+    public LeapfrogTriejoinOp(final BOp[] args, final NV... annotations) {
+
+        this(args, NV.asMap(annotations));
+
+    }
+
+    /**
+     * @see Annotations#PREDICATES
+     */
+    public IPredicate<?>[] getPredicates() {
+
+        return (IPredicate<?>[]) getRequiredProperty(Annotations.PREDICATES);
+
+    }
+
+    /**
+     * @see Annotations#KEY_ORDERS
+     */
+    public SPOKeyOrder[] getKeyOrders() {
+
+        return (SPOKeyOrder[]) getRequiredProperty(Annotations.KEY_ORDERS);
+
+    }
+
+    /**
+     * @see Annotations#VARIABLE_ORDER
+     */
+    public IVariable<?>[] getVariableOrder() {
+
+        return (IVariable<?>[]) getRequiredProperty(Annotations.VARIABLE_ORDER);
+
+    }
+
+    /**
+     * @see Annotations#CONSTRAINTS
+     */
+    public IConstraint[] constraints() {
+
+        return getProperty(Annotations.CONSTRAINTS, null/* defaultValue */);
+
+    }
+
+    @Override
+    public FutureTask<Void> eval(final BOpContext<IBindingSet> context) {
+
+        return new FutureTask<Void>(new LeapfrogTask(this, context));
+
+    }
+
+    /*
+     * Static analysis.
+     */
+
+    /**
+     * Return the distinct variables of the predicate which are not in the
+     * <i>bound</i> set, in the order in which they appear in the predicate.
+     */
+    static private List<IVariable<?>> getFreeVars(final IPredicate<?> pred,
+            final Set<IVariable<?>> bound) {
+
+        final List<IVariable<?>> vars = new ArrayList<IVariable<?>>(
+                pred.arity());
+
+        for (int i = 0; i < pred.arity(); i++) {
+
+            final IVariableOrConstant<?> t = pred.get(i);
+
+            if (t != null && t.isVar() && !bound.contains(t)
+                    && !vars.contains(t)) {
+
+                vars.add((IVariable<?>) t);
+
+            }
+
+        }
+
+        return vars;
+
+    }
+
+    /**
+     * Return the distinct free variables of the predicate in the order in
+     * which they appear in the key for the given {@link SPOKeyOrder}.
+     */
+    static private List<IVariable<?>> getFreeVars(final IPredicate<?> pred,
+            final SPOKeyOrder keyOrder, final Set<IVariable<?>> bound) {
+
+        final List<IVariable<?>> vars = new ArrayList<IVariable<?>>(
+                pred.arity());
+
+        for (int k = 0; k < keyOrder.getKeyArity(); k++) {
+
+            final IVariableOrConstant<?> t = pred.get(keyOrder.getKeyOrder(k));
+
+            if (t != null && t.isVar() && !bound.contains(t)
+                    && !vars.contains(t)) {
+
+                vars.add((IVariable<?>) t);
+
+            }
+
+        }
+
+        return vars;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the hypergraph formed by the free variables
+     * of the predicates is cyclic. This uses the GYO reduction: variables which
+     * appear in only one predicate are removed, as are predicates whose
+     * variables are a subset of those for another predicate. The hypergraph is
+     * (alpha-)acyclic iff this reduces it to nothing. Binary join plans are
+     * fine for acyclic join groups, while cyclic join groups are where a
+     * worst-case optimal join pays off.
+     * 
+     * @param preds
+     *            The predicates.
+     * @param bound
+     *            The variables which are known to be bound on entry.
+     */
+    public static boolean isCyclic(final IPredicate<?>[] preds,
+            final Set<IVariable<?>> bound) {
+
+        final List<Set<IVariable<?>>> edges = new LinkedList<Set<IVariable<?>>>();
+
+        for (IPredicate<?> pred : preds) {
+
+            edges.add(new LinkedHashSet<IVariable<?>>(getFreeVars(pred, bound)));
+
+        }
+
+        boolean modified = true;
+
+        while (modified && !edges.isEmpty()) {
+
+            modified = false;
+
+            // Remove variables which appear in only one edge.
+            final Map<IVariable<?>, Integer> counts = new LinkedHashMap<IVariable<?>, Integer>();
+
+            for (Set<IVariable<?>> e : edges) {
+
+                for (IVariable<?> v : e) {
+
+                    final Integer n = counts.get(v);
+
+                    counts.put(v, n == null ? 1 : n + 1);
+
+                }
+
+            }
+
+            for (Set<IVariable<?>> e : edges) {
+
+                final Iterator<IVariable<?>> itr = e.iterator();
+
+                while (itr.hasNext()) {
+
+                    if (counts.get(itr.next()) == 1) {
+
+                        itr.remove();
+
+                        modified = true;
+
+                    }
+
+                }
+
+            }
+
+            // Remove edges which are contained in some other edge.
+            final Iterator<Set<IVariable<?>>> itr = edges.iterator();
+
+            while (itr.hasNext()) {
+
+                final Set<IVariable<?>> e = itr.next();
+
+                boolean remove = e.isEmpty();
+
+                for (Set<IVariable<?>> f : edges) {
+
+                    if (remove)
+                        break;
+
+                    if (f != e && f.containsAll(e))
+                        remove = true;
+
+                }
+
+                if (remove) {
+
+                    itr.remove();
+
+                    modified = true;
+
+                }
+
+            }
+
+        }
+
+        return !edges.isEmpty();
+
+    }
+
+    /**
+     * Return <code>true</code> iff the free variables of the predicate appear
+     * in the key for the {@link SPOKeyOrder} in an order which is consistent
+     * with the ranks assigned to the variables placed so far, assuming that
+     * all other variables will be placed after them.
+     * 
+     * @param rank
+     *            The rank of each variable placed so far.
+     */
+    static private boolean isConsistent(final IPredicate<?> pred,
+            final SPOKeyOrder keyOrder, final Set<IVariable<?>> bound,
+            final Map<IVariable<?>, Integer> rank) {
+
+        boolean seenUnplaced = false;
+
+        int lastRank = -1;
+
+        for (IVariable<?> v : getFreeVars(pred, keyOrder, bound)) {
+
+            final Integer r = rank.get(v);
+
+            if (r == null) {
+
+                seenUnplaced = true;
+
+                continue;
+
+            }
+
+            if (seenUnplaced || r.intValue() <= lastRank)
+                return false;
+
+            lastRank = r.intValue();
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Return a global order for the free variables of the predicates such
+     * that, for each predicate, there is some {@link SPOKeyOrder} in which
+     * the variables of that predicate appear in that order. Variables which
+     * appear in more predicates are preferred for the earlier positions since
+     * they provide the most pruning.
+     * 
+     * @param preds
+     *            The predicates.
+     * @param bound
+     *            The variables which are known to be bound on entry.
+     * @param keyOrders
+     *            The available statement indices.
+     * 
+     * @return The variable order -or- <code>null</code> if there is no such
+     *         order.
+     */
+    public static IVariable<?>[] getVariableOrder(final IPredicate<?>[] preds,
+            final Set<IVariable<?>> bound, final SPOKeyOrder[] keyOrders) {
+
+        // Count the #of predicates in which each variable appears.
+        final Map<IVariable<?>, Integer> counts = new LinkedHashMap<IVariable<?>, Integer>();
+
+        for (IPredicate<?> pred : preds) {
+
+            for (IVariable<?> v : getFreeVars(pred, bound)) {
+
+                final Integer n = counts.get(v);
+
+                counts.put(v, n == null ? 1 : n + 1);
+
+            }
+
+        }
+
+        // Candidate variables in descending order of frequency (stable).
+        final List<IVariable<?>> candidates = new ArrayList<IVariable<?>>(
+                counts.keySet());
+
+        java.util.Collections.sort(candidates,
+                new java.util.Comparator<IVariable<?>>() {
+                    @Override
+                    public int compare(final IVariable<?> a,
+                            final IVariable<?> b) {
+                        return counts.get(b) - counts.get(a);
+                    }
+                });
+
+        final IVariable<?>[] order = new IVariable<?>[candidates.size()];
+
+        if (!search(preds, bound, keyOrders, candidates, order,
+                new LinkedHashMap<IVariable<?>, Integer>()))
+            return null;
+
+        return order;
+
+    }
+
+    /**
+     * Backtracking search for a consistent variable order.
+     */
+    static private boolean search(final IPredicate<?>[] preds,
+            final Set<IVariable<?>> bound, final SPOKeyOrder[] keyOrders,
+            final List<IVariable<?>> candidates, final IVariable<?>[] order,
+            final Map<IVariable<?>, Integer> rank) {
+
+        final int depth = rank.size();
+
+        if (depth == order.length)
+            return true;
+
+        for (IVariable<?> v : candidates) {
+
+            if (rank.containsKey(v))
+                continue;
+
+            rank.put(v, depth);
+
+            boolean ok = true;
+
+            for (IPredicate<?> pred : preds) {
+
+                boolean found = false;
+
+                for (SPOKeyOrder keyOrder : keyOrders) {
+
+                    if (isConsistent(pred, keyOrder, bound, rank)) {
+
+                        found = true;
+
+                        break;
+
+                    }
+
+                }
+
+                if (!found) {
+
+                    ok = false;
+
+                    break;
+
+                }
+
+            }
+
+            if (ok) {
+
+                order[depth] = v;
+
+                if (search(preds, bound, keyOrders, candidates, order, rank))
+                    return true;
+
+            }
+
+            rank.remove(v);
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Return the {@link SPOKeyOrder} which will be used to read the
+     * predicate. Of the indices in which the variables of the predicate
+     * appear in the key in the given variable order, this chooses the one
+     * having the most leading components which are constants or bound
+     * variables.
+     * 
+     * @param pred
+     *            The predicate.
+     * @param order
+     *            The variable order.
+     * @param bound
+     *            The variables which are known to be bound on entry.
+     * @param keyOrders
+     *            The available statement indices.
+     * 
+     * @return The {@link SPOKeyOrder} -or- <code>null</code> if none of the
+     *         indices is consistent with that variable order.
+     */
+    public static SPOKeyOrder getKeyOrder(final IPredicate<?> pred,
+            final IVariable<?>[] order, final Set<IVariable<?>> bound,
+            final SPOKeyOrder[] keyOrders) {
+
+        final Map<IVariable<?>, Integer> rank = new LinkedHashMap<IVariable<?>, Integer>();
+
+        for (int i = 0; i < order.length; i++) {
+
+            rank.put(order[i], i);
+
+        }
+
+        SPOKeyOrder best = null;
+
+        int bestPrefix = -1;
+
+        for (SPOKeyOrder keyOrder : keyOrders) {
+
+            if (keyOrder.getKeyArity() != pred.arity())
+                continue;
+
+            if (!isConsistent(pred, keyOrder, bound, rank))
+                continue;
+
+            // #of leading key components which are constants or bound.
+            int prefix = 0;
+
+            for (int k = 0; k < keyOrder.getKeyArity(); k++) {
+
+                final IVariableOrConstant<?> t = pred.get(keyOrder
+                        .getKeyOrder(k));
+
+                if (t.isVar() && !bound.contains(t))
+                    break;
+
+                prefix++;
+
+            }
+
+            if (prefix > bestPrefix) {
+
+                best = keyOrder;
+
+                bestPrefix = prefix;
+
+            }
+
+        }
+
+        return best;
+
+    }
+
+    /*
+     * Evaluation.
+     */
+
+    /**
+     * A trie over the key components of one statement index for one
+     * predicate. The cursor is positioned by seeks against the key prefix
+     * formed by the components which are bound so far.
+     */
+    private static class Trie {
+
+        /** The cursor used to seek on the index. */
+        private final ITupleCursor<?> cursor;
+
+        /**
+         * The term for each key component (in key order) for the current
+         * source solution.
+         */
+        @SuppressWarnings("rawtypes")
+        private final IVariableOrConstant[] comps;
+
+        /** The saved {@link #prefix} and {@link #depth} for each level. */
+        private final byte[][] prefixStack;
+        private final int[] depthStack;
+        private int sp = 0;
+
+        /** The key prefix formed by the components bound so far. */
+        private byte[] prefix;
+
+        /** The #of key components in the {@link #prefix}. */
+        private int depth;
+
+        /** The encoded value for the open level -or- <code>null</code>. */
+        private byte[] value;
+
+        /** The decoded value for the open level. */
+        @SuppressWarnings("rawtypes")
+        private IV iv;
+
+        /**
+         * @param ndx
+         *            The statement index.
+         * @param arity
+         *            The #of components in the key.
+         * @param maxDepth
+         *            The maximum #of saved prefixes (one per variable in the
+         *            variable order).
+         */
+        @SuppressWarnings("rawtypes")
+        Trie(final IIndex ndx, final int arity, final int maxDepth) {
+
+            final ITupleIterator<?> itr = ndx.rangeIterator(null/* fromKey */,
+                    null/* toKey */, 0/* capacity */, IRangeQuery.KEYS
+                            | IRangeQuery.CURSOR, null/* filter */);
+
+            if (!(itr instanceof ITupleCursor))
+                throw new UnsupportedOperationException(
+                        "Cursor not supported: " + ndx.getClass());
+
+            this.cursor = (ITupleCursor<?>) itr;
+
+            this.comps = new IVariableOrConstant[arity];
+
+            this.prefixStack = new byte[maxDepth][];
+
+            this.depthStack = new int[maxDepth];
+
+        }
+
+        /**
+         * Reset the trie for a new source solution.
+         */
+        void reset() {
+
+            sp = 0;
+
+            prefix = new byte[0];
+
+            depth = 0;
+
+            value = null;
+
+            iv = null;
+
+        }
+
+        /**
+         * Return the variable for the next key component iff that variable is
+         * not yet bound.
+         */
+        IVariable<?> nextVar(final Bindings b) {
+
+            if (depth == comps.length)
+                return null;
+
+            final IVariableOrConstant<?> t = comps[depth];
+
+            if (t.isVar() && b.get((IVariable<?>) t) == null)
+                return (IVariable<?>) t;
+
+            return null;
+
+        }
+
+        /**
+         * Append the key components which are constants or bound variables to
+         * the prefix and verify that some key has that prefix.
+         * 
+         * @return <code>false</code> iff there is no such key.
+         */
+        boolean extendFixed(final Bindings b, final IKeyBuilder keyBuilder) {
+
+            final int depth0 = depth;
+
+            while (depth < comps.length) {
+
+                final IVariableOrConstant<?> t = comps[depth];
+
+                final byte[] enc;
+
+                if (t.isVar()) {
+
+                    enc = b.get((IVariable<?>) t);
+
+                    if (enc == null)
+                        break;
+
+                } else {
+
+                    enc = encode(keyBuilder, (IV<?, ?>) t.get());
+
+                }
+
+                prefix = concat(prefix, enc);
+
+                depth++;
+
+            }
+
+            if (depth == depth0)
+                return true;
+
+            final byte[] key = seekCeiling(prefix);
+
+            return key != null && startsWith(key, prefix);
+
+        }
+
+        /**
+         * Save the current prefix.
+         */
+        void push() {
+
+            prefixStack[sp] = prefix;
+
+            depthStack[sp] = depth;
+
+            sp++;
+
+        }
+
+        /**
+         * Restore the most recently saved prefix.
+         */
+        void pop() {
+
+            sp--;
+
+            prefix = prefixStack[sp];
+
+            depth = depthStack[sp];
+
+            prefixStack[sp] = null;
+
+        }
+
+        /**
+         * Position on the first value for the next key component.
+         */
+        void open() {
+
+            position(seekCeiling(prefix));
+
+        }
+
+        /**
+         * Advance to the next value for the open key component.
+         */
+        void next() {
+
+            position(seekCeiling(SuccessorUtil.successor(concat(prefix,
+                    value))));
+
+        }
+
+        /**
+         * Advance to the first value GTE the given value for the open key
+         * component.
+         */
+        void seek(final byte[] target) {
+
+            if (BytesUtil.compareBytes(value, target) >= 0)
+                return;
+
+            position(seekCeiling(concat(prefix, target)));
+
+        }
+
+        /**
+         * Bind the open key component to its current value.
+         */
+        void bind() {
+
+            prefix = concat(prefix, value);
+
+            depth++;
+
+        }
+
+        boolean atEnd() {
+
+            return value == null;
+
+        }
+
+        byte[] value() {
+
+            return value;
+
+        }
+
+        @SuppressWarnings("rawtypes")
+        IV iv() {
+
+            return iv;
+
+        }
+
+        /**
+         * Decode the value of the open key component from the key.
+         */
+        private void position(final byte[] key) {
+
+            if (key == null || !startsWith(key, prefix)) {
+
+                value = null;
+
+                iv = null;
+
+                return;
+
+            }
+
+            iv = IVUtility.decodeFromOffset(key, prefix.length);
+
+            value = Arrays.copyOfRange(key, prefix.length, prefix.length
+                    + iv.byteLength());
+
+        }
+
+        /**
+         * Return the first key GTE the given key -or- <code>null</code> if
+         * there is no such key.
+         */
+        private byte[] seekCeiling(final byte[] key) {
+
+            ITuple<?> t = cursor.seek(key);
+
+            if (t == null) {
+
+                if (!cursor.hasNext())
+                    return null;
+
+                t = cursor.next();
+
+            }
+
+            return t.getKey();
+
+        }
+
+    }
+
+    /**
+     * The encoded and decoded values for the variables bound so far.
+     */
+    private static class Bindings {
+
+        @SuppressWarnings("rawtypes")
+        private final Map<IVariable<?>, IV> ivs = new LinkedHashMap<IVariable<?>, IV>();
+
+        private final Map<IVariable<?>, byte[]> encs = new LinkedHashMap<IVariable<?>, byte[]>();
+
+        byte[] get(final IVariable<?> var) {
+
+            return encs.get(var);
+
+        }
+
+        @SuppressWarnings("rawtypes")
+        void set(final IVariable<?> var, final IV iv, final byte[] enc) {
+
+            ivs.put(var, iv);
+
+            encs.put(var, enc);
+
+        }
+
+        void clear(final IVariable<?> var) {
+
+            ivs.remove(var);
+
+            encs.remove(var);
+
+        }
+
+        void clearAll() {
+
+            ivs.clear();
+
+            encs.clear();
+
+        }
+
+    }
+
+    static private byte[] encode(final IKeyBuilder keyBuilder,
+            final IV<?, ?> iv) {
+
+        return IVUtility.encode(keyBuilder.reset(), iv).getKey();
+
+    }
+
+    static private byte[] concat(final byte[] a, final byte[] b) {
+
+        final byte[] c = new byte[a.length + b.length];
+
+        System.arraycopy(a, 0, c, 0, a.length);
+
+        System.arraycopy(b, 0, c, a.length, b.length);
+
+        return c;
+
+    }
+
+    static private boolean startsWith(final byte[] key, final byte[] prefix) {
+
+        if (key.length < prefix.length)
+            return false;
+
+        return BytesUtil.compareBytesWithLenAndOffset(0, prefix.length, key,
+                0, prefix.length, prefix) == 0;
+
+    }
+
+    /**
+     * Task executing the join for each source solution.
+     */
+    static private class LeapfrogTask implements Callable<Void> {
+
+        private final LeapfrogTriejoinOp op;
+
+        private final BOpContext<IBindingSet> context;
+
+        private final IPredicate<?>[] preds;
+
+        private final IVariable<?>[] order;
+
+        private final IConstraint[] constraints;
+
+        private final BOpStats stats;
+
+        private final Trie[] tries;
+
+        private final IKeyBuilder keyBuilder = KeyBuilder.newInstance();
+
+        private final Bindings bindings = new Bindings();
+
+        /**
+         * The #of seek steps since the last check for an interrupt.
+         */
+        private int nsteps = 0;
+
+        LeapfrogTask(final LeapfrogTriejoinOp op,
+                final BOpContext<IBindingSet> context) {
+
+            this.op = op;
+
+            this.context = context;
+
+            this.preds = op.getPredicates();
+
+            this.order = op.getVariableOrder();
+
+            this.constraints = op.constraints();
+
+            this.stats = context.getStats();
+
+            final SPOKeyOrder[] keyOrders = op.getKeyOrders();
+
+            this.tries = new Trie[preds.length];
+
+            for (int i = 0; i < preds.length; i++) {
+
+                @SuppressWarnings("unchecked")
+                final SPORelation relation = (SPORelation) context
+                        .getRelation((IPredicate<ISPO>) preds[i]);
+
+                tries[i] = new Trie(relation.getIndex(keyOrders[i]),
+                        keyOrders[i].getKeyArity(), order.length);
+
+            }
+
+        }
+
+        @Override
+        public Void call() throws Exception {
+
+            final ICloseableIterator<IBindingSet[]> source = context
+                    .getSource();
+
+            final IBlockingBuffer<IBindingSet[]> sink = context.getSink();
+
+            try {
+
+                final UnsynchronizedArrayBuffer<IBindingSet> out = new UnsynchronizedArrayBuffer<IBindingSet>(
+                        sink, IBindingSet.class, op.getChunkCapacity());
+
+                while (source.hasNext()) {
+
+                    final IBindingSet[] chunk = source.next();
+
+                    stats.chunksIn.increment();
+
+                    stats.unitsIn.add(chunk.length);
+
+                    for (IBindingSet bset : chunk) {
+
+                        haltedOrQueryDone();
+
+                        join(bset, out);
+
+                    }
+
+                }
+
+                out.flush();
+
+                sink.flush();
+
+                return null;
+
+            } finally {
+
+                sink.close();
+
+            }
+
+        }
+
+        /**
+         * Check for an interrupt and for the query being done (cancelled,
+         * deadline expired, or its LIMIT satisfied). Otherwise the join would
+         * keep scanning the statement indices for a query which is no longer
+         * running.
+         * 
+         * @throws InterruptedException
+         *             if the task was interrupted or the query is done.
+         */
+        private void haltedOrQueryDone() throws InterruptedException {
+
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            if (context.getRunningQuery().isDone())
+                throw new InterruptedException();
+
+        }
+
+        /**
+         * Periodically invoke {@link #haltedOrQueryDone()} from within the
+         * seek loops.
+         */
+        private void step() throws InterruptedException {
+
+            if (++nsteps >= 100) {
+
+                nsteps = 0;
+
+                haltedOrQueryDone();
+
+            }
+
+        }
+
+        /**
+         * Join a source solution against the predicates.
+         */
+        private void join(final IBindingSet bset,
+                final UnsynchronizedArrayBuffer<IBindingSet> out)
+                throws InterruptedException {
+
+            final SPOKeyOrder[] keyOrders = op.getKeyOrders();
+
+            bindings.clearAll();
+
+            // Variables bound by the source solution act as constants.
+            final List<IVariable<?>> free = new ArrayList<IVariable<?>>(
+                    order.length);
+
+            for (IVariable<?> v : order) {
+
+                @SuppressWarnings("unchecked")
+                final IConstant<?> c = bset.get(v);
+
+                if (c == null) {
+
+                    free.add(v);
+
+                } else {
+
+                    final IV<?, ?> iv = (IV<?, ?>) c.get();
+
+                    bindings.set(v, iv, encode(keyBuilder, iv));
+
+                }
+
+            }
+
+            for (int i = 0; i < preds.length; i++) {
+
+                final Trie t = tries[i];
+
+                t.reset();
+
+                for (int k = 0; k < keyOrders[i].getKeyArity(); k++) {
+
+                    final IVariableOrConstant<?> term = preds[i]
+                            .get(keyOrders[i].getKeyOrder(k));
+
+                    if (term.isVar()) {
+
+                        @SuppressWarnings("unchecked")
+                        final IConstant<?> c = bset
+                                .get((IVariable<?>) term);
+
+                        if (bindings.get((IVariable<?>) term) == null) {
+
+                            if (c == null && !free.contains(term)) {
+
+                                /*
+                                 * The variable was assumed to be bound on
+                                 * entry when the variable order was chosen.
+                                 */
+                                throw new IllegalStateException("Not bound: "
+                                        + term);
+
+                            }
+
+                            if (c != null) {
+
+                                /*
+                                 * Bound by the source solution, but not part
+                                 * of the variable order.
+                                 */
+                                final IV<?, ?> iv = (IV<?, ?>) c.get();
+
+                                bindings.set((IVariable<?>) term, iv, encode(
+                                        keyBuilder, iv));
+
+                            }
+
+                        }
+
+                    }
+
+                    t.comps[k] = term;
+
+                }
+
+            }
+
+            for (Trie t : tries) {
+
+                if (!t.extendFixed(bindings, keyBuilder)) {
+
+                    // No solutions for this source solution.
+                    return;
+
+                }
+
+            }
+
+            leapfrog(bset, free, 0/* level */, out);
+
+        }
+
+        /**
+         * Bind the variable at the given level of the variable order to each
+         * value in the intersection of the tries in which it appears and
+         * recurse.
+         */
+        private void leapfrog(final IBindingSet bset,
+                final List<IVariable<?>> free, final int level,
+                final UnsynchronizedArrayBuffer<IBindingSet> out)
+                throws InterruptedException {
+
+            if (level == free.size()) {
+
+                emit(bset, free, out);
+
+                return;
+
+            }
+
+            final IVariable<?> var = free.get(level);
+
+            // The tries in which that variable is the next key component.
+            final List<Trie> a = new ArrayList<Trie>(tries.length);
+
+            for (Trie t : tries) {
+
+                if (t.nextVar(bindings) == var)
+                    a.add(t);
+
+            }
+
+            if (a.isEmpty()) {
+
+                /*
+                 * Not possible with a consistent variable order since each
+                 * variable appears in at least one predicate.
+                 */
+                throw new AssertionError("No trie for " + var);
+
+            }
+
+            final Trie[] it = a.toArray(new Trie[a.size()]);
+
+            final int k = it.length;
+
+            for (Trie t : it) {
+
+                t.open();
+
+                if (t.atEnd())
+                    return;
+
+            }
+
+            // Sort the tries by their current value.
+            Arrays.sort(it, new java.util.Comparator<Trie>() {
+                @Override
+                public int compare(final Trie o1, final Trie o2) {
+                    return BytesUtil.compareBytes(o1.value(), o2.value());
+                }
+            });
+
+            int p = 0;
+
+            byte[] max = it[k - 1].value();
+
+            while (true) {
+
+                step();
+
+                final byte[] x = it[p].value();
+
+                if (BytesUtil.compareBytes(x, max) == 0) {
+
+                    // All tries agree on this value.
+                    descend(bset, free, level, it, out);
+
+                    it[p].next();
+
+                    if (it[p].atEnd())
+                        return;
+
+                    max = it[p].value();
+
+                    p = (p + 1) % k;
+
+                    continue;
+
+                }
+
+                it[p].seek(max);
+
+                if (it[p].atEnd())
+                    return;
+
+                max = it[p].value();
+
+                p = (p + 1) % k;
+
+            }
+
+        }
+
+        /**
+         * Bind the variable to the current value of the tries and recurse to
+         * the next level.
+         */
+        private void descend(final IBindingSet bset,
+                final List<IVariable<?>> free, final int level,
+                final Trie[] it, final UnsynchronizedArrayBuffer<IBindingSet> out)
+                throws InterruptedException {
+
+            final IVariable<?> var = free.get(level);
+
+            // Note: The cursor positions are lost when we go deeper.
+            final byte[][] values = new byte[it.length][];
+
+            @SuppressWarnings("rawtypes")
+            final IV iv = it[0].iv();
+
+            bindings.set(var, iv, it[0].value());
+
+            for (int i = 0; i < it.length; i++) {
+
+                values[i] = it[i].value();
+
+            }
+
+            /*
+             * Save the prefix for every trie since binding this variable can
+             * also extend the prefix of a trie in which it appears after the
+             * first occurrence of some other variable.
+             */
+            for (Trie t : tries) {
+
+                t.push();
+
+            }
+
+            for (Trie t : it) {
+
+                t.bind();
+
+            }
+
+            boolean ok = true;
+
+            for (Trie t : tries) {
+
+                if (!t.extendFixed(bindings, keyBuilder)) {
+
+                    ok = false;
+
+                    break;
+
+                }
+
+            }
+
+            if (ok) {
+
+                leapfrog(bset, free, level + 1, out);
+
+            }
+
+            bindings.clear(var);
+
+            for (Trie t : tries) {
+
+                t.pop();
+
+            }
+
+            for (int i = 0; i < it.length; i++) {
+
+                // Restore the value for the open key component.
+                it[i].value = values[i];
+
+            }
+
+        }
+
+        /**
+         * Output a solution.
+         */
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private void emit(final IBindingSet bset,
+                final List<IVariable<?>> free,
+                final UnsynchronizedArrayBuffer<IBindingSet> out) {
+
+            final IBindingSet tmp = bset.clone();
+
+            for (IVariable<?> v : free) {
+
+                tmp.set(v, new Constant<IV>(bindings.ivs.get(v)));
+
+            }
+
+            if (constraints != null
+                    && !BOpUtility.isConsistent(constraints, tmp)) {
+
+                return;
+
+            }
+
+            out.add(tmp);
+
+            stats.unitsOut.increment();
+
+        }
+
+    }
+
+}
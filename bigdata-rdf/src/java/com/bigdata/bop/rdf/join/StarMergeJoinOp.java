@@ -0,0 +1,753 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+package com.bigdata.bop.rdf.join;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.BOpEvaluationContext;
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IConstraint;
+import com.bigdata.bop.IPredicate;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.join.JoinAnnotations;
+import com.bigdata.btree.BytesUtil;
+import com.bigdata.btree.IRangeQuery;
+import com.bigdata.btree.ITuple;
+import com.bigdata.btree.ITupleCursor;
+import com.bigdata.btree.ITupleIterator;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.btree.keys.NoSuccessorException;
+import com.bigdata.btree.keys.SuccessorUtil;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+import com.bigdata.rdf.spo.ISPO;
+import com.bigdata.rdf.spo.SPOKeyOrder;
+import com.bigdata.rdf.spo.SPORelation;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+import com.bigdata.relation.accesspath.UnsynchronizedArrayBuffer;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * A merge join for a star of statement patterns which share the same subject
+ * variable and have constant predicates, e.g.,
+ * 
+ * <pre>
+ * ?s :p1 ?a . ?s :p2 ?b . ?s :p3 ?c
+ * </pre>
+ * 
+ * Rather than running a nested {@link PipelineOp} join for each statement
+ * pattern, which probes the index once per intermediate solution, each
+ * statement pattern is read using an {@link ITupleCursor} on the
+ * {@link SPOKeyOrder#SPO} index. Since that index is ordered by subject, the
+ * cursors visit the subjects of their statement patterns in the same order
+ * and are zipped together in one pass. Each cursor seeks directly to the
+ * <code>(subject, predicate[, object])</code> prefix of the next candidate
+ * subject, so subjects which lack one of the predicates are skipped without
+ * reading their statements. For each subject in the intersection the
+ * objects for each statement pattern are read from the same neighborhood of
+ * the index and their cross product is emitted.
+ * <p>
+ * Since the encoded {@link IV}s are self-delimiting and the same encoding is
+ * used by all statement indices, subjects are compared as unsigned byte[]s
+ * without decoding them.
+ * <p>
+ * Objects which are constants or which are bound in a source solution become
+ * part of the key prefix. When the subject is bound in a source solution, it
+ * is simply probed on each cursor.
+ * <p>
+ * Note: The access paths are read using an {@link ITupleCursor} against the
+ * local index. This operator is not designed for scale-out and only supports
+ * triples.
+ * 
+ * @see LeapfrogTriejoinOp
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class StarMergeJoinOp extends PipelineOp {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The star is only planned as a merge join when the estimated cardinality
+     * of its statement patterns differ by no more than this factor. Otherwise
+     * the merge join would visit many subjects which the most selective
+     * statement pattern rules out.
+     */
+    public static final long MAX_CARDINALITY_RATIO = 10L;
+
+    public interface Annotations extends PipelineOp.Annotations {
+
+        /**
+         * The {@link IPredicate}[] for the statement patterns to be joined.
+         * All predicates must have the same variable in the subject position
+         * and a constant in the predicate position.
+         */
+        String PREDICATES = StarMergeJoinOp.class.getName() + ".predicates";
+
+        /**
+         * Constraints to be applied to the join solutions (optional).
+         */
+        String CONSTRAINTS = JoinAnnotations.CONSTRAINTS;
+
+    }
+
+    /**
+     * Deep copy constructor.
+     */
+    public StarMergeJoinOp(final StarMergeJoinOp op) {
+
+        super(op);
+
+    }
+
+    /**
+     * Shallow copy constructor.
+     * 
+     * @param args
+     * @param annotations
+     */
+    public StarMergeJoinOp(final BOp[] args,
+            final Map<String, Object> annotations) {
+
+        super(args, annotations);
+
+        if (getEvaluationContext() == BOpEvaluationContext.SHARDED)
+            throw new UnsupportedOperationException(
+                    Annotations.EVALUATION_CONTEXT + "="
+                            + getEvaluationContext());
+
+        final IPredicate<?>[] preds = getPredicates();
+
+        if (preds.length == 0)
+            throw new IllegalArgumentException(Annotations.PREDICATES);
+
+        if (!isStar(preds))
+            throw new IllegalArgumentException(Annotations.PREDICATES);
+
+    }
+
+    public StarMergeJoinOp(final BOp[] args, final NV... annotations) {
+
+        this(args, NV.asMap(annotations));
+
+    }
+
+    /**
+     * @see Annotations#PREDICATES
+     */
+    public IPredicate<?>[] getPredicates() {
+
+        return (IPredicate<?>[]) getRequiredProperty(Annotations.PREDICATES);
+
+    }
+
+    /**
+     * @see Annotations#CONSTRAINTS
+     */
+    public IConstraint[] constraints() {
+
+        return getProperty(Annotations.CONSTRAINTS, null/* defaultValue */);
+
+    }
+
+    /**
+     * Return the subject variable shared by the predicates.
+     */
+    public IVariable<?> getSubjectVar() {
+
+        return (IVariable<?>) getPredicates()[0].get(0);
+
+    }
+
+    /**
+     * Return <code>true</code> iff the predicates are triple patterns which
+     * share the same variable in the subject position, have a constant in the
+     * predicate position, and do not reuse the subject variable in the object
+     * position.
+     * 
+     * @param preds
+     *            The predicates.
+     */
+    public static boolean isStar(final IPredicate<?>[] preds) {
+
+        IVariableOrConstant<?> s = null;
+
+        for (IPredicate<?> pred : preds) {
+
+            if (pred.arity() != 3)
+                return false;
+
+            final IVariableOrConstant<?> t = pred.get(0);
+
+            if (t == null || !t.isVar())
+                return false;
+
+            if (s == null)
+                s = t;
+            else if (!s.equals(t))
+                return false;
+
+            final IVariableOrConstant<?> p = pred.get(1);
+
+            if (p == null || !p.isConstant())
+                return false;
+
+            final IVariableOrConstant<?> o = pred.get(2);
+
+            if (o == null || s.equals(o))
+                return false;
+
+        }
+
+        return s != null;
+
+    }
+
+    /**
+     * Return the length of the longest leading sequence of the predicates
+     * which form a star on a subject variable which is not known to be bound
+     * on entry.
+     * 
+     * @param preds
+     *            The predicates.
+     * @param bound
+     *            The variables which are known to be bound on entry.
+     */
+    public static int getStarLength(final IPredicate<?>[] preds,
+            final Set<IVariable<?>> bound) {
+
+        int n = 0;
+
+        while (n < preds.length
+                && isStar(Arrays.copyOf(preds, n + 1,
+                        IPredicate[].class))) {
+
+            n++;
+
+        }
+
+        if (n > 0 && bound.contains(preds[0].get(0)))
+            return 0;
+
+        return n;
+
+    }
+
+    @Override
+    public FutureTask<Void> eval(final BOpContext<IBindingSet> context) {
+
+        return new FutureTask<Void>(new StarMergeJoinTask(this, context));
+
+    }
+
+    /**
+     * Task executing the join for each source solution.
+     */
+    static private class StarMergeJoinTask implements Callable<Void> {
+
+        private final StarMergeJoinOp op;
+
+        private final BOpContext<IBindingSet> context;
+
+        private final IPredicate<?>[] preds;
+
+        private final IVariable<?> s;
+
+        private final IConstraint[] constraints;
+
+        private final BOpStats stats;
+
+        /**
+         * One cursor per predicate on the SPO index.
+         */
+        private final ITupleCursor<?>[] cursors;
+
+        /**
+         * The key prefix following the subject for each predicate for the
+         * current source solution (the predicate and optionally the object).
+         */
+        private final byte[][] suffixes;
+
+        /**
+         * The object variable for each predicate -or- <code>null</code> if the
+         * object is a constant for the current source solution.
+         */
+        private final IVariable<?>[] objectVars;
+
+        private final IKeyBuilder keyBuilder = KeyBuilder.newInstance();
+
+        StarMergeJoinTask(final StarMergeJoinOp op,
+                final BOpContext<IBindingSet> context) {
+
+            this.op = op;
+
+            this.context = context;
+
+            this.preds = op.getPredicates();
+
+            this.s = op.getSubjectVar();
+
+            this.constraints = op.constraints();
+
+            this.stats = context.getStats();
+
+            this.cursors = new ITupleCursor<?>[preds.length];
+
+            this.suffixes = new byte[preds.length][];
+
+            this.objectVars = new IVariable<?>[preds.length];
+
+            for (int i = 0; i < preds.length; i++) {
+
+                @SuppressWarnings("unchecked")
+                final SPORelation relation = (SPORelation) context
+                        .getRelation((IPredicate<ISPO>) preds[i]);
+
+                final ITupleIterator<?> itr = relation.getIndex(
+                        SPOKeyOrder.SPO).rangeIterator(null/* fromKey */,
+                        null/* toKey */, 0/* capacity */,
+                        IRangeQuery.KEYS | IRangeQuery.CURSOR, null/* filter */);
+
+                if (!(itr instanceof ITupleCursor))
+                    throw new UnsupportedOperationException(
+                            "Cursor not supported");
+
+                cursors[i] = (ITupleCursor<?>) itr;
+
+            }
+
+        }
+
+        @Override
+        public Void call() throws Exception {
+
+            final ICloseableIterator<IBindingSet[]> source = context
+                    .getSource();
+
+            final IBlockingBuffer<IBindingSet[]> sink = context.getSink();
+
+            try {
+
+                final UnsynchronizedArrayBuffer<IBindingSet> out = new UnsynchronizedArrayBuffer<IBindingSet>(
+                        sink, IBindingSet.class, op.getChunkCapacity());
+
+                while (source.hasNext()) {
+
+                    final IBindingSet[] chunk = source.next();
+
+                    stats.chunksIn.increment();
+
+                    stats.unitsIn.add(chunk.length);
+
+                    for (IBindingSet bset : chunk) {
+
+                        join(bset, out);
+
+                    }
+
+                }
+
+                out.flush();
+
+                sink.flush();
+
+                return null;
+
+            } finally {
+
+                sink.close();
+
+            }
+
+        }
+
+        /**
+         * Join a source solution against the predicates.
+         */
+        @SuppressWarnings("rawtypes")
+        private void join(final IBindingSet bset,
+                final UnsynchronizedArrayBuffer<IBindingSet> out) {
+
+            for (int i = 0; i < preds.length; i++) {
+
+                byte[] suffix = encode((IV) preds[i].get(1).get());
+
+                final IVariableOrConstant<?> o = preds[i].get(2);
+
+                IV oval = null;
+
+                if (o.isConstant()) {
+
+                    oval = (IV) o.get();
+
+                } else {
+
+                    final IConstant<?> c = bset.get((IVariable<?>) o);
+
+                    if (c != null)
+                        oval = (IV) c.get();
+
+                }
+
+                if (oval != null) {
+
+                    suffix = concat(suffix, encode(oval));
+
+                    objectVars[i] = null;
+
+                } else {
+
+                    objectVars[i] = (IVariable<?>) o;
+
+                }
+
+                suffixes[i] = suffix;
+
+            }
+
+            final IConstant<?> sval = bset.get(s);
+
+            if (sval != null) {
+
+                // The subject is bound: probe each cursor.
+                final byte[] subj = encode((IV) sval.get());
+
+                for (int i = 0; i < preds.length; i++) {
+
+                    final byte[] r = seekSubject(i, subj);
+
+                    if (r == null || !BytesUtil.bytesEqual(subj, r))
+                        return;
+
+                }
+
+                emit(bset, subj, out);
+
+                return;
+
+            }
+
+            final int n = preds.length;
+
+            byte[] cand = seekSubject(0, null/* fromSubject */);
+
+            if (cand == null)
+                return;
+
+            int nmatch = 1;
+
+            int i = 1 % n;
+
+            while (true) {
+
+                if (nmatch == n) {
+
+                    // Every cursor has this subject.
+                    emit(bset, cand, out);
+
+                    try {
+
+                        cand = SuccessorUtil.successor(cand.clone());
+
+                    } catch (NoSuccessorException ex) {
+
+                        return;
+
+                    }
+
+                    nmatch = 0;
+
+                }
+
+                final byte[] r = seekSubject(i, cand);
+
+                if (r == null)
+                    return;
+
+                if (BytesUtil.bytesEqual(r, cand)) {
+
+                    nmatch++;
+
+                } else {
+
+                    cand = r;
+
+                    nmatch = 1;
+
+                }
+
+                i = (i + 1) % n;
+
+            }
+
+        }
+
+        /**
+         * Return the encoded form of the first subject GTE the given subject
+         * for which the cursor has a statement matching its predicate.
+         * 
+         * @param i
+         *            The index of the predicate.
+         * @param from
+         *            The encoded subject -or- <code>null</code> to start with
+         *            the first subject in the index.
+         * 
+         * @return The encoded subject -or- <code>null</code> if there is no
+         *         such subject.
+         */
+        private byte[] seekSubject(final int i, final byte[] from) {
+
+            final byte[] suffix = suffixes[i];
+
+            byte[] subj = from;
+
+            while (true) {
+
+                final byte[] key = seekCeiling(cursors[i],
+                        subj == null ? new byte[0] : concat(subj, suffix));
+
+                if (key == null)
+                    return null;
+
+                final int len = IVUtility.decodeFromOffset(key, 0)
+                        .byteLength();
+
+                final byte[] found = Arrays.copyOf(key, len);
+
+                if (subj == null || !BytesUtil.bytesEqual(subj, found)) {
+
+                    // Seek to the suffix for that subject.
+                    subj = found;
+
+                    continue;
+
+                }
+
+                if (startsWith(key, len, suffix))
+                    return subj;
+
+                // This subject does not match: skip all of its statements.
+                try {
+
+                    subj = SuccessorUtil.successor(subj.clone());
+
+                } catch (NoSuccessorException ex) {
+
+                    return null;
+
+                }
+
+            }
+
+        }
+
+        /**
+         * Emit the cross product of the objects for each predicate for the
+         * given subject.
+         */
+        @SuppressWarnings("rawtypes")
+        private void emit(final IBindingSet bset, final byte[] subj,
+                final UnsynchronizedArrayBuffer<IBindingSet> out) {
+
+            final List<List<IV>> objects = new ArrayList<List<IV>>(
+                    preds.length);
+
+            for (int i = 0; i < preds.length; i++) {
+
+                if (objectVars[i] == null) {
+
+                    // Nothing to bind (existence was already verified).
+                    objects.add(null);
+
+                    continue;
+
+                }
+
+                final byte[] prefix = concat(subj, suffixes[i]);
+
+                final List<IV> a = new ArrayList<IV>();
+
+                byte[] key = seekCeiling(cursors[i], prefix);
+
+                while (key != null && startsWith(key, 0, prefix)) {
+
+                    a.add(IVUtility.decodeFromOffset(key, prefix.length));
+
+                    if (!cursors[i].hasNext())
+                        break;
+
+                    key = cursors[i].next().getKey();
+
+                }
+
+                objects.add(a);
+
+            }
+
+            final IBindingSet tmp = bset.clone();
+
+            tmp.set(s, new Constant<IV>(IVUtility.decodeFromOffset(subj, 0)));
+
+            crossProduct(tmp, objects, 0/* index */, out);
+
+        }
+
+        /**
+         * Bind the object variable for each predicate in turn.
+         */
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private void crossProduct(final IBindingSet bset,
+                final List<List<IV>> objects, final int index,
+                final UnsynchronizedArrayBuffer<IBindingSet> out) {
+
+            if (index == preds.length) {
+
+                final IBindingSet tmp = bset.clone();
+
+                if (constraints != null
+                        && !BOpUtility.isConsistent(constraints, tmp))
+                    return;
+
+                out.add(tmp);
+
+                stats.unitsOut.increment();
+
+                return;
+
+            }
+
+            final List<IV> a = objects.get(index);
+
+            if (a == null) {
+
+                crossProduct(bset, objects, index + 1, out);
+
+                return;
+
+            }
+
+            final IVariable var = objectVars[index];
+
+            final IConstant<?> old = bset.get(var);
+
+            for (IV iv : a) {
+
+                if (old != null) {
+
+                    // Bound by an earlier predicate in the star.
+                    if (old.get().equals(iv))
+                        crossProduct(bset, objects, index + 1, out);
+
+                    continue;
+
+                }
+
+                bset.set(var, new Constant<IV>(iv));
+
+                crossProduct(bset, objects, index + 1, out);
+
+                bset.clear(var);
+
+            }
+
+        }
+
+        private byte[] encode(final IV<?, ?> iv) {
+
+            return IVUtility.encode(keyBuilder.reset(), iv).getKey();
+
+        }
+
+    }
+
+    static private byte[] concat(final byte[] a, final byte[] b) {
+
+        final byte[] c = new byte[a.length + b.length];
+
+        System.arraycopy(a, 0, c, 0, a.length);
+
+        System.arraycopy(b, 0, c, a.length, b.length);
+
+        return c;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the key has the prefix at the given offset.
+     */
+    static private boolean startsWith(final byte[] key, final int off,
+            final byte[] prefix) {
+
+        if (key.length < off + prefix.length)
+            return false;
+
+        return BytesUtil.compareBytesWithLenAndOffset(off, prefix.length, key,
+                0, prefix.length, prefix) == 0;
+
+    }
+
+    /**
+     * Return the first key GTE the given key -or- <code>null</code> if there
+     * is no such key.
+     */
+    static private byte[] seekCeiling(final ITupleCursor<?> cursor,
+            final byte[] key) {
+
+        ITuple<?> t = cursor.seek(key);
+
+        if (t == null) {
+
+            if (!cursor.hasNext())
+                return null;
+
+            t = cursor.next();
+
+        }
+
+        return t.getKey();
+
+    }
+
+}
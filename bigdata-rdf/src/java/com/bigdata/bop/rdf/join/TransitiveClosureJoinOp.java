@@ -0,0 +1,470 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.rdf.join;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.BOpEvaluationContext;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IPredicate;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.paths.ArbitraryLengthPathOp;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.spo.ISPO;
+import com.bigdata.rdf.spo.SPORelation;
+import com.bigdata.rdf.spo.TransitiveClosureIndex;
+import com.bigdata.rdf.spo.TransitiveClosureIndex.Path;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+import com.bigdata.relation.accesspath.UnsynchronizedArrayBuffer;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * Evaluates an arbitrary length path <code>left :p* right</code> or
+ * <code>left :p+ right</code> over a single predicate using the materialized
+ * {@link TransitiveClosureIndex} rather than computing the closure with an
+ * {@link ArbitraryLengthPathOp}. Each source solution is answered by a point
+ * lookup (both ends bound), a key range scan on the source or the target (one
+ * end bound), or a scan of all paths for the predicate (neither end bound).
+ * The solutions are the same as those produced by the
+ * {@link ArbitraryLengthPathOp}, including the zero length paths when the
+ * lower bound is zero, and contain no duplicates.
+ * <p>
+ * Note: The closure index is read against the local index manager. This
+ * operator is not designed for scale-out and only supports triples.
+ *
+ * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TransitiveClosureJoinOp extends PipelineOp {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    public interface Annotations extends PipelineOp.Annotations {
+
+        /**
+         * The {@link IPredicate} for the statement pattern along which the
+         * path is followed. The predicate position must be a constant whose
+         * closure is materialized. This is used to locate the
+         * {@link SPORelation}.
+         */
+        String PREDICATE = TransitiveClosureJoinOp.class.getName()
+                + ".predicate";
+
+        /**
+         * The left term - can be a variable or a constant.
+         */
+        String LEFT_TERM = ArbitraryLengthPathOp.Annotations.LEFT_TERM;
+
+        /**
+         * The right term - can be a variable or a constant.
+         */
+        String RIGHT_TERM = ArbitraryLengthPathOp.Annotations.RIGHT_TERM;
+
+        /**
+         * The lower bound on the length of the path. Can be zero (0) or one
+         * (1).
+         */
+        String LOWER_BOUND = ArbitraryLengthPathOp.Annotations.LOWER_BOUND;
+
+    }
+
+    /**
+     * Deep copy constructor.
+     */
+    public TransitiveClosureJoinOp(final TransitiveClosureJoinOp op) {
+
+        super(op);
+
+    }
+
+    /**
+     * Shallow copy constructor.
+     *
+     * @param args
+     * @param annotations
+     */
+    public TransitiveClosureJoinOp(final BOp[] args,
+            final Map<String, Object> annotations) {
+
+        super(args, annotations);
+
+        if (getEvaluationContext() == BOpEvaluationContext.SHARDED)
+            throw new UnsupportedOperationException(
+                    Annotations.EVALUATION_CONTEXT + "="
+                            + getEvaluationContext());
+
+        final IPredicate<?> pred = getPredicate();
+
+        if (pred.arity() != 3 || !pred.get(1).isConstant())
+            throw new IllegalArgumentException(Annotations.PREDICATE);
+
+        getRequiredProperty(Annotations.LEFT_TERM);
+
+        getRequiredProperty(Annotations.RIGHT_TERM);
+
+        getRequiredProperty(Annotations.LOWER_BOUND);
+
+    }
+
+    public TransitiveClosureJoinOp(final BOp[] args, final NV... annotations) {
+
+        this(args, NV.asMap(annotations));
+
+    }
+
+    /**
+     * @see Annotations#PREDICATE
+     */
+    public IPredicate<?> getPredicate() {
+
+        return (IPredicate<?>) getRequiredProperty(Annotations.PREDICATE);
+
+    }
+
+    @Override
+    public FutureTask<Void> eval(final BOpContext<IBindingSet> context) {
+
+        return new FutureTask<Void>(new TransitiveClosureJoinTask(this,
+                context));
+
+    }
+
+    /**
+     * Task executing the lookups for each source solution.
+     */
+    static private class TransitiveClosureJoinTask implements Callable<Void> {
+
+        private final TransitiveClosureJoinOp op;
+
+        private final BOpContext<IBindingSet> context;
+
+        private final BOpStats stats;
+
+        private final TransitiveClosureIndex closure;
+
+        private final IV<?, ?> p;
+
+        private final IVariableOrConstant<?> left, right;
+
+        private final boolean zeroLength;
+
+        /**
+         * The #of paths read from the closure since the last check for an
+         * interrupt.
+         */
+        private int npaths = 0;
+
+        @SuppressWarnings("unchecked")
+        TransitiveClosureJoinTask(final TransitiveClosureJoinOp op,
+                final BOpContext<IBindingSet> context) {
+
+            this.op = op;
+
+            this.context = context;
+
+            this.stats = context.getStats();
+
+            final IPredicate<ISPO> pred = (IPredicate<ISPO>) op.getPredicate();
+
+            final SPORelation relation = (SPORelation) context
+                    .getRelation(pred);
+
+            this.closure = relation.getTransitiveClosureIndex();
+
+            if (closure == null)
+                throw new UnsupportedOperationException(
+                        "Transitive closure is not maintained");
+
+            this.p = (IV<?, ?>) pred.get(1).get();
+
+            this.left = (IVariableOrConstant<?>) op
+                    .getRequiredProperty(Annotations.LEFT_TERM);
+
+            this.right = (IVariableOrConstant<?>) op
+                    .getRequiredProperty(Annotations.RIGHT_TERM);
+
+            this.zeroLength = ((Long) op
+                    .getRequiredProperty(Annotations.LOWER_BOUND)) == 0L;
+
+        }
+
+        @Override
+        public Void call() throws Exception {
+
+            final ICloseableIterator<IBindingSet[]> source = context
+                    .getSource();
+
+            final IBlockingBuffer<IBindingSet[]> sink = context.getSink();
+
+            try {
+
+                final UnsynchronizedArrayBuffer<IBindingSet> out = new UnsynchronizedArrayBuffer<IBindingSet>(
+                        sink, IBindingSet.class, op.getChunkCapacity());
+
+                while (source.hasNext()) {
+
+                    final IBindingSet[] chunk = source.next();
+
+                    stats.chunksIn.increment();
+
+                    stats.unitsIn.add(chunk.length);
+
+                    for (IBindingSet bset : chunk) {
+
+                        checkHalt();
+
+                        join(bset, out);
+
+                    }
+
+                }
+
+                out.flush();
+
+                sink.flush();
+
+                return null;
+
+            } finally {
+
+                sink.close();
+
+            }
+
+        }
+
+        /**
+         * Throw an {@link InterruptedException} if this task was interrupted
+         * or if the query is done (for example, its LIMIT was satisfied). A
+         * source solution whose ends are not bound may visit every path in the
+         * closure for the predicate.
+         */
+        private void checkHalt() throws InterruptedException {
+
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            if (context.getRunningQuery().isDone())
+                throw new InterruptedException();
+
+        }
+
+        /**
+         * Invoked for each path read from the closure. Checks for a halt
+         * every 1000 paths.
+         */
+        private void nextPath() throws InterruptedException {
+
+            if (++npaths >= 1000) {
+
+                npaths = 0;
+
+                checkHalt();
+
+            }
+
+        }
+
+        /**
+         * Join a source solution with the closure.
+         */
+        private void join(final IBindingSet bset,
+                final UnsynchronizedArrayBuffer<IBindingSet> out)
+                throws InterruptedException {
+
+            final IV<?, ?> l = get(left, bset);
+
+            final IV<?, ?> r = get(right, bset);
+
+            if (l != null && r != null) {
+
+                if ((zeroLength && l.equals(r))
+                        || closure.getDepth(p, l, r) > 0L) {
+
+                    emit(bset.clone(), out);
+
+                }
+
+            } else if (l != null) {
+
+                final Set<IV<?, ?>> a = new LinkedHashSet<IV<?, ?>>();
+
+                if (zeroLength)
+                    a.add(l);
+
+                final Iterator<Path> itr = closure.getPathsFrom(p, l);
+
+                while (itr.hasNext()) {
+
+                    nextPath();
+
+                    a.add(itr.next().to);
+
+                }
+
+                for (IV<?, ?> iv : a) {
+
+                    emit(bind(bset.clone(), right, iv), out);
+
+                }
+
+            } else if (r != null) {
+
+                final Set<IV<?, ?>> a = new LinkedHashSet<IV<?, ?>>();
+
+                if (zeroLength)
+                    a.add(r);
+
+                final Iterator<Path> itr = closure.getPathsTo(p, r);
+
+                while (itr.hasNext()) {
+
+                    nextPath();
+
+                    a.add(itr.next().from);
+
+                }
+
+                for (IV<?, ?> iv : a) {
+
+                    emit(bind(bset.clone(), left, iv), out);
+
+                }
+
+            } else {
+
+                /*
+                 * Neither end is bound. Visit all paths. For a zero length
+                 * path, each vertex on some path is also connected to itself.
+                 */
+
+                final Set<IV<?, ?>> vertices = zeroLength ? new LinkedHashSet<IV<?, ?>>()
+                        : null;
+
+                final Iterator<Path> itr = closure.getPathsFrom(p, null/* from */);
+
+                while (itr.hasNext()) {
+
+                    nextPath();
+
+                    final Path path = itr.next();
+
+                    if (zeroLength) {
+
+                        vertices.add(path.from);
+
+                        vertices.add(path.to);
+
+                        if (path.from.equals(path.to)) {
+
+                            // Reported below as a zero length path.
+                            continue;
+
+                        }
+
+                    }
+
+                    emit(bind(bind(bset.clone(), left, path.from), right,
+                            path.to), out);
+
+                }
+
+                if (zeroLength) {
+
+                    for (IV<?, ?> iv : vertices) {
+
+                        emit(bind(bind(bset.clone(), left, iv), right, iv), out);
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        /**
+         * Return the binding for the term -or- <code>null</code> if it is an
+         * unbound variable.
+         */
+        private IV<?, ?> get(final IVariableOrConstant<?> t,
+                final IBindingSet bset) {
+
+            final IConstant<?> c = t.isConstant() ? (IConstant<?>) t : bset
+                    .get((IVariable<?>) t);
+
+            return c == null ? null : (IV<?, ?>) c.get();
+
+        }
+
+        /**
+         * Bind the term if it is a variable.
+         */
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        private IBindingSet bind(final IBindingSet bset,
+                final IVariableOrConstant<?> t, final IV<?, ?> iv) {
+
+            if (t.isVar())
+                bset.set((IVariable) t, new Constant<IV>(iv));
+
+            return bset;
+
+        }
+
+        private void emit(final IBindingSet bset,
+                final UnsynchronizedArrayBuffer<IBindingSet> out) {
+
+            out.add(bset);
+
+            stats.unitsOut.increment();
+
+        }
+
+    }
+
+}
@@ -38,8 +38,10 @@ import com.bigdata.bop.IValueExpression;
 import com.bigdata.bop.NV;
 import com.bigdata.bop.solutions.IVComparator;
 import com.bigdata.rdf.error.SparqlTypeErrorException;
+import com.bigdata.rdf.internal.DTE;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.internal.impl.literal.LiteralExtensionIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
 import com.bigdata.rdf.model.BigdataValue;
 
 /**
@@ -189,6 +191,17 @@ public class CompareBOp extends XSDBooleanIVValueExpression
     		
     	}
     	
+        /*
+         * Two inline numerics are compared directly rather than by way of
+         * their datatype URIs.
+         */
+        if (left instanceof XSDNumericIV && right instanceof XSDNumericIV) {
+
+            return _accept(compareInlineNumerics((XSDNumericIV) left,
+                    (XSDNumericIV) right), op);
+
+        }
+
     	/*
     	 * We want to special case the LiteralExtensionIV, which
     	 * handles xsd:dateTime.  If we defer to Sesame for this, we will be
@@ -258,6 +271,37 @@ public class CompareBOp extends XSDBooleanIVValueExpression
     	
     }
     
+    /**
+     * Compare two inline numerics. The numeric type promotion is the same as
+     * for the Sesame comparison of numeric literals: double if either operand
+     * is a double, otherwise float if either operand is a float, otherwise
+     * the (long) integer value.
+     */
+    static int compareInlineNumerics(final XSDNumericIV<?> left,
+            final XSDNumericIV<?> right) {
+
+        final DTE dte1 = left.getDTE();
+        final DTE dte2 = right.getDTE();
+
+        if (dte1 == DTE.XSDDouble || dte2 == DTE.XSDDouble) {
+
+            return Double.compare(left.doubleValue(), right.doubleValue());
+
+        }
+
+        if (dte1 == DTE.XSDFloat || dte2 == DTE.XSDFloat) {
+
+            return Float.compare(left.floatValue(), right.floatValue());
+
+        }
+
+        final long l1 = left.longValue();
+        final long l2 = right.longValue();
+
+        return l1 < l2 ? -1 : l1 == l2 ? 0 : 1;
+
+    }
+
 	private static boolean valuesEqual(
 			final IV<?, ?> left, final IV<?, ?> right) {
 		
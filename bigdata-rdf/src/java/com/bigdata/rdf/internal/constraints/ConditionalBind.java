@@ -33,6 +33,13 @@ public class ConditionalBind<E extends IV> extends ImmutableBOp implements
 
     protected transient Boolean projection;
 
+    /**
+     * The compiled form of the value expression (lazily initialized).
+     * 
+     * @see ValueExpressionCompiler
+     */
+    private transient volatile ValueExpressionCompiler.CompiledExpression compiled;
+
     /**
      * Constructor required for {@link com.bigdata.bop.BOpUtility#deepCopy(FilterNode)}.
      */
@@ -130,7 +137,13 @@ public class ConditionalBind<E extends IV> extends ImmutableBOp implements
 //        } else {
 //            val = expr.get(bindingSet);
 //        }
-        final E val = expr.get(bindingSet); // evaluate the value expression.
+        ValueExpressionCompiler.CompiledExpression c = compiled;
+        if (c == null) {
+            // Note: A data race here is benign (the compiled form is immutable).
+            compiled = c = ValueExpressionCompiler.compile(expr);
+        }
+        @SuppressWarnings("unchecked")
+        final E val = (E) c.get(bindingSet); // evaluate the value expression.
 
         final E existing = var.get(bindingSet); // lookup current bound value.
         try{
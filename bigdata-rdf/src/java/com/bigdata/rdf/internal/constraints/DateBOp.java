@@ -30,12 +30,13 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import com.bigdata.bop.BOp;
 import com.bigdata.bop.IBindingSet;
 import com.bigdata.bop.IValueExpression;
-import com.bigdata.bop.ImmutableBOp;
 import com.bigdata.bop.NV;
 import com.bigdata.rdf.error.SparqlTypeErrorException;
+import com.bigdata.rdf.internal.ILexiconConfiguration;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.internal.NotMaterializedException;
 import com.bigdata.rdf.internal.XSD;
+import com.bigdata.rdf.internal.impl.literal.LiteralExtensionIV;
 import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
 import com.bigdata.rdf.model.BigdataLiteral;
 import com.bigdata.rdf.sparql.ast.GlobalAnnotations;
@@ -51,7 +52,7 @@ public class DateBOp extends IVValueExpression<IV> implements INeedsMaterializat
 	 */
     private static final long serialVersionUID = 9136864442064392445L;
 
-    public interface Annotations extends ImmutableBOp.Annotations {
+    public interface Annotations extends IVValueExpression.Annotations {
 
         /**
          * The operation to be applied to the left operands (required). The value of this annotation is a {@link DateOp}, such as {@link DateOp#YEAR}.
@@ -90,6 +91,26 @@ public class DateBOp extends IVValueExpression<IV> implements INeedsMaterializat
 
     }
 
+    /**
+     * Variant which carries the lexicon namespace so an inline date which has
+     * not been materialized can be decoded directly from its {@link IV}.
+     *
+     * @param left
+     *            The left operand.
+     * @param op
+     *            The annotation specifying the operation to be performed on
+     *            the operand.
+     * @param globals
+     *            The global annotations, including the lexicon namespace.
+     */
+    @SuppressWarnings("rawtypes")
+    public DateBOp(final IValueExpression<? extends IV> left,
+            final DateOp op, final GlobalAnnotations globals) {
+
+        this(new BOp[] { left }, anns(globals, new NV(Annotations.OP, op)));
+
+    }
+
     /**
      * Required shallow copy constructor.
      *
@@ -131,11 +152,9 @@ public class DateBOp extends IVValueExpression<IV> implements INeedsMaterializat
 
 
         if (left.isLiteral()) {
-            if(!left.hasValue()){
-                throw new NotMaterializedException();
-            }
 
-            BigdataLiteral bl = (BigdataLiteral) left.getValue();
+            final BigdataLiteral bl = asDateLiteral(left, bs);
+
             if (XSD.DATETIME.equals(bl.getDatatype())||XSD.DATE.equals(bl.getDatatype())||XSD.TIME.equals(bl.getDatatype())) {
                 XMLGregorianCalendar cal=bl.calendarValue();
                 switch (op()) {
@@ -161,6 +180,42 @@ public class DateBOp extends IVValueExpression<IV> implements INeedsMaterializat
         throw new SparqlTypeErrorException();
     }
 
+    /**
+     * Return the {@link BigdataLiteral} for the operand. An inline date (a
+     * {@link LiteralExtensionIV}) which has not been materialized is decoded
+     * using the {@link ILexiconConfiguration} without reading on the lexicon
+     * indices when the namespace is available on this operator.
+     *
+     * @throws NotMaterializedException
+     *             if the {@link IV} is not materialized and can not be decoded
+     *             in place.
+     */
+    @SuppressWarnings("rawtypes")
+    private BigdataLiteral asDateLiteral(final IV left, final IBindingSet bs) {
+
+        if (left.hasValue())
+            return (BigdataLiteral) left.getValue();
+
+        if (left instanceof LiteralExtensionIV
+                && getProperty(Annotations.NAMESPACE) != null) {
+
+            try {
+
+                return (BigdataLiteral) getLexiconConfiguration(bs).asValue(
+                        (LiteralExtensionIV<?>) left);
+
+            } catch (ContextNotAvailableException ex) {
+
+                // fall through.
+
+            }
+
+        }
+
+        throw new NotMaterializedException();
+
+    }
+
     public IValueExpression<? extends IV> left() {
         return get(0);
     }
@@ -115,7 +115,15 @@ public class EBVBOp extends XSDBooleanIVValueExpression
     @SuppressWarnings("rawtypes")
     public boolean accept(final IBindingSet bs) {
 
-        final IV iv = getAndCheckBound(0, bs);
+        return ebv(getAndCheckBound(0, bs));
+
+    }
+
+    /**
+     * Return the effective boolean value of a bound {@link IV}.
+     */
+    @SuppressWarnings("rawtypes")
+    static boolean ebv(final IV iv) {
 
         if (iv instanceof XSDBooleanIV) {
 
@@ -123,7 +131,7 @@ public class EBVBOp extends XSDBooleanIVValueExpression
 
         }
 
-        final Value val = super.asValue(iv);
+        final Value val = asValue(iv);
 
         try {
 
@@ -46,6 +46,7 @@ import com.bigdata.rdf.internal.ILexiconConfiguration;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.internal.IVUtility;
 import com.bigdata.rdf.internal.NotMaterializedException;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
 import com.bigdata.rdf.model.BigdataValue;
 import com.bigdata.rdf.model.BigdataValueFactory;
 import com.bigdata.rdf.sparql.ast.GlobalAnnotations;
@@ -156,21 +157,47 @@ final public class MathBOp extends IVValueExpression
         final IV iv1 = getAndCheckLiteral(0, bs);
         final IV iv2 = getAndCheckLiteral(1, bs);
         
+        return evaluate(iv1, iv2, op(), bs);
+
+    }
+
+    /**
+     * Apply the operator to the evaluated operands.
+     * 
+     * @param iv1
+     *            The left operand (a bound literal).
+     * @param iv2
+     *            The right operand (a bound literal).
+     * @param op
+     *            The operator.
+     * @param bs
+     *            The source solution.
+     */
+    @SuppressWarnings("rawtypes")
+    IV evaluate(final IV iv1, final IV iv2, final MathOp op,
+            final IBindingSet bs) {
+
     	if (log.isDebugEnabled()) {
     		log.debug(toString(iv1.toString(), iv2.toString()));
     	}
     	
+        if (iv1 instanceof XSDNumericIV && iv2 instanceof XSDNumericIV) {
+            // fast path for inline numerics.
+            return MathUtility.inlineMath((XSDNumericIV) iv1,
+                    (XSDNumericIV) iv2, op);
+        }
+
 		final Literal lit1 = asLiteral(iv1);
 		final Literal lit2 = asLiteral(iv2);
 
 		if (MathUtility.checkNumericDatatype(lit1, lit2)) {
 			
-			return MathUtility.literalMath(lit1, lit2, op());
+			return MathUtility.literalMath(lit1, lit2, op);
 			
 		} else if (DateTimeUtility.checkDateTimeDatatype(lit1, lit2)) {
 		
 			final IV iv = 
-				DateTimeUtility.dateTimeMath(lit1, iv1, lit2, iv2, op(), vf());
+				DateTimeUtility.dateTimeMath(lit1, iv1, lit2, iv2, op, vf());
 			
 			// try to create a real IV if possible
 			if (iv.isNullIV()) {
@@ -10,6 +10,7 @@ import org.openrdf.model.datatypes.XMLDatatypeUtil;
 import org.openrdf.model.vocabulary.XMLSchema;
 
 import com.bigdata.rdf.error.SparqlTypeErrorException;
+import com.bigdata.rdf.internal.DTE;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.internal.XPathMathFunctions;
 import com.bigdata.rdf.internal.constraints.MathBOp.MathOp;
@@ -94,6 +95,35 @@ public class MathUtility {
         
     }
     
+    /**
+     * Variant of {@link #literalMath(Literal, Literal, MathOp)} for two inline
+     * numerics. The result is the same, but the common datatype is chosen
+     * from the {@link DTE}s rather than by comparing the datatype URIs.
+     */
+    @SuppressWarnings("rawtypes")
+    static NumericIV inlineMath(final XSDNumericIV<?> l1,
+            final XSDNumericIV<?> l2, final MathOp op) {
+
+        final DTE dte1 = l1.getDTE();
+        final DTE dte2 = l2.getDTE();
+
+        try {
+            if (dte1 == DTE.XSDDouble || dte2 == DTE.XSDDouble) {
+                return numericalMath(l1.doubleValue(), l2.doubleValue(), op);
+            } else if (dte1 == DTE.XSDFloat || dte2 == DTE.XSDFloat) {
+                return numericalMath(l1.floatValue(), l2.floatValue(), op);
+            } else if (op == MathOp.DIVIDE) {
+                // integer divide is decimal (see literalMath()).
+                return numericalMath(l1.decimalValue(), l2.decimalValue(), op);
+            } else {
+                return numericalMath(l1.integerValue(), l2.integerValue(), op);
+            }
+        } catch (ArithmeticException e) {
+            throw new SparqlTypeErrorException();
+        }
+
+    }
+
 //    public static final IV numericalMath(final Literal l1, final IV iv2, 
 //            final MathOp op) {
 //        
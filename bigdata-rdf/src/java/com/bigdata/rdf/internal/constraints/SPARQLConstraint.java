@@ -108,6 +108,34 @@ public class SPARQLConstraint<X extends XSDBooleanIV> extends
 //    public IValueExpression<X> getValueExpression() {
 //        return (IValueExpression<X>) get(0);
 //    }
+
+    /**
+     * The compiled form of the value expression (lazily initialized).
+     * 
+     * @see ValueExpressionCompiler
+     */
+    private transient volatile ValueExpressionCompiler.CompiledExpression compiled;
+
+    /**
+     * Return the compiled form of the value expression.
+     */
+    private ValueExpressionCompiler.CompiledExpression getCompiled() {
+
+        ValueExpressionCompiler.CompiledExpression c = compiled;
+
+        if (c == null) {
+
+            /*
+             * Note: A data race here is benign since the compiled form is
+             * immutable.
+             */
+            compiled = c = ValueExpressionCompiler.compile(get(0));
+
+        }
+
+        return c;
+
+    }
     	
     @Override
 	public boolean accept(final IBindingSet bs) {
@@ -115,9 +143,7 @@ public class SPARQLConstraint<X extends XSDBooleanIV> extends
 		try {
 
 			// evaluate the EBV operator
-            final XSDBooleanIV iv = get(0).get(bs);
-			
-			return iv.booleanValue();
+			return getCompiled().accept(bs);
 
 		} catch (Throwable t) {
 
@@ -0,0 +1,542 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.internal.constraints;
+
+import org.openrdf.query.algebra.Compare.CompareOp;
+
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IValueExpression;
+import com.bigdata.bop.IVariable;
+import com.bigdata.rdf.error.SparqlTypeErrorException;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.NotMaterializedException;
+import com.bigdata.rdf.internal.constraints.MathBOp.MathOp;
+import com.bigdata.rdf.internal.impl.literal.XSDBooleanIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+
+/**
+ * Compiles an {@link IValueExpression} tree into a tree of
+ * {@link CompiledExpression}s which is then used in place of the original
+ * operators to evaluate a FILTER or BIND against each solution.
+ * <p>
+ * The compiled form of {@link CompareBOp}, {@link MathBOp}, {@link AndBOp},
+ * {@link OrBOp}, {@link NotBOp}, {@link EBVBOp} and {@link IsBoundBOp}
+ * resolves the annotations (the comparison or math operator) once, evaluates
+ * boolean sub-expressions without wrapping their results in an
+ * {@link XSDBooleanIV}, and compares or combines two inline numerics
+ * ({@link XSDNumericIV}) directly rather than by way of their datatype URIs.
+ * Dates and other inline literals are handled by the same code paths as the
+ * interpreter. Any other operator (and its sub-expressions) is evaluated by
+ * the interpreter, so the compiled form produces the same results as the
+ * original operator tree, including the handling of type errors. The only
+ * difference is that AND and OR do not evaluate their right operand when the
+ * left operand alone decides the result.
+ * <p>
+ * Note: The compiled form is not serializable. It is created on demand and
+ * held in a transient field by the operator which uses it.
+ * 
+ * @see SPARQLConstraint
+ * @see ConditionalBind
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class ValueExpressionCompiler {
+
+    private ValueExpressionCompiler() {
+    }
+
+    /**
+     * The compiled form of a value expression. Instances are immutable and
+     * thread-safe.
+     */
+    @SuppressWarnings("rawtypes")
+    public static abstract class CompiledExpression {
+
+        /**
+         * Evaluate the expression.
+         * 
+         * @param bs
+         *            The source solution.
+         * 
+         * @return The value of the expression as reported by the original
+         *         operator.
+         */
+        abstract public IV get(IBindingSet bs);
+
+        /**
+         * Evaluate an expression which is known to evaluate to an
+         * {@link XSDBooleanIV}.
+         * 
+         * @param bs
+         *            The source solution.
+         * 
+         * @return The boolean value of the expression.
+         */
+        public boolean accept(final IBindingSet bs) {
+
+            final IV iv = get(bs);
+
+            // not yet bound
+            if (iv == null)
+                throw new SparqlTypeErrorException();
+
+            return ((XSDBooleanIV) iv).booleanValue();
+
+        }
+
+    }
+
+    /**
+     * Base class for the compiled form of an
+     * {@link XSDBooleanIVValueExpression}.
+     */
+    @SuppressWarnings("rawtypes")
+    private static abstract class BooleanExpression extends
+            CompiledExpression {
+
+        @Override
+        final public IV get(final IBindingSet bs) {
+
+            return accept(bs) ? XSDBooleanIV.TRUE : XSDBooleanIV.FALSE;
+
+        }
+
+        @Override
+        abstract public boolean accept(IBindingSet bs);
+
+    }
+
+    /**
+     * Compile a value expression.
+     * 
+     * @param expr
+     *            The value expression.
+     * 
+     * @return The compiled form of that value expression.
+     */
+    @SuppressWarnings("rawtypes")
+    public static CompiledExpression compile(
+            final IValueExpression<? extends IV> expr) {
+
+        if (expr == null)
+            throw new IllegalArgumentException();
+
+        if (expr instanceof IVariable) {
+
+            return new VariableExpression((IVariable<? extends IV>) expr);
+
+        }
+
+        if (expr instanceof IConstant) {
+
+            return new ConstantExpression(
+                    ((IConstant<? extends IV>) expr).get());
+
+        }
+
+        if (expr instanceof CompareBOp) {
+
+            final CompareBOp op = (CompareBOp) expr;
+
+            return new CompareExpression(compile(op.get(0)),
+                    compile(op.get(1)), op.op());
+
+        }
+
+        if (expr instanceof MathBOp) {
+
+            final MathBOp op = (MathBOp) expr;
+
+            return new MathExpression(op, compile(op.left()),
+                    compile(op.right()));
+
+        }
+
+        if (expr instanceof AndBOp) {
+
+            final AndBOp op = (AndBOp) expr;
+
+            return new AndExpression(compile(op.get(0)), compile(op.get(1)));
+
+        }
+
+        if (expr instanceof OrBOp) {
+
+            final OrBOp op = (OrBOp) expr;
+
+            return new OrExpression(compile(op.get(0)), compile(op.get(1)));
+
+        }
+
+        if (expr instanceof NotBOp) {
+
+            return new NotExpression(compile(((NotBOp) expr).get(0)));
+
+        }
+
+        if (expr instanceof EBVBOp) {
+
+            return new EBVExpression(compile(((EBVBOp) expr).get(0)));
+
+        }
+
+        if (expr instanceof IsBoundBOp) {
+
+            return new IsBoundExpression(compile(((IsBoundBOp) expr).get(0)));
+
+        }
+
+        return new InterpretedExpression(expr);
+
+    }
+
+    /**
+     * Return the operand iff it is a bound literal which is materialized if
+     * it needs to be (the same checks as
+     * {@link IVValueExpression#getAndCheckLiteral(int, IBindingSet)}).
+     */
+    @SuppressWarnings("rawtypes")
+    private static IV checkLiteral(final IV iv) {
+
+        if (iv == null)
+            throw new SparqlTypeErrorException.UnboundVarException();
+
+        if (!iv.isLiteral())
+            throw new SparqlTypeErrorException();
+
+        if (iv.needsMaterialization() && !iv.hasValue())
+            throw new NotMaterializedException();
+
+        return iv;
+
+    }
+
+    /**
+     * An operator which is evaluated by the interpreter.
+     */
+    @SuppressWarnings("rawtypes")
+    private static class InterpretedExpression extends CompiledExpression {
+
+        private final IValueExpression<? extends IV> expr;
+
+        InterpretedExpression(final IValueExpression<? extends IV> expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        public IV get(final IBindingSet bs) {
+            return expr.get(bs);
+        }
+
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static class VariableExpression extends CompiledExpression {
+
+        private final IVariable<? extends IV> var;
+
+        VariableExpression(final IVariable<? extends IV> var) {
+            this.var = var;
+        }
+
+        @Override
+        public IV get(final IBindingSet bs) {
+
+            final IConstant<?> c = bs.get(var);
+
+            return c == null ? null : (IV) c.get();
+
+        }
+
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static class ConstantExpression extends CompiledExpression {
+
+        private final IV value;
+
+        ConstantExpression(final IV value) {
+            this.value = value;
+        }
+
+        @Override
+        public IV get(final IBindingSet bs) {
+            return value;
+        }
+
+    }
+
+    /**
+     * @see CompareBOp
+     */
+    private static class CompareExpression extends BooleanExpression {
+
+        private final CompiledExpression left, right;
+
+        private final CompareOp op;
+
+        CompareExpression(final CompiledExpression left,
+                final CompiledExpression right, final CompareOp op) {
+            this.left = left;
+            this.right = right;
+            this.op = op;
+        }
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        @Override
+        public boolean accept(final IBindingSet bs) {
+
+            final IV l = left.get(bs);
+            final IV r = right.get(bs);
+
+            // not yet bound
+            if (l == null || r == null)
+                throw new SparqlTypeErrorException();
+
+            if (l instanceof XSDNumericIV && r instanceof XSDNumericIV) {
+
+                // fast path for inline numerics.
+                return CompareBOp._accept(CompareBOp.compareInlineNumerics(
+                        (XSDNumericIV) l, (XSDNumericIV) r), op);
+
+            }
+
+            return CompareBOp.compare(l, r, op);
+
+        }
+
+    }
+
+    /**
+     * @see MathBOp
+     */
+    @SuppressWarnings("rawtypes")
+    private static class MathExpression extends CompiledExpression {
+
+        private final MathBOp bop;
+
+        private final CompiledExpression left, right;
+
+        private final MathOp op;
+
+        MathExpression(final MathBOp bop, final CompiledExpression left,
+                final CompiledExpression right) {
+            this.bop = bop;
+            this.left = left;
+            this.right = right;
+            this.op = bop.op();
+        }
+
+        @Override
+        public IV get(final IBindingSet bs) {
+
+            final IV l = checkLiteral(left.get(bs));
+            final IV r = checkLiteral(right.get(bs));
+
+            if (l instanceof XSDNumericIV && r instanceof XSDNumericIV) {
+
+                // fast path for inline numerics.
+                return MathUtility.inlineMath((XSDNumericIV) l,
+                        (XSDNumericIV) r, op);
+
+            }
+
+            return bop.evaluate(l, r, op, bs);
+
+        }
+
+    }
+
+    /**
+     * @see AndBOp
+     */
+    private static class AndExpression extends BooleanExpression {
+
+        private final CompiledExpression left, right;
+
+        AndExpression(final CompiledExpression left,
+                final CompiledExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean accept(final IBindingSet bs) {
+
+            Boolean l, r;
+
+            try {
+                l = left.accept(bs);
+            } catch (SparqlTypeErrorException ex) {
+                l = null;
+            }
+
+            if (l != null && !l) {
+                // false regardless of the right operand.
+                return false;
+            }
+
+            try {
+                r = right.accept(bs);
+            } catch (SparqlTypeErrorException ex) {
+                r = null;
+            }
+
+            if (l == null || r == null) {
+                if (r != null && !r)
+                    return false;
+                throw new SparqlTypeErrorException();
+            }
+
+            return r;
+
+        }
+
+    }
+
+    /**
+     * @see OrBOp
+     */
+    private static class OrExpression extends BooleanExpression {
+
+        private final CompiledExpression left, right;
+
+        OrExpression(final CompiledExpression left,
+                final CompiledExpression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean accept(final IBindingSet bs) {
+
+            Boolean l, r;
+
+            try {
+                l = left.accept(bs);
+            } catch (SparqlTypeErrorException ex) {
+                l = null;
+            }
+
+            if (l != null && l) {
+                // true regardless of the right operand.
+                return true;
+            }
+
+            try {
+                r = right.accept(bs);
+            } catch (SparqlTypeErrorException ex) {
+                r = null;
+            }
+
+            if (l == null || r == null) {
+                if (r != null && r)
+                    return true;
+                throw new SparqlTypeErrorException();
+            }
+
+            return r;
+
+        }
+
+    }
+
+    /**
+     * @see NotBOp
+     */
+    private static class NotExpression extends BooleanExpression {
+
+        private final CompiledExpression expr;
+
+        NotExpression(final CompiledExpression expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        public boolean accept(final IBindingSet bs) {
+
+            return !expr.accept(bs);
+
+        }
+
+    }
+
+    /**
+     * @see EBVBOp
+     */
+    private static class EBVExpression extends BooleanExpression {
+
+        private final CompiledExpression expr;
+
+        EBVExpression(final CompiledExpression expr) {
+            this.expr = expr;
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public boolean accept(final IBindingSet bs) {
+
+            final IV iv = expr.get(bs);
+
+            if (iv == null)
+                throw new SparqlTypeErrorException.UnboundVarException();
+
+            return EBVBOp.ebv(iv);
+
+        }
+
+    }
+
+    /**
+     * @see IsBoundBOp
+     */
+    private static class IsBoundExpression extends BooleanExpression {
+
+        private final CompiledExpression expr;
+
+        IsBoundExpression(final CompiledExpression expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        public boolean accept(final IBindingSet bs) {
+
+            try {
+                return expr.get(bs) != null;
+            } catch (SparqlTypeErrorException ex) {
+                // Not bound.
+                return false;
+            }
+
+        }
+
+    }
+
+}
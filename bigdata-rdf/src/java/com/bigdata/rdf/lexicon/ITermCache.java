@@ -27,6 +27,7 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.rdf.lexicon;
 
+import com.bigdata.counters.ICounterSetAccess;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.model.BigdataValue;
 
@@ -35,11 +36,15 @@ import com.bigdata.rdf.model.BigdataValue;
  * interface was added because the term cache reference is actually passed into
  * some helper classes. The interface makes it clear when we are operating on
  * the term cache rather than some other concurrent map.
+ * <p>
+ * The performance counters report the size of the cache and the #of cache
+ * hits and misses for {@link #get(IV)}.
  * 
  * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
  * @version $Id$
  */
-public interface ITermCache<K extends IV<?, ?>, V extends BigdataValue> {
+public interface ITermCache<K extends IV<?, ?>, V extends BigdataValue>
+        extends ICounterSetAccess {
 
     int size();
     
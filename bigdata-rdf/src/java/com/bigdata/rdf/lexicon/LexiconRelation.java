@@ -36,6 +36,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -76,6 +77,8 @@ import com.bigdata.btree.keys.KVO;
 import com.bigdata.btree.keys.KeyBuilder;
 import com.bigdata.btree.keys.StrengthEnum;
 import com.bigdata.cache.ConcurrentWeakValueCacheWithBatchedUpdates;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSetAccess;
 import com.bigdata.journal.IIndexManager;
 import com.bigdata.journal.IResourceLock;
 import com.bigdata.journal.ITx;
@@ -134,7 +137,7 @@ import cutthecrap.utils.striterators.Striterator;
  * @version $Id$
  */
 public class LexiconRelation extends AbstractRelation<BigdataValue> 
-        implements IDatatypeURIResolver {
+        implements IDatatypeURIResolver, ICounterSetAccess {
 
     private final static Logger log = Logger.getLogger(LexiconRelation.class);
 
@@ -2464,11 +2467,17 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
         final ConcurrentHashMap<IV<?,?>/* iv */, BigdataValue/* term */> ret = new ConcurrentHashMap<IV<?,?>, BigdataValue>(
                 n/* initialCapacity */);
 
+        /*
+         * Note: The IVs which must be resolved against an index are collected
+         * into sets so duplicate IVs are only read once. The tasks sort them
+         * into index order.
+         */
+
         // TermIVs which must be resolved against an index.
-        final Collection<TermId<?>> termIVs = new LinkedList<TermId<?>>();
+        final Collection<TermId<?>> termIVs = new LinkedHashSet<TermId<?>>();
         
         // BlobIVs which must be resolved against an index.
-        final Collection<BlobIV<?>> blobIVs = new LinkedList<BlobIV<?>>();
+        final Collection<BlobIV<?>> blobIVs = new LinkedHashSet<BlobIV<?>>();
         
         /*
          * Filter out the inline values first and those that have already
@@ -2511,16 +2520,17 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
 
                 }
 
-                // We will need to read on an index.
-                numNotFound++;
-
                 if (iv instanceof TermId<?>) {
 
-                    termIVs.add((TermId<?>) iv);
+                    // We will need to read on an index.
+                    if (termIVs.add((TermId<?>) iv))
+                        numNotFound++;
 
                 } else if (iv instanceof BlobIV<?>) {
 
-                    blobIVs.add((BlobIV<?>) iv);
+                    // We will need to read on an index.
+                    if (blobIVs.add((BlobIV<?>) iv))
+                        numNotFound++;
 
                 } else {
 
@@ -2615,6 +2625,24 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
 //    final private ConcurrentWeakValueCacheWithBatchedUpdates<IV<?,?>, BigdataValue> termCache;
     final private ITermCache<IV<?,?>,BigdataValue> termCache;
     
+    /**
+     * Return the performance counters for the lexicon. The counters for the
+     * {@link #termCache term cache} are reported under <code>termCache</code>.
+     * Read-only views of the lexicon for the same commit time share the same
+     * term cache, so the counters for such views reflect all queries reading
+     * from that commit point.
+     */
+    @Override
+    public CounterSet getCounters() {
+
+        final CounterSet root = new CounterSet();
+
+        root.makePath("termCache").attach(termCache.getCounters());
+
+        return root;
+
+    }
+
     /**
      * Factory used for {@link #termCache} for read-only views of the lexicon.
      */
@@ -28,6 +28,9 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 package com.bigdata.rdf.lexicon;
 
 import com.bigdata.cache.ConcurrentWeakValueCacheWithBatchedUpdates;
+import com.bigdata.counters.CAT;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.Instrument;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.model.BigdataValue;
 
@@ -40,6 +43,16 @@ public class TermCache<K extends IV<?, ?>, V extends BigdataValue> implements
 
     private final ConcurrentWeakValueCacheWithBatchedUpdates<IV<?, ?>, V> delegate;
 
+    /**
+     * The #of {@link #get(IV)} requests which were satisfied by the cache.
+     */
+    private final CAT hitCount = new CAT();
+
+    /**
+     * The #of {@link #get(IV)} requests which were not satisfied by the cache.
+     */
+    private final CAT missCount = new CAT();
+
     public TermCache(
             final ConcurrentWeakValueCacheWithBatchedUpdates<IV<?, ?>, V> delegate) {
 
@@ -60,7 +73,19 @@ public class TermCache<K extends IV<?, ?>, V extends BigdataValue> implements
     @Override
     public V get(final K k) {
         
-        return delegate.get(k);
+        final V v = delegate.get(k);
+
+        if (v == null) {
+
+            missCount.increment();
+
+        } else {
+
+            hitCount.increment();
+
+        }
+
+        return v;
 
     }
 
@@ -111,5 +136,48 @@ public class TermCache<K extends IV<?, ?>, V extends BigdataValue> implements
         delegate.clear();
         
     }
+
+    @Override
+    public CounterSet getCounters() {
+
+        final CounterSet root = new CounterSet();
+
+        // #of entries in the cache.
+        root.addCounter("size", new Instrument<Integer>() {
+            @Override
+            public void sample() {
+                setValue(delegate.size());
+            }
+        });
+
+        // #of cache hits.
+        root.addCounter("hitCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(hitCount.get());
+            }
+        });
+
+        // #of cache misses.
+        root.addCounter("missCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(missCount.get());
+            }
+        });
+
+        // fraction of the requests which were cache hits.
+        root.addCounter("hitRatio", new Instrument<Double>() {
+            @Override
+            public void sample() {
+                final long hits = hitCount.get();
+                final long n = hits + missCount.get();
+                setValue(n == 0 ? 0d : hits / (double) n);
+            }
+        });
+
+        return root;
+
+    }
     
 }
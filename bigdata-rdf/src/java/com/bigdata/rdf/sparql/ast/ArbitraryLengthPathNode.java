@@ -64,6 +64,18 @@ public class ArbitraryLengthPathNode
          * The upper bound on the number of rounds to run.
          */
         String UPPER_BOUND =  Annotations.class.getName() + ".upperBound";
+
+        /**
+         * When <code>true</code>, the path is a closure over a single
+         * predicate whose transitive closure is materialized and the path
+         * will be evaluated against that index rather than by running the
+         * subgroup to a fixed point.
+         * 
+         * @see com.bigdata.rdf.store.AbstractTripleStore.Options#CLOSURE_PREDICATES
+         */
+        String CLOSURE_INDEX = Annotations.class.getName() + ".closureIndex";
+
+        boolean DEFAULT_CLOSURE_INDEX = false;
         
     }
 	
@@ -144,6 +156,17 @@ public class ArbitraryLengthPathNode
     	return (Long) super.getRequiredProperty(Annotations.UPPER_BOUND);
     }
     
+    /**
+     * Return <code>true</code> iff the path will be evaluated against the
+     * materialized transitive closure.
+     * 
+     * @see Annotations#CLOSURE_INDEX
+     */
+    public boolean isClosureIndex() {
+    	return getProperty(Annotations.CLOSURE_INDEX,
+    			Annotations.DEFAULT_CLOSURE_INDEX);
+    }
+    
     /**
      * Return the subgroup.
      */
@@ -224,6 +224,14 @@ public class FunctionRegistry {
     public static final URI SAMPLE = new URIImpl(SPARQL_FUNCTIONS+"sample");
     public static final URI SUM = new URIImpl(SPARQL_FUNCTIONS+"sum");
 
+    /**
+     * An approximate <code>COUNT(DISTINCT x)</code> which uses a fixed amount
+     * of memory.
+     * 
+     * @see com.bigdata.bop.rdf.aggregate.APPROX_COUNT_DISTINCT
+     */
+    public static final URI APPROX_COUNT_DISTINCT = new URIImpl(BD.NAMESPACE+"approxCountDistinct");
+
     public static final URI XSD_BOOL = XMLSchema.BOOLEAN;
     public static final URI XSD_DT = XMLSchema.DATETIME;
     public static final URI XSD_DEC = XMLSchema.DECIMAL;
@@ -320,6 +328,29 @@ public class FunctionRegistry {
 
             }
         });
+
+        add(APPROX_COUNT_DISTINCT, new AggregateFactory() {
+            @SuppressWarnings("rawtypes")
+            public IValueExpression<? extends IV> create(final GlobalAnnotations globals,
+                    Map<String, Object> scalarValues, final ValueExpressionNode... args) {
+
+                checkArgs(args, ValueExpressionNode.class);
+
+                final IValueExpression<? extends IV> ve = AST2BOpUtility.toVE(globals, args[0]);
+
+                /*
+                 * Note: DISTINCT is implicit. Dropping the marker allows the
+                 * aggregate to be evaluated by pipelined aggregation.
+                 */
+                final Map<String, Object> anns = new LinkedHashMap<String, Object>();
+                if (scalarValues != null)
+                    anns.putAll(scalarValues);
+                anns.put(Annotations.DISTINCT, false);
+
+                return new com.bigdata.bop.rdf.aggregate.APPROX_COUNT_DISTINCT(new BOp[]{ve}, anns);
+
+            }
+        });
 		// add the bigdata built-ins
 
 		add(BOUND, new Factory() {
@@ -1314,7 +1345,7 @@ public class FunctionRegistry {
             final IValueExpression<? extends IV> left =
                 AST2BOpUtility.toVE(globals, args[0]);
 
-            return new DateBOp(left, op);
+            return new DateBOp(left, op, globals);
 
         }
 
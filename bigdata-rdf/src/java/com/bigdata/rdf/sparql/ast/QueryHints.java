@@ -35,14 +35,30 @@ import com.bigdata.bop.PipelineOp;
 import com.bigdata.bop.ap.SampleIndex.SampleType;
 import com.bigdata.bop.engine.IRunningQuery;
 import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.engine.QueryPriority;
+import com.bigdata.bop.engine.QueryPlanCache;
 import com.bigdata.bop.fed.QueryEngineFactory;
 import com.bigdata.bop.join.HashJoinAnnotations;
+import com.bigdata.bop.join.PipelineJoin;
+import com.bigdata.bop.joinGraph.rto.JoinGraph;
+import com.bigdata.bop.paths.ArbitraryLengthPathOp;
+import com.bigdata.bop.rdf.join.LeapfrogTriejoinOp;
+import com.bigdata.bop.rdf.join.StarMergeJoinOp;
+import com.bigdata.bop.rdf.join.TransitiveClosureJoinOp;
+import com.bigdata.bop.solutions.ExternalMemorySortOp;
+import com.bigdata.bop.solutions.HTreeGroupByOp;
+import com.bigdata.bop.solutions.MemoryGroupByOp;
+import com.bigdata.bop.solutions.MemorySortOp;
+import com.bigdata.bop.solutions.PipelinedAggregationOp;
+import com.bigdata.bop.solutions.TopKSortOp;
 import com.bigdata.htree.HTree;
 import com.bigdata.rawstore.Bytes;
+import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.sparql.ast.cache.CacheConnectionFactory;
 import com.bigdata.rdf.sparql.ast.hints.QueryHintRegistry;
 import com.bigdata.rdf.sparql.ast.hints.QueryHintScope;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTStaticJoinOptimizer;
+import com.bigdata.rdf.store.AbstractTripleStore;
 
 /**
  * Query hints are directives understood by the SPARQL end point. A query hint
@@ -144,6 +160,35 @@ public interface QueryHints {
 
     int DEFAULT_RTO_NEDGES = 1;
 
+    /**
+     * When positive, the join path selected by the RTO is executed one join at
+     * a time and the remaining joins are re-ordered against the materialized
+     * intermediate solutions once the observed cardinality of some join
+     * differs from the RTO estimate by more than this factor (default
+     * {@value #DEFAULT_RTO_ADAPTIVE_THRESHOLD}, which disables this mode). For
+     * example, a value of <code>10</code> re-plans the remaining joins once an
+     * estimate is wrong by an order of magnitude.
+     * 
+     * @see JoinGraph.Annotations#ADAPTIVE_THRESHOLD
+     */
+    String RTO_ADAPTIVE_THRESHOLD = "RTO-adaptiveThreshold";
+
+    double DEFAULT_RTO_ADAPTIVE_THRESHOLD = 0d;
+
+    /**
+     * When <code>true</code>, the vertex and edge samples taken by the RTO are
+     * looked up in (and stored in) a cache which is shared by all queries
+     * against the same commit point (default
+     * {@value #DEFAULT_RTO_SAMPLE_CACHE}). Samples are cached by the shape of
+     * the predicates, so queries which differ only in their variable names
+     * share the same samples.
+     * 
+     * @see JoinGraph.Annotations#SAMPLE_CACHE
+     */
+    String RTO_SAMPLE_CACHE = "RTO-sampleCache";
+
+    boolean DEFAULT_RTO_SAMPLE_CACHE = JoinGraph.Annotations.DEFAULT_SAMPLE_CACHE;
+
     /**
      * Query hint sets the optimistic threshold for the static join order
      * optimizer.
@@ -193,6 +238,8 @@ public interface QueryHints {
      * @see #NATIVE_DISTINCT_SPO
      * @see #NATIVE_DISTINCT_SOLUTIONS
      * @see #NATIVE_HASH_JOINS
+     * @see #NATIVE_ORDER_BY
+     * @see #NATIVE_GROUP_BY
      * @see #MERGE_JOIN
      */
     String ANALYTIC = "analytic";//QueryHints.class.getName() + ".analytic";
@@ -251,6 +298,121 @@ public interface QueryHints {
 
     boolean DEFAULT_NATIVE_HASH_JOINS = DEFAULT_ANALYTIC;
 
+    /**
+     * When <code>true</code>, ORDER BY will use the
+     * {@link ExternalMemorySortOp}. That operator buffers at most
+     * {@link #NATIVE_ORDER_BY_RUN_CAPACITY} solutions on the JVM heap. When
+     * that budget is exceeded, the buffered solutions are sorted and spilled
+     * onto the native (C process) heap as a sorted run and the runs are
+     * combined by a k-way merge once all solutions have been observed. When
+     * <code>false</code>, ORDER BY will use the {@link MemorySortOp}, which
+     * buffers all solutions on the JVM heap.
+     */
+    String NATIVE_ORDER_BY = "nativeOrderBy";
+
+    boolean DEFAULT_NATIVE_ORDER_BY = DEFAULT_ANALYTIC;
+
+    /**
+     * The maximum #of solutions which the {@link ExternalMemorySortOp} will
+     * buffer on the JVM heap before spilling a sorted run onto the native heap
+     * (default {@value #DEFAULT_NATIVE_ORDER_BY_RUN_CAPACITY}).
+     * 
+     * @see #NATIVE_ORDER_BY
+     */
+    String NATIVE_ORDER_BY_RUN_CAPACITY = "nativeOrderByRunCapacity";
+
+    int DEFAULT_NATIVE_ORDER_BY_RUN_CAPACITY = ExternalMemorySortOp.Annotations.DEFAULT_RUN_CAPACITY;
+
+    /**
+     * The maximum value of <code>OFFSET + LIMIT</code> for which an ORDER BY
+     * followed by an OFFSET/LIMIT will be evaluated using a {@link TopKSortOp}
+     * (default {@value #DEFAULT_TOP_K_THRESHOLD}). Above this threshold the
+     * ORDER BY and the SLICE are evaluated by separate operators. A value of
+     * ZERO disables the Top-K optimization.
+     */
+    String TOP_K_THRESHOLD = "topKThreshold";
+
+    long DEFAULT_TOP_K_THRESHOLD = 10000L;
+
+    /**
+     * When <code>true</code>, aggregation queries having a GROUP BY clause
+     * whose aggregates can not be pipelined (DISTINCT aggregates or
+     * dependencies among the aggregates) will use the {@link HTreeGroupByOp}.
+     * That operator hash partitions the solution groups, buffers each
+     * partition in an {@link HTree} on the native (C process) heap, and
+     * computes the aggregates for the partitions in parallel. When
+     * <code>false</code>, such queries will use the {@link MemoryGroupByOp},
+     * which keeps the solution groups on the JVM heap. Aggregates which can
+     * be pipelined always use the {@link PipelinedAggregationOp}, which only
+     * keeps the state of the aggregates for each group.
+     */
+    String NATIVE_GROUP_BY = "nativeGroupBy";
+
+    boolean DEFAULT_NATIVE_GROUP_BY = DEFAULT_ANALYTIC;
+
+    /**
+     * The #of hash partitions used by the {@link HTreeGroupByOp} (default
+     * {@value #DEFAULT_NATIVE_GROUP_BY_PARTITIONS}). This is also the maximum
+     * parallelism for the operator.
+     * 
+     * @see #NATIVE_GROUP_BY
+     */
+    String NATIVE_GROUP_BY_PARTITIONS = "nativeGroupByPartitions";
+
+    int DEFAULT_NATIVE_GROUP_BY_PARTITIONS = HTreeGroupByOp.Annotations.DEFAULT_PARTITION_COUNT;
+
+    /**
+     * When <code>true</code>, a DISTINCT (or REDUCED) query with an ORDER BY
+     * whose expressions only use projected variables (and no aggregates)
+     * evaluates the DISTINCT on the {@link IV}s before the ORDER BY. Only the
+     * distinct solutions are then materialized for the sort, and an ORDER BY
+     * with a LIMIT may be evaluated as a Top-K sort. Other queries are not
+     * changed. Sort keys which are not inline must still be materialized for
+     * the ORDER BY.
+     */
+    String LATE_MATERIALIZATION = "lateMaterialization";
+
+    boolean DEFAULT_LATE_MATERIALIZATION = false;
+
+    /**
+     * The minimum estimated cost of a UNION for which its branches will be
+     * evaluated as concurrent child queries rather than within the pipeline
+     * of the parent query (default {@value #DEFAULT_PARALLEL_UNION_THRESHOLD}
+     * ). The cost is the sum of the estimated cardinality of the statement
+     * patterns in the branches. {@link Long#MAX_VALUE} disables this.
+     * 
+     * @see UnionNode.Annotations#PARALLEL
+     */
+    String PARALLEL_UNION_THRESHOLD = "parallelUnionThreshold";
+
+    long DEFAULT_PARALLEL_UNION_THRESHOLD = 100000L;
+
+    /**
+     * The maximum #of bytes which may be used by the query -or- ZERO (0) if
+     * the memory used by the query is not bounded (default
+     * {@value #DEFAULT_MAX_QUERY_MEMORY}). The query is cancelled if it
+     * exceeds this budget.
+     * 
+     * @see QueryEngine.Annotations#MAX_QUERY_MEMORY
+     */
+    String MAX_QUERY_MEMORY = "maxQueryMemory";
+
+    long DEFAULT_MAX_QUERY_MEMORY = QueryEngine.Annotations.DEFAULT_MAX_QUERY_MEMORY;
+
+    /**
+     * The {@link QueryPriority} used to decide which query is admitted next
+     * when the #of running queries on the {@link QueryEngine} is bounded
+     * (default {@link QueryPriority#Interactive}). This may also be specified
+     * using the <code>priority</code> URL query parameter of the SPARQL end
+     * point.
+     * 
+     * @see QueryEngine.Annotations#QUERY_PRIORITY
+     * @see QueryEngine#setMaxRunningQueries(int)
+     */
+    String QUERY_PRIORITY = "queryPriority";
+
+    QueryPriority DEFAULT_QUERY_PRIORITY = QueryPriority.Interactive;
+
     /**
      * When <code>true</code>, a merge-join pattern will be recognized if it
      * appears in a join group. When <code>false</code>, this can still be
@@ -260,6 +422,81 @@ public interface QueryHints {
 
     boolean DEFAULT_MERGE_JOIN = true;
 
+    /**
+     * When <code>true</code>, a leading sequence of required statement
+     * patterns in a join group which forms a cyclic join graph (triangles,
+     * etc.) will be evaluated by a single worst-case optimal
+     * {@link LeapfrogTriejoinOp} rather than by a sequence of binary joins.
+     * This bounds the intermediate results by the size of the output. This is
+     * only supported for triples on a single machine and is not used for a
+     * join group which is optimized by the RTO.
+     * <p>
+     * Note: This is disabled by default. It must be requested with a query
+     * hint.
+     */
+    String LEAPFROG_TRIEJOIN = "leapfrogTriejoin";
+
+    boolean DEFAULT_LEAPFROG_TRIEJOIN = false;
+
+    /**
+     * When <code>true</code>, a leading sequence of two or more required
+     * statement patterns in a join group which share the same unbound subject
+     * variable and have constant predicates (a star) will be evaluated by a
+     * {@link StarMergeJoinOp} which zips ordered cursors on the SPO index
+     * rather than by a sequence of nested index probes. This is only supported
+     * for triples on a single machine, and only for a star which leads the
+     * top-level WHERE clause and whose statement patterns have similar
+     * estimated cardinalities.
+     * <p>
+     * Note: This is disabled by default since the merge join visits every
+     * subject in the SPO index between the subjects in the star.
+     */
+    String STAR_MERGE_JOIN = "starMergeJoin";
+
+    boolean DEFAULT_STAR_MERGE_JOIN = false;
+
+    /**
+     * When <code>true</code>, an arbitrary length path (<code>:p*</code>,
+     * <code>:p+</code>, etc.) whose input side is bound will be evaluated by
+     * expanding the distinct vertices on the frontier in each round, and by
+     * searching from both ends when both ends of the path are bound, rather
+     * than by re-running the path subquery for each intermediate solution.
+     * <p>
+     * Note: This is not used for a path whose pattern shares a variable with
+     * the rest of the query (such as the context variable for
+     * <code>GRAPH ?g</code>). This is disabled by default.
+     * 
+     * @see ArbitraryLengthPathOp.Annotations#FRONTIER_SEARCH
+     */
+    String PATH_FRONTIER_SEARCH = "pathFrontierSearch";
+
+    boolean DEFAULT_PATH_FRONTIER_SEARCH = ArbitraryLengthPathOp.Annotations.DEFAULT_FRONTIER_SEARCH;
+
+    /**
+     * When <code>true</code>, an arbitrary length path (<code>:p*</code> or
+     * <code>:p+</code>) over a single predicate whose transitive closure is
+     * materialized will be answered by a {@link TransitiveClosureJoinOp}
+     * against that index rather than by an {@link ArbitraryLengthPathOp}.
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    String PATH_CLOSURE_INDEX = "pathClosureIndex";
+
+    boolean DEFAULT_PATH_CLOSURE_INDEX = true;
+
+    /**
+     * When <code>true</code>, a required statement pattern which is followed
+     * in the same join group by an INCLUDE of a named subquery will filter its
+     * access path against a Bloom filter over the join variables of the hash
+     * index for that named solution set (sideways information passing). This
+     * drops tuples which can not join within the index scan.
+     * 
+     * @see PipelineJoin.Annotations#SIP_FILTERS
+     */
+    String SIP_FILTERS = "sipFilters";
+
+    boolean DEFAULT_SIP_FILTERS = true;
+
     /**
      * When <code>true</code>, force the use of REMOTE access paths in scale-out
      * joins. This is intended as a tool when analyzing query patterns in
@@ -484,6 +721,23 @@ public interface QueryHints {
      */
     boolean CACHE_ENABLED = DEFAULT_DESCRIBE_CACHE;
 
+    /**
+     * When <code>true</code>, the optimized AST and the query plan for a query
+     * are cached by the {@link QueryEngine} and reused when the same query is
+     * evaluated against the same commit point of the same KB instance. This
+     * eliminates the overhead of the AST optimizers and the query plan
+     * generator for repeated queries.
+     * <p>
+     * Note: This may only be specified as a KB property since the decision must
+     * be made before the query hints in the query are interpreted.
+     * 
+     * @see com.bigdata.rdf.sail.BigdataSail.Options#QUERY_PLAN_CACHE
+     * @see QueryPlanCache
+     */
+    String QUERY_PLAN_CACHE = "queryPlanCache";
+
+    boolean DEFAULT_QUERY_PLAN_CACHE = false;
+
     /**
      * Query hint controls the manner in which a DESCRIBE query is evaluated.
      * 
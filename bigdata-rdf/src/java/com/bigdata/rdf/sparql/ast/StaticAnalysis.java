@@ -44,10 +44,14 @@ import com.bigdata.bop.IValueExpression;
 import com.bigdata.bop.IVariable;
 import com.bigdata.bop.aggregate.IAggregate;
 import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.constraints.DateBOp;
 import com.bigdata.rdf.internal.constraints.INeedsMaterialization;
 import com.bigdata.rdf.internal.constraints.INeedsMaterialization.Requirement;
 import com.bigdata.rdf.internal.constraints.IPassesMaterialization;
+import com.bigdata.rdf.internal.constraints.MathBOp;
+import com.bigdata.rdf.internal.constraints.StrlenBOp;
 import com.bigdata.rdf.internal.impl.literal.FullyInlineTypedLiteralIV;
+import com.bigdata.rdf.internal.impl.literal.NumericIV;
 import com.bigdata.rdf.sparql.ast.cache.CacheConnectionImpl;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
 import com.bigdata.rdf.sparql.ast.eval.IEvaluationContext;
@@ -1888,7 +1892,8 @@ public class StaticAnalysis extends StaticAnalysis_CanJoin {
      * data type which is associated with an {@link FullyInlineTypedLiteralIV}
      * or a specific numeric data type, then some operators may be able to
      * operate directly on that {@link IV}. This is especially interesting for
-     * aggregates.
+     * aggregates. See {@link #getInlineOnlyVars(JoinGroupNode, Set)} for the
+     * (limited) case which is handled today.
      */
     @SuppressWarnings("rawtypes")
     public static INeedsMaterialization.Requirement gatherVarsToMaterialize(
@@ -1934,6 +1939,162 @@ public class StaticAnalysis extends StaticAnalysis_CanJoin {
     
     }
 
+    /**
+     * Return <code>true</code> iff the value expression is known to produce
+     * only {@link IV}s which do not need to be materialized. This is true of
+     * {@link IV} constants which do not need materialization, of
+     * <code>STRLEN()</code> and the date component functions (which always
+     * produce an inline numeric {@link IV}), and of arithmetic over such
+     * numeric expressions and inline numeric constants.
+     * 
+     * @param ve
+     *            The value expression.
+     */
+    @SuppressWarnings("rawtypes")
+    public static boolean isInlineValueExpression(final IValueExpression<?> ve) {
+
+        if (ve instanceof IConstant) {
+
+            final Object val = ((IConstant) ve).get();
+
+            return val instanceof IV && !((IV) val).needsMaterialization();
+
+        }
+
+        return isInlineNumericExpression(ve);
+
+    }
+
+    /**
+     * Return <code>true</code> iff the value expression always produces an
+     * inline {@link NumericIV} (or an error).
+     */
+    @SuppressWarnings("rawtypes")
+    private static boolean isInlineNumericExpression(final BOp ve) {
+
+        if (ve instanceof IConstant) {
+
+            return ((IConstant) ve).get() instanceof NumericIV;
+
+        }
+
+        if (ve instanceof StrlenBOp || ve instanceof DateBOp) {
+
+            return true;
+
+        }
+
+        if (ve instanceof MathBOp) {
+
+            return isInlineNumericExpression(ve.get(0))
+                    && isInlineNumericExpression(ve.get(1));
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Return the variables which can only be bound to {@link IV}s which do
+     * not need to be materialized when a FILTER or BIND in the given group is
+     * evaluated. Such variables may be dropped from the set of variables to be
+     * materialized for that FILTER or BIND.
+     * <p>
+     * A variable qualifies iff it is bound by exactly one BIND() in the group
+     * whose expression is an {@link #isInlineValueExpression(IValueExpression)
+     * inline value expression}, it is not bound by any other member of the
+     * group, and it is not even possibly bound on entry to the group. Since
+     * {@link #getMaybeIncomingBindings(IGroupMemberNode, Set)} can not look out
+     * of a subquery, SERVICE or (NOT) EXISTS graph pattern, only the groups of
+     * the top-level WHERE clause are considered.
+     * 
+     * @param group
+     *            The group.
+     * @param vars
+     *            The variables are added to this set.
+     * 
+     * @return The caller's set.
+     */
+    public Set<IVariable<?>> getInlineOnlyVars(final JoinGroupNode group,
+            final Set<IVariable<?>> vars) {
+
+        IGroupMemberNode top = group;
+
+        while (top.getParentGraphPatternGroup() != null) {
+
+            top = top.getParentGraphPatternGroup();
+
+        }
+
+        if (top != queryRoot.getWhereClause()) {
+
+            // Can not prove what is bound on entry to the group.
+            return vars;
+
+        }
+
+        final Set<IVariable<?>> candidates = new LinkedHashSet<IVariable<?>>();
+
+        for (IGroupMemberNode child : group) {
+
+            if (child instanceof AssignmentNode
+                    && isInlineValueExpression(((AssignmentNode) child)
+                            .getValueExpression())) {
+
+                candidates.add(((AssignmentNode) child).getVar());
+
+            }
+
+        }
+
+        if (candidates.isEmpty())
+            return vars;
+
+        // Variables which might be bound other than by an inline BIND().
+        final Set<IVariable<?>> others = getMaybeIncomingBindings(group,
+                new LinkedHashSet<IVariable<?>>());
+
+        final Set<IVariable<?>> seen = new LinkedHashSet<IVariable<?>>();
+
+        for (IGroupMemberNode child : group) {
+
+            if (child instanceof AssignmentNode
+                    && isInlineValueExpression(((AssignmentNode) child)
+                            .getValueExpression())) {
+
+                final IVariable<?> v = ((AssignmentNode) child).getVar();
+
+                if (!seen.add(v)) {
+
+                    // Bound by more than one BIND().
+                    others.add(v);
+
+                }
+
+                continue;
+
+            }
+
+            if (!(child instanceof IBindingProducerNode))
+                return vars;
+
+            getMaybeProducedBindings((IBindingProducerNode) child, others,
+                    true/* recursive */);
+
+        }
+
+        for (IVariable<?> v : candidates) {
+
+            if (!others.contains(v))
+                vars.add(v);
+
+        }
+
+        return vars;
+
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     private static Set<IVariable<IV>> getVarsFromArguments(final BOp c) {
     
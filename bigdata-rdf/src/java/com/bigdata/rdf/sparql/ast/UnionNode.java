@@ -5,6 +5,7 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 
 import com.bigdata.bop.BOp;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTParallelUnionOptimizer;
 import com.bigdata.rdf.sparql.ast.optimizers.StaticOptimizer;
 import com.bigdata.rdf.store.ITripleStore;
 
@@ -23,6 +24,22 @@ public class UnionNode extends GraphPatternGroup<JoinGroupNode>  implements IReo
 
     private static final transient Logger log = Logger.getLogger(UnionNode.class);
 	
+    public interface Annotations extends GraphPatternGroup.Annotations {
+
+        /**
+         * When <code>true</code>, each branch of the UNION is evaluated as a
+         * separate child query and the child queries are run concurrently.
+         * Otherwise the branches are evaluated within the pipeline of the
+         * parent query.
+         * 
+         * @see ASTParallelUnionOptimizer
+         */
+        String PARALLEL = "parallel";
+
+        boolean DEFAULT_PARALLEL = false;
+
+    }
+
     /**
      * Constructor required for {@link com.bigdata.bop.BOpUtility#deepCopy(FilterNode)}.
      */
@@ -89,6 +106,24 @@ public class UnionNode extends GraphPatternGroup<JoinGroupNode>  implements IReo
      
         return false;
         
+    }
+
+    /**
+     * @see Annotations#PARALLEL
+     */
+    public boolean isParallel() {
+
+        return getProperty(Annotations.PARALLEL, Annotations.DEFAULT_PARALLEL);
+
+    }
+
+    /**
+     * @see Annotations#PARALLEL
+     */
+    public void setParallel(final boolean parallel) {
+
+        setProperty(Annotations.PARALLEL, parallel);
+
     }
     
 
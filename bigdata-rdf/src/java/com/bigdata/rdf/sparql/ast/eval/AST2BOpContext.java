@@ -40,10 +40,14 @@ import com.bigdata.bop.PipelineOp;
 import com.bigdata.bop.SimpleIdFactory;
 import com.bigdata.bop.engine.IRunningQuery;
 import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.engine.QueryPriority;
 import com.bigdata.bop.fed.QueryEngineFactory;
 import com.bigdata.bop.join.HTreeSolutionSetHashJoinOp;
 import com.bigdata.bop.join.JVMSolutionSetHashJoinOp;
 import com.bigdata.bop.rdf.join.ChunkedMaterializationOp;
+import com.bigdata.bop.solutions.ExternalMemorySortOp;
+import com.bigdata.bop.solutions.HTreeGroupByOp;
+import com.bigdata.bop.solutions.TopKSortOp;
 import com.bigdata.htree.HTree;
 import com.bigdata.journal.IBTreeManager;
 import com.bigdata.journal.IIndexManager;
@@ -185,6 +189,87 @@ public class AST2BOpContext implements IdFactory, IEvaluationContext {
      * @see QueryHints#NATIVE_HASH_JOINS
      */
     public boolean nativeHashJoins = QueryHints.DEFAULT_NATIVE_HASH_JOINS;
+
+    /**
+     * When <code>true</code>, ORDER BY will use the
+     * {@link ExternalMemorySortOp}, which spills sorted runs onto the native
+     * heap once {@link #nativeOrderByRunCapacity} solutions have been buffered
+     * on the JVM heap.
+     * 
+     * @see QueryHints#NATIVE_ORDER_BY
+     */
+    public boolean nativeOrderBy = QueryHints.DEFAULT_NATIVE_ORDER_BY;
+
+    /**
+     * The maximum #of solutions buffered on the JVM heap by the
+     * {@link ExternalMemorySortOp} before a sorted run is spilled onto the
+     * native heap.
+     * 
+     * @see QueryHints#NATIVE_ORDER_BY_RUN_CAPACITY
+     */
+    public int nativeOrderByRunCapacity = QueryHints.DEFAULT_NATIVE_ORDER_BY_RUN_CAPACITY;
+
+    /**
+     * When <code>true</code>, aggregation with a GROUP BY clause will use the
+     * {@link HTreeGroupByOp}, which buffers the solution groups on the native
+     * heap and computes the aggregates for its hash partitions in parallel.
+     * 
+     * @see QueryHints#NATIVE_GROUP_BY
+     */
+    public boolean nativeGroupBy = QueryHints.DEFAULT_NATIVE_GROUP_BY;
+
+    /**
+     * The #of hash partitions for the {@link HTreeGroupByOp}.
+     * 
+     * @see QueryHints#NATIVE_GROUP_BY_PARTITIONS
+     */
+    public int nativeGroupByPartitions = QueryHints.DEFAULT_NATIVE_GROUP_BY_PARTITIONS;
+
+    /**
+     * When <code>true</code>, DISTINCT is evaluated before ORDER BY when that
+     * is safe so fewer solutions are materialized for the sort.
+     * 
+     * @see QueryHints#LATE_MATERIALIZATION
+     */
+    public boolean lateMaterialization = QueryHints.DEFAULT_LATE_MATERIALIZATION;
+
+    /**
+     * The minimum estimated cost of a UNION for which its branches will be
+     * evaluated as concurrent child queries.
+     * 
+     * @see QueryHints#PARALLEL_UNION_THRESHOLD
+     */
+    public long parallelUnionThreshold = QueryHints.DEFAULT_PARALLEL_UNION_THRESHOLD;
+
+    /**
+     * The maximum #of bytes which may be used by the query -or- ZERO (0) if
+     * the memory used by the query is not bounded.
+     * 
+     * @see QueryHints#MAX_QUERY_MEMORY
+     */
+    public long maxQueryMemory = QueryHints.DEFAULT_MAX_QUERY_MEMORY;
+
+    /**
+     * The priority class used for admission control by the
+     * {@link QueryEngine}.
+     * 
+     * @see QueryHints#QUERY_PRIORITY
+     */
+    public QueryPriority queryPriority = QueryHints.DEFAULT_QUERY_PRIORITY;
+
+    /**
+     * The maximum value of <code>OFFSET + LIMIT</code> for which an ORDER BY
+     * followed by an OFFSET/LIMIT will be evaluated using a {@link TopKSortOp}
+     * (default {@value QueryHints#DEFAULT_TOP_K_THRESHOLD}). The
+     * {@link TopKSortOp} only retains the best <code>OFFSET + LIMIT</code>
+     * solutions, so it avoids buffering and sorting all solutions when the
+     * slice is small. Above this threshold the ORDER BY and the SLICE are
+     * evaluated by separate operators. A value of ZERO disables the Top-K
+     * optimization.
+     * 
+     * @see QueryHints#TOP_K_THRESHOLD
+     */
+    public long topKThreshold = QueryHints.DEFAULT_TOP_K_THRESHOLD;
     
     /**
      * When <code>true</code>, a merge-join pattern will be recognized if it
@@ -195,6 +280,49 @@ public class AST2BOpContext implements IdFactory, IEvaluationContext {
      */
     public boolean mergeJoin = QueryHints.DEFAULT_MERGE_JOIN;
     
+    /**
+     * When <code>true</code>, cyclic join graphs will be evaluated using a
+     * worst-case optimal leapfrog triejoin.
+     * 
+     * @see QueryHints#LEAPFROG_TRIEJOIN
+     */
+    public boolean leapfrogTriejoin = QueryHints.DEFAULT_LEAPFROG_TRIEJOIN;
+    
+    /**
+     * When <code>true</code>, star patterns on a common subject will be
+     * evaluated using a merge join over cursors on the SPO index.
+     * 
+     * @see QueryHints#STAR_MERGE_JOIN
+     */
+    public boolean starMergeJoin = QueryHints.DEFAULT_STAR_MERGE_JOIN;
+    
+    /**
+     * When <code>true</code>, arbitrary length paths whose input side is bound
+     * will be evaluated by a frontier based (and, when both ends are bound,
+     * bidirectional) search.
+     * 
+     * @see QueryHints#PATH_FRONTIER_SEARCH
+     */
+    public boolean pathFrontierSearch = QueryHints.DEFAULT_PATH_FRONTIER_SEARCH;
+    
+    /**
+     * When <code>true</code>, arbitrary length paths over a predicate whose
+     * transitive closure is materialized will be evaluated against that
+     * index.
+     * 
+     * @see QueryHints#PATH_CLOSURE_INDEX
+     */
+    public boolean pathClosureIndex = QueryHints.DEFAULT_PATH_CLOSURE_INDEX;
+    
+    /**
+     * When <code>true</code>, statement pattern joins will be filtered against
+     * the hash index of a named subquery INCLUDE which follows them in the
+     * same join group.
+     * 
+     * @see QueryHints#SIP_FILTERS
+     */
+    public boolean sipFilters = QueryHints.DEFAULT_SIP_FILTERS;
+    
     /**
      * The maximum parallelism for a solution set hash join when the join is
      * used in a context that does permit parallelism, such as sub-group and
@@ -742,6 +870,30 @@ public class AST2BOpContext implements IdFactory, IEvaluationContext {
         return limit;
 
     }
+
+    /**
+     * Return <code>true</code> iff the query plan cache is enabled for the KB.
+     * 
+     * @see QueryHints#QUERY_PLAN_CACHE
+     */
+    public boolean isQueryPlanCache() {
+
+        /*
+         * Consult the KB for a configured default behavior.
+         */
+        final String str = db.getProperties().getProperty(
+                BigdataSail.Options.QUERY_PLAN_CACHE);
+
+        if (str != null) {
+
+            return Boolean.valueOf(str);
+
+        }
+
+        // Use the default specified on QueryHints.
+        return QueryHints.DEFAULT_QUERY_PLAN_CACHE;
+
+    }
     
     @Override
     public ISolutionSetStats getSolutionSetStats(final String localName) {
@@ -28,12 +28,15 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 package com.bigdata.rdf.sparql.ast.eval;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 import org.openrdf.query.algebra.StatementPattern.Scope;
@@ -63,13 +66,18 @@ import com.bigdata.bop.join.PipelineJoin;
 import com.bigdata.bop.rdf.filter.NativeDistinctFilter;
 import com.bigdata.bop.rdf.filter.StripContextFilter;
 import com.bigdata.bop.rdf.join.DataSetJoin;
+import com.bigdata.bop.rdf.join.LeapfrogTriejoinOp;
+import com.bigdata.bop.rdf.join.StarMergeJoinOp;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.sparql.ast.DatasetNode;
+import com.bigdata.rdf.sparql.ast.IGroupMemberNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
 import com.bigdata.rdf.sparql.ast.QueryHints;
 import com.bigdata.rdf.sparql.ast.StatementPatternNode;
 import com.bigdata.rdf.spo.ISPO;
 import com.bigdata.rdf.spo.InGraphHashSetFilter;
 import com.bigdata.rdf.spo.SPOKeyOrder;
+import com.bigdata.rdf.store.AbstractTripleStore;
 import com.bigdata.relation.IRelation;
 import com.bigdata.relation.accesspath.AccessPath;
 import com.bigdata.relation.accesspath.ElementFilter;
@@ -1261,4 +1269,422 @@ public class AST2BOpJoins extends AST2BOpFilters {
 
     }
 
+
+    /**
+     * Inspect the leading statement patterns in the remainder of the join
+     * group. If they form a cyclic join graph (triangles, etc.), then they are
+     * evaluated by a single {@link LeapfrogTriejoinOp}. That operator is
+     * worst-case optimal, so its cost is bounded by the size of the output
+     * rather than by the intermediate results of a plan of binary joins.
+     * <p>
+     * Only required triples mode statement patterns which read the statement
+     * indices directly (no range constraints, access path filters, key order
+     * overrides or hash join hints) are accepted. The attached join filters
+     * are evaluated against the join solutions, with materialization steps as
+     * necessary.
+     * 
+     * @param left
+     *            The left operand.
+     * @param joinGroup
+     *            The join group.
+     * @param doneSet
+     *            The set of variables already known to be materialized.
+     * @param start
+     *            The index of the first child of the group which has not been
+     *            translated. This is advanced past the statement patterns
+     *            consumed by the join.
+     * @param ctx
+     *            The evaluation context.
+     * 
+     * @return The left operand -or- the {@link LeapfrogTriejoinOp} if one was
+     *         generated.
+     * 
+     * @see QueryHints#LEAPFROG_TRIEJOIN
+     */
+    @SuppressWarnings("rawtypes")
+    static protected PipelineOp leapfrogTriejoin(PipelineOp left,
+            final JoinGroupNode joinGroup, final Set<IVariable<?>> doneSet,
+            final AtomicInteger start, final AST2BOpContext ctx) {
+
+        final List<Predicate> preds = new LinkedList<Predicate>();
+
+        final List<StatementPatternNode> sps = new LinkedList<StatementPatternNode>();
+
+        final Set<IVariable<?>> bound = getDirectStatementPatterns(joinGroup,
+                start.get(), ctx, sps, preds);
+
+        if (preds.size() < 3) {
+
+            // A cycle requires at least three statement patterns.
+            return left;
+
+        }
+
+        final IPredicate[] a = preds.toArray(new IPredicate[preds.size()]);
+
+        if (!LeapfrogTriejoinOp.isCyclic(a, bound)) {
+
+            // Binary joins are fine for an acyclic join graph.
+            return left;
+
+        }
+
+        final SPOKeyOrder[] keyOrders = getStatementKeyOrders(ctx);
+
+        final IVariable<?>[] order = LeapfrogTriejoinOp.getVariableOrder(a,
+                bound, keyOrders);
+
+        if (order == null) {
+
+            // The statement indices do not support any variable order.
+            return left;
+
+        }
+
+        final SPOKeyOrder[] predKeyOrders = new SPOKeyOrder[a.length];
+
+        for (int i = 0; i < a.length; i++) {
+
+            predKeyOrders[i] = LeapfrogTriejoinOp.getKeyOrder(a[i], order,
+                    bound, keyOrders);
+
+        }
+
+        final List<IConstraint> constraints = new LinkedList<IConstraint>();
+
+        final Properties queryHints = new Properties();
+
+        collectConstraintsAndHints(sps, constraints, queryHints);
+
+        final Map<IConstraint, Set<IVariable<IV>>> needsMaterialization = new LinkedHashMap<IConstraint, Set<IVariable<IV>>>();
+
+        final IConstraint[] joinConstraints = getJoinConstraints(constraints,
+                needsMaterialization);
+
+        left = new LeapfrogTriejoinOp(leftOrEmpty(left), //
+                new NV(BOp.Annotations.BOP_ID, ctx.nextId()),//
+                new NV(BOp.Annotations.EVALUATION_CONTEXT,
+                        BOpEvaluationContext.ANY),//
+                new NV(LeapfrogTriejoinOp.Annotations.PREDICATES, a),//
+                new NV(LeapfrogTriejoinOp.Annotations.KEY_ORDERS,
+                        predKeyOrders),//
+                new NV(LeapfrogTriejoinOp.Annotations.VARIABLE_ORDER, order),//
+                new NV(LeapfrogTriejoinOp.Annotations.CONSTRAINTS,
+                        joinConstraints)//
+        );
+
+        left = applyQueryHints(left, joinGroup, ctx);
+
+        // Materialize variables (if necessary) and evaluate the filters.
+        left = addMaterializationSteps3(left, doneSet, needsMaterialization,
+                queryHints, ctx);
+
+        // These statement patterns were consumed.
+        start.addAndGet(a.length);
+
+        return left;
+
+    }
+
+    /**
+     * Inspect the leading statement patterns in the remainder of the join
+     * group. If two or more of them form a star on a subject variable which is
+     * not bound on entry (the same subject variable and a constant predicate),
+     * then they are evaluated by a single {@link StarMergeJoinOp} which zips
+     * cursors on the SPO index rather than probing the index once per
+     * intermediate solution.
+     * <p>
+     * The same restrictions apply as for
+     * {@link #leapfrogTriejoin(PipelineOp, JoinGroupNode, Set, AtomicInteger, AST2BOpContext)}
+     * .
+     * <p>
+     * Since there is no PSO index, the merge join visits each subject in the
+     * SPO index between the candidates. It is therefore only used when the
+     * star leads the top-level WHERE clause (so it is evaluated once rather
+     * than once per source solution), when the subject can not be bound by a
+     * source solution, and when the {@link Annotations#ESTIMATED_CARDINALITY}
+     * of the statement patterns are within a factor of
+     * {@link StarMergeJoinOp#MAX_CARDINALITY_RATIO} of one another. When one
+     * statement pattern is much more selective, the nested index probes chosen
+     * by the static join optimizer read much less data.
+     * 
+     * @param left
+     *            The left operand.
+     * @param joinGroup
+     *            The join group.
+     * @param doneSet
+     *            The set of variables already known to be materialized.
+     * @param start
+     *            The index of the first child of the group which has not been
+     *            translated. This is advanced past the statement patterns
+     *            consumed by the join.
+     * @param ctx
+     *            The evaluation context.
+     * 
+     * @return The left operand -or- the {@link StarMergeJoinOp} if one was
+     *         generated.
+     * 
+     * @see QueryHints#STAR_MERGE_JOIN
+     */
+    @SuppressWarnings("rawtypes")
+    static protected PipelineOp starMergeJoin(PipelineOp left,
+            final JoinGroupNode joinGroup, final Set<IVariable<?>> doneSet,
+            final AtomicInteger start, final AST2BOpContext ctx) {
+
+        final List<Predicate> preds = new LinkedList<Predicate>();
+
+        final List<StatementPatternNode> sps = new LinkedList<StatementPatternNode>();
+
+        final Set<IVariable<?>> bound = getDirectStatementPatterns(joinGroup,
+                start.get(), ctx, sps, preds);
+
+        if (preds.size() < 2) {
+
+            return left;
+
+        }
+
+        final int n = StarMergeJoinOp.getStarLength(
+                preds.toArray(new IPredicate[preds.size()]), bound);
+
+        if (n < 2) {
+
+            // Not a star.
+            return left;
+
+        }
+
+        if (start.get() != 0
+                || joinGroup != ctx.sa.getQueryRoot().getWhereClause()) {
+
+            // Not the leading joins of the top-level WHERE clause.
+            return left;
+
+        }
+
+        if (ctx.sa.getMaybeIncomingBindings(sps.get(0),
+                new LinkedHashSet<IVariable<?>>()).contains(
+                preds.get(0).get(0))) {
+
+            // The subject might be bound by a source solution.
+            return left;
+
+        }
+
+        if (!isBalancedStar(preds.subList(0, n))) {
+
+            // One statement pattern is much more selective than the others.
+            return left;
+
+        }
+
+        final IPredicate[] a = preds.subList(0, n).toArray(new IPredicate[n]);
+
+        final List<IConstraint> constraints = new LinkedList<IConstraint>();
+
+        final Properties queryHints = new Properties();
+
+        collectConstraintsAndHints(sps.subList(0, n), constraints, queryHints);
+
+        final Map<IConstraint, Set<IVariable<IV>>> needsMaterialization = new LinkedHashMap<IConstraint, Set<IVariable<IV>>>();
+
+        final IConstraint[] joinConstraints = getJoinConstraints(constraints,
+                needsMaterialization);
+
+        left = new StarMergeJoinOp(leftOrEmpty(left), //
+                new NV(BOp.Annotations.BOP_ID, ctx.nextId()),//
+                new NV(BOp.Annotations.EVALUATION_CONTEXT,
+                        BOpEvaluationContext.ANY),//
+                new NV(StarMergeJoinOp.Annotations.PREDICATES, a),//
+                new NV(StarMergeJoinOp.Annotations.CONSTRAINTS,
+                        joinConstraints)//
+        );
+
+        left = applyQueryHints(left, joinGroup, ctx);
+
+        // Materialize variables (if necessary) and evaluate the filters.
+        left = addMaterializationSteps3(left, doneSet, needsMaterialization,
+                queryHints, ctx);
+
+        // These statement patterns were consumed.
+        start.addAndGet(n);
+
+        return left;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the
+     * {@link Annotations#ESTIMATED_CARDINALITY} is known for each predicate
+     * and the largest is within a factor of
+     * {@link StarMergeJoinOp#MAX_CARDINALITY_RATIO} of the smallest.
+     */
+    @SuppressWarnings("rawtypes")
+    static private boolean isBalancedStar(final List<Predicate> preds) {
+
+        long min = Long.MAX_VALUE, max = 0L;
+
+        for (Predicate pred : preds) {
+
+            final Long rangeCount = (Long) pred
+                    .getProperty(Annotations.ESTIMATED_CARDINALITY);
+
+            if (rangeCount == null)
+                return false;
+
+            min = Math.min(min, rangeCount.longValue());
+
+            max = Math.max(max, rangeCount.longValue());
+
+        }
+
+        return min > 0L && max / min <= StarMergeJoinOp.MAX_CARDINALITY_RATIO;
+
+    }
+
+    /**
+     * Collect the leading statement patterns in the remainder of the join
+     * group which may be read directly from the statement indices by the
+     * multiway joins: required triples mode statement patterns without range
+     * constraints, access path filters, key order overrides or hash join
+     * hints. Nothing is collected for quads, SIDs, or scale-out.
+     * 
+     * @param joinGroup
+     *            The join group.
+     * @param start
+     *            The index of the first child of the group which has not been
+     *            translated.
+     * @param ctx
+     *            The evaluation context.
+     * @param sps
+     *            The statement patterns are added to this list.
+     * @param preds
+     *            The corresponding predicates are added to this list.
+     * 
+     * @return The variables which are definitely bound on entry to the first
+     *         statement pattern -or- <code>null</code> if none were collected.
+     */
+    @SuppressWarnings("rawtypes")
+    static private Set<IVariable<?>> getDirectStatementPatterns(
+            final JoinGroupNode joinGroup, final int start,
+            final AST2BOpContext ctx, final List<StatementPatternNode> sps,
+            final List<Predicate> preds) {
+
+        if (ctx.isCluster() || ctx.isQuads()) {
+
+            // Only for triples on a single machine.
+            return null;
+
+        }
+
+        final AbstractTripleStore db = ctx.getAbstractTripleStore();
+
+        if (db.isStatementIdentifiers() || db.getSPORelation().oneAccessPath) {
+
+            return null;
+
+        }
+
+        final int arity = joinGroup.arity();
+
+        Set<IVariable<?>> bound = null;
+
+        for (int i = start; i < arity; i++) {
+
+            final IGroupMemberNode child = (IGroupMemberNode) joinGroup.get(i);
+
+            if (!(child instanceof StatementPatternNode))
+                break;
+
+            final StatementPatternNode sp = (StatementPatternNode) child;
+
+            if (sp.isOptional() || sp.getRange() != null)
+                break;
+
+            if (Boolean.valueOf(sp.getProperty(
+                    StatementPatternNode.Annotations.DISTINCT,
+                    StatementPatternNode.Annotations.DEFAULT_DISTINCT)))
+                break;
+
+            final Properties hints = sp.getQueryHints();
+
+            if (hints != null
+                    && (hints.getProperty(IPredicate.Annotations.KEY_ORDER) != null
+                            || hints.getProperty(QueryHints.CUTOFF_LIMIT) != null
+                            || Boolean.parseBoolean(hints.getProperty(
+                                    QueryHints.HASH_JOIN, "false")))) {
+                break;
+            }
+
+            final Predicate<?> pred = AST2BOpUtility.toPredicate(sp, ctx);
+
+            if (pred.arity() != 3
+                    || pred.getIndexLocalFilter() != null
+                    || pred.getAccessPathFilter() != null
+                    || pred.getAccessPathExpander() != null) {
+                break;
+            }
+
+            if (bound == null) {
+
+                // The variables which are bound on entry to the join.
+                bound = ctx.sa.getDefinitelyIncomingBindings(sp,
+                        new LinkedHashSet<IVariable<?>>());
+
+            }
+
+            sps.add(sp);
+
+            preds.add(pred);
+
+        }
+
+        return bound;
+
+    }
+
+    /**
+     * Return the key orders for the statement indices.
+     */
+    static private SPOKeyOrder[] getStatementKeyOrders(final AST2BOpContext ctx) {
+
+        final List<SPOKeyOrder> tmp = new LinkedList<SPOKeyOrder>();
+
+        final Iterator<SPOKeyOrder> itr = ctx.getAbstractTripleStore()
+                .getSPORelation().statementKeyOrderIterator();
+
+        while (itr.hasNext()) {
+
+            tmp.add(itr.next());
+
+        }
+
+        return tmp.toArray(new SPOKeyOrder[tmp.size()]);
+
+    }
+
+    /**
+     * Collect the attached join filters and the query hints for the statement
+     * patterns.
+     */
+    static private void collectConstraintsAndHints(
+            final List<StatementPatternNode> sps,
+            final List<IConstraint> constraints, final Properties queryHints) {
+
+        for (StatementPatternNode sp : sps) {
+
+            final List<IConstraint> attached = getJoinConstraints(sp);
+
+            if (attached != null)
+                constraints.addAll(attached);
+
+            final Properties hints = sp.getQueryHints();
+
+            if (hints != null)
+                queryHints.putAll(hints);
+
+        }
+
+    }
+
 }
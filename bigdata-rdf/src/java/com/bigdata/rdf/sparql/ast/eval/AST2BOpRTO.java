@@ -407,6 +407,14 @@ public class AST2BOpRTO extends AST2BOpJoins {
         final int nedges = joinGroup.getProperty(QueryHints.RTO_NEDGES,
                 QueryHints.DEFAULT_RTO_NEDGES);
         
+        final double adaptiveThreshold = joinGroup.getProperty(
+                QueryHints.RTO_ADAPTIVE_THRESHOLD,
+                QueryHints.DEFAULT_RTO_ADAPTIVE_THRESHOLD);
+        
+        final boolean sampleCache = joinGroup.getProperty(
+                QueryHints.RTO_SAMPLE_CACHE,
+                QueryHints.DEFAULT_RTO_SAMPLE_CACHE);
+        
         left = new JoinGraph(leftOrEmpty(left),//
                 new NV(BOp.Annotations.BOP_ID, ctx.nextId()),//
                 new NV(BOp.Annotations.EVALUATION_CONTEXT,
@@ -424,6 +432,9 @@ public class AST2BOpRTO extends AST2BOpJoins {
                 new NV(JoinGraph.Annotations.LIMIT, limit),//
                 new NV(JoinGraph.Annotations.NEDGES, nedges),//
                 new NV(JoinGraph.Annotations.SAMPLE_TYPE, sampleType.name()),//
+                new NV(JoinGraph.Annotations.ADAPTIVE_THRESHOLD,
+                        adaptiveThreshold),//
+                new NV(JoinGraph.Annotations.SAMPLE_CACHE, sampleCache),//
                 new NV(JoinGraph.Annotations.DONE_SET, doneSetIn),//
                 new NV(JoinGraph.Annotations.NT, new NT(ctx.getNamespace(),
                         ctx.getTimestamp()))//
@@ -551,6 +562,85 @@ public class AST2BOpRTO extends AST2BOpJoins {
 
     }
 
+    /**
+     * Compile a single join of a join graph into a query plan. This is used to
+     * execute a join path one join at a time so that the RTO may re-plan the
+     * remaining joins based on the materialized output of the joins which have
+     * already been executed.
+     * 
+     * @param queryEngine
+     *            The {@link QueryEngine} on which the RTO is executing.
+     * @param joinGraph
+     *            The operator that is executing the RTO.
+     * @param predicates
+     *            The join path segment which has been executed so far
+     *            followed by the vertex to be joined (last).
+     * @param doneSet
+     *            The variables which are known to be materialized. This is
+     *            updated as a side-effect to reflect the variables which are
+     *            materialized by the returned query plan.
+     * 
+     * @return The query plan for the join of the last vertex in the path
+     *         segment.
+     * 
+     * @see JoinGraph.Annotations#ADAPTIVE_THRESHOLD
+     */
+    public static PipelineOp compileJoinGraphStep(
+            final QueryEngine queryEngine, final JoinGraph joinGraph,
+            final IPredicate<?>[] predicates, final Set<IVariable<?>> doneSet) {
+
+        if (queryEngine == null)
+            throw new IllegalArgumentException();
+
+        if (joinGraph == null)
+            throw new IllegalArgumentException();
+
+        if (predicates == null || predicates.length == 0)
+            throw new IllegalArgumentException();
+
+        if (doneSet == null)
+            throw new IllegalArgumentException();
+
+        final boolean pathIsComplete = predicates.length == joinGraph
+                .getVertices().length;
+
+        /*
+         * Figure out which constraints are attached to the last predicate.
+         * Since the constraints are attached to the first predicate at which
+         * their variables are known to be bound, the constraints attached to
+         * the earlier predicates are the same as when they were compiled.
+         */
+        final IConstraint[][] constraintAttachmentArray = PartitionedJoinGroup
+                .getJoinGraphConstraints(predicates,
+                        joinGraph.getConstraints(), null/* knownBound */,
+                        pathIsComplete);
+
+        final IConstraint[] attachedJoinConstraints = constraintAttachmentArray[predicates.length - 1];
+
+        final Predicate<?> pred = (Predicate<?>) predicates[predicates.length - 1];
+
+        // Lookup the AST node for that predicate.
+        final StatementPatternNode sp = getIndex(
+                (JoinGroupNode) joinGraph
+                        .getRequiredProperty(JoinGraph.Annotations.JOIN_GROUP))
+                .get(pred.getId());
+
+        // Create an execution context for the query.
+        final AST2BOpContext ctx = getExecutionContext(queryEngine,
+                (NT) joinGraph.getRequiredProperty(JoinGraph.Annotations.NT));
+
+        return join(null/* left */, //
+                pred, //
+                pred.isOptional() ? new LinkedHashSet<IVariable<?>>(doneSet)
+                        : doneSet, //
+                attachedJoinConstraints == null ? null : Arrays
+                        .asList(attachedJoinConstraints),//
+                null, // cutoff join limit
+                sp.getQueryHints(),//
+                ctx);
+
+    }
+
     /**
      * Return an execution context that may be used to execute a cutoff join
      * during sampling or the entire join path once it has been identified.
@@ -60,26 +60,31 @@ import com.bigdata.bop.join.JVMSolutionSetHashJoinOp;
 import com.bigdata.bop.join.JoinAnnotations;
 import com.bigdata.bop.join.JoinTypeEnum;
 import com.bigdata.bop.join.NestedLoopJoinOp;
+import com.bigdata.bop.join.PipelineJoin;
 import com.bigdata.bop.paths.ArbitraryLengthPathOp;
 import com.bigdata.bop.paths.ZeroLengthPathOp;
 import com.bigdata.bop.rdf.join.ChunkedMaterializationOp;
 import com.bigdata.bop.rdf.join.DataSetJoin;
+import com.bigdata.bop.rdf.join.TransitiveClosureJoinOp;
 import com.bigdata.bop.solutions.DropOp;
 import com.bigdata.bop.solutions.GroupByOp;
 import com.bigdata.bop.solutions.GroupByRewriter;
 import com.bigdata.bop.solutions.GroupByState;
 import com.bigdata.bop.solutions.HTreeDistinctBindingSetsOp;
+import com.bigdata.bop.solutions.HTreeGroupByOp;
 import com.bigdata.bop.solutions.IGroupByRewriteState;
 import com.bigdata.bop.solutions.IGroupByState;
 import com.bigdata.bop.solutions.ISortOrder;
 import com.bigdata.bop.solutions.IVComparator;
 import com.bigdata.bop.solutions.JVMDistinctBindingSetsOp;
 import com.bigdata.bop.solutions.MemoryGroupByOp;
+import com.bigdata.bop.solutions.ExternalMemorySortOp;
 import com.bigdata.bop.solutions.MemorySortOp;
 import com.bigdata.bop.solutions.PipelinedAggregationOp;
 import com.bigdata.bop.solutions.ProjectionOp;
 import com.bigdata.bop.solutions.SliceOp;
 import com.bigdata.bop.solutions.SortOrder;
+import com.bigdata.bop.solutions.TopKSortOp;
 import com.bigdata.btree.IRangeQuery;
 import com.bigdata.rdf.error.SparqlTypeErrorException;
 import com.bigdata.rdf.internal.IV;
@@ -257,6 +262,24 @@ public class AST2BOpUtility extends AST2BOpRTO {
         left = (PipelineOp) left.setProperty(
                 QueryEngine.Annotations.QUERY_ID, ctx.queryId);
 
+        /*
+         * Subject the query to admission control by the QueryEngine. Note:
+         * This is only set on the top-level query plan so the subqueries
+         * issued by its operators are not subject to admission control.
+         */
+        left = (PipelineOp) left.setProperty(
+                QueryEngine.Annotations.QUERY_PRIORITY,
+                ctx.queryPriority.name());
+
+        if (ctx.maxQueryMemory != 0L) {
+
+            // Bound the memory used by the query.
+            left = (PipelineOp) left.setProperty(
+                    QueryEngine.Annotations.MAX_QUERY_MEMORY,
+                    ctx.maxQueryMemory);
+
+        }
+
         // Attach the query plan to the ASTContainer.
         astContainer.setQueryPlan(left);
 
@@ -392,6 +415,13 @@ public class AST2BOpUtility extends AST2BOpRTO {
                 : queryBase.getProjection().isEmpty() ? null : queryBase
                         .getProjection();
 
+        /*
+         * When non-null, the ORDER BY and the SLICE are fused into a single
+         * Top-K operator and no separate SLICE is added.
+         */
+        final SliceNode topK = getTopKSlice(queryBase, orderBy, projection,
+                ctx);
+
         if (projection != null) {
 
             /**
@@ -441,7 +471,8 @@ public class AST2BOpUtility extends AST2BOpRTO {
                 for (AssignmentNode assignmentNode : projection
                         .getAssignmentProjections()) {
 
-                    left = addAssignment(left, assignmentNode, doneSet,
+                    left = addAssignment(left, null/* joinGroup */,
+                            assignmentNode, doneSet,
                             projection.getQueryHints(), ctx, true/* projection */);
 
                 }
@@ -465,32 +496,49 @@ public class AST2BOpUtility extends AST2BOpRTO {
              * by filtering out the duplicate solutions after the sort.
              */
 
-            // When true, DISTINCT must preserve ORDER BY ordering.
-            final boolean preserveOrder;
-
-            if (orderBy != null && !orderBy.isEmpty()) {
+            if (isDistinctBeforeOrderBy(orderBy, projection, ctx)) {
 
                 /*
-                 * Note: ORDER BY before DISTINCT, so DISTINCT must preserve
-                 * order.
-                 * 
-                 * @see https://sourceforge.net/apps/trac/bigdata/ticket/563
-                 * (ORDER BY + DISTINCT)
+                 * Late materialization: DISTINCT on the IVs and then ORDER BY
+                 * so only the distinct solutions are materialized for the
+                 * sort.
                  */
-                
-                preserveOrder = true;
 
-                left = addOrderBy(left, queryBase, orderBy, ctx);
+                left = addDistinct(left, queryBase, false/* preserveOrder */,
+                        ctx);
+
+                left = addOrderBy(left, queryBase, orderBy, topK, ctx);
 
             } else {
-                
-                preserveOrder = false;
-                
-            }
 
-            if (projection.isDistinct() || projection.isReduced()) {
+                // When true, DISTINCT must preserve ORDER BY ordering.
+                final boolean preserveOrder;
+
+                if (orderBy != null && !orderBy.isEmpty()) {
+
+                    /*
+                     * Note: ORDER BY before DISTINCT, so DISTINCT must
+                     * preserve order.
+                     * 
+                     * @see https://sourceforge.net/apps/trac/bigdata/ticket/563
+                     * (ORDER BY + DISTINCT)
+                     */
+
+                    preserveOrder = true;
+
+                    left = addOrderBy(left, queryBase, orderBy, topK, ctx);
 
-                left = addDistinct(left, queryBase, preserveOrder, ctx);
+                } else {
+
+                    preserveOrder = false;
+
+                }
+
+                if (projection.isDistinct() || projection.isReduced()) {
+
+                    left = addDistinct(left, queryBase, preserveOrder, ctx);
+
+                }
 
             }
 
@@ -502,7 +550,7 @@ public class AST2BOpUtility extends AST2BOpRTO {
             
             if (orderBy != null && !orderBy.isEmpty()) {
 
-                left = addOrderBy(left, queryBase, orderBy, ctx);
+                left = addOrderBy(left, queryBase, orderBy, topK, ctx);
 
             }
 
@@ -587,7 +635,7 @@ public class AST2BOpUtility extends AST2BOpRTO {
 
         }
         
-        if(queryBase.hasSlice()) {
+        if(queryBase.hasSlice() && topK == null) {
 
             left = addSlice(left, queryBase, queryBase.getSlice(), ctx);
 
@@ -823,6 +871,91 @@ public class AST2BOpUtility extends AST2BOpRTO {
 
     }
 
+    /**
+     * Return the named solution sets whose hash indices may be used to filter
+     * the access path of a required statement pattern (sideways information
+     * passing). A hash index qualifies when it is built by a
+     * {@link NamedSubqueryRoot} which is INCLUDEd later in the same join group
+     * and one of its join variables is also a variable of the statement
+     * pattern. Since the INCLUDE is a required join in the same group, any
+     * solution produced by the statement pattern whose binding for that
+     * variable does not appear in the hash index will be eliminated by the
+     * INCLUDE anyway.
+     * 
+     * @param joinGroup
+     *            The join group.
+     * @param index
+     *            The index of the statement pattern in the join group.
+     * @param sp
+     *            The statement pattern.
+     * @param ctx
+     *            The context.
+     * 
+     * @return The named solution sets -or- <code>null</code> if there are
+     *         none.
+     * 
+     * @see PipelineJoin.Annotations#SIP_FILTERS
+     */
+    static private INamedSolutionSetRef[] getSIPFilters(
+            final JoinGroupNode joinGroup, final int index,
+            final StatementPatternNode sp, final AST2BOpContext ctx) {
+
+        if (sp.isOptional())
+            return null;
+
+        final Set<IVariable<?>> spVars = sp.getProducedBindings();
+
+        final List<INamedSolutionSetRef> refs = new LinkedList<INamedSolutionSetRef>();
+
+        final int arity = joinGroup.arity();
+
+        for (int i = index + 1; i < arity; i++) {
+
+            final BOp child = joinGroup.get(i);
+
+            if (!(child instanceof NamedSubqueryInclude))
+                continue;
+
+            final NamedSubqueryRoot nsr = ctx.sa
+                    .getNamedSubqueryRoot(((NamedSubqueryInclude) child)
+                            .getName());
+
+            if (nsr == null || nsr.getJoinVars() == null) {
+                // Not a hash index built by this query.
+                continue;
+            }
+
+            final IVariable<?>[] joinVars = ASTUtil.convert(nsr.getJoinVars());
+
+            boolean found = false;
+
+            for (IVariable<?> var : joinVars) {
+
+                if (spVars.contains(var)) {
+                    found = true;
+                    break;
+                }
+
+            }
+
+            if (!found)
+                continue;
+
+            final INamedSolutionSetRef ref = NamedSolutionSetRefUtility
+                    .newInstance(ctx.queryId, nsr.getName(), joinVars);
+
+            if (!refs.contains(ref))
+                refs.add(ref);
+
+        }
+
+        if (refs.isEmpty())
+            return null;
+
+        return refs.toArray(new INamedSolutionSetRef[refs.size()]);
+
+    }
+
     /**
      * Add an operator to evaluate a {@link ServiceCall}. This handles both
      * services which are evaluated by direct method call within the same JVM
@@ -2157,6 +2290,12 @@ public class AST2BOpUtility extends AST2BOpRTO {
 
         }
 
+        if (unionNode.isParallel()) {
+
+            return convertParallelUnion(left, unionNode, doneSet, ctx);
+
+        }
+
         /*
          * We are going to route all the subqueries here when they're done,
          * by replacing the SINK_REF on the topmost operator in the subquery.
@@ -2298,6 +2437,64 @@ public class AST2BOpUtility extends AST2BOpRTO {
 
     }
 
+    /**
+     * Generate the query plan for a union whose branches are evaluated as
+     * concurrent child queries by a {@link Union} operator. Each child query
+     * is run once for each source solution and its solutions are copied to the
+     * sink of the {@link Union}.
+     * 
+     * @see UnionNode.Annotations#PARALLEL
+     */
+    private static PipelineOp convertParallelUnion(final PipelineOp left,
+            final UnionNode unionNode, final Set<IVariable<?>> doneSet,
+            final AST2BOpContext ctx) {
+
+        final int arity = unionNode.size();
+
+        final PipelineOp[] subqueries = new PipelineOp[arity];
+
+        int i = 0;
+        // Start with everything already known to be materialized.
+        final Set<IVariable<?>> doneSetsIntersection = new LinkedHashSet<IVariable<?>>(doneSet);
+        for (IGroupMemberNode child : unionNode) {
+
+            // convert the child
+            if (!(child instanceof JoinGroupNode))
+                throw new RuntimeException("Illegal child type for union: "
+                        + child.getClass());
+
+            // Start with everything already known to be materialized.
+            final Set<IVariable<?>> tmp = new LinkedHashSet<IVariable<?>>(
+                    doneSet);
+
+            subqueries[i++] = convertJoinGroup(null/* left */,
+                    (JoinGroupNode) child, tmp/* doneSet */, ctx, true/* needsEndOp */);
+
+            // Only what is materialized by every child group.
+            doneSetsIntersection.retainAll(tmp);
+
+        }
+
+        // Do not use more threads than we have processors.
+        final int maxParallelSubqueries = Math.min(arity, Runtime.getRuntime()
+                .availableProcessors());
+
+        final PipelineOp op = applyQueryHints(new Union(leftOrEmpty(left), //
+                new NV(BOp.Annotations.BOP_ID, ctx.nextId()),//
+                new NV(BOp.Annotations.EVALUATION_CONTEXT,
+                        BOpEvaluationContext.CONTROLLER),//
+                new NV(Union.Annotations.SUBQUERIES, subqueries),//
+                new NV(Union.Annotations.MAX_PARALLEL_SUBQUERIES,
+                        maxParallelSubqueries)//
+                ), unionNode, ctx);
+
+        // Add in anything which was known materialized for all child groups.
+        doneSet.addAll(doneSetsIntersection);
+
+        return op;
+
+    }
+
     /**
      * Generate the query plan for an arbitrary length path.
      */
@@ -2306,6 +2503,37 @@ public class AST2BOpUtility extends AST2BOpRTO {
             final AST2BOpContext ctx) {
 
         final JoinGroupNode subgroup = (JoinGroupNode) alpNode.subgroup();
+
+        if (alpNode.isClosureIndex()
+                && alpNode.getQueryHintAsBoolean(QueryHints.PATH_CLOSURE_INDEX,
+                        ctx.pathClosureIndex)) {
+
+            /*
+             * The closure over the predicate is materialized. Read it directly
+             * rather than running the subgroup to a fixed point.
+             */
+
+            final StatementPatternNode sp = (StatementPatternNode) subgroup
+                    .get(0);
+
+            left = applyQueryHints(new TransitiveClosureJoinOp(
+                    leftOrEmpty(left),//
+                    new NV(TransitiveClosureJoinOp.Annotations.PREDICATE,
+                            toPredicate(sp, ctx)),//
+                    new NV(TransitiveClosureJoinOp.Annotations.LEFT_TERM,
+                            alpNode.left().getValueExpression()),//
+                    new NV(TransitiveClosureJoinOp.Annotations.RIGHT_TERM,
+                            alpNode.right().getValueExpression()),//
+                    new NV(TransitiveClosureJoinOp.Annotations.LOWER_BOUND,
+                            alpNode.lowerBound()),//
+                    new NV(Predicate.Annotations.BOP_ID, ctx.nextId()),//
+                    new NV(BOp.Annotations.EVALUATION_CONTEXT,
+                            BOpEvaluationContext.ANY)//
+                    ), alpNode, ctx);
+
+            return left;
+
+        }
     	
         // Convert the child join group.
         final PipelineOp subquery = convertJoinGroup(null,
@@ -2331,6 +2559,16 @@ public class AST2BOpUtility extends AST2BOpRTO {
         ctx.sa.getDefinitelyProducedBindings(subgroup, varsToDrop, true);
         varsToDrop.remove(tVarLeft);
         varsToDrop.remove(tVarRight);
+        
+        /*
+         * Note: The frontier search runs the subquery without the bindings of
+         * the source solutions, so it is only used when the subgroup does not
+         * share any variables (e.g., the context variable for GRAPH ?g) with
+         * the rest of the query.
+         */
+        final boolean frontierSearch = alpNode.getQueryHintAsBoolean(
+                QueryHints.PATH_FRONTIER_SEARCH, ctx.pathFrontierSearch)
+                && isLocalToPath(subgroup, tVarLeft, tVarRight);
     	
         left = applyQueryHints(new ArbitraryLengthPathOp(leftOrEmpty(left),//
     			new NV(ArbitraryLengthPathOp.Annotations.SUBQUERY, subquery),
@@ -2342,6 +2580,8 @@ public class AST2BOpUtility extends AST2BOpRTO {
     			new NV(ArbitraryLengthPathOp.Annotations.UPPER_BOUND, alpNode.upperBound()),
     			new NV(ArbitraryLengthPathOp.Annotations.VARS_TO_DROP, 
     					varsToDrop.toArray(new IVariable<?>[varsToDrop.size()])),
+    			new NV(ArbitraryLengthPathOp.Annotations.FRONTIER_SEARCH,
+    					frontierSearch),
                 new NV(Predicate.Annotations.BOP_ID, ctx.nextId()),//
                 new NV(BOp.Annotations.EVALUATION_CONTEXT,
                         BOpEvaluationContext.CONTROLLER)//
@@ -2351,6 +2591,37 @@ public class AST2BOpUtility extends AST2BOpRTO {
 
     }
 
+    /**
+     * Return <code>true</code> iff the only variables used by the subgroup of
+     * an arbitrary length path are the transitivity variables and the
+     * anonymous variables introduced for the path.
+     */
+    private static boolean isLocalToPath(final JoinGroupNode subgroup,
+            final IVariable<?> tVarLeft, final IVariable<?> tVarRight) {
+
+        final Iterator<VarNode> itr = BOpUtility.visitAll(subgroup,
+                VarNode.class);
+
+        while (itr.hasNext()) {
+
+            final VarNode v = itr.next();
+
+            if (v.isAnonymous())
+                continue;
+
+            final IVariable<?> var = v.getValueExpression();
+
+            if (var.equals(tVarLeft) || var.equals(tVarRight))
+                continue;
+
+            return false;
+
+        }
+
+        return true;
+
+    }
+
     /**
      * Generate the query plan for a zero length path.
      */
@@ -2518,6 +2789,35 @@ public class AST2BOpUtility extends AST2BOpRTO {
             
         }
 
+        if (joinGroup.getQueryHintAsBoolean(QueryHints.LEAPFROG_TRIEJOIN,
+                ctx.leapfrogTriejoin)
+                && !QueryOptimizerEnum.Runtime.equals(joinGroup
+                        .getQueryOptimizer())) {
+
+            /*
+             * Attempt to evaluate a leading cyclic join graph using a
+             * worst-case optimal join.
+             * 
+             * Note: This is not done when the RTO was requested for the
+             * group since the RTO would then no longer see those joins.
+             */
+
+            left = leapfrogTriejoin(left, joinGroup, doneSet, start, ctx);
+
+        }
+
+        if (joinGroup.getQueryHintAsBoolean(QueryHints.STAR_MERGE_JOIN,
+                ctx.starMergeJoin)) {
+
+            /*
+             * Attempt to evaluate a leading star pattern on a common subject
+             * using a merge join over the SPO index.
+             */
+
+            left = starMergeJoin(left, joinGroup, doneSet, start, ctx);
+
+        }
+
         if (QueryOptimizerEnum.Runtime.equals(joinGroup.getQueryOptimizer())) {
 
             /*
@@ -2556,7 +2856,21 @@ public class AST2BOpUtility extends AST2BOpRTO {
                  * Note: This winds up handling materialization steps as well
                  * (it calls through to Rule2BOpUtility).
                  */
-                final Predicate<?> pred = toPredicate(sp, ctx);
+                Predicate<?> pred = toPredicate(sp, ctx);
+                if (joinGroup.getQueryHintAsBoolean(QueryHints.SIP_FILTERS,
+                        ctx.sipFilters)) {
+                    /*
+                     * Filter the access path against the hash index of any
+                     * named subquery INCLUDEd later in this group.
+                     */
+                    final INamedSolutionSetRef[] sipFilters = getSIPFilters(
+                            joinGroup, i, sp, ctx);
+                    if (sipFilters != null) {
+                        pred = (Predicate<?>) pred.setProperty(
+                                PipelineJoin.Annotations.SIP_FILTERS,
+                                sipFilters);
+                    }
+                }
                 final boolean optional = sp.isOptional();
                 left = join(left, //
                         pred,//
@@ -2657,8 +2971,9 @@ public class AST2BOpUtility extends AST2BOpRTO {
                 continue;
             } else if (child instanceof AssignmentNode) {
                 // LET / BIND
-                left = addAssignment(left, (AssignmentNode) child, doneSet,
-                        joinGroup.getQueryHints(), ctx, false/* projection */);
+                left = addAssignment(left, joinGroup, (AssignmentNode) child,
+                        doneSet, joinGroup.getQueryHints(), ctx,
+                        false/* projection */);
                 continue;
             } else {
                 throw new UnsupportedOperationException("child: " + child);
@@ -3141,6 +3456,9 @@ public class AST2BOpUtility extends AST2BOpRTO {
      * Add an assignment to the query plan.
      * 
      * @param left
+     * @param joinGroup
+     *            The parent join group -or- <code>null</code> if the
+     *            assignment is part of a PROJECTION.
      * @param assignmentNode
      *            The {@link AssignmentNode} (LET() or BIND()).
      * @param doneSet
@@ -3155,6 +3473,7 @@ public class AST2BOpUtility extends AST2BOpRTO {
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private static final PipelineOp addAssignment(PipelineOp left,
 //            final ASTBase dominatingASTNode,//
+            final JoinGroupNode joinGroup,//
             final AssignmentNode assignmentNode,//
             final Set<IVariable<?>> doneSet, //
             final Properties queryHints,//
@@ -3178,6 +3497,16 @@ public class AST2BOpUtility extends AST2BOpRTO {
          */
         vars.removeAll(doneSet);
 
+        if (joinGroup != null && !vars.isEmpty()) {
+
+            /*
+             * Remove the ones which can only be bound to inline IVs.
+             */
+            vars.removeAll(ctx.sa.getInlineOnlyVars(joinGroup,
+                    new LinkedHashSet<IVariable<?>>()));
+
+        }
+
         final int bopId = ctx.nextId();
 
         final ConditionalBind b = new ConditionalBind(
@@ -3262,6 +3591,16 @@ public class AST2BOpUtility extends AST2BOpRTO {
          */
         vars.removeAll(doneSet);
 
+        if (!vars.isEmpty()) {
+
+            /*
+             * Remove the ones which can only be bound to inline IVs.
+             */
+            vars.removeAll(ctx.sa.getInlineOnlyVars(joinGroup,
+                    new LinkedHashSet<IVariable<?>>()));
+
+        }
+
         final int bopId = ctx.nextId();
 
         /*
@@ -3826,8 +4165,40 @@ public class AST2BOpUtility extends AST2BOpRTO {
 
         left = addMaterializationSteps2(left, bopId, vars, queryHints, ctx);
 
-        if (!groupByState.isAnyDistinct() && !groupByState.isSelectDependency()
-                && !groupByState.isNestedAggregates()) {
+        final boolean pipelinedAggregation = !groupByState.isAnyDistinct()
+                && !groupByState.isSelectDependency()
+                && !groupByState.isNestedAggregates();
+
+        if (ctx.nativeGroupBy && groupByExprs != null && !pipelinedAggregation) {
+
+            /*
+             * Generalized aggregation operator on the native heap. The solution
+             * groups are hash partitioned and buffered on HTrees and the
+             * aggregates are computed for the partitions in parallel.
+             * 
+             * Note: This is not used when the aggregates can be pipelined since
+             * the pipelined aggregation operator only keeps the state of the
+             * aggregates for each group rather than the solutions.
+             */
+
+            op = new HTreeGroupByOp(leftOrEmpty(left), NV.asMap(new NV[] {//
+                            new NV(BOp.Annotations.BOP_ID, bopId),//
+                            new NV(BOp.Annotations.EVALUATION_CONTEXT,
+                                    BOpEvaluationContext.CONTROLLER),//
+                            new NV(PipelineOp.Annotations.PIPELINED, true),//
+                            new NV(PipelineOp.Annotations.MAX_PARALLEL, 1),//
+                            new NV(PipelineOp.Annotations.LAST_PASS, true),//
+                            new NV(GroupByOp.Annotations.GROUP_BY_STATE,
+                                    groupByState), //
+                            new NV(GroupByOp.Annotations.GROUP_BY_REWRITE,
+                                    groupByRewrite), //
+                            new NV(HTreeGroupByOp.Annotations.PARTITION_COUNT,
+                                    ctx.nativeGroupByPartitions), //
+                            new NV(HTreeGroupByOp.Annotations.RELATION_NAME,
+                                    new String[] { ctx.getLexiconNamespace() }), //
+                    }));
+
+        } else if (pipelinedAggregation) {
 
             /*
              * Extremely efficient pipelined aggregation operator.
@@ -3864,13 +4235,9 @@ public class AST2BOpUtility extends AST2BOpRTO {
             /*
              * General aggregation operator on the JVM heap.
              * 
-             * TODO There is a sketch of a generalized aggregation operator for
-             * the native heap but it needs to be reworked (the control
-             * structure is incorrect). This generalized aggregation operator
-             * for the native heap would be a better only when the #of solutions
-             * to be grouped is large and we can not pipeline the aggregation.
-             * (The code for this is either on the CI machine or the
-             * workstation). BBT 8/17/2011.
+             * Note: The generalized aggregation operator for the native heap
+             * (HTreeGroupByOp) is used instead when there is a GROUP BY clause
+             * and the nativeGroupBy query hint is enabled.
              */
 
             op = new MemoryGroupByOp(leftOrEmpty(left), NV.asMap(new NV[] {//
@@ -3894,12 +4261,117 @@ public class AST2BOpUtility extends AST2BOpRTO {
     }
 
     /**
-     * Add an ORDER BY operator.
+     * Return the {@link SliceNode} iff the ORDER BY and the SLICE for the
+     * {@link QueryBase} may be evaluated by a {@link TopKSortOp}. This is
+     * possible when there is an ORDER BY, there is a LIMIT, there is no
+     * DISTINCT or REDUCED (which would be evaluated between the ORDER BY and
+     * the SLICE) unless it is evaluated before the ORDER BY (see
+     * {@link #isDistinctBeforeOrderBy(OrderByNode, ProjectionNode, AST2BOpContext)}),
+     * and <code>OFFSET + LIMIT</code> does not exceed
+     * {@link AST2BOpContext#topKThreshold}.
+     * 
+     * @return The {@link SliceNode} -or- <code>null</code> if the ORDER BY and
+     *         the SLICE must be evaluated separately.
+     */
+    private static final SliceNode getTopKSlice(final QueryBase queryBase,
+            final OrderByNode orderBy, final ProjectionNode projection,
+            final AST2BOpContext ctx) {
+
+        if (orderBy == null || orderBy.isEmpty())
+            return null;
+
+        if (!queryBase.hasSlice())
+            return null;
+
+        if (projection != null
+                && (projection.isDistinct() || projection.isReduced())
+                && !isDistinctBeforeOrderBy(orderBy, projection, ctx))
+            return null;
+
+        final SliceNode slice = queryBase.getSlice();
+
+        final long offset = slice.getOffset();
+
+        final long limit = slice.getLimit();
+
+        if (offset < 0 || limit < 0)
+            return null;
+
+        final long threshold = Math.min(ctx.topKThreshold, TopKSortOp.MAX_K);
+
+        if (limit > threshold || offset > threshold - limit)
+            return null;
+
+        return slice;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the DISTINCT (or REDUCED) should be
+     * evaluated before the ORDER BY. This is done for
+     * {@link AST2BOpContext#lateMaterialization} so the ORDER BY only
+     * materializes the distinct solutions. It is only safe when the ORDER BY
+     * expressions do not use any variable which is not projected (the
+     * DISTINCT operators also enforce the projection) and do not use an
+     * aggregate.
+     */
+    private static final boolean isDistinctBeforeOrderBy(
+            final OrderByNode orderBy, final ProjectionNode projection,
+            final AST2BOpContext ctx) {
+
+        if (!ctx.lateMaterialization)
+            return false;
+
+        if (orderBy == null || orderBy.isEmpty())
+            return false;
+
+        if (projection == null
+                || !(projection.isDistinct() || projection.isReduced()))
+            return false;
+
+        final Set<IVariable<?>> projectedVars = projection
+                .getProjectionVars(new LinkedHashSet<IVariable<?>>());
+
+        for (OrderByExpr orderByExpr : orderBy) {
+
+            final Iterator<BOp> itr = BOpUtility.preOrderIterator(orderByExpr
+                    .getValueExpression());
+
+            while (itr.hasNext()) {
+
+                final BOp op = itr.next();
+
+                if (op instanceof IAggregate<?>)
+                    return false;
+
+                if (op instanceof IVariable<?> && !projectedVars.contains(op))
+                    return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Add an ORDER BY operator. When a <i>slice</i> is given, the ORDER BY and
+     * that OFFSET/LIMIT are evaluated together by the {@link TopKSortOp}.
+     * Otherwise, the {@link ExternalMemorySortOp} is used when
+     * {@link AST2BOpContext#nativeOrderBy} is set and the {@link MemorySortOp}
+     * is used if it is not.
+     * 
+     * @param slice
+     *            The OFFSET/LIMIT to be fused with the ORDER BY (optional).
+     * 
+     * @see #getTopKSlice(QueryBase, OrderByNode, ProjectionNode,
+     *      AST2BOpContext)
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     private static final PipelineOp addOrderBy(PipelineOp left,
             final QueryBase queryBase, final OrderByNode orderBy,
-            final AST2BOpContext ctx) {
+            final SliceNode slice, final AST2BOpContext ctx) {
 
         // The query hints are taken from the QueryBase
         final Properties queryHints = queryBase.getQueryHints();
@@ -3945,6 +4417,72 @@ public class AST2BOpUtility extends AST2BOpRTO {
 
         left = addMaterializationSteps2(left, sortId, vars, queryHints, ctx);
 
+        if (slice != null) {
+
+            /*
+             * Top-K. Only the best (offset + limit) solutions are retained.
+             */
+
+            left = applyQueryHints(
+                    new TopKSortOp(
+                            leftOrEmpty(left),
+                            NV.asMap(new NV[] {//
+                                    new NV(TopKSortOp.Annotations.BOP_ID, sortId),//
+                                    new NV(TopKSortOp.Annotations.SORT_ORDER,
+                                            sortOrders),//
+                                    new NV(
+                                            TopKSortOp.Annotations.VALUE_COMPARATOR,
+                                            new IVComparator()),//
+                                    new NV(
+                                            TopKSortOp.Annotations.EVALUATION_CONTEXT,
+                                            BOpEvaluationContext.CONTROLLER),//
+                                    new NV(TopKSortOp.Annotations.PIPELINED, true),//
+                                    new NV(TopKSortOp.Annotations.MAX_PARALLEL, 1),//
+                                    new NV(TopKSortOp.Annotations.REORDER_SOLUTIONS, false),//
+                                    new NV(TopKSortOp.Annotations.LAST_PASS, true),//
+                                    new NV(TopKSortOp.Annotations.OFFSET,
+                                            slice.getOffset()),//
+                                    new NV(TopKSortOp.Annotations.LIMIT,
+                                            slice.getLimit()),//
+                            })), queryHints, ctx);
+
+            return left;
+
+        }
+
+        if (ctx.nativeOrderBy) {
+
+            /*
+             * External memory sort. Solutions are buffered on the JVM heap up
+             * to the run capacity. Beyond that, sorted runs are spilled onto
+             * the native heap and combined using a k-way merge.
+             */
+
+            left = applyQueryHints(
+                    new ExternalMemorySortOp(
+                            leftOrEmpty(left),
+                            NV.asMap(new NV[] {//
+                                    new NV(ExternalMemorySortOp.Annotations.BOP_ID, sortId),//
+                                    new NV(ExternalMemorySortOp.Annotations.SORT_ORDER,
+                                            sortOrders),//
+                                    new NV(
+                                            ExternalMemorySortOp.Annotations.VALUE_COMPARATOR,
+                                            new IVComparator()),//
+                                    new NV(
+                                            ExternalMemorySortOp.Annotations.EVALUATION_CONTEXT,
+                                            BOpEvaluationContext.CONTROLLER),//
+                                    new NV(ExternalMemorySortOp.Annotations.PIPELINED, true),//
+                                    new NV(ExternalMemorySortOp.Annotations.MAX_PARALLEL, 1),//
+                                    new NV(ExternalMemorySortOp.Annotations.REORDER_SOLUTIONS, false),//
+                                    new NV(ExternalMemorySortOp.Annotations.LAST_PASS, true),//
+                                    new NV(ExternalMemorySortOp.Annotations.RUN_CAPACITY,
+                                            ctx.nativeOrderByRunCapacity),//
+                            })), queryHints, ctx);
+
+            return left;
+
+        }
+
         left = applyQueryHints(
                 new MemorySortOp(
                         leftOrEmpty(left),
@@ -4090,9 +4628,18 @@ public class AST2BOpUtility extends AST2BOpRTO {
 
             conditionalCopy(anns, queryHints, IPredicate.Annotations.KEY_ORDER);
 
-            // Note: moved up from below and modified to use conditionalCopy().
-            conditionalCopy(anns, queryHints,
-                    IPredicate.Annotations.CUTOFF_LIMIT);
+            /*
+             * Note: The query hint is stored as a String under the short name
+             * of the hint (this is also how the ASTLimitPushdownOptimizer sets
+             * it), but the AccessPath requires a Long.
+             */
+            final String cutoffLimit = sp
+                    .getQueryHint(QueryHints.CUTOFF_LIMIT);
+            if (cutoffLimit != null) {
+                // Add the cutoff limit
+                anns.add(new NV(IPredicate.Annotations.CUTOFF_LIMIT, Long
+                        .valueOf(cutoffLimit)));
+            }
             
         }
 
@@ -4129,15 +4676,6 @@ public class AST2BOpUtility extends AST2BOpRTO {
             anns.add(new NV(IPredicate.Annotations.RANGE, range.getRangeBOp()));
         }
 
-//        Note: Move above and modified to use conditionalCopy.
-//        
-//        final String cutoffLimit = sp.getQueryHint(QueryHints.CUTOFF_LIMIT);
-//        if (cutoffLimit != null) {
-//            // Add the cutoff limit
-//            anns.add(new NV(IPredicate.Annotations.CUTOFF_LIMIT, Long
-//                    .valueOf(cutoffLimit)));
-//        }
-
         final Properties queryHints = sp.getQueryHints();
         
         if (queryHints != null
@@ -173,7 +173,8 @@ public class ASTEvalHelper {
                 batchResolveIVs(store, bs));
 
         // Convert the query (generates an optimized AST as a side-effect).
-        AST2BOpUtility.convert(context, bindingSets);
+        ASTQueryPlanCache.convert(context, bindingSets, bs == null
+                || bs.size() == 0/* cacheable */);
 
         // The optimized AST.
         final QueryRoot optimizedQuery = astContainer.getOptimizedAST();
@@ -235,7 +236,8 @@ public class ASTEvalHelper {
                 batchResolveIVs(store, bs));
 
         // Convert the query (generates an optimized AST as a side-effect).
-        AST2BOpUtility.convert(context, bindingSets);
+        ASTQueryPlanCache.convert(context, bindingSets, bs == null
+                || bs.size() == 0/* cacheable */);
 
         // Get the projection for the query.
         final IVariable<?>[] projected = astContainer.getOptimizedAST()
@@ -316,7 +318,8 @@ public class ASTEvalHelper {
                 batchResolveIVs(store, bs));
 
         // Convert the query (generates an optimized AST as a side-effect).
-        AST2BOpUtility.convert(context, bindingSets);
+        ASTQueryPlanCache.convert(context, bindingSets, bs == null
+                || bs.size() == 0/* cacheable */);
 
         // The optimized AST.
         final QueryRoot optimizedQuery = astContainer.getOptimizedAST();
@@ -481,7 +484,8 @@ public class ASTEvalHelper {
         }
         
         // Convert the query (generates an optimized AST as a side-effect).
-        AST2BOpUtility.convert(context, bindingSets);
+        ASTQueryPlanCache.convert(context, bindingSets, bs == null
+                || bs.size() == 0/* cacheable */);
 
         // The optimized AST.
         final QueryRoot optimizedQuery = astContainer.getOptimizedAST();
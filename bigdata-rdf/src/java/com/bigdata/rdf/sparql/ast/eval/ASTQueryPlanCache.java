@@ -0,0 +1,300 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval;
+
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.engine.QueryPlanCache;
+import com.bigdata.bop.engine.QueryPlanCache.CachedQueryPlan;
+import com.bigdata.journal.ICommitRecord;
+import com.bigdata.journal.IIndexManager;
+import com.bigdata.journal.IJournal;
+import com.bigdata.journal.ITx;
+import com.bigdata.journal.TimestampUtility;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.SolutionSetStatserator;
+import com.bigdata.rdf.sparql.ast.StaticAnalysis;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+/**
+ * Reuse of the optimized AST and the query plan for a query which is evaluated
+ * more than once against the same commit point of the same KB instance.
+ * <p>
+ * The cache key is the namespace of the KB, the commit time of the view, the
+ * query string, and the original AST (the latter captures anything which the
+ * API has set on the query, such as the data set, a BINDINGS clause, or the
+ * timeout). Since the commit time is part of the key, a schema change (or any
+ * other change) to the KB implicitly invalidates the cached query plans for
+ * that KB. Only read-only views of a {@link IJournal} are cached. Queries which
+ * have exogenous solutions supplied through the API are not cached since those
+ * solutions are visible to the AST optimizers.
+ * <p>
+ * Constants are not normalized out of the key. The AST optimizers make
+ * decisions (join order, pruning of empty access paths, etc.) based on the
+ * range counts for the constants in the query, so a query plan may only be
+ * reused for the same constants. The query {@link UUID} and the timestamp of
+ * the view are re-bound on the cached query plan for each new query.
+ *
+ * @see QueryHints#QUERY_PLAN_CACHE
+ * @see QueryPlanCache
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class ASTQueryPlanCache {
+
+    private static final transient Logger log = Logger
+            .getLogger(ASTQueryPlanCache.class);
+
+    private ASTQueryPlanCache() {
+    }
+
+    /**
+     * Convert the query into a query plan, reusing a cached query plan when
+     * possible. The side-effects on the {@link AST2BOpContext} and the
+     * {@link ASTContainer} are the same as for
+     * {@link AST2BOpUtility#convert(AST2BOpContext, IBindingSet[])}.
+     *
+     * @param ctx
+     *            The evaluation context.
+     * @param bindingSets
+     *            The exogenous solutions.
+     * @param cacheable
+     *            <code>false</code> if the exogenous solutions were (in part)
+     *            supplied through the API rather than the query.
+     *
+     * @return The query plan.
+     */
+    static PipelineOp convert(final AST2BOpContext ctx,
+            final IBindingSet[] bindingSets, final boolean cacheable) {
+
+        final Key key = cacheable && ctx.isQueryPlanCache() ? newKey(ctx)
+                : null;
+
+        if (key == null) {
+
+            return AST2BOpUtility.convert(ctx, bindingSets);
+
+        }
+
+        final QueryPlanCache cache = ctx.queryEngine.getQueryPlanCache();
+
+        final Entry e = (Entry) cache.get(key);
+
+        final ASTContainer astContainer = ctx.astContainer;
+
+        if (e != null) {
+
+            ctx.setSolutionSetStats(SolutionSetStatserator.get(bindingSets));
+
+            final QueryRoot optimizedQuery = BOpUtility
+                    .deepCopy(e.optimizedQuery);
+
+            astContainer.setOptimizedAST(optimizedQuery);
+
+            ctx.sa = new StaticAnalysis(optimizedQuery, ctx);
+
+            final PipelineOp queryPlan = e.getQueryPlan(ctx.queryId,
+                    ctx.getTimestamp());
+
+            astContainer.setQueryPlan(queryPlan);
+
+            if (log.isInfoEnabled())
+                log.info("Reusing cached query plan: " + astContainer);
+
+            return queryPlan;
+
+        }
+
+        // Note: The key must not share the (mutable) original AST.
+        final Key newKey = new Key(key.namespace, key.commitTime,
+                key.queryString, BOpUtility.deepCopy(key.originalQuery));
+
+        final PipelineOp queryPlan = AST2BOpUtility.convert(ctx, bindingSets);
+
+        cache.put(newKey, new Entry(queryPlan, ctx.queryId, ctx.getTimestamp(),
+                BOpUtility.deepCopy(astContainer.getOptimizedAST())));
+
+        return queryPlan;
+
+    }
+
+    /**
+     * Return the key for the query -or- <code>null</code> if the query may not
+     * be cached.
+     */
+    private static Key newKey(final AST2BOpContext ctx) {
+
+        final String queryString = ctx.astContainer.getQueryString();
+
+        if (queryString == null) {
+            // The AST was not generated by the parser.
+            return null;
+        }
+
+        final QueryRoot originalQuery = ctx.astContainer.getOriginalAST();
+
+        if (originalQuery == null)
+            return null;
+
+        final long commitTime = getCommitTime(ctx.db);
+
+        if (commitTime == -1L)
+            return null;
+
+        return new Key(ctx.db.getNamespace(), commitTime, queryString,
+                originalQuery);
+
+    }
+
+    /**
+     * Return the commit time for the view -or- <code>-1L</code> if the view is
+     * not a read-only view of a {@link IJournal}.
+     */
+    private static long getCommitTime(final AbstractTripleStore db) {
+
+        final IIndexManager indexManager = db.getIndexManager();
+
+        if (!(indexManager instanceof IJournal)) {
+            // Not supported for scale-out or temporary stores.
+            return -1L;
+        }
+
+        final IJournal jnl = (IJournal) indexManager;
+
+        final long timestamp = db.getTimestamp();
+
+        if (timestamp == ITx.READ_COMMITTED) {
+
+            return jnl.getLastCommitTime();
+
+        }
+
+        if (!TimestampUtility.isReadOnly(timestamp)) {
+            // Unisolated or read/write transaction.
+            return -1L;
+        }
+
+        /*
+         * Note: This handles both a historical commit time and a read-only
+         * transaction (which reads on the most recent commit point LTE its
+         * identifier).
+         */
+        final ICommitRecord commitRecord = jnl.getCommitRecord(timestamp);
+
+        if (commitRecord == null)
+            return -1L;
+
+        return commitRecord.getTimestamp();
+
+    }
+
+    /**
+     * The key for a cached query plan.
+     */
+    private static class Key {
+
+        private final String namespace;
+
+        private final long commitTime;
+
+        private final String queryString;
+
+        private final QueryRoot originalQuery;
+
+        private final int hashCode;
+
+        Key(final String namespace, final long commitTime,
+                final String queryString, final QueryRoot originalQuery) {
+
+            this.namespace = namespace;
+            this.commitTime = commitTime;
+            this.queryString = queryString;
+            this.originalQuery = originalQuery;
+
+            int h = namespace.hashCode();
+            h = 31 * h + (int) (commitTime ^ (commitTime >>> 32));
+            h = 31 * h + queryString.hashCode();
+            this.hashCode = h;
+
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hashCode;
+
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+
+            if (this == o)
+                return true;
+
+            if (!(o instanceof Key))
+                return false;
+
+            final Key t = (Key) o;
+
+            return hashCode == t.hashCode && commitTime == t.commitTime
+                    && namespace.equals(t.namespace)
+                    && queryString.equals(t.queryString)
+                    && originalQuery.equals(t.originalQuery);
+
+        }
+
+    }
+
+    /**
+     * A cached query plan together with the optimized AST from which it was
+     * generated.
+     */
+    private static class Entry extends CachedQueryPlan {
+
+        private final QueryRoot optimizedQuery;
+
+        Entry(final PipelineOp queryPlan, final UUID queryId,
+                final long timestamp, final QueryRoot optimizedQuery) {
+
+            super(queryPlan, queryId, timestamp);
+
+            this.optimizedQuery = optimizedQuery;
+
+        }
+
+    }
+
+}
@@ -64,6 +64,8 @@ final class AnalyticQueryHint extends AbstractBooleanQueryHint {
             context.nativeHashJoins = value;
             context.nativeDistinctSolutions = value;
             context.nativeDistinctSPO = value;
+            context.nativeOrderBy = value;
+            context.nativeGroupBy = value;
             return;
         }
 
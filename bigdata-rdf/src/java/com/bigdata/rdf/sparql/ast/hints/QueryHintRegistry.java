@@ -101,6 +101,8 @@ public class QueryHintRegistry {
         add(new RTOSampleTypeQueryHint());
         add(new RTOLimitQueryHint());
         add(new RTONEdgesQueryHint());
+        add(new RTOAdaptiveThresholdQueryHint());
+        add(new RTOSampleCacheQueryHint());
         add(new OptimisticQueryHint());
 
         add(new AnalyticQueryHint());
@@ -108,7 +110,21 @@ public class QueryHintRegistry {
         add(new NativeDistinctSPOHint());
         add(new NativeDistinctSPOThresholdHint());
         add(new NativeHashJoinsHint());
+        add(new NativeOrderByHint());
+        add(new NativeOrderByRunCapacityHint());
+        add(new TopKThresholdHint());
+        add(new NativeGroupByHint());
+        add(new NativeGroupByPartitionsHint());
+        add(new LateMaterializationHint());
+        add(new ParallelUnionThresholdHint());
+        add(new MaxQueryMemoryHint());
+        add(new QueryPriorityHint());
         add(new MergeJoinHint());
+        add(new LeapfrogTriejoinHint());
+        add(new StarMergeJoinHint());
+        add(new PathFrontierSearchHint());
+        add(new PathClosureIndexHint());
+        add(new SIPFiltersHint());
         add(new HashJoinHint());
         add(new KeyOrderHint());
         add(new RemoteAPHint());
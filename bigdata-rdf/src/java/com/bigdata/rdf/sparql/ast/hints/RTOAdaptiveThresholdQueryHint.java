@@ -0,0 +1,81 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2011.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.hints;
+
+import com.bigdata.bop.joinGraph.rto.JoinGraph;
+import com.bigdata.rdf.sparql.ast.ASTBase;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+
+/**
+ * The query hint governing the checkpointed execution of the join path
+ * selected by the RTO optimizer.
+ * 
+ * @see JoinGraph
+ * @see QueryHints#RTO_ADAPTIVE_THRESHOLD
+ */
+final class RTOAdaptiveThresholdQueryHint extends AbstractDoubleQueryHint {
+
+    public RTOAdaptiveThresholdQueryHint() {
+        super(QueryHints.RTO_ADAPTIVE_THRESHOLD,
+                QueryHints.DEFAULT_RTO_ADAPTIVE_THRESHOLD);
+    }
+
+    @Override
+    public Double validate(final String value) {
+
+        final double d = Double.valueOf(value);
+
+        if (d < 0d)
+            throw new IllegalArgumentException("Must be non-negative: hint="
+                    + getName() + ", value=" + value);
+
+        return d;
+        
+    }
+
+    @Override
+    public void handle(final AST2BOpContext ctx, final QueryHintScope scope,
+            final ASTBase op, final Double value) {
+
+        switch (scope) {
+        case Group:
+        case GroupAndSubGroups:
+        case Query:
+        case SubQuery:
+            if (op instanceof JoinGroupNode) {
+                _setAnnotation(ctx, scope, op, getName(), value);
+            }
+            return;
+        }
+        throw new QueryHintException(scope, op, getName(), value);
+
+    }
+
+}
\ No newline at end of file
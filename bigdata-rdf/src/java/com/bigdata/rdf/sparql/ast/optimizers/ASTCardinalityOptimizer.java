@@ -24,14 +24,17 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.rdf.sparql.ast.optimizers;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.bigdata.bop.IBindingSet;
 import com.bigdata.rdf.sparql.ast.IBindingProducerNode;
 import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
 import com.bigdata.rdf.sparql.ast.StaticAnalysis;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTStaticJoinOptimizer.Annotations;
+import com.bigdata.rdf.spo.CharacteristicSets;
 
 /**
  * Calculate the estimated cardinality of a join group.
@@ -64,12 +67,16 @@ public class ASTCardinalityOptimizer extends AbstractJoinGroupOptimizer
      * 
      * The estimated cardinality of a subgroup will be calculated using the
      * same logic contained in the ASTStaticJoinOptimizer.
+     * 
+     * When the group is a star join on a common subject and the database
+     * maintains characteristic sets, the cardinality is estimated from the
+     * characteristic sets instead.
      */
 	protected void optimizeJoinGroup(final AST2BOpContext ctx, 
     		final StaticAnalysis sa, final IBindingSet[] bSets,
     		final JoinGroupNode group) {
 
-		final long cardinality = Long.MAX_VALUE;
+		long cardinality = Long.MAX_VALUE;
 		
 		final List<IBindingProducerNode> nodes = 
 				group.getChildren(IBindingProducerNode.class);
@@ -87,6 +94,34 @@ public class ASTCardinalityOptimizer extends AbstractJoinGroupOptimizer
 			
 		}
 		
+		final List<StatementPatternNode> sps = new ArrayList<StatementPatternNode>();
+
+		for (IBindingProducerNode node : nodes) {
+
+			if (!(node instanceof StatementPatternNode)
+					|| ((StatementPatternNode) node).isOptional()) {
+				sps.clear();
+				break;
+			}
+
+			sps.add((StatementPatternNode) node);
+
+		}
+
+		if (!sps.isEmpty()) {
+
+			final CharacteristicSets characteristicSets = StaticOptimizer
+					.getCharacteristicSets(ctx);
+
+			final long starCardinality = characteristicSets == null ? -1L
+					: StaticOptimizer.estimateStarCardinality(
+							characteristicSets, sps);
+
+			if (starCardinality != -1L)
+				cardinality = starCardinality;
+
+		}
+
 		group.setProperty(Annotations.ESTIMATED_CARDINALITY, cardinality);
         
     }
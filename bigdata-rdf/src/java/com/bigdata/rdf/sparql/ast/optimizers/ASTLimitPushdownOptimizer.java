@@ -0,0 +1,186 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 17, 2026
+ */
+
+
+package com.bigdata.rdf.sparql.ast.optimizers;
+
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.rdf.sparql.ast.IGroupMemberNode;
+import com.bigdata.rdf.sparql.ast.IQueryNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.ProjectionNode;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.SliceNode;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.StaticAnalysis;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.relation.accesspath.AccessPath;
+
+/**
+ * Pushes the LIMIT of a query whose WHERE clause is a single required
+ * {@link StatementPatternNode} down onto the access path for that statement
+ * pattern using {@link QueryHints#CUTOFF_LIMIT}. The {@link AccessPath} then
+ * reads at most <code>offset+limit</code> elements (as a fully buffered read)
+ * rather than materializing chunks from the index which the SLICE would just
+ * discard.
+ * <p>
+ * This is only safe when each element read from the access path produces
+ * exactly one solution for the query, so the rewrite is not applied if there
+ * is an ORDER BY, DISTINCT, REDUCED, an aggregation, a FILTER, a BINDINGS
+ * clause, or a named subquery. It is not applied in quads mode, where the
+ * default graph access path may drop elements after they have been read.
+ * <p>
+ * Note: The LIMIT is still imposed by the SLICE.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class ASTLimitPushdownOptimizer implements IASTOptimizer {
+
+    /**
+     * The largest <code>offset+limit</code> which will be pushed down. The
+     * {@link AccessPath} allocates a buffer of that size for the fully
+     * buffered read, so larger limits are left to the SLICE.
+     */
+    public static final long MAX_LIMIT = 10000L;
+
+    @Override
+    public IQueryNode optimize(final AST2BOpContext context,
+            final IQueryNode queryNode, final IBindingSet[] bindingSets) {
+
+        if (!(queryNode instanceof QueryRoot))
+            return queryNode;
+
+        final QueryRoot queryRoot = (QueryRoot) queryNode;
+
+        final StatementPatternNode sp = getStatementPattern(context, queryRoot);
+
+        if (sp == null) {
+
+            // Not a query that we will rewrite.
+            return queryRoot;
+
+        }
+
+        final SliceNode slice = queryRoot.getSlice();
+
+        sp.setQueryHint(QueryHints.CUTOFF_LIMIT,
+                Long.toString(slice.getOffset() + slice.getLimit()));
+
+        return queryRoot;
+
+    }
+
+    /**
+     * Return the sole {@link StatementPatternNode} in the WHERE clause iff the
+     * LIMIT may be pushed down onto its access path.
+     */
+    private StatementPatternNode getStatementPattern(
+            final AST2BOpContext context, final QueryRoot queryRoot) {
+
+        if (context.isQuads())
+            return null;
+
+        if (queryRoot.getQueryType() != QueryType.SELECT
+                && queryRoot.getQueryType() != QueryType.ASK)
+            return null;
+
+        final SliceNode slice = queryRoot.getSlice();
+
+        if (slice == null || slice.getLimit() == Long.MAX_VALUE)
+            return null;
+
+        if (slice.getLimit() > MAX_LIMIT
+                || slice.getOffset() > MAX_LIMIT - slice.getLimit())
+            return null;
+
+        if (queryRoot.getOrderBy() != null
+                && !queryRoot.getOrderBy().isEmpty())
+            return null;
+
+        final ProjectionNode projection = queryRoot.getProjection();
+
+        if (projection != null
+                && (projection.isDistinct() || projection.isReduced()))
+            return null;
+
+        if (StaticAnalysis.isAggregate(queryRoot))
+            return null;
+
+        if (queryRoot.getNamedSubqueries() != null
+                && !queryRoot.getNamedSubqueries().isEmpty())
+            return null;
+
+        if (queryRoot.getBindingsClause() != null)
+            return null;
+
+        if (!(queryRoot.getWhereClause() instanceof JoinGroupNode))
+            return null;
+
+        final JoinGroupNode whereClause = (JoinGroupNode) queryRoot
+                .getWhereClause();
+
+        if (whereClause.isOptional() || whereClause.isMinus()
+                || whereClause.arity() != 1)
+            return null;
+
+        final IGroupMemberNode child = (IGroupMemberNode) whereClause.get(0);
+
+        if (!(child instanceof StatementPatternNode))
+            return null;
+
+        final StatementPatternNode sp = (StatementPatternNode) child;
+
+        if (sp.isOptional())
+            return null;
+
+        if (!sp.getAttachedJoinFilters().isEmpty()) {
+
+            /*
+             * A FILTER attached to the statement pattern is evaluated by the
+             * join after the access path has been cut off, so it could reject
+             * the elements which were read and leave fewer solutions than the
+             * LIMIT.
+             */
+            return null;
+
+        }
+
+        if (sp.getQueryHint(QueryHints.CUTOFF_LIMIT) != null) {
+
+            // Respect an explicit query hint.
+            return null;
+
+        }
+
+        return sp;
+
+    }
+
+}
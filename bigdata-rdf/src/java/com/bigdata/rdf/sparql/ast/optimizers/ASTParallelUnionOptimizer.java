@@ -0,0 +1,177 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 17, 2026
+ */
+
+
+package com.bigdata.rdf.sparql.ast.optimizers;
+
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.controller.Union;
+import com.bigdata.rdf.sparql.ast.FilterNode;
+import com.bigdata.rdf.sparql.ast.IGroupMemberNode;
+import com.bigdata.rdf.sparql.ast.IQueryNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.UnionNode;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpBase;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+
+/**
+ * Marks a UNION whose branches should be evaluated as concurrent child queries
+ * using a {@link Union} operator. Normally the branches of a UNION are
+ * evaluated within the pipeline of the parent query, so the work for a wide
+ * UNION is done by the same operator tasks as the rest of the query. When the
+ * branches are run as child queries they each have their own operator tasks
+ * and the UNION completes in about the time of its slowest branch.
+ * <p>
+ * A child query is issued for each branch and for each source solution, so
+ * this is only done for a UNION which is the first child of the top-level
+ * WHERE clause (there is at most one source solution) and whose branches are
+ * flat groups of required statement patterns and filters. The estimated cost
+ * of the UNION (the sum of the estimated cardinality of those statement
+ * patterns) must be at least {@link QueryHints#PARALLEL_UNION_THRESHOLD}.
+ * <p>
+ * Note: This relies on the estimated cardinality attached by the
+ * {@link ASTRangeCountOptimizer}.
+ * <p>
+ * Note: The decision does not depend on the load on the
+ * {@link com.bigdata.bop.engine.QueryEngine}. The query plan may be cached
+ * and reused, so it must only depend on the query and the data. The
+ * {@link Union} operator bounds the #of concurrent child queries by the #of
+ * processors.
+ * 
+ * @see UnionNode.Annotations#PARALLEL
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class ASTParallelUnionOptimizer implements IASTOptimizer {
+
+    @Override
+    public IQueryNode optimize(final AST2BOpContext context,
+            final IQueryNode queryNode, final IBindingSet[] bindingSets) {
+
+        if (!(queryNode instanceof QueryRoot))
+            return queryNode;
+
+        final QueryRoot queryRoot = (QueryRoot) queryNode;
+
+        if (context.parallelUnionThreshold == Long.MAX_VALUE) {
+
+            // Disabled.
+            return queryRoot;
+
+        }
+
+        if (bindingSets != null && bindingSets.length > 1) {
+
+            // More than one source solution.
+            return queryRoot;
+
+        }
+
+        if (!(queryRoot.getWhereClause() instanceof JoinGroupNode))
+            return queryRoot;
+
+        final JoinGroupNode whereClause = (JoinGroupNode) queryRoot
+                .getWhereClause();
+
+        if (whereClause.arity() == 0
+                || !(whereClause.get(0) instanceof UnionNode))
+            return queryRoot;
+
+        final UnionNode union = (UnionNode) whereClause.get(0);
+
+        if (union.arity() < 2)
+            return queryRoot;
+
+        final long cost = getCost(union);
+
+        if (cost < context.parallelUnionThreshold) {
+
+            // Not enough work to pay for the child queries.
+            return queryRoot;
+
+        }
+
+        union.setParallel(true);
+
+        return queryRoot;
+
+    }
+
+    /**
+     * Return the estimated cost of the UNION -or- <code>-1L</code> if the
+     * branches can not be run as child queries or their cost is not known.
+     */
+    private long getCost(final UnionNode union) {
+
+        long cost = 0L;
+
+        for (JoinGroupNode branch : union) {
+
+            if (branch.getContext() != null)
+                return -1L;
+
+            for (IGroupMemberNode child : branch) {
+
+                if (child instanceof FilterNode)
+                    continue;
+
+                if (!(child instanceof StatementPatternNode))
+                    return -1L;
+
+                final StatementPatternNode sp = (StatementPatternNode) child;
+
+                if (sp.isOptional())
+                    return -1L;
+
+                final Long rangeCount = (Long) sp
+                        .getProperty(AST2BOpBase.Annotations.ESTIMATED_CARDINALITY);
+
+                if (rangeCount == null)
+                    return -1L;
+
+                cost += rangeCount;
+
+                if (cost < 0L) {
+
+                    // Overflow.
+                    return Long.MAX_VALUE;
+
+                }
+
+            }
+
+        }
+
+        return cost;
+
+    }
+
+}
@@ -35,6 +35,7 @@ import org.openrdf.query.algebra.StatementPattern.Scope;
 
 import com.bigdata.bop.BOp;
 import com.bigdata.bop.IBindingSet;
+import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.sparql.ast.ArbitraryLengthPathNode;
 import com.bigdata.rdf.sparql.ast.ConstantNode;
 import com.bigdata.rdf.sparql.ast.FilterNode;
@@ -51,6 +52,7 @@ import com.bigdata.rdf.sparql.ast.PathNode.PathOneInPropertySet;
 import com.bigdata.rdf.sparql.ast.PathNode.PathSequence;
 import com.bigdata.rdf.sparql.ast.PropertyPathNode;
 import com.bigdata.rdf.sparql.ast.PropertyPathUnionNode;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
 import com.bigdata.rdf.sparql.ast.StatementPatternNode;
 import com.bigdata.rdf.sparql.ast.StaticAnalysis;
 import com.bigdata.rdf.sparql.ast.TermNode;
@@ -58,6 +60,7 @@ import com.bigdata.rdf.sparql.ast.UnionNode;
 import com.bigdata.rdf.sparql.ast.VarNode;
 import com.bigdata.rdf.sparql.ast.ZeroLengthPathNode;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.rdf.store.AbstractTripleStore;
 
 public class ASTPropertyPathOptimizer extends AbstractJoinGroupOptimizer
 		implements IASTOptimizer {
@@ -360,6 +363,8 @@ public class ASTPropertyPathOptimizer extends AbstractJoinGroupOptimizer
     	
 		final PathMod mod = pathElt.getMod();
 		
+		ArbitraryLengthPathNode alpNode = null;
+		
 		/*
 		 * Push expressions with an path length modifier down into a 
 		 * ArbitraryLengthPathNode group.
@@ -372,7 +377,7 @@ public class ASTPropertyPathOptimizer extends AbstractJoinGroupOptimizer
 //			final VarNode tVarRight = new VarNode(Var.var("tVarRight" + i++));
 			final VarNode tVarRight = new VarNode(anonVar("-tVarRight-"));
 			
-			final ArbitraryLengthPathNode alpNode = 
+			alpNode = 
 					new ArbitraryLengthPathNode(ppInfo.s, ppInfo.o, tVarLeft, tVarRight, mod);
 			
 			group.addArg(alpNode);
@@ -408,9 +413,75 @@ public class ASTPropertyPathOptimizer extends AbstractJoinGroupOptimizer
 			optimize(ctx, sa, group, ppInfo, termNode);
 			
 		}
+		
+		if (alpNode != null && isClosureIndexPath(ctx, alpNode)) {
+			
+			alpNode.setProperty(ArbitraryLengthPathNode.Annotations.CLOSURE_INDEX, true);
+			
+		}
     	
     }
     
+	/**
+	 * Return <code>true</code> iff the arbitrary length path is an unbounded
+	 * closure (<code>:p*</code> or <code>:p+</code>) over a single forward
+	 * statement pattern whose predicate has a materialized transitive closure.
+	 * The closure is computed over all statements, including the inferences
+	 * and axioms, so it is not used when the query excludes inferred
+	 * statements.
+	 * 
+	 * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+	 */
+	private static boolean isClosureIndexPath(final AST2BOpContext ctx,
+			final ArbitraryLengthPathNode alpNode) {
+		
+		if (ctx.isCluster() || ctx.isQuads())
+			return false;
+		
+		final QueryRoot originalQuery = ctx.astContainer.getOriginalAST();
+		
+		if (originalQuery != null && !originalQuery.getIncludeInferred())
+			return false;
+		
+		if (alpNode.upperBound() != Long.MAX_VALUE)
+			return false;
+		
+		final JoinGroupNode subgroup = alpNode.subgroup();
+		
+		if (subgroup.arity() != 1
+				|| !(subgroup.get(0) instanceof StatementPatternNode))
+			return false;
+		
+		final StatementPatternNode sp = (StatementPatternNode) subgroup.get(0);
+		
+		if (sp.c() != null || !(sp.p() instanceof ConstantNode)
+				|| !alpNode.tVarLeft().equals(sp.s())
+				|| !alpNode.tVarRight().equals(sp.o()))
+			return false;
+		
+		if (alpNode.left().isVariable() && alpNode.left().equals(alpNode.right())) {
+			// ?x :p* ?x is left to the ArbitraryLengthPathOp.
+			return false;
+		}
+		
+		final IV<?, ?> p = ((ConstantNode) sp.p()).getValueExpression().get();
+		
+		if (p == null || p.isNullIV())
+			return false;
+		
+		final AbstractTripleStore db = ctx.getAbstractTripleStore();
+		
+		for (IV<?, ?> iv : db.getSPORelation().getClosurePredicateIVs()) {
+			
+			if (p.equals(iv))
+				return true;
+			
+		}
+		
+		return false;
+		
+	}
+    
 	/**
 	 * Optimize a TermNode (add a statement pattern to the group).
 	 */
@@ -619,6 +619,18 @@ public class DefaultOptimizerList extends ASTOptimizerList {
          */
         add(new ASTSubGroupJoinVarOptimizer());
         
+        /**
+         * Push the LIMIT down onto the access path for a query whose WHERE
+         * clause is a single statement pattern.
+         */
+        add(new ASTLimitPushdownOptimizer());
+        
+        /**
+         * Decide whether a UNION will be evaluated as concurrent child queries.
+         * This uses the range counts attached above.
+         */
+        add(new ASTParallelUnionOptimizer());
+        
     }
 
 }
@@ -1,5 +1,6 @@
 package com.bigdata.rdf.sparql.ast.optimizers;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -10,13 +11,19 @@ import java.util.Set;
 import com.bigdata.bop.IVariable;
 import com.bigdata.bop.joinGraph.fast.DefaultEvaluationPlan2;
 import com.bigdata.journal.ITx;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sparql.ast.ConstantNode;
 import com.bigdata.rdf.sparql.ast.IBindingProducerNode;
 import com.bigdata.rdf.sparql.ast.IReorderableNode;
 import com.bigdata.rdf.sparql.ast.QueryHints;
 import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
 import com.bigdata.rdf.sparql.ast.StaticAnalysis;
+import com.bigdata.rdf.sparql.ast.VarNode;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTStaticJoinOptimizer.Annotations;
+import com.bigdata.rdf.spo.CharacteristicSets;
+import com.bigdata.rdf.store.AbstractTripleStore;
 
 /**
  * This is the old static optimizer code, taken directly from
@@ -97,20 +104,30 @@ public final class StaticOptimizer {
 	 */
 	private final double optimistic;
 
+	/**
+	 * The persistent join cardinality statistics for the database -or-
+	 * <code>null</code> if they are not available.
+	 * 
+	 * @see AbstractTripleStore.Options#CHARACTERISTIC_SETS
+	 */
+	private final CharacteristicSets characteristicSets;
+
 	public StaticOptimizer(StaticOptimizer parent, List<IReorderableNode> nodes) {
-		this(parent.sa, parent.ancestry, nodes, parent.optimistic);
+		this(parent.sa, parent.ancestry, nodes, parent.optimistic,
+				parent.characteristicSets);
 	}
 
 	StaticOptimizer(final QueryRoot queryRoot, final AST2BOpContext context,
 			final IBindingProducerNode[] ancestry,
 			final List<IReorderableNode> nodes, final double optimistic) {
 		this(new StaticAnalysis(queryRoot, context), ancestry, nodes,
-				optimistic);
+				optimistic, getCharacteristicSets(context));
 	}
 
 	private StaticOptimizer(final StaticAnalysis sa,
 			final IBindingProducerNode[] ancestry,
-			final List<IReorderableNode> nodes, final double optimistic) {
+			final List<IReorderableNode> nodes, final double optimistic,
+			final CharacteristicSets characteristicSets) {
 
 		if (ancestry == null)
 			throw new IllegalArgumentException();
@@ -134,6 +151,8 @@ public final class StaticOptimizer {
 
 		this.optimistic = optimistic;
 
+		this.characteristicSets = characteristicSets;
+
 		this.cardinality = calc();
 
 		if (ASTStaticJoinOptimizer.log.isDebugEnabled()) {
@@ -564,8 +583,13 @@ public final class StaticOptimizer {
 		// }
 		final boolean sharedVars = hasSharedVars(d1, d2);
 		final boolean unsharedVars = hasUnsharedVars(d1, d2);
+		final long starCardinality = sharedVars ? getStarCardinality(d1, d2)
+				: -1L;
 		final long joinCardinality;
-		if (sharedVars == false) {
+		if (starCardinality != -1L) {
+			// star join on a common subject - use the characteristic sets.
+			joinCardinality = starCardinality;
+		} else if (sharedVars == false) {
 			// no shared vars - take the sum
 			// joinCardinality = d1.getCardinality() + d2.getCardinality();
 			// different approach - give preference to shared variables
@@ -634,6 +658,137 @@ public final class StaticOptimizer {
 		return joinCardinality;
 	}
 
+	/**
+	 * Return the estimated cardinality of the join of two join dimensions
+	 * based on the characteristic sets iff all of their tails form a star join
+	 * on a common subject.
+	 * 
+	 * @return The estimated cardinality -or- <code>-1L</code> if no estimate
+	 *         is available.
+	 */
+	protected long getStarCardinality(final IJoinDimension d1,
+			final IJoinDimension d2) {
+
+		if (characteristicSets == null)
+			return -1L;
+
+		final List<StatementPatternNode> sps = new ArrayList<StatementPatternNode>();
+
+		if (!getStatementPatterns(d1, sps) || !getStatementPatterns(d2, sps))
+			return -1L;
+
+		return estimateStarCardinality(characteristicSets, sps);
+
+	}
+
+	/**
+	 * Collect the statement patterns for the tails of a join dimension.
+	 * 
+	 * @return <code>false</code> if some tail is not a required statement
+	 *         pattern.
+	 */
+	private boolean getStatementPatterns(final IJoinDimension d,
+			final List<StatementPatternNode> sps) {
+
+		if (d instanceof Join) {
+
+			return getStatementPatterns(((Join) d).getD1(), sps)
+					&& getStatementPatterns(((Join) d).getD2(), sps);
+
+		}
+
+		final IReorderableNode node = nodes.get(((Tail) d).getTailIndex());
+
+		if (!(node instanceof StatementPatternNode))
+			return false;
+
+		final StatementPatternNode sp = (StatementPatternNode) node;
+
+		if (sp.isOptional())
+			return false;
+
+		sps.add(sp);
+
+		return true;
+
+	}
+
+	/**
+	 * Estimate the cardinality of a star join using the characteristic sets.
+	 * The statement patterns must share a subject variable and have constant
+	 * predicates.
+	 * 
+	 * @param characteristicSets
+	 *            The join cardinality statistics.
+	 * @param sps
+	 *            The statement patterns.
+	 * 
+	 * @return The estimated cardinality -or- <code>-1L</code> if the
+	 *         statement patterns do not form such a star or no estimate is
+	 *         available.
+	 */
+	@SuppressWarnings("rawtypes")
+	static long estimateStarCardinality(
+			final CharacteristicSets characteristicSets,
+			final List<StatementPatternNode> sps) {
+
+		if (sps.size() < 2)
+			return -1L;
+
+		final IV[] preds = new IV[sps.size()];
+
+		final boolean[] boundObject = new boolean[sps.size()];
+
+		IVariable<?> s = null;
+
+		for (int i = 0; i < preds.length; i++) {
+
+			final StatementPatternNode sp = sps.get(i);
+
+			if (!(sp.s() instanceof VarNode) || !(sp.p() instanceof ConstantNode))
+				return -1L;
+
+			final IVariable<?> v = ((VarNode) sp.s()).getValueExpression();
+
+			if (s == null) {
+				s = v;
+			} else if (!s.equals(v)) {
+				// not a star.
+				return -1L;
+			}
+
+			preds[i] = ((ConstantNode) sp.p()).getValueExpression().get();
+
+			if (preds[i] == null || preds[i].isNullIV())
+				return -1L;
+
+			boundObject[i] = sp.o() instanceof ConstantNode;
+
+		}
+
+		return characteristicSets.estimateStarCardinality(preds, boundObject);
+
+	}
+
+	/**
+	 * Return the join cardinality statistics for the database -or-
+	 * <code>null</code> if they are not maintained.
+	 */
+	static CharacteristicSets getCharacteristicSets(
+			final AST2BOpContext context) {
+
+		if (context == null)
+			return null;
+
+		final AbstractTripleStore db = context.getAbstractTripleStore();
+
+		if (db == null)
+			return null;
+
+		return db.getSPORelation().getCharacteristicSets();
+
+	}
+
 	/**
 	 * Get the named variables for a given tail. Is there a better way to do
 	 * this?
@@ -0,0 +1,810 @@
+/*
+
+Copyright (C) SYSTAP, LLC 2006-2008.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.btree.BytesUtil;
+import com.bigdata.btree.IIndex;
+import com.bigdata.btree.IRangeQuery;
+import com.bigdata.btree.ITuple;
+import com.bigdata.btree.ITupleIterator;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.btree.keys.NoSuccessorException;
+import com.bigdata.btree.keys.SuccessorUtil;
+import com.bigdata.io.DataInputBuffer;
+import com.bigdata.io.DataOutputBuffer;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+/**
+ * Persistent join cardinality statistics based on <em>characteristic
+ * sets</em>. The characteristic set of a subject is the set of distinct
+ * predicates used by that subject. The number of distinct characteristic sets
+ * in real world data is small compared to the number of subjects, so we can
+ * keep an exact count of the subjects in each characteristic set together
+ * with the #of statements for each predicate within that set. This gives
+ * accurate estimates for star-shaped joins on a common subject, which is
+ * exactly where independence assumptions over range counts break down.
+ * <p>
+ * The statistics are stored in a single {@link IIndex} which is maintained
+ * by {@link SPORelation#insert(ISPO[], int, com.bigdata.relation.accesspath.IElementFilter)}
+ * and {@link SPORelation#delete(ISPO[], int)} as part of the same unisolated
+ * write as the statement indices. They are therefore durable and consistent
+ * as of each commit point. The index contains the following records, each of
+ * which is distinguished by a leading byte:
+ * <dl>
+ * <dt>{@link #SUBJECT}[s]</dt>
+ * <dd>The characteristic set of the subject and the #of statements for each
+ * predicate in that set.</dd>
+ * <dt>{@link #CSET}[p1,...,pn]</dt>
+ * <dd>The #of subjects having exactly that characteristic set and, for each
+ * predicate, the total #of statements using that predicate for those
+ * subjects. The predicates are in unsigned byte[] order of their keys.</dd>
+ * <dt>{@link #DISTINCT_SUBJECTS}[p]</dt>
+ * <dd>The #of distinct subjects for the predicate.</dd>
+ * <dt>{@link #DISTINCT_OBJECTS}[p]</dt>
+ * <dd>The #of distinct objects for the predicate.</dd>
+ * </dl>
+ *
+ * @see AbstractTripleStore.Options#CHARACTERISTIC_SETS
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class CharacteristicSets {
+
+    private static final transient Logger log = Logger
+            .getLogger(CharacteristicSets.class);
+
+    /**
+     * The key prefix for the per-subject records.
+     */
+    static final byte SUBJECT = 0x01;
+
+    /**
+     * The key prefix for the characteristic set records.
+     */
+    static final byte CSET = 0x02;
+
+    /**
+     * The key prefix for the per-predicate distinct subject counts.
+     */
+    static final byte DISTINCT_SUBJECTS = 0x03;
+
+    /**
+     * The key prefix for the per-predicate distinct object counts.
+     */
+    static final byte DISTINCT_OBJECTS = 0x04;
+
+    /**
+     * The maximum #of characteristic sets which will be materialized on the
+     * heap. If there are more characteristic sets than this then
+     * {@link #estimateStarCardinality(IV[], boolean[])} will not offer an
+     * estimate and the caller must fall back on range counts.
+     */
+    static final int MAX_CHARACTERISTIC_SETS = 100000;
+
+    /**
+     * The index on which the statistics are stored.
+     */
+    private final IIndex ndx;
+
+    /**
+     * The characteristic sets, which are materialized on demand. This is
+     * <code>null</code> until they have been materialized and also if there
+     * are more than {@link #MAX_CHARACTERISTIC_SETS}.
+     */
+    private volatile List<CSet> csets;
+
+    /**
+     * <code>true</code> once {@link #csets} has been materialized.
+     */
+    private volatile boolean loaded;
+
+    /**
+     * @param ndx
+     *            The index on which the statistics are stored.
+     */
+    public CharacteristicSets(final IIndex ndx) {
+
+        if (ndx == null)
+            throw new IllegalArgumentException();
+
+        this.ndx = ndx;
+
+    }
+
+    /**
+     * Return the #of distinct characteristic sets.
+     */
+    public long getCharacteristicSetCount() {
+
+        return ndx.rangeCount(new byte[] { CSET }, new byte[] { CSET + 1 });
+
+    }
+
+    /**
+     * Return the #of distinct subjects for the predicate.
+     *
+     * @param p
+     *            The predicate.
+     */
+    public long getDistinctSubjectCount(final IV<?, ?> p) {
+
+        return getCounter(DISTINCT_SUBJECTS, p);
+
+    }
+
+    /**
+     * Return the #of distinct objects for the predicate.
+     *
+     * @param p
+     *            The predicate.
+     */
+    public long getDistinctObjectCount(final IV<?, ?> p) {
+
+        return getCounter(DISTINCT_OBJECTS, p);
+
+    }
+
+    private long getCounter(final byte prefix, final IV<?, ?> p) {
+
+        if (p == null)
+            throw new IllegalArgumentException();
+
+        final byte[] val = ndx.lookup(key(prefix, encode(p)));
+
+        return val == null ? 0L : decodeLong(val);
+
+    }
+
+    /**
+     * Estimate the cardinality of a star join on a common subject. The
+     * estimate is the sum over each characteristic set which is a superset of
+     * the given predicates of the #of subjects in that set times the average
+     * multiplicity of each of the given predicates within that set. When the
+     * object position of a statement pattern is bound, the multiplicity of
+     * its predicate is scaled by the #of distinct objects for that predicate.
+     *
+     * @param preds
+     *            The predicates of the statement patterns in the star.
+     * @param boundObject
+     *            For each statement pattern, <code>true</code> iff its object
+     *            position is bound (optional).
+     *
+     * @return The estimated cardinality -or- <code>-1L</code> if no estimate
+     *         is available.
+     */
+    public long estimateStarCardinality(final IV<?, ?>[] preds,
+            final boolean[] boundObject) {
+
+        if (preds == null || preds.length == 0)
+            throw new IllegalArgumentException();
+
+        if (boundObject != null && boundObject.length != preds.length)
+            throw new IllegalArgumentException();
+
+        final List<CSet> csets = getCSets();
+
+        if (csets == null)
+            return -1L;
+
+        // the selectivity of a bound object for each statement pattern.
+        final double[] selectivity = new double[preds.length];
+
+        for (int i = 0; i < preds.length; i++) {
+
+            if (preds[i] == null)
+                throw new IllegalArgumentException();
+
+            if (boundObject != null && boundObject[i]) {
+
+                final long n = getDistinctObjectCount(preds[i]);
+
+                selectivity[i] = n == 0L ? 0d : 1d / n;
+
+            } else {
+
+                selectivity[i] = 1d;
+
+            }
+
+        }
+
+        double sum = 0d;
+
+        for (CSet cset : csets) {
+
+            double card = cset.count;
+
+            for (int i = 0; i < preds.length && card > 0d; i++) {
+
+                final int j = cset.indexOf(preds[i]);
+
+                if (j == -1) {
+
+                    // not a superset of the star.
+                    card = 0d;
+
+                } else {
+
+                    card *= selectivity[i] * cset.occurrences[j]
+                            / (double) cset.count;
+
+                }
+
+            }
+
+            sum += card;
+
+        }
+
+        if (log.isDebugEnabled())
+            log.debug("preds=" + Arrays.toString(preds) + ", estimate=" + sum);
+
+        return (long) Math.ceil(sum);
+
+    }
+
+    /**
+     * Materialize the characteristic sets on demand.
+     *
+     * @return The characteristic sets -or- <code>null</code> if there are more
+     *         than {@link #MAX_CHARACTERISTIC_SETS}.
+     */
+    private List<CSet> getCSets() {
+
+        if (!loaded) {
+
+            synchronized (this) {
+
+                if (!loaded) {
+
+                    csets = loadCSets();
+
+                    loaded = true;
+
+                }
+
+            }
+
+        }
+
+        return csets;
+
+    }
+
+    private List<CSet> loadCSets() {
+
+        if (getCharacteristicSetCount() > MAX_CHARACTERISTIC_SETS) {
+
+            log.warn("Too many characteristic sets: " + ndx);
+
+            return null;
+
+        }
+
+        final List<CSet> list = new ArrayList<CSet>();
+
+        final ITupleIterator<?> itr = ndx.rangeIterator(new byte[] { CSET },
+                new byte[] { CSET + 1 }, 0/* capacity */, IRangeQuery.KEYS
+                        | IRangeQuery.VALS, null/* filter */);
+
+        while (itr.hasNext()) {
+
+            final ITuple<?> tuple = itr.next();
+
+            final byte[] key = tuple.getKey();
+
+            final IV<?, ?>[] preds = IVUtility.decodeAll(key, 1/* off */,
+                    key.length - 1/* len */);
+
+            final long[] a = decodeLongs(tuple.getValue(), 1 + preds.length);
+
+            list.add(new CSet(preds, a[0], Arrays.copyOfRange(a, 1, a.length)));
+
+        }
+
+        return list;
+
+    }
+
+    /**
+     * A characteristic set together with its subject count and the #of
+     * statements for each predicate in the set.
+     */
+    private static class CSet {
+
+        final IV<?, ?>[] preds;
+
+        final long count;
+
+        final long[] occurrences;
+
+        CSet(final IV<?, ?>[] preds, final long count, final long[] occurrences) {
+
+            this.preds = preds;
+
+            this.count = count;
+
+            this.occurrences = occurrences;
+
+        }
+
+        int indexOf(final IV<?, ?> p) {
+
+            for (int i = 0; i < preds.length; i++) {
+
+                if (preds[i].equals(p))
+                    return i;
+
+            }
+
+            return -1;
+
+        }
+
+    }
+
+    /**
+     * Maintains the statistics for a batch of statements which are being
+     * written onto or removed from the statement indices. The object is
+     * created before the statement indices are modified so it can capture the
+     * prior state of the (p,o) pairs in the batch. {@link #apply()} is then
+     * invoked once the statement indices have been modified. The subjects in
+     * the batch are rescanned on the SPO index, so the maintenance is
+     * idempotent and does not depend on which statements were actually
+     * modified.
+     */
+    static class Update {
+
+        private final IIndex ndx;
+
+        private final IIndex spo;
+
+        private final IIndex pos;
+
+        private final IKeyBuilder keyBuilder = KeyBuilder.newInstance();
+
+        /**
+         * The distinct subjects in the batch.
+         */
+        private final Set<byte[]> subjects = new TreeSet<byte[]>(
+                BytesUtil.UnsignedByteArrayComparator.INSTANCE);
+
+        /**
+         * The distinct (p,o) pairs in the batch and whether or not that pair
+         * existed before the batch was written.
+         */
+        private final Map<byte[], Boolean> pairs = new TreeMap<byte[], Boolean>(
+                BytesUtil.UnsignedByteArrayComparator.INSTANCE);
+
+        /**
+         * @param ndx
+         *            The index on which the statistics are stored.
+         * @param spo
+         *            The SPO index.
+         * @param pos
+         *            The POS index.
+         * @param a
+         *            The statements.
+         * @param numStmts
+         *            The #of statements in that array.
+         */
+        Update(final IIndex ndx, final IIndex spo, final IIndex pos,
+                final ISPO[] a, final int numStmts) {
+
+            this.ndx = ndx;
+
+            this.spo = spo;
+
+            this.pos = pos;
+
+            for (int i = 0; i < numStmts; i++) {
+
+                final ISPO stmt = a[i];
+
+                subjects.add(IVUtility.encode(keyBuilder.reset(), stmt.s())
+                        .getKey());
+
+                final byte[] pair = IVUtility.encode(
+                        IVUtility.encode(keyBuilder.reset(), stmt.p()),
+                        stmt.o()).getKey();
+
+                if (!pairs.containsKey(pair)) {
+
+                    pairs.put(pair, exists(pos, pair));
+
+                }
+
+            }
+
+        }
+
+        /**
+         * Bring the statistics up to date with the statement indices.
+         */
+        void apply() {
+
+            for (byte[] s : subjects) {
+
+                final byte[] recKey = key(SUBJECT, s);
+
+                final byte[] oldVal = ndx.lookup(recKey);
+
+                final SubjectRecord oldRec = oldVal == null ? null
+                        : SubjectRecord.decode(oldVal);
+
+                final SubjectRecord newRec = scan(s);
+
+                if (oldRec == null ? newRec == null : oldRec.equals(newRec))
+                    continue;
+
+                if (oldRec != null) {
+
+                    adjust(oldRec, -1L);
+
+                }
+
+                if (newRec != null) {
+
+                    adjust(newRec, 1L);
+
+                    ndx.insert(recKey, newRec.encode());
+
+                } else {
+
+                    ndx.remove(recKey);
+
+                }
+
+            }
+
+            for (Map.Entry<byte[], Boolean> e : pairs.entrySet()) {
+
+                final byte[] pair = e.getKey();
+
+                final boolean existed = e.getValue();
+
+                if (existed == exists(pos, pair))
+                    continue;
+
+                final int len = IVUtility.decodeFromOffset(pair, 0)
+                        .byteLength();
+
+                addCounter(key(DISTINCT_OBJECTS, Arrays.copyOf(pair, len)),
+                        existed ? -1L : 1L);
+
+            }
+
+        }
+
+        /**
+         * Scan the SPO index for the subject, returning its characteristic
+         * set and the #of statements for each predicate in that set.
+         *
+         * @return The record -or- <code>null</code> if there are no statements
+         *         for that subject.
+         */
+        private SubjectRecord scan(final byte[] s) {
+
+            final DataOutputBuffer preds = new DataOutputBuffer();
+
+            final List<Long> counts = new ArrayList<Long>();
+
+            final ITupleIterator<?> itr = spo.rangeIterator(s, toKey(s),
+                    0/* capacity */, IRangeQuery.KEYS, null/* filter */);
+
+            byte[] lastPred = null;
+
+            while (itr.hasNext()) {
+
+                final byte[] key = itr.next().getKey();
+
+                final int len = IVUtility.decodeFromOffset(key, s.length)
+                        .byteLength();
+
+                final byte[] p = Arrays.copyOfRange(key, s.length, s.length
+                        + len);
+
+                if (lastPred != null && BytesUtil.bytesEqual(lastPred, p)) {
+
+                    // same predicate.
+                    counts.set(counts.size() - 1,
+                            counts.get(counts.size() - 1) + 1);
+
+                    continue;
+
+                }
+
+                preds.write(p);
+
+                counts.add(1L);
+
+                lastPred = p;
+
+            }
+
+            if (counts.isEmpty())
+                return null;
+
+            final long[] a = new long[counts.size()];
+
+            for (int i = 0; i < a.length; i++)
+                a[i] = counts.get(i);
+
+            return new SubjectRecord(preds.toByteArray(), a);
+
+        }
+
+        /**
+         * Add (or remove) a subject having the given record to the
+         * characteristic set and per-predicate counters.
+         */
+        private void adjust(final SubjectRecord rec, final long delta) {
+
+            final byte[] csetKey = key(CSET, rec.preds);
+
+            final byte[] val = ndx.lookup(csetKey);
+
+            final long[] a = val == null ? new long[1 + rec.counts.length]
+                    : decodeLongs(val, 1 + rec.counts.length);
+
+            a[0] += delta;
+
+            for (int i = 0; i < rec.counts.length; i++) {
+
+                a[i + 1] += delta * rec.counts[i];
+
+            }
+
+            if (a[0] == 0L) {
+
+                ndx.remove(csetKey);
+
+            } else {
+
+                ndx.insert(csetKey, encodeLongs(a));
+
+            }
+
+            int off = 0;
+
+            while (off < rec.preds.length) {
+
+                final int len = IVUtility.decodeFromOffset(rec.preds, off)
+                        .byteLength();
+
+                addCounter(key(DISTINCT_SUBJECTS,
+                        Arrays.copyOfRange(rec.preds, off, off + len)), delta);
+
+                off += len;
+
+            }
+
+        }
+
+        private void addCounter(final byte[] key, final long delta) {
+
+            final byte[] val = ndx.lookup(key);
+
+            final long n = (val == null ? 0L : decodeLong(val)) + delta;
+
+            if (n <= 0L) {
+
+                ndx.remove(key);
+
+            } else {
+
+                ndx.insert(key, encodeLongs(new long[] { n }));
+
+            }
+
+        }
+
+    }
+
+    /**
+     * The characteristic set of a subject (the concatenated keys of its
+     * distinct predicates) and the #of statements for each of those
+     * predicates.
+     */
+    private static class SubjectRecord {
+
+        final byte[] preds;
+
+        final long[] counts;
+
+        SubjectRecord(final byte[] preds, final long[] counts) {
+
+            this.preds = preds;
+
+            this.counts = counts;
+
+        }
+
+        public boolean equals(final Object o) {
+
+            if (!(o instanceof SubjectRecord))
+                return false;
+
+            final SubjectRecord t = (SubjectRecord) o;
+
+            return BytesUtil.bytesEqual(preds, t.preds)
+                    && Arrays.equals(counts, t.counts);
+
+        }
+
+        public int hashCode() {
+
+            return Arrays.hashCode(counts);
+
+        }
+
+        byte[] encode() {
+
+            final DataOutputBuffer out = new DataOutputBuffer();
+
+            out.packLong(preds.length);
+
+            out.write(preds);
+
+            out.packLong(counts.length);
+
+            for (long n : counts)
+                out.packLong(n);
+
+            return out.toByteArray();
+
+        }
+
+        static SubjectRecord decode(final byte[] val) {
+
+            final DataInputBuffer in = new DataInputBuffer(val);
+
+            try {
+
+                final byte[] preds = new byte[(int) in.unpackLong()];
+
+                in.readFully(preds);
+
+                final long[] counts = new long[(int) in.unpackLong()];
+
+                for (int i = 0; i < counts.length; i++)
+                    counts[i] = in.unpackLong();
+
+                return new SubjectRecord(preds, counts);
+
+            } catch (IOException ex) {
+
+                throw new RuntimeException(ex);
+
+            }
+
+        }
+
+    }
+
+    /*
+     * Key and value coding.
+     */
+
+    private static byte[] encode(final IV<?, ?> iv) {
+
+        return IVUtility.encode(KeyBuilder.newInstance(), iv).getKey();
+
+    }
+
+    private static byte[] key(final byte prefix, final byte[] suffix) {
+
+        final byte[] key = new byte[suffix.length + 1];
+
+        key[0] = prefix;
+
+        System.arraycopy(suffix, 0, key, 1, suffix.length);
+
+        return key;
+
+    }
+
+    /**
+     * Return the exclusive upper bound for the keys having the given prefix.
+     */
+    private static byte[] toKey(final byte[] prefix) {
+
+        try {
+
+            return SuccessorUtil.successor(prefix.clone());
+
+        } catch (NoSuccessorException ex) {
+
+            return null;
+
+        }
+
+    }
+
+    private static boolean exists(final IIndex ndx, final byte[] prefix) {
+
+        return ndx.rangeIterator(prefix, toKey(prefix), 1/* capacity */,
+                IRangeQuery.KEYS, null/* filter */).hasNext();
+
+    }
+
+    private static byte[] encodeLongs(final long[] a) {
+
+        final DataOutputBuffer out = new DataOutputBuffer();
+
+        for (long n : a)
+            out.packLong(n);
+
+        return out.toByteArray();
+
+    }
+
+    private static long[] decodeLongs(final byte[] val, final int n) {
+
+        final DataInputBuffer in = new DataInputBuffer(val);
+
+        final long[] a = new long[n];
+
+        try {
+
+            for (int i = 0; i < n; i++)
+                a[i] = in.unpackLong();
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+        return a;
+
+    }
+
+    private static long decodeLong(final byte[] val) {
+
+        return decodeLongs(val, 1)[0];
+
+    }
+
+}
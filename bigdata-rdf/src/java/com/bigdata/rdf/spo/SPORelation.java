@@ -85,6 +85,7 @@ import com.bigdata.rdf.internal.constraints.RangeBOp;
 import com.bigdata.rdf.internal.impl.bnode.SidIV;
 import com.bigdata.rdf.lexicon.ITermIVFilter;
 import com.bigdata.rdf.lexicon.LexiconRelation;
+import com.bigdata.rdf.model.BigdataValue;
 import com.bigdata.rdf.model.StatementEnum;
 import com.bigdata.rdf.sparql.ast.service.history.HistoryIndexTupleSerializer;
 import com.bigdata.rdf.spo.JustIndexWriteProc.WriteJustificationsProcConstructor;
@@ -157,6 +158,24 @@ public class SPORelation extends AbstractRelation<ISPO> {
     /** Hard reference to the justifications index iff used. */
     private volatile IIndex just;
 
+    /** Hard reference to the characteristic sets index iff used. */
+    private volatile IIndex cset;
+
+    /**
+     * The characteristic sets statistics, which are cached for read-only
+     * views.
+     */
+    private volatile CharacteristicSets characteristicSets;
+
+    /** Hard reference to the transitive closure index iff used. */
+    private volatile IIndex closure;
+
+    /**
+     * The {@link IV}s of the closure predicates once they are all known to the
+     * lexicon.
+     */
+    private volatile IV<?, ?>[] closurePredicateIVs;
+
     /**
      * Constant for the {@link SPORelation} namespace component.
      * <p>
@@ -194,6 +213,21 @@ public class SPORelation extends AbstractRelation<ISPO> {
      */
     final private boolean historyService;
 
+    /**
+     * <code>true</code> iff the characteristic sets index is maintained.
+     * 
+     * @see AbstractTripleStore.Options#CHARACTERISTIC_SETS
+     */
+    final private boolean characteristicSetsEnabled;
+
+    /**
+     * The URIs of the predicates whose transitive closure is maintained (empty
+     * if the transitive closure index is not maintained).
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    final private String[] closurePredicates;
+
     /**
      * When <code>true</code> the database will support statement identifiers.
      * A statement identifier is a unique 64-bit integer taken from the same
@@ -281,6 +315,24 @@ public class SPORelation extends AbstractRelation<ISPO> {
                 AbstractTripleStore.Options.BLOOM_FILTER,
                 AbstractTripleStore.Options.DEFAULT_BLOOM_FILTER));
 
+        this.characteristicSetsEnabled = keyArity == 3
+                && !oneAccessPath
+                && Boolean.parseBoolean(getProperty(
+                        AbstractTripleStore.Options.CHARACTERISTIC_SETS,
+                        AbstractTripleStore.Options.DEFAULT_CHARACTERISTIC_SETS));
+
+        {
+
+            final String s = getProperty(
+                    AbstractTripleStore.Options.CLOSURE_PREDICATES,
+                    AbstractTripleStore.Options.DEFAULT_CLOSURE_PREDICATES)
+                    .trim();
+
+            this.closurePredicates = keyArity == 3 && s.length() > 0 ? s
+                    .split("[,\\s]+") : new String[0];
+
+        }
+
         // declare the various indices.
         {
          
@@ -353,6 +405,18 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
             }
 
+            if (characteristicSetsEnabled) {
+
+                set.add(getFQN(this, NAME_CSET));
+
+            }
+
+            if (closurePredicates.length > 0) {
+
+                set.add(getFQN(this, NAME_CLOSURE));
+
+            }
+
             this.indexNames = Collections.unmodifiableSet(set);
 
         }
@@ -465,6 +529,18 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
             }
 
+            if (characteristicSetsEnabled) {
+
+                indexManager.registerIndex(getCSetIndexMetadata());
+
+            }
+
+            if (closurePredicates.length > 0) {
+
+                indexManager.registerIndex(getClosureIndexMetadata());
+
+            }
+
             if (historyService) {
 
                 final SPOKeyOrder keyOrder = triples //
@@ -519,6 +595,12 @@ public class SPORelation extends AbstractRelation<ISPO> {
 //
 //            }
 
+            cset = null;
+            
+            characteristicSets = null;
+
+            closure = null;
+
             // destroy the relation declaration metadata.
             super.destroy();
 
@@ -613,6 +695,174 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
     }
 
+    /**
+     * Return the characteristic sets index -or- <code>null</code> if that
+     * index is not maintained.
+     * 
+     * @see AbstractTripleStore.Options#CHARACTERISTIC_SETS
+     */
+    final public IIndex getCharacteristicSetsIndex() {
+
+        if (!characteristicSetsEnabled)
+            return null;
+
+        if (cset == null) {
+
+            synchronized (this) {
+
+                // attempt to resolve the index and set the index reference.
+                if ((cset = super.getIndex(getFQN(this, NAME_CSET))) == null) {
+
+                    throw new IllegalStateException();
+
+                }
+
+            }
+
+        }
+
+        return cset;
+
+    }
+
+    /**
+     * Return the join cardinality statistics for this view of the relation
+     * -or- <code>null</code> if they are not maintained. The returned object
+     * is cached for read-only views. For mutable views, a new object is
+     * returned each time so that the statistics reflect the current state of
+     * the index.
+     * 
+     * @see AbstractTripleStore.Options#CHARACTERISTIC_SETS
+     */
+    public CharacteristicSets getCharacteristicSets() {
+
+        if (!characteristicSetsEnabled)
+            return null;
+
+        if (!TimestampUtility.isReadOnly(getTimestamp())) {
+
+            return new CharacteristicSets(getCharacteristicSetsIndex());
+
+        }
+
+        if (characteristicSets == null) {
+
+            synchronized (this) {
+
+                if (characteristicSets == null) {
+
+                    characteristicSets = new CharacteristicSets(
+                            getCharacteristicSetsIndex());
+
+                }
+
+            }
+
+        }
+
+        return characteristicSets;
+
+    }
+
+    /**
+     * Return the transitive closure index -or- <code>null</code> if that index
+     * is not maintained.
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    final public IIndex getClosureIndex() {
+
+        if (closurePredicates.length == 0)
+            return null;
+
+        if (closure == null) {
+
+            synchronized (this) {
+
+                // attempt to resolve the index and set the index reference.
+                if ((closure = super.getIndex(getFQN(this, NAME_CLOSURE))) == null) {
+
+                    throw new IllegalStateException();
+
+                }
+
+            }
+
+        }
+
+        return closure;
+
+    }
+
+    /**
+     * Return the materialized transitive closure for this view of the relation
+     * -or- <code>null</code> if it is not maintained.
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    public TransitiveClosureIndex getTransitiveClosureIndex() {
+
+        if (closurePredicates.length == 0)
+            return null;
+
+        return new TransitiveClosureIndex(getClosureIndex());
+
+    }
+
+    /**
+     * Return the {@link IV}s of the predicates whose transitive closure is
+     * maintained. Predicates which are not yet known to the lexicon are not
+     * reported (no statements can use them).
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    @SuppressWarnings("rawtypes")
+    public IV<?, ?>[] getClosurePredicateIVs() {
+
+        if (closurePredicates.length == 0)
+            return new IV[0];
+
+        IV<?, ?>[] a = closurePredicateIVs;
+
+        if (a != null)
+            return a;
+
+        final AbstractTripleStore container = getContainer();
+
+        final BigdataValue[] terms = new BigdataValue[closurePredicates.length];
+
+        for (int i = 0; i < terms.length; i++) {
+
+            terms[i] = container.getValueFactory().createURI(
+                    closurePredicates[i]);
+
+        }
+
+        container.getLexiconRelation().addTerms(terms, terms.length,
+                true/* readOnly */);
+
+        final List<IV<?, ?>> ivs = new ArrayList<IV<?, ?>>(terms.length);
+
+        for (BigdataValue v : terms) {
+
+            if (v.getIV() != null)
+                ivs.add(v.getIV());
+
+        }
+
+        a = ivs.toArray(new IV[ivs.size()]);
+
+        if (a.length == terms.length) {
+
+            // IVs are stable once assigned.
+            closurePredicateIVs = a;
+
+        }
+
+        return a;
+
+    }
+
     /**
      * Return an iterator that will visit the distinct (s,p,o) tuples in the
      * source iterator. The context and statement type information will be
@@ -904,6 +1154,67 @@ public class SPORelation extends AbstractRelation<ISPO> {
     }
     public static transient final String NAME_HISTORY = "HIST";
 
+    /**
+     * The name of the index for the characteristic sets.
+     * 
+     * @see CharacteristicSets
+     */
+    public static transient final String NAME_CSET = "CSET";
+
+    /**
+     * The name of the index for the materialized transitive closure.
+     * 
+     * @see TransitiveClosureIndex
+     */
+    public static transient final String NAME_CLOSURE = "CLOSURE";
+
+    /**
+     * Return the {@link IndexMetadata} for the transitive closure index.
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    protected IndexMetadata getClosureIndexMetadata() {
+
+        final IndexMetadata metadata = newIndexMetadata(getFQN(this,
+                NAME_CLOSURE));
+
+        if (TimestampUtility.isReadWriteTx(getTimestamp())) {
+
+            // Enable isolatable indices (see the statement indices).
+            metadata.setIsolatable(true);
+
+        }
+
+        return metadata;
+
+    }
+
+    /**
+     * Return the {@link IndexMetadata} for the characteristic sets index.
+     * 
+     * @see AbstractTripleStore.Options#CHARACTERISTIC_SETS
+     */
+    protected IndexMetadata getCSetIndexMetadata() {
+
+        final IndexMetadata metadata = newIndexMetadata(getFQN(this, NAME_CSET));
+
+        if (TimestampUtility.isReadWriteTx(getTimestamp())) {
+
+            /*
+             * Enable isolatable indices.
+             * 
+             * Note: The statistics are updated by the same writer as the
+             * statement indices and must be isolated in the same manner.
+             */
+
+            metadata.setIsolatable(true);
+
+        }
+
+        return metadata;
+
+    }
+
     /**
      * Conflict resolver for add/add conflicts and retract/retract conflicts for
      * any of (triple store, triple store with SIDs or quad store) but without
@@ -2199,6 +2510,22 @@ public class SPORelation extends AbstractRelation<ISPO> {
         //                    
         // }
 
+        /*
+         * Capture the state required to maintain the characteristic sets
+         * before the statement indices are modified.
+         */
+        final CharacteristicSets.Update csetUpdate = characteristicSetsEnabled //
+                ? new CharacteristicSets.Update(getCharacteristicSetsIndex(),
+                        getIndex(SPOKeyOrder.SPO), getIndex(SPOKeyOrder.POS),
+                        a, numStmts)//
+                : null;
+
+        final TransitiveClosureIndex.Update closureUpdate = closurePredicates.length > 0 //
+                ? new TransitiveClosureIndex.Update(getClosureIndex(),
+                        getIndex(SPOKeyOrder.SPO), getClosurePredicateIVs(),
+                        a, numStmts, true/* insert */)//
+                : null;
+
         final List<Future<Long>> futures;
 /*
         final long elapsed_SPO;
@@ -2235,6 +2562,20 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
         }
 
+        if (csetUpdate != null) {
+
+            // bring the characteristic sets up to date.
+            csetUpdate.apply();
+
+        }
+
+        if (closureUpdate != null) {
+
+            // bring the transitive closure up to date.
+            closureUpdate.apply();
+
+        }
+
         final long elapsed = System.currentTimeMillis() - begin;
 
         if (log.isInfoEnabled() && numStmts > 1000) {
@@ -2383,6 +2724,22 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
         }
 
+        /*
+         * Capture the state required to maintain the characteristic sets
+         * before the statement indices are modified.
+         */
+        final CharacteristicSets.Update csetUpdate = characteristicSetsEnabled //
+                ? new CharacteristicSets.Update(getCharacteristicSetsIndex(),
+                        getIndex(SPOKeyOrder.SPO), getIndex(SPOKeyOrder.POS),
+                        stmts, numStmts)//
+                : null;
+
+        final TransitiveClosureIndex.Update closureUpdate = closurePredicates.length > 0 //
+                ? new TransitiveClosureIndex.Update(getClosureIndex(),
+                        getIndex(SPOKeyOrder.SPO), getClosurePredicateIVs(),
+                        stmts, numStmts, false/* insert */)//
+                : null;
+
         final List<Future<Long>> futures;
         /*
         final long elapsed_SPO;
@@ -2437,6 +2794,20 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
         }
 
+        if (csetUpdate != null) {
+
+            // bring the characteristic sets up to date.
+            csetUpdate.apply();
+
+        }
+
+        if (closureUpdate != null) {
+
+            // bring the transitive closure up to date.
+            closureUpdate.apply();
+
+        }
+
         final long elapsed = System.currentTimeMillis() - begin;
 
         if (log.isInfoEnabled() && numStmts > 1000) {
@@ -0,0 +1,686 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2007.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.btree.BytesUtil;
+import com.bigdata.btree.IIndex;
+import com.bigdata.btree.IRangeQuery;
+import com.bigdata.btree.ITuple;
+import com.bigdata.btree.ITupleIterator;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.btree.keys.NoSuccessorException;
+import com.bigdata.btree.keys.SuccessorUtil;
+import com.bigdata.io.DataInputBuffer;
+import com.bigdata.io.DataOutputBuffer;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+/**
+ * A materialized transitive closure for a configured set of predicates. For
+ * each such predicate <code>p</code>, the index contains an entry for each
+ * pair of vertices <code>(from,to)</code> such that <code>to</code> is
+ * reachable from <code>from</code> in one or more steps along <code>p</code>
+ * together with the length of the shortest such path (the depth). This allows
+ * <code>:p+</code> and <code>:p*</code> to be answered by a single key range
+ * scan rather than by computing the closure for each query.
+ * <p>
+ * The closure is stored in a single {@link IIndex} which is maintained by
+ * {@link SPORelation#insert(ISPO[], int, com.bigdata.relation.accesspath.IElementFilter)}
+ * and {@link SPORelation#delete(ISPO[], int)} as part of the same unisolated
+ * write as the statement indices. The index contains the following records,
+ * each of which is distinguished by a leading byte:
+ * <dl>
+ * <dt>{@link #FORWARD}[p,from,to]</dt>
+ * <dd>The depth of the path.</dd>
+ * <dt>{@link #REVERSE}[p,to,from]</dt>
+ * <dd>The depth of the path (the same path, keyed on its target).</dd>
+ * </dl>
+ * When a statement is added, each vertex which reaches its subject is joined
+ * with each vertex reachable from its object. When a statement is removed,
+ * the closure is recomputed from the statement indices for its subject and
+ * for each vertex which reached its subject.
+ *
+ * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TransitiveClosureIndex {
+
+    private static final transient Logger log = Logger
+            .getLogger(TransitiveClosureIndex.class);
+
+    /**
+     * The key prefix for the paths keyed on their source.
+     */
+    static final byte FORWARD = 0x01;
+
+    /**
+     * The key prefix for the paths keyed on their target.
+     */
+    static final byte REVERSE = 0x02;
+
+    /**
+     * The index on which the closure is stored.
+     */
+    private final IIndex ndx;
+
+    /**
+     * @param ndx
+     *            The index on which the closure is stored.
+     */
+    public TransitiveClosureIndex(final IIndex ndx) {
+
+        if (ndx == null)
+            throw new IllegalArgumentException();
+
+        this.ndx = ndx;
+
+    }
+
+    /**
+     * A path in the closure.
+     */
+    public static class Path {
+
+        /** The source of the path. */
+        public final IV<?, ?> from;
+
+        /** The target of the path. */
+        public final IV<?, ?> to;
+
+        /** The length of the shortest path (at least one). */
+        public final long depth;
+
+        Path(final IV<?, ?> from, final IV<?, ?> to, final long depth) {
+
+            this.from = from;
+
+            this.to = to;
+
+            this.depth = depth;
+
+        }
+
+        public String toString() {
+
+            return "Path{from=" + from + ",to=" + to + ",depth=" + depth + "}";
+
+        }
+
+    }
+
+    /**
+     * Return the length of the shortest path from one vertex to another.
+     *
+     * @param p
+     *            The predicate.
+     * @param from
+     *            The source.
+     * @param to
+     *            The target.
+     *
+     * @return The length of the shortest path -or- ZERO (0L) if the target is
+     *         not reachable from the source.
+     */
+    public long getDepth(final IV<?, ?> p, final IV<?, ?> from,
+            final IV<?, ?> to) {
+
+        final byte[] val = ndx.lookup(key(FORWARD, encode(p), encode(from),
+                encode(to)));
+
+        return val == null ? 0L : decodeLong(val);
+
+    }
+
+    /**
+     * Visit the paths from the given source.
+     *
+     * @param p
+     *            The predicate.
+     * @param from
+     *            The source -or- <code>null</code> to visit all paths for
+     *            that predicate.
+     */
+    public Iterator<Path> getPathsFrom(final IV<?, ?> p, final IV<?, ?> from) {
+
+        final byte[] prefix = from == null ? key(FORWARD, encode(p)) : key(
+                FORWARD, encode(p), encode(from));
+
+        return new PathIterator(prefix, false/* reverse */);
+
+    }
+
+    /**
+     * Visit the paths to the given target.
+     *
+     * @param p
+     *            The predicate.
+     * @param to
+     *            The target.
+     */
+    public Iterator<Path> getPathsTo(final IV<?, ?> p, final IV<?, ?> to) {
+
+        return new PathIterator(key(REVERSE, encode(p), encode(to)), true/* reverse */);
+
+    }
+
+    /**
+     * Return the #of paths for the predicate.
+     */
+    public long getPathCount(final IV<?, ?> p) {
+
+        final byte[] prefix = key(FORWARD, encode(p));
+
+        return ndx.rangeCount(prefix, toKey(prefix));
+
+    }
+
+    /**
+     * Visits and decodes the paths having some key prefix.
+     */
+    private class PathIterator implements Iterator<Path> {
+
+        private final ITupleIterator<?> itr;
+
+        private final boolean reverse;
+
+        PathIterator(final byte[] prefix, final boolean reverse) {
+
+            this.itr = ndx.rangeIterator(prefix, toKey(prefix),
+                    0/* capacity */, IRangeQuery.KEYS | IRangeQuery.VALS,
+                    null/* filter */);
+
+            this.reverse = reverse;
+
+        }
+
+        public boolean hasNext() {
+
+            return itr.hasNext();
+
+        }
+
+        public Path next() {
+
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            final ITuple<?> t = itr.next();
+
+            final byte[] key = t.getKey();
+
+            int off = 1;
+
+            off += IVUtility.decodeFromOffset(key, off).byteLength();
+
+            final IV<?, ?> a = IVUtility.decodeFromOffset(key, off);
+
+            off += a.byteLength();
+
+            final IV<?, ?> b = IVUtility.decodeFromOffset(key, off);
+
+            final long depth = decodeLong(t.getValue());
+
+            return reverse ? new Path(b, a, depth) : new Path(a, b, depth);
+
+        }
+
+        public void remove() {
+
+            throw new UnsupportedOperationException();
+
+        }
+
+    }
+
+    /**
+     * Maintains the closure for a batch of statements. The instance must be
+     * created before the statement indices are modified and applied once they
+     * have been modified.
+     */
+    static class Update {
+
+        private final IIndex ndx;
+
+        private final IIndex spo;
+
+        private final boolean insert;
+
+        /**
+         * The distinct (p,s,o) edges in the batch for the closure predicates.
+         */
+        private final Set<byte[]> edges = new TreeSet<byte[]>(
+                BytesUtil.UnsignedByteArrayComparator.INSTANCE);
+
+        /**
+         * For removal, the (p,from) sources whose paths must be recomputed.
+         */
+        private final Set<byte[]> sources = new TreeSet<byte[]>(
+                BytesUtil.UnsignedByteArrayComparator.INSTANCE);
+
+        /**
+         * @param ndx
+         *            The index on which the closure is stored.
+         * @param spo
+         *            The SPO index.
+         * @param preds
+         *            The closure predicates which are known to the lexicon.
+         * @param a
+         *            The statements.
+         * @param numStmts
+         *            The #of statements in that array.
+         * @param insert
+         *            <code>true</code> if the statements are being added and
+         *            <code>false</code> if they are being removed.
+         */
+        Update(final IIndex ndx, final IIndex spo, final IV<?, ?>[] preds,
+                final ISPO[] a, final int numStmts, final boolean insert) {
+
+            this.ndx = ndx;
+
+            this.spo = spo;
+
+            this.insert = insert;
+
+            if (preds.length == 0)
+                return;
+
+            final Set<IV<?, ?>> tmp = new HashSet<IV<?, ?>>(
+                    Arrays.asList(preds));
+
+            for (int i = 0; i < numStmts; i++) {
+
+                final ISPO stmt = a[i];
+
+                if (!tmp.contains(stmt.p()))
+                    continue;
+
+                final byte[] p = encode(stmt.p());
+
+                final byte[] s = encode(stmt.s());
+
+                edges.add(concat(p, s, encode(stmt.o())));
+
+                if (!insert) {
+
+                    /*
+                     * Only paths from the subject and from the vertices which
+                     * reach the subject can pass through this edge.
+                     */
+
+                    sources.add(concat(p, s));
+
+                    final Iterator<byte[]> itr = scan(key(REVERSE, p, s));
+
+                    while (itr.hasNext()) {
+
+                        sources.add(concat(p, itr.next()));
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        /**
+         * Bring the closure up to date with the statement indices.
+         */
+        void apply() {
+
+            if (insert) {
+
+                for (byte[] edge : edges) {
+
+                    addEdge(edge);
+
+                }
+
+            } else {
+
+                for (byte[] source : sources) {
+
+                    recompute(source);
+
+                }
+
+            }
+
+            if (log.isInfoEnabled() && !edges.isEmpty())
+                log.info("edges=" + edges.size() + ", sources="
+                        + sources.size() + ", insert=" + insert);
+
+        }
+
+        /**
+         * Add the paths which pass through a new (p,s,o) edge: each vertex
+         * which reaches the subject (and the subject itself) is connected to
+         * each vertex which is reachable from the object (and the object
+         * itself).
+         */
+        private void addEdge(final byte[] edge) {
+
+            final int plen = IVUtility.decodeFromOffset(edge, 0).byteLength();
+
+            final int slen = IVUtility.decodeFromOffset(edge, plen)
+                    .byteLength();
+
+            final byte[] p = Arrays.copyOfRange(edge, 0, plen);
+
+            final byte[] s = Arrays.copyOfRange(edge, plen, plen + slen);
+
+            final byte[] o = Arrays.copyOfRange(edge, plen + slen, edge.length);
+
+            // The vertices reaching the subject and their depth.
+            final Map<byte[], Long> anc = new TreeMap<byte[], Long>(
+                    BytesUtil.UnsignedByteArrayComparator.INSTANCE);
+
+            anc.put(s, 0L);
+
+            scan(key(REVERSE, p, s), anc);
+
+            // The vertices reachable from the object and their depth.
+            final Map<byte[], Long> desc = new TreeMap<byte[], Long>(
+                    BytesUtil.UnsignedByteArrayComparator.INSTANCE);
+
+            desc.put(o, 0L);
+
+            scan(key(FORWARD, p, o), desc);
+
+            for (Map.Entry<byte[], Long> x : anc.entrySet()) {
+
+                for (Map.Entry<byte[], Long> y : desc.entrySet()) {
+
+                    final long depth = x.getValue() + 1 + y.getValue();
+
+                    final byte[] fkey = key(FORWARD, p, x.getKey(), y.getKey());
+
+                    final byte[] val = ndx.lookup(fkey);
+
+                    if (val != null && decodeLong(val) <= depth)
+                        continue;
+
+                    final byte[] newVal = encodeLong(depth);
+
+                    ndx.insert(fkey, newVal);
+
+                    ndx.insert(key(REVERSE, p, y.getKey(), x.getKey()), newVal);
+
+                }
+
+            }
+
+        }
+
+        /**
+         * Discard the paths from a (p,from) source and recompute them by a
+         * breadth first search over the SPO index.
+         */
+        private void recompute(final byte[] source) {
+
+            final int plen = IVUtility.decodeFromOffset(source, 0)
+                    .byteLength();
+
+            final byte[] p = Arrays.copyOfRange(source, 0, plen);
+
+            final byte[] from = Arrays.copyOfRange(source, plen, source.length);
+
+            // Remove the old paths.
+            {
+
+                final List<byte[]> old = new ArrayList<byte[]>();
+
+                final Iterator<byte[]> itr = scan(key(FORWARD, p, from));
+
+                while (itr.hasNext()) {
+
+                    old.add(itr.next());
+
+                }
+
+                for (byte[] to : old) {
+
+                    ndx.remove(key(FORWARD, p, from, to));
+
+                    ndx.remove(key(REVERSE, p, to, from));
+
+                }
+
+            }
+
+            // Breadth first search.
+            final Set<byte[]> visited = new TreeSet<byte[]>(
+                    BytesUtil.UnsignedByteArrayComparator.INSTANCE);
+
+            visited.add(from);
+
+            final Set<byte[]> reached = new TreeSet<byte[]>(
+                    BytesUtil.UnsignedByteArrayComparator.INSTANCE);
+
+            List<byte[]> frontier = new ArrayList<byte[]>();
+
+            frontier.add(from);
+
+            long depth = 0;
+
+            while (!frontier.isEmpty()) {
+
+                depth++;
+
+                final byte[] val = encodeLong(depth);
+
+                final List<byte[]> next = new ArrayList<byte[]>();
+
+                for (byte[] x : frontier) {
+
+                    final byte[] prefix = concat(x, p);
+
+                    final ITupleIterator<?> itr = spo.rangeIterator(prefix,
+                            toKey(prefix), 0/* capacity */, IRangeQuery.KEYS,
+                            null/* filter */);
+
+                    while (itr.hasNext()) {
+
+                        final byte[] key = itr.next().getKey();
+
+                        final byte[] y = Arrays.copyOfRange(key,
+                                prefix.length, key.length);
+
+                        if (reached.add(y)) {
+
+                            ndx.insert(key(FORWARD, p, from, y), val);
+
+                            ndx.insert(key(REVERSE, p, y, from), val);
+
+                        }
+
+                        if (visited.add(y))
+                            next.add(y);
+
+                    }
+
+                }
+
+                frontier = next;
+
+            }
+
+        }
+
+        /**
+         * Visit the encoded vertex following the prefix for each key having
+         * that prefix.
+         */
+        private Iterator<byte[]> scan(final byte[] prefix) {
+
+            final ITupleIterator<?> itr = ndx.rangeIterator(prefix,
+                    toKey(prefix), 0/* capacity */, IRangeQuery.KEYS,
+                    null/* filter */);
+
+            return new Iterator<byte[]>() {
+
+                public boolean hasNext() {
+                    return itr.hasNext();
+                }
+
+                public byte[] next() {
+                    final byte[] key = itr.next().getKey();
+                    return Arrays.copyOfRange(key, prefix.length, key.length);
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+            };
+
+        }
+
+        /**
+         * Collect the encoded vertex following the prefix and the depth for
+         * each key having that prefix.
+         */
+        private void scan(final byte[] prefix, final Map<byte[], Long> m) {
+
+            final ITupleIterator<?> itr = ndx.rangeIterator(prefix,
+                    toKey(prefix), 0/* capacity */, IRangeQuery.KEYS
+                            | IRangeQuery.VALS, null/* filter */);
+
+            while (itr.hasNext()) {
+
+                final ITuple<?> t = itr.next();
+
+                final byte[] key = t.getKey();
+
+                m.put(Arrays.copyOfRange(key, prefix.length, key.length),
+                        decodeLong(t.getValue()));
+
+            }
+
+        }
+
+    }
+
+    /*
+     * Key and value coding.
+     */
+
+    private static byte[] encode(final IV<?, ?> iv) {
+
+        return IVUtility.encode(KeyBuilder.newInstance(), iv).getKey();
+
+    }
+
+    private static byte[] concat(final byte[]... a) {
+
+        int len = 0;
+
+        for (byte[] b : a)
+            len += b.length;
+
+        final byte[] key = new byte[len];
+
+        int off = 0;
+
+        for (byte[] b : a) {
+
+            System.arraycopy(b, 0, key, off, b.length);
+
+            off += b.length;
+
+        }
+
+        return key;
+
+    }
+
+    private static byte[] key(final byte prefix, final byte[]... a) {
+
+        return concat(new byte[] { prefix }, concat(a));
+
+    }
+
+    /**
+     * Return the exclusive upper bound for the keys having the given prefix.
+     */
+    private static byte[] toKey(final byte[] prefix) {
+
+        try {
+
+            return SuccessorUtil.successor(prefix.clone());
+
+        } catch (NoSuccessorException ex) {
+
+            return null;
+
+        }
+
+    }
+
+    private static byte[] encodeLong(final long n) {
+
+        final DataOutputBuffer out = new DataOutputBuffer();
+
+        out.packLong(n);
+
+        return out.toByteArray();
+
+    }
+
+    private static long decodeLong(final byte[] val) {
+
+        try {
+
+            return new DataInputBuffer(val).unpackLong();
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+    }
+
+}
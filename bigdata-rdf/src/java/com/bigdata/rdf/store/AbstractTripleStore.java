@@ -124,6 +124,7 @@ import com.bigdata.rdf.rules.RDFJoinNexusFactory;
 import com.bigdata.rdf.rules.RuleContextEnum;
 import com.bigdata.rdf.spo.BulkCompleteConverter;
 import com.bigdata.rdf.spo.BulkFilterConverter;
+import com.bigdata.rdf.spo.CharacteristicSets;
 import com.bigdata.rdf.spo.ExplicitSPOFilter;
 import com.bigdata.rdf.spo.ISPO;
 import com.bigdata.rdf.spo.JustificationWriter;
@@ -133,6 +134,7 @@ import com.bigdata.rdf.spo.SPOPredicate;
 import com.bigdata.rdf.spo.SPORelation;
 import com.bigdata.rdf.spo.SPOTupleSerializer;
 import com.bigdata.rdf.spo.StatementWriter;
+import com.bigdata.rdf.spo.TransitiveClosureIndex;
 import com.bigdata.rdf.spo.XXXCShardSplitHandler;
 import com.bigdata.rdf.vocab.BaseVocabulary;
 import com.bigdata.rdf.vocab.NoVocabulary;
@@ -1181,6 +1183,50 @@ abstract public class AbstractTripleStore extends
         public static String DEFAULT_HISTORY_SERVICE_MIN_RELEASE_AGE = Long
                 .toString(Long.MAX_VALUE);
 
+        /*
+         * Join cardinality statistics.
+         */
+
+        /**
+         * When <code>true</code> (default
+         * {@value #DEFAULT_CHARACTERISTIC_SETS}) an index of the characteristic
+         * sets of the subjects in the database will be maintained together with
+         * the #of distinct subjects and objects for each predicate. Those
+         * statistics are maintained incrementally as statements are added and
+         * removed and are used by the static join optimizer to estimate the
+         * cardinality of star joins on a common subject. This option is only
+         * supported for triples mode without {@link #ONE_ACCESS_PATH} and is
+         * ignored otherwise.
+         * 
+         * @see CharacteristicSets
+         */
+        String CHARACTERISTIC_SETS = AbstractTripleStore.class.getName()
+                + ".characteristicSets";
+
+        String DEFAULT_CHARACTERISTIC_SETS = "false";
+
+        /*
+         * Materialized transitive closure.
+         */
+
+        /**
+         * A comma or whitespace separated list of predicate URIs (default
+         * {@value #DEFAULT_CLOSURE_PREDICATES}) whose transitive closure will be
+         * materialized in a dedicated index, e.g.,
+         * <code>http://www.w3.org/2000/01/rdf-schema#subClassOf</code>. The
+         * closure is maintained incrementally as statements are added and
+         * removed, and property paths such as <code>rdfs:subClassOf*</code> or
+         * <code>skos:broader+</code> over those predicates are answered from
+         * that index rather than computed for each query. This option is only
+         * supported for triples mode and is ignored otherwise.
+         * 
+         * @see TransitiveClosureIndex
+         */
+        String CLOSURE_PREDICATES = AbstractTripleStore.class.getName()
+                + ".closurePredicates";
+
+        String DEFAULT_CLOSURE_PREDICATES = "";
+
     }
 
     protected Class determineAxiomClass() {
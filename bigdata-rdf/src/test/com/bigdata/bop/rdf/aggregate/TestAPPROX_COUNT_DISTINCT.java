@@ -0,0 +1,215 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.rdf.aggregate;
+
+import java.math.BigInteger;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.aggregate.HyperLogLog;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.journal.ITx;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.constraints.MathBOp;
+import com.bigdata.rdf.internal.constraints.StrBOp;
+import com.bigdata.rdf.internal.impl.literal.XSDIntegerIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+import com.bigdata.rdf.model.BigdataLiteral;
+import com.bigdata.rdf.sparql.ast.GlobalAnnotations;
+
+/**
+ * Unit tests for {@link APPROX_COUNT_DISTINCT}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestAPPROX_COUNT_DISTINCT extends TestCase2 {
+
+    public TestAPPROX_COUNT_DISTINCT() {
+    }
+
+    public TestAPPROX_COUNT_DISTINCT(String name) {
+        super(name);
+    }
+
+    private static IBindingSet bset(final IVariable<IV> x, final int i) {
+
+        return new ListBindingSet(new IVariable<?>[] { x },
+                new IConstant[] { new Constant<XSDNumericIV<BigdataLiteral>>(
+                        new XSDNumericIV<BigdataLiteral>(i)) });
+
+    }
+
+    /**
+     * Small counts are exact (linear counting). Duplicates and unbound values
+     * are ignored.
+     */
+    public void test_approxCountDistinct_small() {
+
+        final IVariable<IV> x = Var.var("x");
+
+        final APPROX_COUNT_DISTINCT op = new APPROX_COUNT_DISTINCT(x);
+
+        assertFalse(op.isDistinct());
+
+        op.reset();
+
+        assertEquals(new XSDIntegerIV(BigInteger.ZERO), op.done());
+
+        op.get(bset(x, 5));
+        op.get(bset(x, 7));
+        op.get(bset(x, 5));
+        op.get(bset(x, 9));
+        op.get(new ListBindingSet());
+
+        assertEquals(new XSDIntegerIV(BigInteger.valueOf(3)), op.done());
+
+        op.reset();
+
+        assertEquals(new XSDIntegerIV(BigInteger.ZERO), op.done());
+
+    }
+
+    /**
+     * The estimate for a large #of distinct values is within a few standard
+     * errors of the true count.
+     */
+    public void test_approxCountDistinct_large() {
+
+        final IVariable<IV> x = Var.var("x");
+
+        final APPROX_COUNT_DISTINCT op = new APPROX_COUNT_DISTINCT(x);
+
+        op.reset();
+
+        final int n = 100000;
+
+        for (int i = 0; i < n; i++) {
+
+            op.get(bset(x, i));
+
+            // duplicates.
+            op.get(bset(x, i / 2));
+
+        }
+
+        final long actual = ((XSDIntegerIV) op.done()).longValue();
+
+        // ~1.6% standard error for the default sketch size.
+        assertTrue("actual=" + actual, Math.abs(actual - n) < n * 0.06);
+
+    }
+
+    /**
+     * The distinct values of a computed expression are counted. The results of
+     * <code>STR(?x+1)</code> can not be inlined, so they are carried by mock
+     * {@link IV}s which all have the same encoding.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_approxCountDistinct_computedValues() {
+
+        final GlobalAnnotations globals = new GlobalAnnotations(getName(),
+                ITx.READ_COMMITTED);
+
+        final IVariable<IV> x = Var.var("x");
+
+        // APPROX_COUNT_DISTINCT(STR(?x+1))
+        final APPROX_COUNT_DISTINCT op = new APPROX_COUNT_DISTINCT(
+                new StrBOp(new MathBOp(x, new Constant<IV>(
+                        new XSDNumericIV(1)), MathBOp.MathOp.PLUS, globals),
+                        globals));
+
+        op.reset();
+
+        for (int i = 0; i < 20; i++) {
+
+            op.get(bset(x, i));
+
+            // duplicates.
+            op.get(bset(x, i / 2));
+
+        }
+
+        assertEquals(new XSDIntegerIV(BigInteger.valueOf(20)), op.done());
+
+    }
+
+    /**
+     * Sketches for disjoint and overlapping partitions of the data may be
+     * merged.
+     */
+    public void test_approxCountDistinct_merge() {
+
+        final IVariable<IV> x = Var.var("x");
+
+        final APPROX_COUNT_DISTINCT a = new APPROX_COUNT_DISTINCT(x);
+
+        final APPROX_COUNT_DISTINCT b = new APPROX_COUNT_DISTINCT(x);
+
+        final APPROX_COUNT_DISTINCT all = new APPROX_COUNT_DISTINCT(x);
+
+        a.reset();
+        b.reset();
+        all.reset();
+
+        for (int i = 0; i < 20000; i++) {
+
+            final IBindingSet bs = bset(x, i);
+
+            // overlapping partitions.
+            if (i < 12000)
+                a.get(bs);
+            if (i >= 8000)
+                b.get(bs);
+
+            all.get(bs);
+
+        }
+
+        a.merge(b.getSketch());
+
+        // The merged sketch is the same as the sketch over all the data.
+        assertEquals(all.done(), a.done());
+
+        // Sketches of different sizes can not be merged.
+        try {
+            new HyperLogLog(10).merge(new HyperLogLog(12));
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+}
@@ -68,6 +68,7 @@ public class TestAll extends TestCase {
         suite.addTestSuite(TestMAX.class);
         suite.addTestSuite(TestGROUP_CONCAT.class);
         suite.addTestSuite(TestSAMPLE.class);
+        suite.addTestSuite(TestAPPROX_COUNT_DISTINCT.class);
 
         return suite;
         
@@ -64,6 +64,9 @@ public class TestAll extends TestCase {
         suite.addTestSuite(TestStrAfterBOp.class);
         suite.addTestSuite(TestReplaceBOp.class);
         suite.addTestSuite(TestRegexBOp.class);
+        suite.addTestSuite(TestDateBOp.class);
+
+        suite.addTestSuite(TestValueExpressionCompiler.class);
         
         return suite;
         
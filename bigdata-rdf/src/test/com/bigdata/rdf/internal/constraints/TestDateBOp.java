@@ -0,0 +1,202 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2007.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 17, 2026
+ */
+
+package com.bigdata.rdf.internal.constraints;
+
+import java.util.UUID;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.ContextBindingSet;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.bset.StartOp;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.engine.BlockingBufferWithStats;
+import com.bigdata.bop.engine.IRunningQuery;
+import com.bigdata.bop.engine.MockRunningQuery;
+import com.bigdata.bop.solutions.MockQueryContext;
+import com.bigdata.journal.ITx;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.NotMaterializedException;
+import com.bigdata.rdf.internal.XSD;
+import com.bigdata.rdf.internal.constraints.DateBOp.DateOp;
+import com.bigdata.rdf.internal.impl.literal.LiteralExtensionIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+import com.bigdata.rdf.model.BigdataLiteral;
+import com.bigdata.rdf.model.BigdataValueFactory;
+import com.bigdata.rdf.sparql.ast.GlobalAnnotations;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.ProxyTestCase;
+import com.bigdata.relation.accesspath.ThickAsynchronousIterator;
+
+/**
+ * Test suite for {@link DateBOp}.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestDateBOp extends ProxyTestCase {
+
+    /**
+     * 
+     */
+    public TestDateBOp() {
+        super();
+    }
+
+    /**
+     * @param name
+     */
+    public TestDateBOp(String name) {
+        super(name);
+    }
+
+    /**
+     * Wrap an empty binding set with a {@link BOpContext} for the store so the
+     * operator can resolve the lexicon configuration.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private IBindingSet newContextBindingSet(final AbstractTripleStore db) {
+
+        final PipelineOp op = new StartOp(BOp.NOARGS, NV.asMap(new NV(
+                BOp.Annotations.BOP_ID, 1)));
+
+        final BOpStats stats = op.newStats();
+
+        final IRunningQuery runningQuery = new MockRunningQuery(null/* fed */,
+                db.getIndexManager(), new MockQueryContext(UUID.randomUUID()));
+
+        final BOpContext<IBindingSet> context = new BOpContext<IBindingSet>(
+                runningQuery, -1/* partitionId */, stats, op,
+                true/* lastInvocation */,
+                new ThickAsynchronousIterator<IBindingSet[]>(
+                        new IBindingSet[0][]),
+                new BlockingBufferWithStats<IBindingSet[]>(op, stats), null/* sink2 */);
+
+        return new ContextBindingSet(context, new ListBindingSet());
+
+    }
+
+    /**
+     * YEAR() and MONTH() of an inline xsd:dateTime which has not been
+     * materialized are decoded from the {@link LiteralExtensionIV}.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_date_notMaterialized() {
+
+        final AbstractTripleStore db = getStore();
+
+        try {
+
+            final BigdataValueFactory vf = db.getValueFactory();
+
+            final BigdataLiteral dt = vf.createLiteral("2011-06-15T12:00:00Z",
+                    XSD.DATETIME);
+
+            final IV iv = db.getLexiconRelation().getLexiconConfiguration()
+                    .createInlineIV(dt);
+
+            // Inline and NOT materialized.
+            assertTrue(iv instanceof LiteralExtensionIV);
+            assertFalse(iv.hasValue());
+
+            final GlobalAnnotations globals = new GlobalAnnotations(
+                    vf.getNamespace(), ITx.UNISOLATED);
+
+            final IBindingSet bs = newContextBindingSet(db);
+
+            assertEquals(new XSDNumericIV(2011), new DateBOp(new Constant<IV>(
+                    iv), DateOp.YEAR, globals).get(bs));
+
+            assertEquals(new XSDNumericIV(6), new DateBOp(new Constant<IV>(
+                    iv), DateOp.MONTH, globals).get(bs));
+
+            // The IV was not materialized as a side effect.
+            assertFalse(iv.hasValue());
+
+            // Without the context the IV can not be decoded.
+            try {
+                new DateBOp(new Constant<IV>(iv), DateOp.YEAR, globals)
+                        .get(new ListBindingSet());
+                fail("Expecting: " + NotMaterializedException.class);
+            } catch (NotMaterializedException ex) {
+                // ignore
+            }
+
+        } finally {
+
+            db.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * YEAR() and MONTH() of a materialized xsd:dateTime.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_date_materialized() {
+
+        final AbstractTripleStore db = getStore();
+
+        try {
+
+            final BigdataValueFactory vf = db.getValueFactory();
+
+            final BigdataLiteral dt = vf.createLiteral("2011-06-15T12:00:00Z",
+                    XSD.DATETIME);
+
+            final IV iv = db.getLexiconRelation().getLexiconConfiguration()
+                    .createInlineIV(dt);
+
+            // Cache the value on the IV.
+            iv.setValue(dt);
+
+            final GlobalAnnotations globals = new GlobalAnnotations(
+                    vf.getNamespace(), ITx.UNISOLATED);
+
+            final ListBindingSet emptyBindingSet = new ListBindingSet();
+
+            assertEquals(new XSDNumericIV(2011), new DateBOp(new Constant<IV>(
+                    iv), DateOp.YEAR, globals).get(emptyBindingSet));
+
+            assertEquals(new XSDNumericIV(6), new DateBOp(new Constant<IV>(
+                    iv), DateOp.MONTH, globals).get(emptyBindingSet));
+
+        } finally {
+
+            db.__tearDownUnitTest();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,268 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.internal.constraints;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import junit.framework.TestCase2;
+
+import org.openrdf.query.algebra.Compare.CompareOp;
+
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IValueExpression;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.journal.ITx;
+import com.bigdata.rdf.error.SparqlTypeErrorException;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.constraints.MathBOp.MathOp;
+import com.bigdata.rdf.internal.impl.literal.XSDBooleanIV;
+import com.bigdata.rdf.internal.impl.literal.XSDDecimalIV;
+import com.bigdata.rdf.internal.impl.literal.XSDIntegerIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+import com.bigdata.rdf.sparql.ast.GlobalAnnotations;
+
+/**
+ * Test suite for the {@link ValueExpressionCompiler}. The compiled form of
+ * each expression is checked against the interpreter.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestValueExpressionCompiler extends TestCase2 {
+
+    /**
+     * 
+     */
+    public TestValueExpressionCompiler() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestValueExpressionCompiler(String name) {
+        super(name);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final IV[] NUMERICS = new IV[] {//
+            new XSDNumericIV((byte) 2),//
+            new XSDNumericIV((short) -3),//
+            new XSDNumericIV(2),//
+            new XSDNumericIV(7L),//
+            new XSDNumericIV(2.5f),//
+            new XSDNumericIV(2d),//
+            new XSDNumericIV(Double.NaN),//
+            new XSDIntegerIV(BigInteger.valueOf(7)),//
+            new XSDDecimalIV(new BigDecimal("2.0")),//
+            XSDBooleanIV.TRUE,//
+    };
+
+    /**
+     * Check that the compiled form of the expression reports the same value
+     * (or the same type error) as the interpreter.
+     */
+    @SuppressWarnings("rawtypes")
+    private static void assertSame(final IValueExpression<? extends IV> expr,
+            final IBindingSet bs) {
+
+        IV expected = null, actual = null;
+        Class<?> expectedCause = null, actualCause = null;
+
+        try {
+            expected = expr.get(bs);
+        } catch (RuntimeException ex) {
+            expectedCause = ex.getClass();
+        }
+
+        try {
+            actual = ValueExpressionCompiler.compile(expr).get(bs);
+        } catch (RuntimeException ex) {
+            actualCause = ex.getClass();
+        }
+
+        assertEquals(expr.toString(), expectedCause, actualCause);
+        assertEquals(expr.toString(), expected, actual);
+
+    }
+
+    /**
+     * Comparisons between all pairs of inline numerics.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_compare() {
+
+        final IBindingSet bs = new ListBindingSet();
+
+        for (IV l : NUMERICS) {
+
+            for (IV r : NUMERICS) {
+
+                for (CompareOp op : CompareOp.values()) {
+
+                    assertSame(new CompareBOp(new Constant<IV>(l),
+                            new Constant<IV>(r), op), bs);
+
+                }
+
+            }
+
+        }
+
+        // numerically equal across datatypes.
+        assertTrue(ValueExpressionCompiler.compile(
+                new CompareBOp(new Constant<IV>(new XSDNumericIV(2)),
+                        new Constant<IV>(new XSDNumericIV(2d)), CompareOp.EQ))
+                .accept(bs));
+
+        assertTrue(ValueExpressionCompiler.compile(
+                new CompareBOp(new Constant<IV>(new XSDNumericIV(2)),
+                        new Constant<IV>(new XSDNumericIV(7L)), CompareOp.LT))
+                .accept(bs));
+
+    }
+
+    /**
+     * Math over all pairs of inline numerics.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_math() {
+
+        final IBindingSet bs = new ListBindingSet();
+
+        final GlobalAnnotations globals = new GlobalAnnotations(getName(),
+                ITx.READ_COMMITTED);
+
+        for (IV l : NUMERICS) {
+
+            for (IV r : NUMERICS) {
+
+                for (MathOp op : new MathOp[] { MathOp.PLUS, MathOp.MINUS,
+                        MathOp.MULTIPLY, MathOp.DIVIDE, MathOp.MIN, MathOp.MAX }) {
+
+                    if (l instanceof XSDBooleanIV || r instanceof XSDBooleanIV)
+                        continue;
+
+                    assertSame(new MathBOp(new Constant<IV>(l),
+                            new Constant<IV>(r), op, globals), bs);
+
+                }
+
+            }
+
+        }
+
+        // integer divide is decimal.
+        assertEquals(new XSDDecimalIV(new BigDecimal("3.5")),
+                ValueExpressionCompiler.compile(
+                        new MathBOp(new Constant<IV>(new XSDNumericIV(7)),
+                                new Constant<IV>(new XSDNumericIV(2)),
+                                MathOp.DIVIDE, globals)).get(bs));
+
+        // integer plus is xsd:integer.
+        assertEquals(new XSDIntegerIV(BigInteger.valueOf(9)),
+                ValueExpressionCompiler.compile(
+                        new MathBOp(new Constant<IV>(new XSDNumericIV(7)),
+                                new Constant<IV>(new XSDNumericIV(2L)),
+                                MathOp.PLUS, globals)).get(bs));
+
+    }
+
+    /**
+     * The logical operators, including the handling of type errors for an
+     * unbound variable.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_logical() {
+
+        final IVariable<IV> x = Var.var("x");
+
+        final IVariable<IV> y = Var.var("y");
+
+        final XSDBooleanIVValueExpression t = new CompareBOp(x, new Constant<IV>(
+                new XSDNumericIV(1)), CompareOp.GT);
+
+        final XSDBooleanIVValueExpression u = new CompareBOp(y, new Constant<IV>(
+                new XSDNumericIV(1)), CompareOp.GT);
+
+        final IValueExpression[] exprs = new IValueExpression[] {//
+                t,//
+                new AndBOp(t, u),//
+                new OrBOp(t, u),//
+                new NotBOp(t),//
+                new EBVBOp(x),//
+                new IsBoundBOp(y),//
+                new NotBOp(new AndBOp(new OrBOp(t, u), new IsBoundBOp(x))),//
+        };
+
+        final IBindingSet[] solutions = new IBindingSet[] {//
+                new ListBindingSet(),//
+                new ListBindingSet(new IVariable[] { x },
+                        new Constant[] { new Constant<IV>(new XSDNumericIV(0)) }),//
+                new ListBindingSet(new IVariable[] { x },
+                        new Constant[] { new Constant<IV>(new XSDNumericIV(5)) }),//
+                new ListBindingSet(new IVariable[] { x, y }, new Constant[] {
+                        new Constant<IV>(new XSDNumericIV(0)),
+                        new Constant<IV>(new XSDNumericIV(5d)) }),//
+                new ListBindingSet(new IVariable[] { y },
+                        new Constant[] { new Constant<IV>(new XSDNumericIV(0)) }),//
+        };
+
+        for (IValueExpression expr : exprs) {
+
+            for (IBindingSet bs : solutions) {
+
+                assertSame(expr, bs);
+
+            }
+
+        }
+
+        // A type error is reported for an unbound variable.
+        try {
+            ValueExpressionCompiler.compile(new AndBOp(t, u)).accept(
+                    new ListBindingSet());
+            fail("Expecting: " + SparqlTypeErrorException.class);
+        } catch (SparqlTypeErrorException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        // The constraint filters out a solution with a type error.
+        assertFalse(new SPARQLConstraint(new AndBOp(t, u))
+                .accept(new ListBindingSet()));
+
+        assertTrue(new SPARQLConstraint(new OrBOp(t, u))
+                .accept(solutions[2]));
+
+    }
+
+}
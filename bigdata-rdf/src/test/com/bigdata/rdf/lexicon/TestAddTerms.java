@@ -36,6 +36,8 @@ import java.util.Properties;
 
 import org.openrdf.model.vocabulary.RDF;
 
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounter;
 import com.bigdata.rdf.axioms.NoAxioms;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.model.BigdataBNode;
@@ -456,6 +458,69 @@ public class TestAddTerms extends AbstractTripleStoreTestCase {
 
     }
 
+    /**
+     * Unit test verifies that duplicate {@link IV}s are only reported once by
+     * {@link LexiconRelation#getTerms(Collection)} and that the term cache
+     * reports its hits.
+     */
+    public void test_termCacheCounters() {
+
+        final Properties properties = getProperties();
+        
+        // test w/o predefined vocab.
+        properties.setProperty(Options.VOCABULARY_CLASS, NoVocabulary.class
+                .getName());
+
+        // test w/o axioms - they imply a predefined vocab.
+        properties.setProperty(Options.AXIOMS_CLASS, NoAxioms.class.getName());
+        
+        // test w/o the full text index.
+        properties.setProperty(Options.TEXT_INDEX, "false");
+
+        final AbstractTripleStore store = getStore(properties);
+        
+        try {
+
+            final BigdataValueFactory f = store.getValueFactory();
+
+            final BigdataURI a = f.createURI("http://www.bigdata.com/a");
+
+            final Collection<BigdataValue> terms = new LinkedList<BigdataValue>();
+
+            terms.add(a);
+
+            doAddTermsTest(store, terms);
+
+            // Note: clear the cached value so the term cache is consulted.
+            final IV<?, ?> iv = a.getIV().clone(true/* clearCache */);
+
+            final Collection<IV<?, ?>> ids = new ArrayList<IV<?, ?>>();
+
+            ids.add(iv);
+            ids.add(iv);
+
+            final LexiconRelation lex = store.getLexiconRelation();
+
+            assertEquals(1, lex.getTerms(ids).size());
+
+            assertEquals(a, lex.getTerms(ids).get(iv));
+
+            final CounterSet counters = lex.getCounters();
+
+            final long hitCount = (Long) ((ICounter<?>) counters
+                    .getPath("termCache/hitCount")).getValue();
+
+            // The 2nd request is satisfied by the term cache.
+            assertTrue("hitCount=" + hitCount, hitCount > 0);
+
+        } finally {
+            
+            store.__tearDownUnitTest();
+            
+        }
+
+    }
+
     /**
      * @param store
      * @param terms
@@ -3460,6 +3460,73 @@ public class TestStaticAnalysis extends AbstractASTEvaluationTestCase {
         
     }
 
+    /**
+     * Unit test for the identification of the variables which can only be
+     * bound to inline {@link IV}s by a BIND() in a group.
+     * 
+     * <pre>
+     * PREFIX : <http://www.bigdata.com/>
+     * SELECT *
+     * WHERE {
+     *   ?a :name ?name .
+     *   ?a :date ?d .
+     *   BIND ( STRLEN(?name) AS ?len )
+     *   BIND ( (STRLEN(?name) + YEAR(?d)) AS ?sum )
+     *   BIND ( STR(?a) AS ?s )
+     *   BIND ( MONTH(?d) AS ?x )
+     *   OPTIONAL { ?a :p ?x }
+     *   FILTER ( ?len > 3 )
+     * }
+     * </pre>
+     * 
+     * <code>?len</code> and <code>?sum</code> are inline only.
+     * <code>?s</code> is bound by a function which produces a non-inline
+     * {@link IV} and <code>?x</code> might also be bound by the OPTIONAL
+     * group.
+     */
+    public void test_static_analysis_getInlineOnlyVars()
+            throws MalformedQueryException {
+
+        final String queryStr = ""+//
+        "PREFIX : <http://www.bigdata.com/>\n" +//
+        "SELECT * \n" +//
+        " WHERE {\n" +//
+        "   ?a :name ?name .\n" +//
+        "   ?a :date ?d .\n" +//
+        "   BIND ( STRLEN(?name) AS ?len )\n" +//
+        "   BIND ( (STRLEN(?name) + YEAR(?d)) AS ?sum )\n" +//
+        "   BIND ( STR(?a) AS ?s )\n" +//
+        "   BIND ( MONTH(?d) AS ?x )\n" +//
+        "   OPTIONAL { ?a :p ?x }\n" +//
+        "   FILTER ( ?len > 3 )\n" +//
+        "}";
+
+        final ASTContainer astContainer = new Bigdata2ASTSPARQLParser(store)
+                .parseQuery2(queryStr, baseURI);
+
+        final AST2BOpContext context = new AST2BOpContext(astContainer, store);
+
+        QueryRoot queryRoot = astContainer.getOriginalAST();
+
+        // Set the IValueExpressions on the AST.
+        queryRoot = (QueryRoot) new ASTSetValueExpressionsOptimizer().optimize(
+                context, queryRoot, null /* bindingSets */);
+
+        final StaticAnalysis sa = new StaticAnalysis(queryRoot);
+
+        final JoinGroupNode whereClause = (JoinGroupNode) queryRoot
+                .getWhereClause();
+
+        final Set<IVariable<?>> expected = new LinkedHashSet<IVariable<?>>();
+
+        expected.add(Var.var("len"));
+        expected.add(Var.var("sum"));
+
+        assertEquals(expected, sa.getInlineOnlyVars(whereClause,
+                new LinkedHashSet<IVariable<?>>()));
+
+    }
+
 //    /**
 //     * Unit test for whether or not a variable is "in-scope" in some part of the
 //     * AST.
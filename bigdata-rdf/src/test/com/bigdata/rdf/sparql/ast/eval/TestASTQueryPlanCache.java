@@ -0,0 +1,258 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 17, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval;
+
+import java.util.Iterator;
+import java.util.Properties;
+
+import org.openrdf.model.URI;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.evaluation.QueryBindingSet;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.fed.QueryEngineFactory;
+import com.bigdata.counters.ICounter;
+import com.bigdata.journal.ITransactionService;
+import com.bigdata.journal.ITx;
+import com.bigdata.journal.Journal;
+import com.bigdata.rdf.internal.constraints.IVValueExpression;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.sparql.Bigdata2ASTSPARQLParser;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.AbstractASTEvaluationTestCase;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+/**
+ * Test suite for the reuse of query plans by {@link ASTQueryPlanCache}.
+ * 
+ * @see QueryHints#QUERY_PLAN_CACHE
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestASTQueryPlanCache extends AbstractASTEvaluationTestCase {
+
+    /**
+     * 
+     */
+    public TestASTQueryPlanCache() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestASTQueryPlanCache(final String name) {
+        super(name);
+    }
+
+    @Override
+    public Properties getProperties() {
+
+        final Properties properties = super.getProperties();
+
+        properties.setProperty(BigdataSail.Options.QUERY_PLAN_CACHE, "true");
+
+        return properties;
+
+    }
+
+    /**
+     * The query uses a value expression (which carries the timestamp of the
+     * view in its annotations) within a BIND (which is an immutable
+     * operator).
+     */
+    private static final String QUERY = "prefix : <http://www.bigdata.com/>\n"
+            + "SELECT ?x ?s\n"//
+            + "WHERE {\n"//
+            + "   ?x :name ?o .\n"//
+            + "   BIND(STR(?o) AS ?s)\n"//
+            + "}";
+
+    /**
+     * Run the same query several times against read-only views of the KB
+     * across two commit points. The query plan generated for the first view
+     * is reused for the second view of the same commit point and must be
+     * re-bound to the timestamp of that view. The query plan must not be
+     * reused for the next commit point.
+     */
+    public void test_queryPlanCache_rebind() throws Exception {
+
+        final Journal jnl = (Journal) store.getIndexManager();
+
+        final ITransactionService txService = jnl.getTransactionManager()
+                .getTransactionService();
+
+        final QueryEngine queryEngine = QueryEngineFactory
+                .getQueryController(jnl);
+
+        final URI name = valueFactory.createURI("http://www.bigdata.com/name");
+
+        final URI g = valueFactory.createURI("http://www.bigdata.com/g");
+
+        store.addStatement(valueFactory.createURI("http://www.bigdata.com/a"),
+                name, valueFactory.createLiteral("A"), g);
+
+        store.commit();
+
+        final long hits0 = getHitCount(queryEngine);
+
+        // First read-only view of the 1st commit point.
+        final long tx1 = txService.newTx(ITx.READ_COMMITTED);
+        try {
+
+            final ASTContainer astContainer = runQuery(jnl, tx1, 1);
+
+            assertTimestamp(astContainer, tx1);
+
+        } finally {
+
+            txService.abort(tx1);
+
+        }
+
+        // Second read-only view of the same commit point.
+        final long tx2 = txService.newTx(ITx.READ_COMMITTED);
+        try {
+
+            final ASTContainer astContainer = runQuery(jnl, tx2, 1);
+
+            // The query plan was reused.
+            assertEquals(hits0 + 1, getHitCount(queryEngine));
+
+            // The timestamp was re-bound.
+            assertTimestamp(astContainer, tx2);
+
+        } finally {
+
+            txService.abort(tx2);
+
+        }
+
+        store.addStatement(valueFactory.createURI("http://www.bigdata.com/b"),
+                name, valueFactory.createLiteral("B"), g);
+
+        store.commit();
+
+        // Read-only view of the 2nd commit point.
+        final long tx3 = txService.newTx(ITx.READ_COMMITTED);
+        try {
+
+            final ASTContainer astContainer = runQuery(jnl, tx3, 2);
+
+            // The query plan was not reused.
+            assertEquals(hits0 + 1, getHitCount(queryEngine));
+
+            assertTimestamp(astContainer, tx3);
+
+        } finally {
+
+            txService.abort(tx3);
+
+        }
+
+    }
+
+    /**
+     * Run {@link #QUERY} against the view of the KB for the given timestamp
+     * and verify the #of solutions.
+     */
+    private ASTContainer runQuery(final Journal jnl, final long timestamp,
+            final int expected) throws Exception {
+
+        final AbstractTripleStore view = (AbstractTripleStore) jnl
+                .getResourceLocator().locate(store.getNamespace(), timestamp);
+
+        final ASTContainer astContainer = new Bigdata2ASTSPARQLParser(view)
+                .parseQuery2(QUERY, baseURI);
+
+        final TupleQueryResult result = ASTEvalHelper.evaluateTupleQuery(view,
+                astContainer, new QueryBindingSet());
+
+        try {
+
+            int n = 0;
+
+            while (result.hasNext()) {
+
+                assertNotNull(result.next().getValue("s"));
+
+                n++;
+
+            }
+
+            assertEquals(expected, n);
+
+        } finally {
+
+            result.close();
+
+        }
+
+        return astContainer;
+
+    }
+
+    /**
+     * Verify that each value expression in the query plan carries the
+     * timestamp of the view.
+     */
+    @SuppressWarnings("rawtypes")
+    private static void assertTimestamp(final ASTContainer astContainer,
+            final long timestamp) {
+
+        final Iterator<IVValueExpression> itr = BOpUtility.visitAll(
+                astContainer.getQueryPlan(), IVValueExpression.class);
+
+        assertTrue(itr.hasNext());
+
+        while (itr.hasNext()) {
+
+            final IVValueExpression<?> expr = itr.next();
+
+            final Object t = expr
+                    .getProperty(IVValueExpression.Annotations.TIMESTAMP);
+
+            if (t != null)
+                assertEquals(Long.valueOf(timestamp), t);
+
+        }
+
+    }
+
+    private static long getHitCount(final QueryEngine queryEngine) {
+
+        final ICounter<?> c = (ICounter<?>) queryEngine.getCounters().getPath(
+                "queryPlanCacheHitCount");
+
+        return ((Number) c.getValue()).longValue();
+
+    }
+
+}
@@ -118,6 +118,11 @@ public class TestAll extends TestCase {
 
         // Test suite for a merge join pattern
         suite.addTestSuite(TestMergeJoin.class);
+        suite.addTestSuite(TestLeapfrogTriejoin.class);
+        suite.addTestSuite(TestStarMergeJoin.class);
+
+        // Test suite for the reuse of cached query plans.
+        suite.addTestSuite(TestASTQueryPlanCache.class);
 
         // Test suite for aggregation queries.
         suite.addTestSuite(TestAggregationQuery.class);
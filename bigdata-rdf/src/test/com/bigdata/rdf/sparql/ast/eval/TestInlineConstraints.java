@@ -27,19 +27,24 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.rdf.sparql.ast.eval;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpUtility;
 import com.bigdata.bop.IBindingSet;
 import com.bigdata.bop.IPredicate;
 import com.bigdata.bop.IPredicate.Annotations;
 import com.bigdata.bop.IValueExpression;
 import com.bigdata.bop.IVariableOrConstant;
 import com.bigdata.bop.NV;
+import com.bigdata.bop.Var;
 import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.rdf.join.ChunkedMaterializationOp;
 import com.bigdata.btree.IRangeQuery;
 import com.bigdata.rdf.error.SparqlTypeErrorException;
 import com.bigdata.rdf.internal.IV;
@@ -51,6 +56,7 @@ import com.bigdata.rdf.internal.constraints.SparqlTypeErrorBOp;
 import com.bigdata.rdf.internal.constraints.TrueBOp;
 import com.bigdata.rdf.internal.impl.literal.XSDBooleanIV;
 import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
 import com.bigdata.rdf.spo.SPOPredicate;
 import com.bigdata.rdf.store.AbstractTripleStore;
 import com.bigdata.relation.rule.IRule;
@@ -120,6 +126,40 @@ public class TestInlineConstraints extends AbstractDataDrivenSPARQLTestCase {
     	new TestHelper("inline-constraints-dt").runTest();
         
     }
+
+    /**
+     * A FILTER on a variable which is only bound by a BIND() of STRLEN() does
+     * not need that variable to be materialized since STRLEN() always
+     * produces an inline numeric IV.
+     * 
+     * <pre>
+     * select ?s 
+     * where { 
+     * ?s rdf:type :X .
+     * ?s :name ?n .
+     * bind (strlen(?n) as ?len) .
+     * filter (?len > 3) . 
+     * }
+     * </pre>
+     */
+    public void testStrlenFilter() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(
+                "inline-constraints-strlen").runTest();
+
+        final Iterator<ChunkedMaterializationOp> itr = BOpUtility.visitAll(
+                astContainer.getQueryPlan(), ChunkedMaterializationOp.class);
+
+        while (itr.hasNext()) {
+
+            final ChunkedMaterializationOp op = itr.next();
+
+            assertFalse(op.toString(),
+                    Arrays.asList(op.getVars()).contains(Var.var("len")));
+
+        }
+
+    }
     
     public void testAnd() {
     	
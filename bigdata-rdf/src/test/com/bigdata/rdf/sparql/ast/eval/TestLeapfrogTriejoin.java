@@ -0,0 +1,265 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2011.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval;
+
+import java.util.Properties;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.rdf.join.LeapfrogTriejoinOp;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+/**
+ * Data driven test suite for the worst-case optimal join
+ * ({@link LeapfrogTriejoinOp}) used for cyclic join groups.
+ * <p>
+ * Note: The leapfrog triejoin is only used for triples mode databases, so
+ * this test suite overrides the default (quads) mode.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestLeapfrogTriejoin extends AbstractDataDrivenSPARQLTestCase {
+
+    /**
+     *
+     */
+    public TestLeapfrogTriejoin() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestLeapfrogTriejoin(String name) {
+        super(name);
+    }
+
+    @Override
+    public Properties getProperties() {
+        final Properties props = super.getProperties();
+        props.setProperty(AbstractTripleStore.Options.QUADS, "false");
+        props.setProperty(AbstractTripleStore.Options.STATEMENT_IDENTIFIERS,
+                "false");
+        return props;
+    }
+
+    /**
+     * Return <code>true</code> iff the query plan uses a
+     * {@link LeapfrogTriejoinOp}.
+     */
+    private static boolean isLeapfrog(final ASTContainer astContainer) {
+
+        return BOpUtility.visitAll(astContainer.getQueryPlan(),
+                LeapfrogTriejoinOp.class).hasNext();
+
+    }
+
+    /**
+     * A triangle query. The join graph is cyclic, so the leapfrog triejoin
+     * should be used in place of the pipeline joins.
+     * 
+     * <pre>
+     * prefix : <http://www.bigdata.com/>
+     * SELECT ?a ?b ?c
+     * WHERE {
+     *    hint:Query hint:leapfrogTriejoin "true" .
+     *    ?a :knows ?b .
+     *    ?b :knows ?c .
+     *    ?a :knows ?c .
+     * }
+     * </pre>
+     */
+    public void test_leapfrog_triejoin_01() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "leapfrog-triejoin-01", // testURI,
+                "leapfrog-triejoin-01.rq",// queryFileURL
+                "leapfrog-triejoin-01.ttl",// dataFileURL
+                "leapfrog-triejoin-01.srx"// resultFileURL
+        ).runTest();
+
+        assertTrue("No leapfrog triejoin?", isLeapfrog(astContainer));
+
+    }
+
+    /**
+     * Variant of the test above in which we disable the leapfrog triejoin
+     * with a query hint and verify that the same solutions are produced by
+     * the pipeline joins.
+     */
+    public void test_leapfrog_triejoin_01a() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "leapfrog-triejoin-01a", // testURI,
+                "leapfrog-triejoin-01a.rq",// queryFileURL
+                "leapfrog-triejoin-01.ttl",// dataFileURL
+                "leapfrog-triejoin-01.srx"// resultFileURL
+        ).runTest();
+
+        assertFalse("Leapfrog triejoin should have been suppressed",
+                isLeapfrog(astContainer));
+
+    }
+
+    /**
+     * The same triangle query without the query hint. The leapfrog triejoin
+     * is not used by default.
+     */
+    public void test_leapfrog_triejoin_01b() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "leapfrog-triejoin-01b", // testURI,
+                "leapfrog-triejoin-01b.rq",// queryFileURL
+                "leapfrog-triejoin-01.ttl",// dataFileURL
+                "leapfrog-triejoin-01.srx"// resultFileURL
+        ).runTest();
+
+        assertFalse("Leapfrog triejoin should not be used by default",
+                isLeapfrog(astContainer));
+
+    }
+
+    /**
+     * A path query. The join graph is acyclic, so the pipeline joins are used
+     * even though the leapfrog triejoin was requested.
+     * 
+     * <pre>
+     * prefix : <http://www.bigdata.com/>
+     * SELECT ?a ?b ?c ?d
+     * WHERE {
+     *    hint:Query hint:leapfrogTriejoin "true" .
+     *    ?a :knows ?b .
+     *    ?b :knows ?c .
+     *    ?c :knows ?d .
+     * }
+     * </pre>
+     */
+    public void test_leapfrog_triejoin_02_acyclic() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "leapfrog-triejoin-02", // testURI,
+                "leapfrog-triejoin-02.rq",// queryFileURL
+                "leapfrog-triejoin-02.ttl",// dataFileURL
+                "leapfrog-triejoin-02.srx"// resultFileURL
+        ).runTest();
+
+        assertFalse("Leapfrog triejoin used for an acyclic join graph",
+                isLeapfrog(astContainer));
+
+    }
+
+    /**
+     * A triangle followed by an OPTIONAL. The triangle is evaluated by the
+     * leapfrog triejoin and the OPTIONAL is joined against its solutions.
+     * 
+     * <pre>
+     * prefix : <http://www.bigdata.com/>
+     * SELECT ?a ?b ?c ?n
+     * WHERE {
+     *    hint:Query hint:leapfrogTriejoin "true" .
+     *    ?a :knows ?b .
+     *    ?b :knows ?c .
+     *    ?a :knows ?c .
+     *    OPTIONAL { ?c :name ?n }
+     * }
+     * </pre>
+     */
+    public void test_leapfrog_triejoin_03_optional() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "leapfrog-triejoin-03", // testURI,
+                "leapfrog-triejoin-03.rq",// queryFileURL
+                "leapfrog-triejoin-02.ttl",// dataFileURL
+                "leapfrog-triejoin-03.srx"// resultFileURL
+        ).runTest();
+
+        assertTrue("No leapfrog triejoin?", isLeapfrog(astContainer));
+
+    }
+
+    /**
+     * A triangle with a variable which is bound by the source solutions.
+     * 
+     * <pre>
+     * prefix : <http://www.bigdata.com/>
+     * SELECT ?a ?b ?c ?n
+     * WHERE {
+     *    hint:Query hint:leapfrogTriejoin "true" .
+     *    ?a :knows ?b .
+     *    ?b :knows ?c .
+     *    ?a :knows ?c .
+     *    ?a :name ?n .
+     * }
+     * BINDINGS ?n {
+     *  ("B")
+     *  ("D")
+     * }
+     * </pre>
+     */
+    public void test_leapfrog_triejoin_04_boundInput() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "leapfrog-triejoin-04", // testURI,
+                "leapfrog-triejoin-04.rq",// queryFileURL
+                "leapfrog-triejoin-02.ttl",// dataFileURL
+                "leapfrog-triejoin-04.srx"// resultFileURL
+        ).runTest();
+
+        assertTrue("No leapfrog triejoin?", isLeapfrog(astContainer));
+
+    }
+
+    /**
+     * A triangle query for which the data has a directed cycle but no
+     * triangle, so there are no solutions.
+     * 
+     * <pre>
+     * prefix : <http://www.bigdata.com/>
+     * SELECT ?a ?b ?c
+     * WHERE {
+     *    hint:Query hint:leapfrogTriejoin "true" .
+     *    ?a :likes ?b .
+     *    ?b :likes ?c .
+     *    ?a :likes ?c .
+     * }
+     * </pre>
+     */
+    public void test_leapfrog_triejoin_05_empty() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "leapfrog-triejoin-05", // testURI,
+                "leapfrog-triejoin-05.rq",// queryFileURL
+                "leapfrog-triejoin-02.ttl",// dataFileURL
+                "leapfrog-triejoin-05.srx"// resultFileURL
+        ).runTest();
+
+        assertTrue("No leapfrog triejoin?", isLeapfrog(astContainer));
+
+    }
+
+}
@@ -27,6 +27,12 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.rdf.sparql.ast.eval;
 
+import java.util.Iterator;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.join.PipelineJoin;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+
 /**
  * Data driven test suite for named subquery evaluation (that is, for queries
  * which are explicitly written using the named subquery syntax).
@@ -71,6 +77,41 @@ public class TestNamedSubQuery extends AbstractDataDrivenSPARQLTestCase {
 
     }
 
+    /**
+     * Variant of {@link #test_named_subquery()} in which the static join
+     * optimizer is disabled so the statement pattern runs before the INCLUDE.
+     * The access path for the statement pattern should be filtered against
+     * the hash index for the named solution set (sideways information
+     * passing). The <code>:DC</code> label does not join and is dropped by
+     * that filter.
+     */
+    public void test_named_subquery_sip() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "named-subquery-sip",// testURI
+                "named-subquery-sip.rq",// queryFileURL
+                "named-subquery.trig",// dataFileURL
+                "named-subquery.srx"// resultFileURL
+        ).runTest();
+
+        boolean found = false;
+
+        @SuppressWarnings("rawtypes")
+        final Iterator<PipelineJoin> itr = BOpUtility.visitAll(
+                astContainer.getQueryPlan(), PipelineJoin.class);
+
+        while (itr.hasNext()) {
+
+            if (itr.next().getPredicate()
+                    .getProperty(PipelineJoin.Annotations.SIP_FILTERS) != null)
+                found = true;
+
+        }
+
+        assertTrue("No SIP filter?", found);
+
+    }
+
 //    /**
 //     * This is a variant {@link #test_named_subquery()} in which the JOIN ON
 //     * query hint is used to explicitly specify NO join variables.
@@ -24,7 +24,9 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.rdf.sparql.ast.eval;
 
-
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.paths.ArbitraryLengthPathOp;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
 
 public class TestPropertyPaths extends AbstractDataDrivenSPARQLTestCase {
 
@@ -149,4 +151,72 @@ public class TestPropertyPaths extends AbstractDataDrivenSPARQLTestCase {
         
     }
     
+    /**
+     * Return the {@link ArbitraryLengthPathOp.Annotations#FRONTIER_SEARCH}
+     * annotation of the (first) {@link ArbitraryLengthPathOp} in the query
+     * plan.
+     */
+    private static boolean isFrontierSearch(final ASTContainer astContainer) {
+
+        final ArbitraryLengthPathOp op = BOpUtility.visitAll(
+                astContainer.getQueryPlan(), ArbitraryLengthPathOp.class)
+                .next();
+
+        return op.getProperty(
+                ArbitraryLengthPathOp.Annotations.FRONTIER_SEARCH,
+                ArbitraryLengthPathOp.Annotations.DEFAULT_FRONTIER_SEARCH);
+
+    }
+
+    /**
+     * A path within <code>GRAPH ?g</code>. The path must not cross from one
+     * named graph into another, so the frontier search is not used even
+     * though it was requested.
+     */
+    public void test_frontierSearch_graphVar() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(
+                "property-paths-graph-1",     // testURI,
+                "property-paths-graph-1.rq",  // queryFileURL
+                "property-paths-graph.trig",  // dataFileURL
+                "property-paths-graph-1.srx"  // resultFileURL,
+                ).runTest();
+
+        assertFalse(isFrontierSearch(astContainer));
+
+    }
+
+    /**
+     * A path within <code>GRAPH ?g</code> where <code>?g</code> is bound by
+     * the source solutions.
+     */
+    public void test_frontierSearch_graphVar_bound() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(
+                "property-paths-graph-2",     // testURI,
+                "property-paths-graph-2.rq",  // queryFileURL
+                "property-paths-graph.trig",  // dataFileURL
+                "property-paths-graph-2.srx"  // resultFileURL,
+                ).runTest();
+
+        assertFalse(isFrontierSearch(astContainer));
+
+    }
+
+    /**
+     * A path within a constant named graph. The frontier search is used.
+     */
+    public void test_frontierSearch_graphConst() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(
+                "property-paths-graph-3",     // testURI,
+                "property-paths-graph-3.rq",  // queryFileURL
+                "property-paths-graph.trig",  // dataFileURL
+                "property-paths-graph-3.srx"  // resultFileURL,
+                ).runTest();
+
+        assertTrue(isFrontierSearch(astContainer));
+
+    }
+    
 }
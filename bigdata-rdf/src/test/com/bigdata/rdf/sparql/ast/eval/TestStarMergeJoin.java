@@ -0,0 +1,157 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2011.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval;
+
+import java.util.Properties;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.rdf.join.StarMergeJoinOp;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+/**
+ * Data driven test suite for the merge join ({@link StarMergeJoinOp}) used for
+ * star patterns on a common subject.
+ * <p>
+ * Note: The star merge join is only used for triples mode databases, so this
+ * test suite overrides the default (quads) mode.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestStarMergeJoin extends AbstractDataDrivenSPARQLTestCase {
+
+    /**
+     *
+     */
+    public TestStarMergeJoin() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestStarMergeJoin(String name) {
+        super(name);
+    }
+
+    @Override
+    public Properties getProperties() {
+        final Properties props = super.getProperties();
+        props.setProperty(AbstractTripleStore.Options.QUADS, "false");
+        props.setProperty(AbstractTripleStore.Options.STATEMENT_IDENTIFIERS,
+                "false");
+        return props;
+    }
+
+    /**
+     * A star query on a common subject. Some subjects lack one of the
+     * predicates and one subject has a multi-valued predicate, so the merge
+     * join needs to skip subjects and to form the cross product of the
+     * objects.
+     * 
+     * <pre>
+     * prefix : <http://www.bigdata.com/>
+     * SELECT ?s ?n ?a ?e
+     * WHERE {
+     *    hint:Query hint:starMergeJoin "true" .
+     *    ?s :name ?n .
+     *    ?s :age ?a .
+     *    ?s :email ?e .
+     * }
+     * </pre>
+     */
+    public void test_star_merge_join_01() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "star-merge-join-01", // testURI,
+                "star-merge-join-01.rq",// queryFileURL
+                "star-merge-join-01.ttl",// dataFileURL
+                "star-merge-join-01.srx"// resultFileURL
+        ).runTest();
+
+        assertTrue(
+                "No star merge join?",
+                BOpUtility.visitAll(astContainer.getQueryPlan(),
+                        StarMergeJoinOp.class).hasNext());
+
+    }
+
+    /**
+     * Variant of the test above in which we disable the star merge join with
+     * a query hint and verify that the same solutions are produced by the
+     * pipeline joins.
+     */
+    public void test_star_merge_join_01a() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "star-merge-join-01a", // testURI,
+                "star-merge-join-01a.rq",// queryFileURL
+                "star-merge-join-01.ttl",// dataFileURL
+                "star-merge-join-01.srx"// resultFileURL
+        ).runTest();
+
+        assertFalse(
+                "Star merge join should have been suppressed",
+                BOpUtility.visitAll(astContainer.getQueryPlan(),
+                        StarMergeJoinOp.class).hasNext());
+
+    }
+
+    /**
+     * A star in which one statement pattern is much more selective than the
+     * other. The merge join would visit every subject having a name, so the
+     * star is evaluated by the pipeline joins even though the query hint is
+     * enabled.
+     * 
+     * <pre>
+     * prefix : <http://www.bigdata.com/>
+     * SELECT ?s ?n
+     * WHERE {
+     *    hint:Query hint:starMergeJoin "true" .
+     *    ?s a :Rare .
+     *    ?s :name ?n .
+     * }
+     * </pre>
+     */
+    public void test_star_merge_join_02() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "star-merge-join-02", // testURI,
+                "star-merge-join-02.rq",// queryFileURL
+                "star-merge-join-02.ttl",// dataFileURL
+                "star-merge-join-02.srx"// resultFileURL
+        ).runTest();
+
+        assertFalse(
+                "Star merge join should not be used for a skewed star",
+                BOpUtility.visitAll(astContainer.getQueryPlan(),
+                        StarMergeJoinOp.class).hasNext());
+
+    }
+
+}
@@ -27,6 +27,17 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.rdf.sparql.ast.eval;
 
+import java.util.LinkedList;
+import java.util.List;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.rdf.join.ChunkedMaterializationOp;
+import com.bigdata.bop.solutions.JVMDistinctBindingSetsOp;
+import com.bigdata.bop.solutions.SliceOp;
+import com.bigdata.bop.solutions.TopKSortOp;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+
 /**
  * Test suite for tickets at <href a="http://sourceforge.net/apps/trac/bigdata">
  * trac </a>.
@@ -251,6 +262,77 @@ public class TestTickets extends AbstractDataDrivenSPARQLTestCase {
         ).runTest();
 
     }
+
+    /**
+     * Variant of {@link #test_ticket_563()} using late materialization. The
+     * ORDER BY only uses projected variables, so the DISTINCT is evaluated
+     * before the ORDER BY and the ORDER BY and LIMIT are evaluated as a Top-K
+     * sort. The materialization of the sort variable follows the DISTINCT.
+     * 
+     * <pre>
+     * PREFIX ex: <http://example.org/>
+     * 
+     * SELECT DISTINCT ?name WHERE {
+     *   hint:Query hint:lateMaterialization "true" .
+     *   ?sub ex:hasName ?name.
+     * } order by DESC(?name) limit 2
+     * </pre>
+     */
+    public void test_ticket_563_lateMaterialization() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(
+                "ticket563-DistinctOrderBy-late",// testURI,
+                "ticket563-DistinctOrderBy-late.rq",// queryFileURL
+                "ticket563-DistinctOrderBy.n3",// dataFileURL
+                "ticket563-DistinctOrderBy-late.srx",// resultFileURL
+                true // checkOrder
+        ).runTest();
+
+        /*
+         * The operators of the pipeline in their evaluation order.
+         */
+        final List<BOp> ops = new LinkedList<BOp>();
+        {
+            BOp op = astContainer.getQueryPlan();
+            while (op instanceof PipelineOp) {
+                ops.add(0, op);
+                op = op.arity() == 0 ? null : op.get(0);
+            }
+        }
+
+        final int distinct = indexOf(ops, JVMDistinctBindingSetsOp.class);
+        final int sort = indexOf(ops, TopKSortOp.class);
+
+        assertTrue(ops.toString(), distinct != -1);
+        assertTrue(ops.toString(), sort > distinct);
+
+        // The OFFSET/LIMIT is evaluated by the Top-K sort.
+        assertEquals(ops.toString(), -1, indexOf(ops, SliceOp.class));
+
+        // Only the distinct solutions are materialized.
+        for (int i = 0; i < ops.size(); i++) {
+            if (ops.get(i) instanceof ChunkedMaterializationOp) {
+                assertTrue(ops.toString(), i > distinct && i < sort);
+            }
+        }
+
+    }
+
+    /**
+     * Return the index of the first operator of that class -or- <code>-1</code>
+     * if there is no such operator.
+     */
+    private static int indexOf(final List<BOp> ops,
+            final Class<? extends BOp> cls) {
+
+        for (int i = 0; i < ops.size(); i++) {
+            if (cls.isInstance(ops.get(i)))
+                return i;
+        }
+
+        return -1;
+
+    }
    
 
     public void test_ticket_min736() throws Exception {
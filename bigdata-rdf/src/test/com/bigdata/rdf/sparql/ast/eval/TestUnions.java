@@ -27,6 +27,10 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.rdf.sparql.ast.eval;
 
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.controller.Union;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+
 /**
  * Test suite for UNION.
  * 
@@ -209,4 +213,60 @@ public class TestUnions extends AbstractDataDrivenSPARQLTestCase {
                 ).runTest();
         
     }    
+
+    /**
+     * A UNION whose branches are evaluated as concurrent child queries by the
+     * {@link Union} operator. The query hint forces the parallel UNION for
+     * this small data set.
+     * 
+     * <pre>
+     * prefix : <http://www.bigdata.com/>
+     * SELECT ?s ?o
+     * WHERE {
+     *    hint:Query hint:parallelUnionThreshold "0" .
+     *    { ?s :p ?o . }
+     *    UNION
+     *    { ?s :q ?o . FILTER(?o != :x4) }
+     *    UNION
+     *    { ?s a :T . ?s :r ?o . }
+     * }
+     * </pre>
+     */
+    public void test_union_parallel_01() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(
+                "union_parallel_01", // testURI,
+                "union_parallel_01.rq",// queryFileURL
+                "union_parallel_01.ttl",// dataFileURL
+                "union_parallel_01.srx"// resultFileURL
+                ).runTest();
+
+        assertTrue(
+                "No Union operator?",
+                BOpUtility.visitAll(astContainer.getQueryPlan(), Union.class)
+                        .hasNext());
+
+    }
+
+    /**
+     * Variant of the test above without the query hint. The UNION is below
+     * the default threshold and is evaluated within the pipeline of the query
+     * (Tee/CopyOp). The same solutions are produced.
+     */
+    public void test_union_parallel_01a() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(
+                "union_parallel_01a", // testURI,
+                "union_parallel_01a.rq",// queryFileURL
+                "union_parallel_01.ttl",// dataFileURL
+                "union_parallel_01.srx"// resultFileURL
+                ).runTest();
+
+        assertFalse(
+                "Union operator should not be used",
+                BOpUtility.visitAll(astContainer.getQueryPlan(), Union.class)
+                        .hasNext());
+
+    }
+
 }
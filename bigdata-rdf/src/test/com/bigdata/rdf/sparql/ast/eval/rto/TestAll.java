@@ -70,6 +70,9 @@ public class TestAll extends TestCase {
         // 'barData' test suite (quads mode).
         suite.addTestSuite(TestRTO_BAR.class);
 
+        // Adaptive execution of the join path over skewed data.
+        suite.addTestSuite(TestRTO_Skew.class);
+
         /*
          * FOAF test suite (quads mode).
          * 
@@ -0,0 +1,179 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2011.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 17, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval.rto;
+
+import java.util.Properties;
+import java.util.UUID;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.engine.IRunningQuery;
+import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.fed.QueryEngineFactory;
+import com.bigdata.bop.joinGraph.rto.JoinGraph;
+import com.bigdata.journal.IBTreeManager;
+import com.bigdata.rdf.axioms.NoAxioms;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+
+/**
+ * Data driven test suite for the checkpointed (adaptive) execution of the join
+ * path selected by the Runtime Query Optimizer (RTO) using a small synthetic
+ * data set with a skewed distribution.
+ * <p>
+ * The data set has 200 items. The last 10 items (in key order) each have 50
+ * tags while the other items have one tag each, so the cutoff joins which see
+ * only the first few items underestimate the fan out of the tag join.
+ *
+ * @see JoinGraph.Annotations#ADAPTIVE_THRESHOLD
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestRTO_Skew extends AbstractRTOTestCase {
+
+    /**
+     *
+     */
+    public TestRTO_Skew() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestRTO_Skew(final String name) {
+        super(name);
+    }
+
+    @Override
+    public Properties getProperties() {
+
+        // Note: clone to avoid modifying!!!
+        final Properties properties = (Properties) super.getProperties().clone();
+
+        properties.setProperty(BigdataSail.Options.TRIPLES_MODE, "true");
+
+        properties.setProperty(BigdataSail.Options.AXIOMS_CLASS,
+                NoAxioms.class.getName());
+
+        return properties;
+
+    }
+
+    /**
+     * The join graph evaluated by the RTO using the default (pipelined)
+     * execution of the selected join path.
+     *
+     * <pre>
+     * SELECT (COUNT(*) as ?count)
+     * WHERE {
+     *   ?x a :Item .
+     *   ?x :tag ?t .
+     *   ?t :group ?g .
+     *   ?g :label ?l .
+     * }
+     * </pre>
+     */
+    public void test_SKEW_Q1() throws Exception {
+
+        final ASTContainer astContainer = new TestHelper(//
+                "rto/SKEW-Q1", // testURI,
+                "rto/SKEW-Q1.rq",// queryFileURL
+                "rto/skew.ttl",// dataFileURL
+                "rto/SKEW-Q1.srx"// resultFileURL
+        ).runTest();
+
+        assertNotNull(BOpUtility.getOnly(astContainer.getQueryPlan(),
+                JoinGraph.class));
+
+    }
+
+    /**
+     * The same join graph with the adaptive threshold set to <code>1</code>,
+     * so the remaining joins are re-planned against the materialized
+     * intermediate solutions as soon as an estimate made by the RTO differs
+     * from the observed cardinality. The solutions must be the same as for the
+     * pipelined execution.
+     */
+    public void test_SKEW_Q1_adaptive() throws Exception {
+
+        final TestHelper helper = new TestHelper(//
+                "rto/SKEW-Q1-adaptive", // testURI,
+                "rto/SKEW-Q1-adaptive.rq",// queryFileURL
+                "rto/skew.ttl",// dataFileURL
+                "rto/SKEW-Q1.srx"// resultFileURL
+        );
+
+        /*
+         * Assign a UUID to this query so we can get at its outcome.
+         */
+        final UUID queryId = UUID.randomUUID();
+
+        helper.getASTContainer().setQueryHint(QueryHints.QUERYID,
+                queryId.toString());
+
+        final QueryEngine queryEngine = QueryEngineFactory
+                .getExistingQueryController((IBTreeManager) helper
+                        .getTripleStore().getIndexManager());
+
+        // Hook up our listener and run the test.
+        final ASTContainer astContainer;
+        final MyQueryListener l = new MyQueryListener(queryId);
+        try {
+            // Register the listener.
+            queryEngine.addListener(l);
+            // Run the test.
+            astContainer = helper.runTest();
+        } finally {
+            // Unregister the listener.
+            queryEngine.removeListener(l);
+        }
+
+        final JoinGraph joinGraph = BOpUtility.getOnly(
+                astContainer.getQueryPlan(), JoinGraph.class);
+
+        assertNotNull(joinGraph);
+
+        assertEquals(1d, joinGraph.getAdaptiveThreshold());
+
+        // Verify that the remaining joins were re-planned.
+        Integer replannedAfter = null;
+        for (IRunningQuery q : l.getRunningQueries()) {
+            replannedAfter = joinGraph.getReplannedAfter(q);
+            if (replannedAfter != null)
+                break;
+        }
+
+        assertNotNull("Not re-planned?", replannedAfter);
+
+        if (log.isInfoEnabled())
+            log.info("replannedAfter=" + replannedAfter);
+
+    }
+
+}
@@ -0,0 +1,244 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 17, 2026
+ */
+
+
+package com.bigdata.rdf.sparql.ast.optimizers;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.AbstractASTEvaluationTestCase;
+import com.bigdata.rdf.sparql.ast.ConstantNode;
+import com.bigdata.rdf.sparql.ast.FilterNode;
+import com.bigdata.rdf.sparql.ast.FunctionNode;
+import com.bigdata.rdf.sparql.ast.IQueryNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.OrderByExpr;
+import com.bigdata.rdf.sparql.ast.OrderByNode;
+import com.bigdata.rdf.sparql.ast.ProjectionNode;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.SliceNode;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.VarNode;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+/**
+ * Test suite for {@link ASTLimitPushdownOptimizer}.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestASTLimitPushdownOptimizer extends
+        AbstractASTEvaluationTestCase {
+
+    /**
+     * 
+     */
+    public TestASTLimitPushdownOptimizer() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestASTLimitPushdownOptimizer(String name) {
+        super(name);
+    }
+
+    /**
+     * Note: The rewrite is not applied in quads mode.
+     */
+    @Override
+    public Properties getProperties() {
+        final Properties props = super.getProperties();
+        props.setProperty(AbstractTripleStore.Options.QUADS, "false");
+        return props;
+    }
+
+    /**
+     * Return a query having a single statement pattern in the WHERE clause.
+     * 
+     * <pre>
+     * SELECT ?s ?o WHERE { ?s :p ?o } OFFSET 5 LIMIT 10
+     * </pre>
+     */
+    @SuppressWarnings("rawtypes")
+    private QueryRoot newQuery(final IV p) {
+
+        final QueryRoot query = new QueryRoot(QueryType.SELECT);
+
+        final ProjectionNode projection = new ProjectionNode();
+        projection.addProjectionVar(new VarNode("s"));
+        projection.addProjectionVar(new VarNode("o"));
+        query.setProjection(projection);
+
+        final JoinGroupNode where = new JoinGroupNode();
+        where.addChild(new StatementPatternNode(new VarNode("s"),
+                new ConstantNode(p), new VarNode("o")));
+        query.setWhereClause(where);
+
+        query.setSlice(new SliceNode(5L/* offset */, 10L/* limit */));
+
+        return query;
+
+    }
+
+    /**
+     * The <code>offset+limit</code> is attached to the statement pattern.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_limitPushdown() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV p = makeIV(new URIImpl("http://example/p"));
+
+        final QueryRoot given = newQuery(p);
+
+        final QueryRoot expected = newQuery(p);
+        ((StatementPatternNode) expected.getWhereClause().get(0))
+                .setQueryHint(QueryHints.CUTOFF_LIMIT, "15");
+
+        final AST2BOpContext ctx = new AST2BOpContext(new ASTContainer(given),
+                store);
+
+        final IQueryNode actual = new ASTLimitPushdownOptimizer().optimize(
+                ctx, given/* queryNode */, bsets);
+
+        assertSameAST(expected, actual);
+
+    }
+
+    /**
+     * The rewrite is not applied when there is an ORDER BY since all
+     * solutions must be ordered before the SLICE.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_limitPushdown_orderBy() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV p = makeIV(new URIImpl("http://example/p"));
+
+        final QueryRoot given = newQuery(p);
+        {
+            final OrderByNode orderBy = new OrderByNode();
+            orderBy.addExpr(new OrderByExpr(new VarNode("o"), true/* ascending */));
+            given.setOrderBy(orderBy);
+        }
+
+        final QueryRoot expected = newQuery(p);
+        {
+            final OrderByNode orderBy = new OrderByNode();
+            orderBy.addExpr(new OrderByExpr(new VarNode("o"), true/* ascending */));
+            expected.setOrderBy(orderBy);
+        }
+
+        final AST2BOpContext ctx = new AST2BOpContext(new ASTContainer(given),
+                store);
+
+        final IQueryNode actual = new ASTLimitPushdownOptimizer().optimize(
+                ctx, given/* queryNode */, bsets);
+
+        assertSameAST(expected, actual);
+
+    }
+
+    /**
+     * The rewrite is not applied for a DISTINCT query since duplicate
+     * solutions read from the access path do not count against the LIMIT.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_limitPushdown_distinct() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV p = makeIV(new URIImpl("http://example/p"));
+
+        final QueryRoot given = newQuery(p);
+        given.getProjection().setDistinct(true);
+
+        final QueryRoot expected = newQuery(p);
+        expected.getProjection().setDistinct(true);
+
+        final AST2BOpContext ctx = new AST2BOpContext(new ASTContainer(given),
+                store);
+
+        final IQueryNode actual = new ASTLimitPushdownOptimizer().optimize(
+                ctx, given/* queryNode */, bsets);
+
+        assertSameAST(expected, actual);
+
+    }
+
+    /**
+     * The rewrite is not applied when a FILTER has been attached to the
+     * statement pattern since the FILTER is evaluated after the access path
+     * has been cut off.
+     * 
+     * <pre>
+     * SELECT ?s ?o WHERE { ?s :p ?o FILTER(?o > 5) } OFFSET 5 LIMIT 10
+     * </pre>
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_limitPushdown_attachedFilter() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV p = makeIV(new URIImpl("http://example/p"));
+
+        final IV five = makeIV(new LiteralImpl("5"));
+
+        final QueryRoot given = newQuery(p);
+        ((StatementPatternNode) given.getWhereClause().get(0))
+                .setAttachedJoinFilters(Collections.singletonList(new FilterNode(
+                        FunctionNode.GT(new VarNode("o"), new ConstantNode(five)))));
+
+        final QueryRoot expected = newQuery(p);
+        ((StatementPatternNode) expected.getWhereClause().get(0))
+                .setAttachedJoinFilters(Collections.singletonList(new FilterNode(
+                        FunctionNode.GT(new VarNode("o"), new ConstantNode(five)))));
+
+        final AST2BOpContext ctx = new AST2BOpContext(new ASTContainer(given),
+                store);
+
+        final IQueryNode actual = new ASTLimitPushdownOptimizer().optimize(
+                ctx, given/* queryNode */, bsets);
+
+        assertSameAST(expected, actual);
+
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 17, 2026
+ */
+
+
+package com.bigdata.rdf.sparql.ast.optimizers;
+
+import org.openrdf.model.impl.URIImpl;
+
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.AbstractASTEvaluationTestCase;
+import com.bigdata.rdf.sparql.ast.ConstantNode;
+import com.bigdata.rdf.sparql.ast.IQueryNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.ProjectionNode;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.UnionNode;
+import com.bigdata.rdf.sparql.ast.VarNode;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpBase;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+
+/**
+ * Test suite for {@link ASTParallelUnionOptimizer}.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestASTParallelUnionOptimizer extends
+        AbstractASTEvaluationTestCase {
+
+    /**
+     * 
+     */
+    public TestASTParallelUnionOptimizer() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestASTParallelUnionOptimizer(String name) {
+        super(name);
+    }
+
+    /**
+     * Return a query whose WHERE clause is a UNION of two statement patterns,
+     * each having the given estimated cardinality.
+     * 
+     * <pre>
+     * SELECT ?s WHERE { { ?s :p ?o } UNION { ?s :q ?o } }
+     * </pre>
+     */
+    @SuppressWarnings("rawtypes")
+    private QueryRoot newQuery(final IV p, final IV q, final long rangeCount,
+            final boolean parallel) {
+
+        final QueryRoot query = new QueryRoot(QueryType.SELECT);
+
+        final ProjectionNode projection = new ProjectionNode();
+        projection.addProjectionVar(new VarNode("s"));
+        query.setProjection(projection);
+
+        final UnionNode union = new UnionNode();
+
+        for (IV pred : new IV[] { p, q }) {
+
+            final StatementPatternNode sp = new StatementPatternNode(
+                    new VarNode("s"), new ConstantNode(pred), new VarNode("o"));
+
+            sp.setProperty(AST2BOpBase.Annotations.ESTIMATED_CARDINALITY,
+                    rangeCount);
+
+            union.addChild(new JoinGroupNode(sp));
+
+        }
+
+        if (parallel)
+            union.setParallel(true);
+
+        final JoinGroupNode where = new JoinGroupNode();
+        where.addChild(union);
+        query.setWhereClause(where);
+
+        return query;
+
+    }
+
+    /**
+     * The UNION is marked when its estimated cost is at least the threshold.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_parallelUnion() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV p = makeIV(new URIImpl("http://example/p"));
+
+        final IV q = makeIV(new URIImpl("http://example/q"));
+
+        final QueryRoot given = newQuery(p, q, 60L, false/* parallel */);
+
+        final QueryRoot expected = newQuery(p, q, 60L, true/* parallel */);
+
+        final AST2BOpContext ctx = new AST2BOpContext(new ASTContainer(given),
+                store);
+
+        ctx.parallelUnionThreshold = 100L;
+
+        final IQueryNode actual = new ASTParallelUnionOptimizer().optimize(
+                ctx, given/* queryNode */, bsets);
+
+        assertSameAST(expected, actual);
+
+    }
+
+    /**
+     * The UNION is not marked when its estimated cost is below the threshold.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_parallelUnion_belowThreshold() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV p = makeIV(new URIImpl("http://example/p"));
+
+        final IV q = makeIV(new URIImpl("http://example/q"));
+
+        final QueryRoot given = newQuery(p, q, 40L, false/* parallel */);
+
+        final QueryRoot expected = newQuery(p, q, 40L, false/* parallel */);
+
+        final AST2BOpContext ctx = new AST2BOpContext(new ASTContainer(given),
+                store);
+
+        ctx.parallelUnionThreshold = 100L;
+
+        final IQueryNode actual = new ASTParallelUnionOptimizer().optimize(
+                ctx, given/* queryNode */, bsets);
+
+        assertSameAST(expected, actual);
+
+    }
+
+}
@@ -143,6 +143,12 @@ public class TestAll extends TestCase {
         
         suite.addTestSuite(TestALPPinTrac773.class);
 
+        // Unit tests for pushing a LIMIT down onto an access path.
+        suite.addTestSuite(TestASTLimitPushdownOptimizer.class);
+
+        // Unit tests for evaluating a UNION as concurrent child queries.
+        suite.addTestSuite(TestASTParallelUnionOptimizer.class);
+
         return suite;
 
     }
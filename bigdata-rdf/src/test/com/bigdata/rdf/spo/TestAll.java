@@ -86,6 +86,12 @@ public class TestAll extends TestCase {
         // test suite for the access path api.
         suite.addTestSuite(TestSPOAccessPath.class);
 
+        // test suite for the characteristic sets statistics.
+        suite.addTestSuite(TestCharacteristicSets.class);
+
+        // test suite for the materialized transitive closure.
+        suite.addTestSuite(TestTransitiveClosureIndex.class);
+
         // star joins
 //        suite.addTestSuite(TestSPOStarJoin.class);
 
@@ -0,0 +1,189 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2007.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.Properties;
+
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.MockTermIdFactory;
+import com.bigdata.rdf.internal.VTE;
+import com.bigdata.rdf.model.StatementEnum;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.AbstractTripleStoreTestCase;
+
+/**
+ * Test suite for the incremental maintenance of the {@link CharacteristicSets}
+ * by the {@link SPORelation}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestCharacteristicSets extends AbstractTripleStoreTestCase {
+
+    /**
+     *
+     */
+    public TestCharacteristicSets() {
+        super();
+    }
+
+    /**
+     * @param name
+     */
+    public TestCharacteristicSets(String name) {
+        super(name);
+    }
+
+    @Override
+    public Properties getProperties() {
+
+        final Properties properties = new Properties(super.getProperties());
+
+        properties.setProperty(AbstractTripleStore.Options.CHARACTERISTIC_SETS,
+                "true");
+
+        return properties;
+
+    }
+
+    /**
+     * Verify that the characteristic sets and the per-predicate distinct
+     * subject and object counts track statements as they are added and
+     * removed.
+     */
+    public void test_characteristicSets() {
+
+        final AbstractTripleStore store = getStore(getProperties());
+
+        try {
+
+            if (store.getSPORelation().getCharacteristicSets() == null) {
+
+                log.warn("Characteristic sets are not maintained for this mode.");
+
+                return;
+
+            }
+
+            final MockTermIdFactory factory = new MockTermIdFactory();
+
+            final IV<?, ?> s1 = factory.newTermId(VTE.URI);
+            final IV<?, ?> s2 = factory.newTermId(VTE.URI);
+            final IV<?, ?> s3 = factory.newTermId(VTE.URI);
+            final IV<?, ?> p1 = factory.newTermId(VTE.URI);
+            final IV<?, ?> p2 = factory.newTermId(VTE.URI);
+            final IV<?, ?> o1 = factory.newTermId(VTE.URI);
+            final IV<?, ?> o2 = factory.newTermId(VTE.URI);
+            final IV<?, ?> o3 = factory.newTermId(VTE.URI);
+            final IV<?, ?> o4 = factory.newTermId(VTE.URI);
+
+            store.addStatements(new ISPO[] {//
+                    new SPO(s1, p1, o1, StatementEnum.Explicit),//
+                    new SPO(s1, p2, o2, StatementEnum.Explicit),//
+                    new SPO(s2, p1, o1, StatementEnum.Explicit),//
+                    new SPO(s2, p2, o3, StatementEnum.Explicit),//
+                    new SPO(s3, p1, o4, StatementEnum.Explicit),//
+            }, 5);
+
+            {
+
+                final CharacteristicSets stats = store.getSPORelation()
+                        .getCharacteristicSets();
+
+                // {p1,p2} and {p1}
+                assertEquals(2L, stats.getCharacteristicSetCount());
+
+                assertEquals(3L, stats.getDistinctSubjectCount(p1));
+                assertEquals(2L, stats.getDistinctSubjectCount(p2));
+                assertEquals(2L, stats.getDistinctObjectCount(p1));
+                assertEquals(2L, stats.getDistinctObjectCount(p2));
+
+                assertEquals(2L, stats.estimateStarCardinality(new IV[] { p1,
+                        p2 }, null/* boundObject */));
+
+                assertEquals(3L, stats.estimateStarCardinality(
+                        new IV[] { p1 }, null/* boundObject */));
+
+            }
+
+            // re-asserting an existing statement does not change anything.
+            store.addStatements(new ISPO[] {//
+                    new SPO(s1, p1, o1, StatementEnum.Explicit),//
+                    new SPO(s3, p2, o2, StatementEnum.Explicit),//
+            }, 2);
+
+            {
+
+                final CharacteristicSets stats = store.getSPORelation()
+                        .getCharacteristicSets();
+
+                // {p1,p2}
+                assertEquals(1L, stats.getCharacteristicSetCount());
+
+                assertEquals(3L, stats.getDistinctSubjectCount(p2));
+                assertEquals(2L, stats.getDistinctObjectCount(p2));
+
+                assertEquals(3L, stats.estimateStarCardinality(new IV[] { p1,
+                        p2 }, null/* boundObject */));
+
+            }
+
+            store.removeStatements(new ISPO[] {//
+                    new SPO(s1, p1, o1, StatementEnum.Explicit),//
+                    new SPO(s2, p1, o1, StatementEnum.Explicit),//
+            }, 2);
+
+            {
+
+                final CharacteristicSets stats = store.getSPORelation()
+                        .getCharacteristicSets();
+
+                // {p2} and {p1,p2}
+                assertEquals(2L, stats.getCharacteristicSetCount());
+
+                assertEquals(1L, stats.getDistinctSubjectCount(p1));
+                assertEquals(1L, stats.getDistinctObjectCount(p1));
+
+                assertEquals(1L, stats.estimateStarCardinality(new IV[] { p1,
+                        p2 }, null/* boundObject */));
+
+                // bound object scales by the #of distinct objects.
+                assertEquals(1L, stats.estimateStarCardinality(new IV[] { p1,
+                        p2 }, new boolean[] { false, true }));
+
+            }
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+}
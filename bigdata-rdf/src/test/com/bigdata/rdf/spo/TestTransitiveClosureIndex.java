@@ -0,0 +1,187 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.Properties;
+
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.model.BigdataURI;
+import com.bigdata.rdf.model.BigdataValue;
+import com.bigdata.rdf.model.BigdataValueFactory;
+import com.bigdata.rdf.model.StatementEnum;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.AbstractTripleStoreTestCase;
+
+/**
+ * Test suite for the incremental maintenance of the
+ * {@link TransitiveClosureIndex} by the {@link SPORelation}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestTransitiveClosureIndex extends AbstractTripleStoreTestCase {
+
+    private static final String SUB_CLASS_OF = "http://www.bigdata.com/subClassOf";
+
+    /**
+     *
+     */
+    public TestTransitiveClosureIndex() {
+        super();
+    }
+
+    /**
+     * @param name
+     */
+    public TestTransitiveClosureIndex(String name) {
+        super(name);
+    }
+
+    @Override
+    public Properties getProperties() {
+
+        final Properties properties = new Properties(super.getProperties());
+
+        properties.setProperty(AbstractTripleStore.Options.CLOSURE_PREDICATES,
+                SUB_CLASS_OF);
+
+        return properties;
+
+    }
+
+    /**
+     * Verify that the shortest path depths in the closure track statements as
+     * they are added and removed.
+     */
+    public void test_closure() {
+
+        final AbstractTripleStore store = getStore(getProperties());
+
+        try {
+
+            if (store.getSPORelation().getTransitiveClosureIndex() == null) {
+
+                log.warn("Transitive closure is not maintained for this mode.");
+
+                return;
+
+            }
+
+            final BigdataValueFactory f = store.getValueFactory();
+
+            final BigdataURI p = f.createURI(SUB_CLASS_OF);
+            final BigdataURI q = f.createURI("http://www.bigdata.com/q");
+            final BigdataURI a = f.createURI("http://www.bigdata.com/a");
+            final BigdataURI b = f.createURI("http://www.bigdata.com/b");
+            final BigdataURI c = f.createURI("http://www.bigdata.com/c");
+            final BigdataURI d = f.createURI("http://www.bigdata.com/d");
+            final BigdataURI e = f.createURI("http://www.bigdata.com/e");
+
+            store.addTerms(new BigdataValue[] { p, q, a, b, c, d, e });
+
+            // a -> b -> c -> d and e -> c, plus d q a (not materialized).
+            store.addStatements(new ISPO[] {//
+                    spo(a, p, b),//
+                    spo(b, p, c),//
+                    spo(c, p, d),//
+                    spo(e, p, c),//
+                    spo(d, q, a),//
+            }, 5);
+
+            assertEquals(1, store.getSPORelation().getClosurePredicateIVs().length);
+
+            {
+
+                final TransitiveClosureIndex closure = store.getSPORelation()
+                        .getTransitiveClosureIndex();
+
+                assertEquals(1L, closure.getDepth(p.getIV(), a.getIV(), b.getIV()));
+                assertEquals(2L, closure.getDepth(p.getIV(), a.getIV(), c.getIV()));
+                assertEquals(3L, closure.getDepth(p.getIV(), a.getIV(), d.getIV()));
+                assertEquals(2L, closure.getDepth(p.getIV(), e.getIV(), d.getIV()));
+
+                // not connected.
+                assertEquals(0L, closure.getDepth(p.getIV(), d.getIV(), a.getIV()));
+                assertEquals(0L, closure.getDepth(p.getIV(), a.getIV(), e.getIV()));
+
+                // other predicates are not materialized.
+                assertEquals(0L, closure.getPathCount(q.getIV()));
+
+                assertEquals(8L, closure.getPathCount(p.getIV()));
+
+            }
+
+            // a shortcut reduces the depth.
+            store.addStatements(new ISPO[] { spo(a, p, d) }, 1);
+
+            {
+
+                final TransitiveClosureIndex closure = store.getSPORelation()
+                        .getTransitiveClosureIndex();
+
+                assertEquals(1L, closure.getDepth(p.getIV(), a.getIV(), d.getIV()));
+
+                assertEquals(8L, closure.getPathCount(p.getIV()));
+
+            }
+
+            // removing an edge removes the paths through that edge.
+            store.removeStatements(new ISPO[] { spo(b, p, c) }, 1);
+
+            {
+
+                final TransitiveClosureIndex closure = store.getSPORelation()
+                        .getTransitiveClosureIndex();
+
+                assertEquals(1L, closure.getDepth(p.getIV(), a.getIV(), b.getIV()));
+                assertEquals(0L, closure.getDepth(p.getIV(), a.getIV(), c.getIV()));
+                assertEquals(1L, closure.getDepth(p.getIV(), a.getIV(), d.getIV()));
+                assertEquals(0L, closure.getDepth(p.getIV(), b.getIV(), d.getIV()));
+                assertEquals(2L, closure.getDepth(p.getIV(), e.getIV(), d.getIV()));
+
+                assertEquals(5L, closure.getPathCount(p.getIV()));
+
+            }
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    private static SPO spo(final BigdataValue s, final BigdataValue p,
+            final BigdataValue o) {
+
+        return new SPO((IV<?, ?>) s.getIV(), (IV<?, ?>) p.getIV(),
+                (IV<?, ?>) o.getIV(), StatementEnum.Explicit);
+
+    }
+
+}
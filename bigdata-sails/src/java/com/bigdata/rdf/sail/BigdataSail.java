@@ -377,6 +377,16 @@ public class BigdataSail extends SailBase implements Sail {
         public static final String DESCRIBE_STATEMENT_LIMIT = BigdataSail.class
                 .getPackage().getName() + ".describeIterationStatementLimit";
 
+        /**
+         * Option specifies whether the optimized AST and query plan for
+         * queries against the KB will be cached and reused (optional).
+         * 
+         * @see QueryHints#QUERY_PLAN_CACHE
+         * @see QueryHints#DEFAULT_QUERY_PLAN_CACHE
+         */
+        public static final String QUERY_PLAN_CACHE = BigdataSail.class
+                .getPackage().getName() + ".queryPlanCache";
+
         /**
          * The name of the default value used for the
          * {@link Journal.Options#FILE} property by the
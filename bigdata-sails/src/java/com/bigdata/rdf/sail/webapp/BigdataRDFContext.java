@@ -74,6 +74,7 @@ import org.openrdf.sail.SailException;
 
 import com.bigdata.bop.engine.IRunningQuery;
 import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.engine.QueryPriority;
 import com.bigdata.counters.CAT;
 import com.bigdata.io.NullOutputStream;
 import com.bigdata.journal.IIndexManager;
@@ -143,6 +144,13 @@ public class BigdataRDFContext extends BigdataBaseContext {
      * Optimizer.
      */
     protected static final String RTO = "RTO";
+
+    /**
+     * URL Query parameter used to specify the {@link QueryPriority} of a
+     * query. MAY be <code>null</code>, in which case we do not set the
+     * {@link QueryHints#QUERY_PRIORITY} query hint.
+     */
+    protected static final String PRIORITY = "priority";
     
     /**
      * URL Query parameter used to request an XHTML response for SPARQL
@@ -220,6 +228,13 @@ public class BigdataRDFContext extends BigdataBaseContext {
 	private final ScheduledFuture<?> m_queueStatsFuture;
 	private final ThreadPoolExecutorBaseStatisticsTask m_queueSampleTask;
 
+    /**
+     * The cache for SPARQL query results (optional).
+     * 
+     * @see ConfigParams#RESULT_CACHE_SIZE
+     */
+    private final SparqlResultCache m_resultCache;
+
     /**
      * The currently executing queries (does not include queries where a client
      * has established a connection but the query is not running because the
@@ -325,6 +340,17 @@ public class BigdataRDFContext extends BigdataBaseContext {
 
 		}
 
+        if (config.resultCacheSize > 0) {
+
+            m_resultCache = new SparqlResultCache(indexManager,
+                    config.resultCacheSize);
+
+        } else {
+
+            m_resultCache = null;
+
+        }
+
 	}
 
 //    /**
@@ -371,6 +397,10 @@ public class BigdataRDFContext extends BigdataBaseContext {
 
         // Interrupt all running queries.
         queryService.shutdownNow();
+
+        // Release the native memory for the result cache.
+        if (m_resultCache != null)
+            m_resultCache.close();
         
     }
 
@@ -386,6 +416,18 @@ public class BigdataRDFContext extends BigdataBaseContext {
 	    
 	}
 
+    /**
+     * The cache for SPARQL query results -or- <code>null</code> if the cache
+     * is not enabled.
+     * 
+     * @see ConfigParams#RESULT_CACHE_SIZE
+     */
+    public SparqlResultCache getResultCache() {
+
+        return m_resultCache;
+
+    }
+
     /**
      * Return the effective boolean value of a URL query parameter such as
      * "analytic". If the URL query parameter was not given, then the effective
@@ -618,6 +660,12 @@ public class BigdataRDFContext extends BigdataBaseContext {
          * When <code>true</code>, enable the Runtime Query Optimizer.
          */
         final boolean rto;
+
+        /**
+         * The {@link QueryPriority} requested by the {@link #PRIORITY} URL
+         * query parameter -or- <code>null</code> if none was specified.
+         */
+        final String priority;
         
         /**
          * When <code>true</code>, provide an view of the XHTML representation
@@ -759,6 +807,7 @@ public class BigdataRDFContext extends BigdataBaseContext {
             this.rto = getEffectiveBooleanValue(req.getParameter(RTO),
                     QueryHints.DEFAULT_OPTIMIZER
                             .equals(QueryOptimizerEnum.Runtime));
+            this.priority = req.getParameter(PRIORITY);
             this.xhtml = getEffectiveBooleanValue(req.getParameter(XHTML),
                     false);
             this.monitor = getEffectiveBooleanValue(req.getParameter(MONITOR),
@@ -833,6 +882,7 @@ public class BigdataRDFContext extends BigdataBaseContext {
             this.rto = getEffectiveBooleanValue(req.getParameter(RTO),
                     QueryHints.DEFAULT_OPTIMIZER
                             .equals(QueryOptimizerEnum.Runtime));
+            this.priority = req.getParameter(PRIORITY);
             this.xhtml = getEffectiveBooleanValue(req.getParameter(XHTML),
                     false);
             this.monitor = getEffectiveBooleanValue(req.getParameter(MONITOR),
@@ -922,6 +972,14 @@ public class BigdataRDFContext extends BigdataBaseContext {
                 astContainer.setQueryHint(QueryHints.OPTIMIZER,
                         QueryOptimizerEnum.Runtime.toString());
                 
+            }
+
+            if (priority != null) {
+
+                // Set the priority class used for admission control.
+                astContainer.setQueryHint(QueryHints.QUERY_PRIORITY,
+                        QueryPriority.valueOf(priority).toString());
+
             }
 
 			// Set the query object.
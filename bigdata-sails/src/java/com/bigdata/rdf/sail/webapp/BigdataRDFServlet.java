@@ -55,6 +55,7 @@ import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.RDFWriter;
 import org.openrdf.rio.RDFWriterRegistry;
 
+import com.bigdata.bop.engine.QueryAdmissionException;
 import com.bigdata.journal.IAtomicStore;
 import com.bigdata.rdf.properties.PropertiesFormat;
 import com.bigdata.rdf.properties.PropertiesWriter;
@@ -206,6 +207,14 @@ abstract public class BigdataRDFServlet extends BigdataServlet {
                      */
                     resp.setStatus(HTTP_BADREQUEST);
                     resp.setContentType(MIME_TEXT_PLAIN);
+                } else if (InnerCause.isInnerCause(t,
+                        QueryAdmissionException.class)) {
+                    /*
+                     * The query was not admitted because the server is
+                     * overloaded. The client may retry later.
+                     */
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    resp.setContentType(MIME_TEXT_PLAIN);
                 } else {
                     // Internal server error.
                     resp.setStatus(HTTP_INTERNALERROR);
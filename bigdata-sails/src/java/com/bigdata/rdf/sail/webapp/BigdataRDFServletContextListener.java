@@ -325,9 +325,95 @@ public class BigdataRDFServletContextListener implements
 
         }
 
+        final long resultCacheSize;
+        {
+
+            final String s = context
+                    .getInitParameter(ConfigParams.RESULT_CACHE_SIZE);
+
+            resultCacheSize = s == null ? ConfigParams.DEFAULT_RESULT_CACHE_SIZE
+                    : Long.valueOf(s);
+
+            if (resultCacheSize < 0) {
+
+                throw new RuntimeException(ConfigParams.RESULT_CACHE_SIZE
+                        + " : Must be non-negative, not: " + s);
+
+            }
+
+            if (log.isInfoEnabled())
+                log.info(ConfigParams.RESULT_CACHE_SIZE + "=" + resultCacheSize);
+
+        }
+
+        {
+
+            final String s1 = context
+                    .getInitParameter(ConfigParams.MAX_RUNNING_QUERIES);
+
+            final int maxRunningQueries = s1 == null ? ConfigParams.DEFAULT_MAX_RUNNING_QUERIES
+                    : Integer.valueOf(s1);
+
+            if (maxRunningQueries < 0) {
+
+                throw new RuntimeException(ConfigParams.MAX_RUNNING_QUERIES
+                        + " : Must be non-negative, not: " + s1);
+
+            }
+
+            final String s2 = context
+                    .getInitParameter(ConfigParams.MAX_QUEUED_QUERIES);
+
+            final int maxQueuedQueries = s2 == null ? ConfigParams.DEFAULT_MAX_QUEUED_QUERIES
+                    : Integer.valueOf(s2);
+
+            if (maxQueuedQueries < 0) {
+
+                throw new RuntimeException(ConfigParams.MAX_QUEUED_QUERIES
+                        + " : Must be non-negative, not: " + s2);
+
+            }
+
+            final String s3 = context
+                    .getInitParameter(ConfigParams.ADMISSION_TIMEOUT);
+
+            final long admissionTimeout = s3 == null ? ConfigParams.DEFAULT_ADMISSION_TIMEOUT
+                    : Long.valueOf(s3);
+
+            if (admissionTimeout < 0) {
+
+                throw new RuntimeException(ConfigParams.ADMISSION_TIMEOUT
+                        + " : Must be non-negative, not: " + s3);
+
+            }
+
+            if (s1 != null || s2 != null || s3 != null) {
+
+                // Configure admission control for the query engine.
+                final QueryEngine queryEngine = QueryEngineFactory
+                        .getQueryController(indexManager);
+
+                queryEngine.setMaxRunningQueries(maxRunningQueries);
+
+                queryEngine.setMaxQueuedQueries(maxQueuedQueries);
+
+                queryEngine.setAdmissionTimeout(admissionTimeout);
+
+            }
+
+            if (log.isInfoEnabled())
+                log.info(ConfigParams.MAX_RUNNING_QUERIES + "="
+                        + maxRunningQueries + ", "
+                        + ConfigParams.MAX_QUEUED_QUERIES + "="
+                        + maxQueuedQueries + ", "
+                        + ConfigParams.ADMISSION_TIMEOUT + "="
+                        + admissionTimeout);
+
+        }
+
         final SparqlEndpointConfig config = new SparqlEndpointConfig(namespace,
                 timestamp, queryThreadPoolSize, describeEachNamedGraph,
-                readOnly, queryTimeout);
+                readOnly, queryTimeout, resultCacheSize);
 
         rdfContext = new BigdataRDFContext(config, indexManager);
 
@@ -25,6 +25,7 @@ package com.bigdata.rdf.sail.webapp;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import com.bigdata.bop.engine.QueryEngine;
 import com.bigdata.journal.IIndexManager;
 
 /**
@@ -132,6 +133,53 @@ public interface ConfigParams {
 
     long DEFAULT_QUERY_TIMEOUT = 0L;
 
+    /**
+     * When non-zero, this specifies the maximum #of bytes of serialized SPARQL
+     * query results which will be cached outside of the JVM heap (default
+     * {@value #DEFAULT_RESULT_CACHE_SIZE}). Repeated queries against the same
+     * commit point are then answered from the cache without being evaluated.
+     * The cache is cleared each time there is a new commit point.
+     * 
+     * @see SparqlResultCache
+     */
+    String RESULT_CACHE_SIZE = "resultCacheSize";
+
+    long DEFAULT_RESULT_CACHE_SIZE = 0L;
+
+    /**
+     * When non-zero, this specifies the maximum #of SPARQL queries which may
+     * run at once on the {@link QueryEngine} (default
+     * {@value #DEFAULT_MAX_RUNNING_QUERIES}). Additional queries wait to be
+     * admitted in the order of their priority class.
+     * 
+     * @see QueryEngine#setMaxRunningQueries(int)
+     */
+    String MAX_RUNNING_QUERIES = "maxRunningQueries";
+
+    int DEFAULT_MAX_RUNNING_QUERIES = 0;
+
+    /**
+     * When non-zero, this specifies the maximum #of SPARQL queries which may
+     * wait to be admitted (default {@value #DEFAULT_MAX_QUEUED_QUERIES}).
+     * Queries which arrive when the wait queue is full are rejected.
+     * 
+     * @see QueryEngine#setMaxQueuedQueries(int)
+     */
+    String MAX_QUEUED_QUERIES = "maxQueuedQueries";
+
+    int DEFAULT_MAX_QUEUED_QUERIES = 0;
+
+    /**
+     * When non-zero, this specifies the maximum time (milliseconds) that a
+     * SPARQL query will wait to be admitted (default
+     * {@value #DEFAULT_ADMISSION_TIMEOUT}).
+     * 
+     * @see QueryEngine#setAdmissionTimeout(long)
+     */
+    String ADMISSION_TIMEOUT = "admissionTimeout";
+
+    long DEFAULT_ADMISSION_TIMEOUT = 0L;
+
     /**
      * A class that extends {@link BigdataRDFServletContextListener}. This
      * offers applications a means to hook the {@link ServletContextListener}
@@ -447,10 +447,43 @@ public class QueryServlet extends BigdataRDFServlet {
          */
         try {
 
-            final OutputStream os = resp.getOutputStream();
-
             final BigdataRDFContext context = getBigdataRDFContext();
 
+            /*
+             * Test the result cache.
+             */
+            final SparqlResultCache resultCache = context.getResultCache();
+
+            final SparqlResultCache.Key cacheKey = resultCache == null ? null
+                    : resultCache.newKey(req, namespace, timestamp, queryStr);
+
+            if (cacheKey != null) {
+
+                final SparqlResultCache.CacheHit hit = resultCache
+                        .get(cacheKey);
+
+                if (hit != null) {
+
+                    // Answered by the cache.
+                    sendCacheHit(resp, hit, timestamp);
+
+                    return;
+
+                }
+
+            }
+
+            /*
+             * Note: When the result is cacheable, a copy of the serialized
+             * results is retained as they are written onto the response.
+             */
+            final SparqlResultCache.CachingOutputStream cos = cacheKey == null ? null
+                    : new SparqlResultCache.CachingOutputStream(
+                            resp.getOutputStream(),
+                            resultCache.getMaxEntryBytes());
+
+            final OutputStream os = cos == null ? resp.getOutputStream() : cos;
+
             // final boolean explain =
             // req.getParameter(BigdataRDFContext.EXPLAIN) != null;
 
@@ -588,7 +621,8 @@ public class QueryServlet extends BigdataRDFServlet {
 
                 }
 
-                if (isAttachment(queryTask.mimeType)) {
+                final boolean attachment = isAttachment(queryTask.mimeType);
+                if (attachment) {
                     /*
                      * Mark this as an attachment (rather than inline). This is
                      * just a hint to the user agent. How the user agent handles
@@ -639,6 +673,19 @@ public class QueryServlet extends BigdataRDFServlet {
                 // Wait for the Future.
                 ft.get();
 
+                final byte[] data = cos == null ? null : cos.getData();
+
+                if (data != null) {
+
+                    // Cache the serialized results.
+                    resultCache.put(cacheKey, new SparqlResultCache.CacheHit(
+                            queryTask.mimeType,
+                            queryTask.charset == null ? null
+                                    : queryTask.charset.name(),
+                            attachment ? queryTask.fileExt : null, data));
+
+                }
+
             }
 
 		} catch (Throwable e) {
@@ -1398,6 +1445,64 @@ public class QueryServlet extends BigdataRDFServlet {
 
     }
 
+    /**
+     * Send a response from the {@link SparqlResultCache}.
+     * 
+     * @param resp
+     *            The response.
+     * @param hit
+     *            The cached result.
+     * @param timestamp
+     *            The timestamp of the view for the request.
+     */
+    private void sendCacheHit(final HttpServletResponse resp,
+            final SparqlResultCache.CacheHit hit, final long timestamp)
+            throws IOException {
+
+        resp.setStatus(HTTP_OK);
+
+        resp.setContentType(hit.contentType);
+
+        if (hit.characterEncoding != null) {
+
+            // Note: Binary encodings do not specify charset.
+            resp.setCharacterEncoding(hit.characterEncoding);
+
+        }
+
+        if (hit.attachmentFileExt != null) {
+
+            /*
+             * Note: Each request is assigned its own queryId for the file
+             * name, just as if the query had been evaluated.
+             */
+            final long queryId = getBigdataRDFContext().getQueryIdFactory()
+                    .incrementAndGet();
+
+            resp.setHeader("Content-disposition", "attachment; filename=query"
+                    + queryId + "." + hit.attachmentFileExt);
+
+        }
+
+        if (TimestampUtility.isCommitTime(timestamp)) {
+
+            // See doQuery().
+            resp.addHeader("Cache-Control", "public");
+
+        }
+
+        resp.setContentLength(hit.data.length);
+
+        final OutputStream os = resp.getOutputStream();
+        try {
+            os.write(hit.data);
+            os.flush();
+        } finally {
+            os.close();
+        }
+
+    }
+
 //    /**
 //     * Test the SPARQL cache.
 //     */
@@ -85,11 +85,19 @@ public class SparqlEndpointConfig {
      * @see ConfigParams#QUERY_TIMEOUT
      */
     final public long queryTimeout;
+
+    /**
+     * When non-zero, this specifies the maximum #of bytes of serialized SPARQL
+     * query results which will be cached.
+     * 
+     * @see ConfigParams#RESULT_CACHE_SIZE
+     */
+    final public long resultCacheSize;
     
     public SparqlEndpointConfig(final String namespace, final long timestamp,
             final int queryThreadPoolSize,
             final boolean describeEachNamedGraph, final boolean readOnly,
-            final long queryTimeout) {
+            final long queryTimeout, final long resultCacheSize) {
 
         if (namespace == null)
             throw new IllegalArgumentException();
@@ -97,6 +105,9 @@ public class SparqlEndpointConfig {
         if (queryTimeout < 0L)
             throw new IllegalArgumentException();
 
+        if (resultCacheSize < 0L)
+            throw new IllegalArgumentException();
+
         this.namespace = namespace;
 
         this.timestamp = timestamp;
@@ -109,6 +120,8 @@ public class SparqlEndpointConfig {
         
         this.queryTimeout = queryTimeout;
         
+        this.resultCacheSize = resultCacheSize;
+        
     }
 
 }
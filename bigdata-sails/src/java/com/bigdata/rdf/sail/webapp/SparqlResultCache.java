@@ -0,0 +1,705 @@
+/**
+Copyright (C) SYSTAP, LLC 2006-2007.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+package com.bigdata.rdf.sail.webapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.counters.CAT;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSetAccess;
+import com.bigdata.counters.Instrument;
+import com.bigdata.io.DirectBufferPool;
+import com.bigdata.journal.ICommitRecord;
+import com.bigdata.journal.IIndexManager;
+import com.bigdata.journal.IJournal;
+import com.bigdata.journal.ITx;
+import com.bigdata.journal.TimestampUtility;
+import com.bigdata.rwstore.sector.MemoryManager;
+import com.bigdata.rwstore.sector.MemoryManagerOutOfMemory;
+
+/**
+ * A cache for the serialized results of SPARQL queries. The cache is keyed by
+ * the namespace, the commit time of the view against which the query reads,
+ * the query string, the <code>Accept</code> header, and the other request
+ * parameters. The serialized results are stored outside of the JVM heap on a
+ * {@link MemoryManager} and are evicted in LRU order once the configured
+ * #of bytes is exceeded.
+ * <p>
+ * Only the results for the most recent commit point are retained. The cache
+ * is cleared the first time that it observes a new commit point for the
+ * database. Results are never cached for the {@link ITx#UNISOLATED} view or a
+ * read/write transaction.
+ *
+ * @see ConfigParams#RESULT_CACHE_SIZE
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class SparqlResultCache implements ICounterSetAccess {
+
+    static private final transient Logger log = Logger
+            .getLogger(SparqlResultCache.class);
+
+    private final IIndexManager indexManager;
+
+    /**
+     * The maximum #of bytes of serialized results in the cache.
+     */
+    private final long maxBytes;
+
+    /**
+     * The maximum #of bytes in a single cached result. A result larger than
+     * this will not be cached.
+     */
+    private final int maxEntryBytes;
+
+    /**
+     * The native memory on which the serialized results are stored.
+     */
+    private final MemoryManager mmgr;
+
+    /**
+     * The cache entries in access order (guarded by synchronized(this)).
+     */
+    private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<Key, Entry>(
+            16/* initialCapacity */, .75f/* loadFactor */, true/* accessOrder */);
+
+    /**
+     * The #of bytes of serialized results in the cache (guarded by
+     * synchronized(this)).
+     */
+    private long bytesInUse = 0L;
+
+    /**
+     * The most recent commit time observed for the database (guarded by
+     * synchronized(this)).
+     */
+    private long lastCommitTime = -1L;
+
+    private final CAT hitCount = new CAT();
+    private final CAT missCount = new CAT();
+    private final CAT evictionCount = new CAT();
+    private final CAT invalidationCount = new CAT();
+
+    /**
+     *
+     * @param indexManager
+     *            The database.
+     * @param maxBytes
+     *            The maximum #of bytes of serialized results in the cache.
+     */
+    public SparqlResultCache(final IIndexManager indexManager,
+            final long maxBytes) {
+
+        if (indexManager == null)
+            throw new IllegalArgumentException();
+
+        if (maxBytes <= 0L)
+            throw new IllegalArgumentException();
+
+        this.indexManager = indexManager;
+
+        this.maxBytes = maxBytes;
+
+        // A single result may use at most 1/8th of the cache.
+        this.maxEntryBytes = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(1L, maxBytes / 8));
+
+        final long sectorSize = DirectBufferPool.INSTANCE.getBufferCapacity();
+
+        final int sectors = (int) Math.min(Integer.MAX_VALUE,
+                (maxBytes + sectorSize - 1) / sectorSize);
+
+        this.mmgr = new MemoryManager(DirectBufferPool.INSTANCE, sectors);
+
+    }
+
+    /**
+     * Return the key for the request -or- <code>null</code> if the results for
+     * the request may not be cached.
+     *
+     * @param req
+     *            The request.
+     * @param namespace
+     *            The namespace of the KB.
+     * @param timestamp
+     *            The timestamp of the view against which the query will read.
+     * @param queryStr
+     *            The query.
+     */
+    public Key newKey(final HttpServletRequest req, final String namespace,
+            final long timestamp, final String queryStr) {
+
+        if (req.getParameter(BigdataRDFContext.EXPLAIN) != null
+                || req.getParameter(BigdataRDFContext.XHTML) != null) {
+            // The response is not just the query results.
+            return null;
+        }
+
+        final long commitTime = getCommitTime(timestamp);
+
+        if (commitTime == -1L)
+            return null;
+
+        // Everything else in the request which could effect the response.
+        final StringBuilder sb = new StringBuilder();
+        {
+            sb.append("Accept=").append(req.getHeader("Accept"));
+            @SuppressWarnings("unchecked")
+            final Map<String, String[]> params = new TreeMap<String, String[]>(
+                    req.getParameterMap());
+            for (Map.Entry<String, String[]> e : params.entrySet()) {
+                if (QueryServlet.ATTR_QUERY.equals(e.getKey())) {
+                    // Already part of the key.
+                    continue;
+                }
+                for (String v : e.getValue()) {
+                    sb.append('&').append(e.getKey()).append('=').append(v);
+                }
+            }
+        }
+
+        return new Key(namespace, commitTime, queryStr, sb.toString());
+
+    }
+
+    /**
+     * Return the commit time of the view -or- <code>-1L</code> if the results
+     * for that view may not be cached.
+     */
+    private long getCommitTime(final long timestamp) {
+
+        if (timestamp == ITx.READ_COMMITTED) {
+
+            return indexManager.getLastCommitTime();
+
+        }
+
+        if (!TimestampUtility.isReadOnly(timestamp)) {
+            // Unisolated or read/write transaction.
+            return -1L;
+        }
+
+        if (!(indexManager instanceof IJournal)) {
+            return -1L;
+        }
+
+        /*
+         * Note: This handles both a historical commit time and a read-only
+         * transaction (which reads on the most recent commit point LTE its
+         * identifier).
+         */
+        final ICommitRecord commitRecord = ((IJournal) indexManager)
+                .getCommitRecord(timestamp);
+
+        if (commitRecord == null)
+            return -1L;
+
+        return commitRecord.getTimestamp();
+
+    }
+
+    /**
+     * Clear the cache if there has been a commit since it was last checked.
+     * The caller MUST hold the monitor.
+     */
+    private void checkCommitTime() {
+
+        final long commitTime = indexManager.getLastCommitTime();
+
+        if (commitTime != lastCommitTime) {
+
+            if (!map.isEmpty()) {
+
+                if (log.isInfoEnabled())
+                    log.info("New commit point: commitTime=" + commitTime
+                            + ", discarding " + map.size() + " results");
+
+                invalidationCount.increment();
+
+                clearEntries();
+
+            }
+
+            lastCommitTime = commitTime;
+
+        }
+
+    }
+
+    /**
+     * Return the cached result for the key (if any).
+     *
+     * @param key
+     *            The key.
+     *
+     * @return The cached result -or- <code>null</code> if there is no cached
+     *         result for that key.
+     */
+    public CacheHit get(final Key key) {
+
+        if (key == null)
+            throw new IllegalArgumentException();
+
+        synchronized (this) {
+
+            checkCommitTime();
+
+            final Entry e = map.get(key);
+
+            if (e == null) {
+
+                missCount.increment();
+
+                return null;
+
+            }
+
+            hitCount.increment();
+
+            return new CacheHit(e.contentType, e.characterEncoding,
+                    e.attachmentFileExt, mmgr.read(e.addr));
+
+        }
+
+    }
+
+    /**
+     * Add a result to the cache. The result is discarded if it is too large or
+     * if there has been a commit since the key was generated.
+     *
+     * @param key
+     *            The key.
+     * @param hit
+     *            The result.
+     */
+    public void put(final Key key, final CacheHit hit) {
+
+        if (key == null)
+            throw new IllegalArgumentException();
+
+        if (hit == null)
+            throw new IllegalArgumentException();
+
+        final int nbytes = hit.data.length;
+
+        if (nbytes == 0 || nbytes > maxEntryBytes)
+            return;
+
+        synchronized (this) {
+
+            checkCommitTime();
+
+            if (key.commitTime != lastCommitTime) {
+                /*
+                 * The results might reflect a different commit point.
+                 */
+                return;
+            }
+
+            if (map.containsKey(key))
+                return;
+
+            while (bytesInUse + nbytes > maxBytes && !map.isEmpty()) {
+
+                evictLRU();
+
+            }
+
+            long addr;
+            while (true) {
+                try {
+                    addr = mmgr.allocate(ByteBuffer.wrap(hit.data), false/* blocks */);
+                    break;
+                } catch (MemoryManagerOutOfMemory ex) {
+                    if (map.isEmpty()) {
+                        // Can not make room for this result.
+                        return;
+                    }
+                    evictLRU();
+                }
+            }
+
+            map.put(key, new Entry(hit.contentType, hit.characterEncoding,
+                    hit.attachmentFileExt, addr, nbytes));
+
+            bytesInUse += nbytes;
+
+        }
+
+    }
+
+    /**
+     * Evict the least recently used entry. The caller MUST hold the monitor.
+     */
+    private void evictLRU() {
+
+        final Iterator<Entry> itr = map.values().iterator();
+
+        final Entry e = itr.next();
+
+        itr.remove();
+
+        mmgr.free(e.addr);
+
+        bytesInUse -= e.nbytes;
+
+        evictionCount.increment();
+
+    }
+
+    /**
+     * Discard all entries. The caller MUST hold the monitor.
+     */
+    private void clearEntries() {
+
+        map.clear();
+
+        mmgr.clear();
+
+        bytesInUse = 0L;
+
+    }
+
+    /**
+     * Discard all cached results and release the native memory.
+     */
+    public void close() {
+
+        synchronized (this) {
+
+            clearEntries();
+
+        }
+
+    }
+
+    /**
+     * The maximum #of bytes in a single cached result.
+     */
+    public int getMaxEntryBytes() {
+
+        return maxEntryBytes;
+
+    }
+
+    @Override
+    public CounterSet getCounters() {
+
+        final CounterSet root = new CounterSet();
+
+        // #of cached results.
+        root.addCounter("size", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                synchronized (SparqlResultCache.this) {
+                    setValue((long) map.size());
+                }
+            }
+        });
+
+        // #of bytes of cached results.
+        root.addCounter("bytesInUse", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                synchronized (SparqlResultCache.this) {
+                    setValue(bytesInUse);
+                }
+            }
+        });
+
+        // #of requests answered from the cache.
+        root.addCounter("hitCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(hitCount.get());
+            }
+        });
+
+        // #of cacheable requests not answered from the cache.
+        root.addCounter("missCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(missCount.get());
+            }
+        });
+
+        // #of results evicted to make room for other results.
+        root.addCounter("evictionCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(evictionCount.get());
+            }
+        });
+
+        // #of times the cache was cleared by a commit.
+        root.addCounter("invalidationCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(invalidationCount.get());
+            }
+        });
+
+        return root;
+
+    }
+
+    /**
+     * The key for a cached result.
+     */
+    public static class Key {
+
+        private final String namespace;
+
+        private final long commitTime;
+
+        private final String queryStr;
+
+        private final String request;
+
+        private final int hashCode;
+
+        private Key(final String namespace, final long commitTime,
+                final String queryStr, final String request) {
+
+            this.namespace = namespace;
+            this.commitTime = commitTime;
+            this.queryStr = queryStr;
+            this.request = request;
+
+            int h = namespace.hashCode();
+            h = 31 * h + (int) (commitTime ^ (commitTime >>> 32));
+            h = 31 * h + queryStr.hashCode();
+            h = 31 * h + request.hashCode();
+            this.hashCode = h;
+
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hashCode;
+
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+
+            if (this == o)
+                return true;
+
+            if (!(o instanceof Key))
+                return false;
+
+            final Key t = (Key) o;
+
+            return hashCode == t.hashCode && commitTime == t.commitTime
+                    && namespace.equals(t.namespace)
+                    && queryStr.equals(t.queryStr)
+                    && request.equals(t.request);
+
+        }
+
+    }
+
+    /**
+     * A cached result.
+     */
+    public static class CacheHit {
+
+        /** The value of the <code>Content-Type</code> header. */
+        public final String contentType;
+
+        /** The character encoding (optional). */
+        public final String characterEncoding;
+
+        /**
+         * The file extension when the result is sent as an attachment
+         * (optional). The <code>Content-disposition</code> header is not
+         * cached since the file name includes the queryId of the request.
+         */
+        public final String attachmentFileExt;
+
+        /** The serialized results. */
+        public final byte[] data;
+
+        public CacheHit(final String contentType,
+                final String characterEncoding,
+                final String attachmentFileExt, final byte[] data) {
+
+            if (contentType == null)
+                throw new IllegalArgumentException();
+
+            if (data == null)
+                throw new IllegalArgumentException();
+
+            this.contentType = contentType;
+            this.characterEncoding = characterEncoding;
+            this.attachmentFileExt = attachmentFileExt;
+            this.data = data;
+
+        }
+
+    }
+
+    /**
+     * The metadata for a cached result. The data are on the
+     * {@link MemoryManager}.
+     */
+    private static class Entry {
+
+        final String contentType;
+        final String characterEncoding;
+        final String attachmentFileExt;
+        final long addr;
+        final int nbytes;
+
+        Entry(final String contentType, final String characterEncoding,
+                final String attachmentFileExt, final long addr,
+                final int nbytes) {
+
+            this.contentType = contentType;
+            this.characterEncoding = characterEncoding;
+            this.attachmentFileExt = attachmentFileExt;
+            this.addr = addr;
+            this.nbytes = nbytes;
+
+        }
+
+    }
+
+    /**
+     * Passes the data through to the response while retaining a copy until the
+     * maximum size for a cached result is exceeded.
+     */
+    static class CachingOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+
+        private final int maxBytes;
+
+        private ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+        CachingOutputStream(final OutputStream delegate, final int maxBytes) {
+
+            this.delegate = delegate;
+
+            this.maxBytes = maxBytes;
+
+        }
+
+        /**
+         * Stop retaining a copy of the data.
+         */
+        void disable() {
+
+            buf = null;
+
+        }
+
+        /**
+         * The data written onto the stream -or- <code>null</code> if the data
+         * were not retained.
+         */
+        byte[] getData() {
+
+            return buf == null ? null : buf.toByteArray();
+
+        }
+
+        private void retain(final byte[] b, final int off, final int len) {
+
+            if (buf == null)
+                return;
+
+            if (buf.size() + len > maxBytes) {
+
+                // Too large to cache.
+                buf = null;
+
+                return;
+
+            }
+
+            buf.write(b, off, len);
+
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+
+            delegate.write(b);
+
+            if (buf != null) {
+
+                if (buf.size() + 1 > maxBytes) {
+                    buf = null;
+                } else {
+                    buf.write(b);
+                }
+
+            }
+
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+
+            delegate.write(b, off, len);
+
+            retain(b, off, len);
+
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            delegate.flush();
+
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            delegate.close();
+
+        }
+
+    }
+
+}
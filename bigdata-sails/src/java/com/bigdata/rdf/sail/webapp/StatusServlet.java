@@ -576,6 +576,40 @@ public class StatusServlet extends BigdataRDFServlet {
 
                 }
 
+                if (getBigdataRDFContext().getResultCache() != null) {
+
+                    // Performance counters for the NSS result cache.
+                    counterSet.makePath("resultCache").attach(
+                            getBigdataRDFContext().getResultCache()
+                                    .getCounters());
+
+                }
+
+                /*
+                 * Performance counters for the lexicon of the default
+                 * namespace as of the last commit point. The term cache for
+                 * that view is shared by the queries reading on that commit
+                 * point.
+                 */
+                final long lastCommitTime = getIndexManager()
+                        .getLastCommitTime();
+
+                if (lastCommitTime != 0L) {
+
+                    final AbstractTripleStore tripleStore = getBigdataRDFContext()
+                            .getTripleStore(getConfig().namespace,
+                                    lastCommitTime);
+
+                    if (tripleStore != null) {
+
+                        counterSet.makePath("lexicon").attach(
+                                tripleStore.getLexiconRelation().getCounters(),
+                                true/* replace */);
+
+                    }
+
+                }
+
                 // @SuppressWarnings("rawtypes")
                 // final Iterator<ICounter> itr = counterSet
                 // .getCounters(null/* filter */);
@@ -255,6 +255,8 @@ public abstract class AbstractTestNanoSparqlClient<S extends IIndexManager> exte
 
             initParams.put(ConfigParams.CREATE, "false");
             
+            addInitParams(initParams);
+            
         }
         // Start server for that kb instance.
         m_fixture = NanoSparqlServer.newInstance(0/* port */,
@@ -297,6 +299,17 @@ public abstract class AbstractTestNanoSparqlClient<S extends IIndexManager> exte
 
     }
 
+    /**
+     * Hook which may be overridden to specify additional {@link ConfigParams}
+     * for the {@link NanoSparqlServer} instance started by {@link #setUp()}.
+     * 
+     * @param initParams
+     *            The configuration parameters.
+     */
+    protected void addInitParams(final Map<String, String> initParams) {
+
+    }
+
     @Override
 	public void tearDown() throws Exception {
 
@@ -235,6 +235,9 @@ public class TestNanoSparqlServerWithProxyIndexManager<S extends IIndexManager>
         
         suite.addTestSuite(TestService794.class);
         
+        // SPARQL result cache.
+        suite.addTestSuite(TestSparqlResultCache.class);
+
 
         // SPARQL UPDATE test suite.
         switch(testMode) {
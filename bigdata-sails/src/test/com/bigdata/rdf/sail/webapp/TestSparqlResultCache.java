@@ -0,0 +1,412 @@
+/**
+Copyright (C) SYSTAP, LLC 2006-2013.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 17, 2026
+ */
+package com.bigdata.rdf.sail.webapp;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.Map;
+
+import junit.framework.Test;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+
+import com.bigdata.counters.ICounter;
+import com.bigdata.journal.IIndexManager;
+import com.bigdata.journal.ITx;
+import com.bigdata.rawstore.Bytes;
+import com.bigdata.rdf.sail.webapp.client.DefaultClientConnectionManagerFactory;
+import com.bigdata.rdf.sail.webapp.client.RemoteRepository.AddOp;
+
+/**
+ * Test suite for the {@link SparqlResultCache}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestSparqlResultCache<S extends IIndexManager> extends
+        AbstractTestNanoSparqlClient<S> {
+
+    static public Test suite() {
+        return ProxySuiteHelper.suiteWhenStandalone(
+                TestSparqlResultCache.class, "test.*", TestMode.quads,
+                TestMode.sids, TestMode.triples);
+    }
+
+    public TestSparqlResultCache() {
+
+    }
+
+    public TestSparqlResultCache(final String name) {
+
+        super(name);
+
+    }
+
+    /**
+     * The size of the result cache. A single result may use at most 1/8th of
+     * the cache.
+     */
+    private static final long RESULT_CACHE_SIZE = Bytes.megabyte;
+
+    private static final String SELECT = "SELECT ?o { ?s ?p ?o } ORDER BY ?o";
+
+    private static final String CONSTRUCT = "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }";
+
+    private static final String MIME_RDF_XML = "application/rdf+xml";
+
+    private HttpClient client;
+
+    @Override
+    public void setUp() throws Exception {
+
+        super.setUp();
+
+        client = new DefaultHttpClient(DefaultClientConnectionManagerFactory
+                .getInstance().newInstance());
+
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+
+        if (client != null) {
+
+            client.getConnectionManager().shutdown();
+
+            client = null;
+
+        }
+
+        super.tearDown();
+
+    }
+
+    @Override
+    protected void addInitParams(final Map<String, String> initParams) {
+
+        initParams.put(ConfigParams.RESULT_CACHE_SIZE,
+                Long.toString(RESULT_CACHE_SIZE));
+
+    }
+
+    /**
+     * The response to a SPARQL query.
+     */
+    private static class Result {
+
+        final int status;
+
+        final String contentDisposition;
+
+        final String body;
+
+        Result(final int status, final String contentDisposition,
+                final String body) {
+
+            this.status = status;
+            this.contentDisposition = contentDisposition;
+            this.body = body;
+
+        }
+
+    }
+
+    /**
+     * Issue a SPARQL query using GET.
+     *
+     * @param accept
+     *            The <code>Accept</code> header.
+     * @param params
+     *            The URL query parameters as name, value pairs.
+     */
+    private Result doQuery(final String accept, final String... params)
+            throws IOException {
+
+        final StringBuilder url = new StringBuilder(m_serviceURL);
+        url.append("/sparql");
+        char sep = '?';
+        for (int i = 0; i < params.length; i += 2) {
+            url.append(sep);
+            url.append(params[i]);
+            url.append('=');
+            url.append(URLEncoder.encode(params[i + 1], "UTF-8"));
+            sep = '&';
+        }
+
+        final HttpGet req = new HttpGet(url.toString());
+
+        req.setHeader("Accept", accept);
+
+        final HttpResponse resp = client.execute(req);
+
+        final Header h = resp.getFirstHeader("Content-disposition");
+
+        final String body = resp.getEntity() == null ? null : EntityUtils
+                .toString(resp.getEntity(), "UTF-8");
+
+        return new Result(resp.getStatusLine().getStatusCode(),
+                h == null ? null : h.getValue(), body);
+
+    }
+
+    /**
+     * Return the {@link SparqlResultCache} of the {@link NanoSparqlServer}.
+     */
+    private SparqlResultCache getResultCache() {
+
+        final ServletContextHandler handler = m_fixture
+                .getChildHandlerByClass(ServletContextHandler.class);
+
+        final BigdataRDFContext context = (BigdataRDFContext) handler
+                .getServletContext().getAttribute(
+                        BigdataRDFServlet.ATTRIBUTE_RDF_CONTEXT);
+
+        final SparqlResultCache cache = context.getResultCache();
+
+        assertNotNull(cache);
+
+        return cache;
+
+    }
+
+    /**
+     * Return the current value of a counter for the {@link SparqlResultCache}.
+     */
+    private long getCounter(final String name) {
+
+        final ICounter<?> counter = (ICounter<?>) getResultCache()
+                .getCounters().getChild(name);
+
+        return ((Number) counter.getInstrument().getValue()).longValue();
+
+    }
+
+    /**
+     * Return the #of solutions in a SPARQL XML result set.
+     */
+    private static int countSolutions(final String body) {
+
+        int n = 0;
+        int pos = 0;
+        while ((pos = body.indexOf("<result>", pos)) != -1) {
+            n++;
+            pos++;
+        }
+        return n;
+
+    }
+
+    /**
+     * The first request is a miss and is cached. The same request is then
+     * answered from the cache. A request with a different <code>Accept</code>
+     * header is a different cache entry.
+     */
+    public void test_hitAndMiss() throws Exception {
+
+        m_repo.add(new AddOp(genNTRIPLES2(10)));
+
+        final Result r1 = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                "query", SELECT);
+
+        assertEquals(200, r1.status);
+        assertEquals(10, countSolutions(r1.body));
+        assertEquals(0L, getCounter("hitCount"));
+        assertEquals(1L, getCounter("missCount"));
+        assertEquals(1L, getCounter("size"));
+
+        final Result r2 = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                "query", SELECT);
+
+        assertEquals(200, r2.status);
+        assertEquals(r1.body, r2.body);
+        assertEquals(1L, getCounter("hitCount"));
+        assertEquals(1L, getCounter("missCount"));
+
+        final Result r3 = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_JSON,
+                "query", SELECT);
+
+        assertEquals(200, r3.status);
+        assertFalse(r1.body.equals(r3.body));
+        assertEquals(1L, getCounter("hitCount"));
+        assertEquals(2L, getCounter("missCount"));
+        assertEquals(2L, getCounter("size"));
+
+    }
+
+    /**
+     * A commit discards the cached results so the query observes the new data.
+     */
+    public void test_invalidatedByCommit() throws Exception {
+
+        m_repo.add(new AddOp(genNTRIPLES2(10)));
+
+        final Result r1 = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                "query", SELECT);
+
+        assertEquals(10, countSolutions(r1.body));
+        assertEquals(1L, getCounter("size"));
+
+        // Commit more data.
+        m_repo.add(new AddOp(genNTRIPLES2(15)));
+
+        final Result r2 = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                "query", SELECT);
+
+        assertEquals(15, countSolutions(r2.body));
+        assertEquals(0L, getCounter("hitCount"));
+        assertEquals(2L, getCounter("missCount"));
+        assertEquals(1L, getCounter("invalidationCount"));
+        assertEquals(1L, getCounter("size"));
+
+    }
+
+    /**
+     * A result which is larger than the per-entry bound is not cached.
+     */
+    public void test_maxEntryBytes() throws Exception {
+
+        m_repo.add(new AddOp(genNTRIPLES2(5000)));
+
+        final Result r1 = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                "query", SELECT);
+
+        assertEquals(5000, countSolutions(r1.body));
+        assertTrue(r1.body.length() > getResultCache().getMaxEntryBytes());
+        assertEquals(0L, getCounter("size"));
+        assertEquals(0L, getCounter("bytesInUse"));
+
+        final Result r2 = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                "query", SELECT);
+
+        assertEquals(r1.body, r2.body);
+        assertEquals(0L, getCounter("hitCount"));
+        assertEquals(2L, getCounter("missCount"));
+        assertEquals(0L, getCounter("size"));
+
+    }
+
+    /**
+     * An EXPLAIN request sends back a description of the query evaluation
+     * rather than the results and is never cached.
+     */
+    public void test_explainNotCached() throws Exception {
+
+        m_repo.add(new AddOp(genNTRIPLES2(10)));
+
+        for (int i = 0; i < 2; i++) {
+
+            final Result r = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                    "query", SELECT, BigdataRDFContext.EXPLAIN, "");
+
+            assertEquals(200, r.status);
+
+        }
+
+        assertEquals(0L, getCounter("hitCount"));
+        assertEquals(0L, getCounter("missCount"));
+        assertEquals(0L, getCounter("size"));
+
+    }
+
+    /**
+     * An XHTML request is never cached.
+     */
+    public void test_xhtmlNotCached() throws Exception {
+
+        m_repo.add(new AddOp(genNTRIPLES2(10)));
+
+        for (int i = 0; i < 2; i++) {
+
+            final Result r = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                    "query", SELECT, BigdataRDFContext.XHTML, "");
+
+            assertEquals(200, r.status);
+
+        }
+
+        assertEquals(0L, getCounter("hitCount"));
+        assertEquals(0L, getCounter("missCount"));
+        assertEquals(0L, getCounter("size"));
+
+    }
+
+    /**
+     * A query against the {@link ITx#UNISOLATED} view is never cached.
+     */
+    public void test_unisolatedNotCached() throws Exception {
+
+        m_repo.add(new AddOp(genNTRIPLES2(10)));
+
+        for (int i = 0; i < 2; i++) {
+
+            final Result r = doQuery(BigdataRDFServlet.MIME_SPARQL_RESULTS_XML,
+                    "query", SELECT, "timestamp", Long.toString(ITx.UNISOLATED));
+
+            assertEquals(200, r.status);
+            assertEquals(10, countSolutions(r.body));
+
+        }
+
+        assertEquals(0L, getCounter("hitCount"));
+        assertEquals(0L, getCounter("missCount"));
+        assertEquals(0L, getCounter("size"));
+
+    }
+
+    /**
+     * A result sent as an attachment is given a file name for the queryId of
+     * each request, including a request answered from the cache.
+     */
+    public void test_contentDisposition() throws Exception {
+
+        m_repo.add(new AddOp(genNTRIPLES2(10)));
+
+        final Result r1 = doQuery(MIME_RDF_XML, "query", CONSTRUCT);
+
+        assertEquals(200, r1.status);
+        assertNotNull(r1.contentDisposition);
+        assertTrue(r1.contentDisposition
+                .startsWith("attachment; filename=query"));
+
+        final Result r2 = doQuery(MIME_RDF_XML, "query", CONSTRUCT);
+
+        assertEquals(200, r2.status);
+        assertEquals(1L, getCounter("hitCount"));
+        assertEquals(r1.body, r2.body);
+        assertNotNull(r2.contentDisposition);
+        assertTrue(r2.contentDisposition
+                .startsWith("attachment; filename=query"));
+        assertFalse(r1.contentDisposition.equals(r2.contentDisposition));
+
+    }
+
+}
@@ -899,6 +899,49 @@ public class BOpContext<E> extends BOpContextBase {
 //
 //    }
 
+    /**
+     * Return <code>true</code> iff the two solutions are compatible (each
+     * variable bound in both solutions is bound to the same value). This is
+     * the test made by {@link #bind(IBindingSet, IBindingSet, IConstraint[], IVariable[])}
+     * when there are no constraints, but the combined solution is not
+     * materialized. It is used by semi-joins and anti-joins, which only need
+     * to know whether a solution joins.
+     * 
+     * @param left
+     *            A solution.
+     * @param right
+     *            Another solution.
+     */
+    @SuppressWarnings("rawtypes")
+    static public boolean isCompatible(final IBindingSet left,
+            final IBindingSet right) {
+
+        final Iterator<Map.Entry<IVariable, IConstant>> itr = right.iterator();
+
+        while (itr.hasNext()) {
+
+            final Map.Entry<IVariable, IConstant> e = itr.next();
+
+            final IConstant<?> rval = e.getValue();
+
+            if (rval == null)
+                continue;
+
+            final IConstant<?> lval = left.get(e.getKey());
+
+            if (lval != null && !rval.equals(lval)) {
+
+                // Bindings are not consistent.
+                return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
     /**
      * Copy the values for variables from the source {@link IBindingSet} to the
      * destination {@link IBindingSet}. It is an error if a binding already
@@ -0,0 +1,266 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.aggregate;
+
+import java.io.Serializable;
+
+/**
+ * A HyperLogLog sketch for estimating the #of distinct byte[] values in a
+ * stream using a fixed amount of memory. The sketch has
+ * <code>2^log2m</code> one byte registers. The relative standard error of the
+ * estimate is approximately <code>1.04/sqrt(2^log2m)</code>, so the default
+ * of {@value #DEFAULT_LOG2M} uses 4KB and has an error of about 1.6%.
+ * <p>
+ * Sketches having the same <i>log2m</i> may be combined using
+ * {@link #merge(HyperLogLog)}. The merged sketch is identical to the sketch
+ * which would have been computed over the union of the two streams, so the
+ * sketches may be computed independently for each partition of the data (or
+ * in parallel) and merged afterwards.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class HyperLogLog implements Serializable {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The minimum value for <i>log2m</i>.
+     */
+    public static final int MIN_LOG2M = 4;
+
+    /**
+     * The maximum value for <i>log2m</i>.
+     */
+    public static final int MAX_LOG2M = 16;
+
+    /**
+     * The default value for <i>log2m</i>.
+     */
+    public static final int DEFAULT_LOG2M = 12;
+
+    private final int log2m;
+
+    /**
+     * The registers. Each register holds the maximum rank observed for the
+     * values hashed into that register.
+     */
+    private final byte[] registers;
+
+    /**
+     * Create a sketch using {@value #DEFAULT_LOG2M} bits to select the
+     * register.
+     */
+    public HyperLogLog() {
+
+        this(DEFAULT_LOG2M);
+
+    }
+
+    /**
+     * @param log2m
+     *            The #of bits of the hash code used to select the register.
+     *            There will be <code>2^log2m</code> registers.
+     */
+    public HyperLogLog(final int log2m) {
+
+        if (log2m < MIN_LOG2M || log2m > MAX_LOG2M)
+            throw new IllegalArgumentException();
+
+        this.log2m = log2m;
+
+        this.registers = new byte[1 << log2m];
+
+    }
+
+    /**
+     * Copy constructor.
+     */
+    public HyperLogLog(final HyperLogLog src) {
+
+        this.log2m = src.log2m;
+
+        this.registers = src.registers.clone();
+
+    }
+
+    /**
+     * The #of bits of the hash code used to select the register.
+     */
+    public int getLog2m() {
+
+        return log2m;
+
+    }
+
+    /**
+     * Add a value to the sketch.
+     *
+     * @param value
+     *            The value (for example, the encoding of an IV as an unsigned
+     *            byte[] key).
+     */
+    public void offer(final byte[] value) {
+
+        final long h = hash(value);
+
+        final int j = (int) (h >>> (64 - log2m));
+
+        // The rank is the position of the leftmost 1 bit in the rest of the hash.
+        final int rank = Math.min(Long.numberOfLeadingZeros(h << log2m),
+                64 - log2m) + 1;
+
+        if (rank > registers[j])
+            registers[j] = (byte) rank;
+
+    }
+
+    /**
+     * Merge another sketch into this sketch.
+     *
+     * @param o
+     *            The other sketch.
+     *
+     * @throws IllegalArgumentException
+     *             if the sketches do not have the same <i>log2m</i>.
+     */
+    public void merge(final HyperLogLog o) {
+
+        if (o.log2m != log2m)
+            throw new IllegalArgumentException();
+
+        for (int j = 0; j < registers.length; j++) {
+
+            if (o.registers[j] > registers[j])
+                registers[j] = o.registers[j];
+
+        }
+
+    }
+
+    /**
+     * Clear the sketch.
+     */
+    public void clear() {
+
+        for (int j = 0; j < registers.length; j++) {
+
+            registers[j] = 0;
+
+        }
+
+    }
+
+    /**
+     * Return the estimated #of distinct values offered to the sketch.
+     */
+    public long cardinality() {
+
+        final int m = registers.length;
+
+        double sum = 0d;
+
+        int zeros = 0;
+
+        for (int j = 0; j < m; j++) {
+
+            sum += 1d / (1L << registers[j]);
+
+            if (registers[j] == 0)
+                zeros++;
+
+        }
+
+        final double alpha;
+        switch (m) {
+        case 16:
+            alpha = 0.673;
+            break;
+        case 32:
+            alpha = 0.697;
+            break;
+        case 64:
+            alpha = 0.709;
+            break;
+        default:
+            alpha = 0.7213 / (1d + 1.079 / m);
+        }
+
+        final double estimate = alpha * m * m / sum;
+
+        if (estimate <= 2.5 * m && zeros != 0) {
+
+            // Small range correction (linear counting).
+            return Math.round(m * Math.log((double) m / zeros));
+
+        }
+
+        // Note: No large range correction is required for a 64-bit hash.
+        return Math.round(estimate);
+
+    }
+
+    /**
+     * A 64-bit hash of the value (FNV-1a followed by the murmur3 finalizer to
+     * spread the bits).
+     */
+    private static long hash(final byte[] a) {
+
+        long h = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < a.length; i++) {
+
+            h ^= (a[i] & 0xff);
+
+            h *= 0x100000001b3L;
+
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe1a85ec5L;
+        h ^= h >>> 33;
+
+        return h;
+
+    }
+
+    public String toString() {
+
+        return getClass().getSimpleName() + "{log2m=" + log2m
+                + ",cardinality=" + cardinality() + "}";
+
+    }
+
+}
@@ -295,6 +295,11 @@ abstract public class AbstractRunningQuery implements IRunningQuery {
      */
     private final AtomicBoolean didQueryTearDown = new AtomicBoolean(false);
 
+    /**
+     * The account against which the memory used by the query is charged.
+     */
+    private final QueryMemoryAccount memoryAccount;
+
 //    /**
 //     * A collection reporting on whether or not a given operator has been torn
 //     * down. This collection is used to provide the guarantee that an operator
@@ -593,6 +598,11 @@ abstract public class AbstractRunningQuery implements IRunningQuery {
 
         this.query = query;
 
+        this.memoryAccount = new QueryMemoryAccount(
+                queryEngine.getMemoryAccount(), query.getProperty(
+                        QueryEngine.Annotations.MAX_QUERY_MEMORY,
+                        QueryEngine.Annotations.DEFAULT_MAX_QUERY_MEMORY));
+
         this.realSource = realSource;
         
         this.bopIndex = BOpUtility.getIndex(query);
@@ -1195,6 +1205,9 @@ abstract public class AbstractRunningQuery implements IRunningQuery {
             
         }
 
+        // release the charges from the query engine's account.
+        memoryAccount.close();
+
     }
 
     /**
@@ -1633,6 +1646,67 @@ abstract public class AbstractRunningQuery implements IRunningQuery {
     }
 
     private final AtomicReference<IMemoryManager> memoryManager = new AtomicReference<IMemoryManager>();
+
+    @Override
+    final public QueryMemoryAccount getMemoryAccount() {
+
+        return memoryAccount;
+
+    }
+
+    /**
+     * Update the native memory charged against the query from its
+     * {@link IMemoryManager} (if one was allocated) and apply the
+     * {@link IQueryMemoryPolicy} of the {@link QueryEngine}. If the policy
+     * decides to cancel the query then the query is halted with a
+     * {@link QueryMemoryLimitException}.
+     * <p>
+     * Note: This is invoked once per operator task, so the native memory is
+     * sampled rather than charged as each allocation is made.
+     */
+    protected void checkMemory() {
+
+        if (isDone())
+            return;
+
+        final IMemoryManager memoryManager = this.memoryManager.get();
+
+        if (memoryManager != null) {
+
+            memoryAccount.setNativeBytes(memoryManager.getSlotBytes());
+
+        }
+
+        final IQueryMemoryPolicy.Action action = queryEngine.getMemoryPolicy()
+                .decide(this, memoryAccount);
+
+        switch (action) {
+        case None:
+            break;
+        case Spill:
+            if (memoryAccount.requestSpill()) {
+                queryEngine.counters.queryMemorySpillCount.increment();
+                if (log.isInfoEnabled())
+                    log.info("Spill: queryId=" + queryId + ", "
+                            + memoryAccount);
+            }
+            break;
+        case Cancel: {
+            final QueryMemoryAccount engineAccount = memoryAccount.getParent();
+            queryEngine.counters.queryMemoryCancelCount.increment();
+            halt(new QueryMemoryLimitException("Query uses too much memory: "
+                    + "queryId=" + queryId + ", bytes="
+                    + memoryAccount.getBytes() + ", maxQueryMemory="
+                    + memoryAccount.getBudget() + ", engineBytes="
+                    + engineAccount.getBytes() + ", maxMemory="
+                    + engineAccount.getBudget()));
+            break;
+        }
+        default:
+            throw new AssertionError(action);
+        }
+
+    }
     
     @Override
     final public IQueryAttributes getAttributes() {
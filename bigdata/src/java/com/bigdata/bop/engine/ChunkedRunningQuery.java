@@ -131,6 +131,15 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
      */
     private final ConcurrentMap<BSBundle, BlockingQueue<IChunkMessage<IBindingSet>>> operatorQueues;
 
+    /**
+     * The estimated #of bytes on the JVM heap for a solution buffered on the
+     * input queue of an operator. This is charged against the
+     * {@link QueryMemoryAccount} of the query until the solutions are
+     * consumed. The actual size depends on the #of bindings and on the size
+     * of the bound values.
+     */
+    static final long BYTES_PER_SOLUTION = 256L;
+
     /**
      * Set to <code>true</code> to make {@link #operatorQueues} and ordered map.
      * When <code>true</code>, {@link #consumeChunk()} will have an ordered bias
@@ -310,6 +319,14 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
              
             }
 
+            /*
+             * Charge the solutions buffered for the operator against the
+             * query. This is released when the task consuming the message is
+             * done.
+             */
+            getMemoryAccount().charge(
+                    msg.getSolutionCount() * BYTES_PER_SOLUTION);
+
             // offer (non-blocking)
             if (!queue.offer(msg)) {
                 // Offer failed.  Work queue will block.
@@ -335,6 +352,9 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
             
             msg.release();
             
+            getMemoryAccount().release(
+                    msg.getSolutionCount() * BYTES_PER_SOLUTION);
+
             throw new RuntimeException(ex);
             
         } finally {
@@ -676,7 +696,8 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
                 try {
                     cft = new ChunkFutureTask(
                             new ChunkTask(bundle.bopId, bundle.shardId,
-                                    naccepted, isLastInvocation, source));
+                                    naccepted, isLastInvocation, source),
+                            solutionsAccepted * BYTES_PER_SOLUTION);
                 } catch (Throwable t2) {
                     // Ensure accepted messages are released();
                     safeRelease(accepted);
@@ -707,7 +728,7 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
                             + bop.toShortString() + ", messages=" + naccepted
                             + ", solutions=" + solutionsAccepted
                             + (log.isDebugEnabled()?", runState=" + runStateString():""));
-                getQueryEngine().execute(cft);
+                execute(cft);
                 return true;
             } catch(Throwable t) {
                 // Ensure accepted messages are released();
@@ -720,6 +741,19 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
         }
     }
 
+    /**
+     * Submit an operator task for execution. The default implementation runs
+     * the task on the {@link QueryEngine}'s executor.
+     * 
+     * @param r
+     *            The task.
+     */
+    protected void execute(final Runnable r) {
+
+        getQueryEngine().execute(r);
+
+    }
+
     /**
      * Ensure messages are {@link IChunkMessage#release() released()}. Nothing
      * is thrown unless the {@link Throwable} has a root cause which indicates
@@ -769,7 +803,20 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
 
         private final ChunkTask t;
 
-        public ChunkFutureTask(final ChunkTask chunkTask) {
+        /**
+         * The time (nanoseconds) when the task was created. This is used to
+         * report the latency before the task begins to execute.
+         */
+        private final long createNanos = System.nanoTime();
+
+        /**
+         * The #of bytes charged against the query for the solutions consumed
+         * by the task.
+         */
+        private final long chargedBytes;
+
+        public ChunkFutureTask(final ChunkTask chunkTask,
+                final long chargedBytes) {
 
             /*
              * Note: wraps chunk task to communicate run state changes back to
@@ -779,11 +826,19 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
 
             this.t = chunkTask;
 
+            this.chargedBytes = chargedBytes;
+
         }
 
         @Override
         public void run() {
 
+            final QueryEngineCounters c = getQueryEngine().counters;
+
+            c.operatorQueueLatencyNanos.add(System.nanoTime() - createNanos);
+
+            c.operatorQueuedCount.increment();
+
             try {
 
                 super.run();
@@ -819,8 +874,14 @@ public class ChunkedRunningQuery extends AbstractRunningQuery {
 
                 }
 
+                // The solutions consumed by this task are no longer buffered.
+                getMemoryAccount().release(chargedBytes);
+
             }
 
+            // Apply the memory policy.
+            checkMemory();
+
             // Schedule another task if any messages are waiting.
             ChunkedRunningQuery.this.scheduleNext(new BSBundle(t.bopId,
                     t.partitionId));
@@ -0,0 +1,123 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+/**
+ * The default {@link IQueryMemoryPolicy}. A query which exceeds its own
+ * budget is cancelled. When the running queries together exceed the budget of
+ * the {@link QueryEngine}, the query is first asked to spill. If the
+ * {@link QueryEngine} is still over budget by more than the
+ * {@link #getCancelFactor() cancel factor} then the query is cancelled if it
+ * holds more than its fair share of that budget.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class DefaultQueryMemoryPolicy implements IQueryMemoryPolicy {
+
+    /**
+     * The default for {@link #getCancelFactor()}.
+     */
+    public static final double DEFAULT_CANCEL_FACTOR = 1.5d;
+
+    private final double cancelFactor;
+
+    public DefaultQueryMemoryPolicy() {
+
+        this(DEFAULT_CANCEL_FACTOR);
+
+    }
+
+    /**
+     * @param cancelFactor
+     *            The multiple of the budget of the {@link QueryEngine} above
+     *            which queries which are already spilling will be cancelled.
+     */
+    public DefaultQueryMemoryPolicy(final double cancelFactor) {
+
+        if (cancelFactor < 1d)
+            throw new IllegalArgumentException();
+
+        this.cancelFactor = cancelFactor;
+
+    }
+
+    /**
+     * The multiple of the budget of the {@link QueryEngine} above which
+     * queries which are already spilling will be cancelled.
+     */
+    public double getCancelFactor() {
+
+        return cancelFactor;
+
+    }
+
+    @Override
+    public Action decide(final IRunningQuery query,
+            final QueryMemoryAccount account) {
+
+        if (account.isOverBudget()) {
+
+            return Action.Cancel;
+
+        }
+
+        final QueryMemoryAccount engine = account.getParent();
+
+        if (engine == null || !engine.isOverBudget()) {
+
+            return Action.None;
+
+        }
+
+        if (!account.isSpillRequested()) {
+
+            return Action.Spill;
+
+        }
+
+        final long budget = engine.getBudget();
+
+        if (engine.getBytes() > budget * cancelFactor) {
+
+            final int nrunning = Math.max(1, query.getQueryEngine()
+                    .getRunningQueries().length);
+
+            if (account.getBytes() > budget / nrunning) {
+
+                return Action.Cancel;
+
+            }
+
+        }
+
+        return Action.None;
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+/**
+ * Policy deciding what to do when an {@link IRunningQuery} or the
+ * {@link QueryEngine} uses more memory than its budget. The policy is
+ * consulted each time that the usage of a query is updated, which is once
+ * per operator task.
+ * 
+ * @see QueryEngine#setMemoryPolicy(IQueryMemoryPolicy)
+ * @see QueryMemoryAccount
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public interface IQueryMemoryPolicy {
+
+    /**
+     * The actions which may be taken by the {@link QueryEngine}.
+     */
+    enum Action {
+
+        /**
+         * Nothing is done.
+         */
+        None,
+
+        /**
+         * The operators of the query are asked to spill rather than buffer
+         * more solutions on the JVM heap.
+         * 
+         * @see QueryMemoryAccount#isSpillRequested()
+         */
+        Spill,
+
+        /**
+         * The query is halted with a {@link QueryMemoryLimitException}.
+         */
+        Cancel;
+
+    }
+
+    /**
+     * Decide what to do for a query.
+     * 
+     * @param query
+     *            The query.
+     * @param account
+     *            The memory account for that query. The account of the
+     *            {@link QueryEngine} is its
+     *            {@link QueryMemoryAccount#getParent() parent}.
+     * 
+     * @return The action to be taken.
+     */
+    Action decide(IRunningQuery query, QueryMemoryAccount account);
+
+}
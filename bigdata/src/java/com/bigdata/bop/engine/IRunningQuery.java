@@ -139,6 +139,13 @@ public interface IRunningQuery extends IHaltable<Void>, IQueryContext {
      */
     long getElapsed();
 
+    /**
+     * The account against which the memory used by the query is charged.
+     * 
+     * @see IQueryMemoryPolicy
+     */
+    QueryMemoryAccount getMemoryAccount();
+
 //	/**
 //	 * Return <code>true</code> if there are no operators which could
 //	 * (re-)trigger the specified operator.
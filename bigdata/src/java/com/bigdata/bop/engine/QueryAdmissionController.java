@@ -0,0 +1,444 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for the queries submitted to a {@link QueryEngine}. At
+ * most {@link #getMaxRunning()} admitted queries may run at once. Additional
+ * queries wait in a queue for each {@link QueryPriority} and are admitted in
+ * priority order and then in arrival order as running queries are
+ * {@link #release() released}. A query is rejected if the wait queue is full
+ * or if it was not admitted before its timeout.
+ * <p>
+ * The defaults do not bound the #of running queries, so all queries are
+ * admitted immediately.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+class QueryAdmissionController {
+
+    private final QueryEngineCounters counters;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The maximum #of admitted queries which may run at once -or- ZERO (0) if
+     * the #of running queries is not bounded.
+     * <p>
+     * Note: Guarded by {@link #lock}.
+     */
+    private int maxRunning = 0;
+
+    /**
+     * The maximum #of queries which may wait to be admitted -or- ZERO (0) if
+     * the wait queue is not bounded.
+     * <p>
+     * Note: Guarded by {@link #lock}.
+     */
+    private int maxQueued = 0;
+
+    /**
+     * The #of admitted queries which have not been released.
+     * <p>
+     * Note: Guarded by {@link #lock}.
+     */
+    private int nrunning = 0;
+
+    /**
+     * The #of queries which are waiting to be admitted.
+     * <p>
+     * Note: Guarded by {@link #lock}.
+     */
+    private int nwaiting = 0;
+
+    /**
+     * The waiting queries for each {@link QueryPriority}, indexed by the
+     * ordinal of the priority.
+     * <p>
+     * Note: Guarded by {@link #lock}.
+     */
+    private final List<LinkedList<Waiter>> waiters;
+
+    /**
+     * Set once the {@link QueryEngine} is shutting down.
+     * <p>
+     * Note: Guarded by {@link #lock}.
+     */
+    private boolean shutdown = false;
+
+    /**
+     * A query waiting to be admitted.
+     */
+    private class Waiter {
+
+        final Condition admitted = lock.newCondition();
+
+        /**
+         * Set when the query is admitted.
+         * <p>
+         * Note: Guarded by {@link #lock}.
+         */
+        boolean done = false;
+
+    }
+
+    QueryAdmissionController(final QueryEngineCounters counters) {
+
+        if (counters == null)
+            throw new IllegalArgumentException();
+
+        this.counters = counters;
+
+        final int n = QueryPriority.values().length;
+
+        this.waiters = new ArrayList<LinkedList<Waiter>>(n);
+
+        for (int i = 0; i < n; i++) {
+
+            waiters.add(new LinkedList<Waiter>());
+
+        }
+
+    }
+
+    int getMaxRunning() {
+
+        lock.lock();
+        try {
+            return maxRunning;
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * Set the maximum #of admitted queries which may run at once. If the
+     * limit is raised, waiting queries are admitted.
+     * 
+     * @param maxRunning
+     *            The maximum -or- ZERO (0) if the #of running queries is not
+     *            bounded.
+     */
+    void setMaxRunning(final int maxRunning) {
+
+        if (maxRunning < 0)
+            throw new IllegalArgumentException();
+
+        lock.lock();
+        try {
+            this.maxRunning = maxRunning;
+            admitWaiters();
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    int getMaxQueued() {
+
+        lock.lock();
+        try {
+            return maxQueued;
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * Set the maximum #of queries which may wait to be admitted. This does not
+     * effect queries which are already waiting.
+     * 
+     * @param maxQueued
+     *            The maximum -or- ZERO (0) if the wait queue is not bounded.
+     */
+    void setMaxQueued(final int maxQueued) {
+
+        if (maxQueued < 0)
+            throw new IllegalArgumentException();
+
+        lock.lock();
+        try {
+            this.maxQueued = maxQueued;
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * The #of admitted queries which have not been released.
+     */
+    int getRunningCount() {
+
+        lock.lock();
+        try {
+            return nrunning;
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * The #of queries which are waiting to be admitted.
+     */
+    int getQueuedCount() {
+
+        lock.lock();
+        try {
+            return nwaiting;
+        } finally {
+            lock.unlock();
+        }
+
+    }
+
+    /**
+     * Wait until a query may run. Each query which is admitted MUST be
+     * {@link #release() released} when it is done.
+     * 
+     * @param priority
+     *            The priority class of the query.
+     * @param timeout
+     *            The maximum time to wait (milliseconds).
+     * 
+     * @throws QueryAdmissionException
+     *             if the wait queue is full, if the query was not admitted
+     *             within the timeout, or if the {@link QueryEngine} is
+     *             shutting down.
+     * @throws InterruptedException
+     *             if interrupted while waiting.
+     */
+    void admit(final QueryPriority priority, final long timeout)
+            throws InterruptedException {
+
+        if (priority == null)
+            throw new IllegalArgumentException();
+
+        if (timeout < 0)
+            throw new IllegalArgumentException();
+
+        final long begin = System.nanoTime();
+
+        lock.lock();
+
+        try {
+
+            if (shutdown)
+                throw new QueryAdmissionException("Shutting down.");
+
+            if (nwaiting == 0 && (maxRunning == 0 || nrunning < maxRunning)) {
+
+                // Admit immediately.
+                nrunning++;
+
+                counters.admissionWait(priority, 0L);
+
+                return;
+
+            }
+
+            if (maxQueued != 0 && nwaiting >= maxQueued) {
+
+                counters.admissionRejectedCount.increment();
+
+                throw new QueryAdmissionException("Admission queue is full: "
+                        + "priority=" + priority + ", queued=" + nwaiting
+                        + ", running=" + nrunning + ", maxRunning="
+                        + maxRunning + ", maxQueued=" + maxQueued);
+
+            }
+
+            final Waiter w = new Waiter();
+
+            final LinkedList<Waiter> queue = waiters.get(priority.ordinal());
+
+            queue.add(w);
+
+            nwaiting++;
+
+            counters.admissionQueueSize.increment();
+
+            try {
+
+                long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+
+                while (!w.done && !shutdown) {
+
+                    if (nanos <= 0L) {
+
+                        counters.admissionTimeoutCount.increment();
+
+                        throw new QueryAdmissionException(
+                                "Query not admitted within timeout: priority="
+                                        + priority + ", timeout=" + timeout
+                                        + "ms, queued=" + nwaiting
+                                        + ", running=" + nrunning
+                                        + ", maxRunning=" + maxRunning);
+
+                    }
+
+                    nanos = w.admitted.awaitNanos(nanos);
+
+                }
+
+                if (!w.done)
+                    throw new QueryAdmissionException("Shutting down.");
+
+            } catch (Throwable t) {
+
+                if (w.done) {
+
+                    // Admitted concurrently, so give back the slot.
+                    release();
+
+                } else {
+
+                    queue.remove(w);
+
+                    nwaiting--;
+
+                    counters.admissionQueueSize.decrement();
+
+                }
+
+                if (t instanceof InterruptedException)
+                    throw (InterruptedException) t;
+
+                if (t instanceof RuntimeException)
+                    throw (RuntimeException) t;
+
+                throw new RuntimeException(t);
+
+            }
+
+            counters.admissionWait(priority, System.nanoTime() - begin);
+
+        } finally {
+
+            lock.unlock();
+
+        }
+
+    }
+
+    /**
+     * Release an admitted query. If a query is waiting, then the next query
+     * is admitted.
+     */
+    void release() {
+
+        lock.lock();
+
+        try {
+
+            if (nrunning <= 0)
+                throw new IllegalStateException();
+
+            nrunning--;
+
+            admitWaiters();
+
+        } finally {
+
+            lock.unlock();
+
+        }
+
+    }
+
+    /**
+     * Reject all waiting queries and any new queries.
+     */
+    void shutdown() {
+
+        lock.lock();
+
+        try {
+
+            shutdown = true;
+
+            for (LinkedList<Waiter> queue : waiters) {
+
+                for (Waiter w : queue) {
+
+                    w.admitted.signal();
+
+                }
+
+            }
+
+        } finally {
+
+            lock.unlock();
+
+        }
+
+    }
+
+    /**
+     * Admit waiting queries while there is room for them to run.
+     */
+    private void admitWaiters() {
+
+        assert lock.isHeldByCurrentThread();
+
+        for (LinkedList<Waiter> queue : waiters) {
+
+            while (!queue.isEmpty()
+                    && (maxRunning == 0 || nrunning < maxRunning)) {
+
+                final Waiter w = queue.removeFirst();
+
+                w.done = true;
+
+                nwaiting--;
+
+                nrunning++;
+
+                counters.admissionQueueSize.decrement();
+
+                w.admitted.signal();
+
+            }
+
+        }
+
+    }
+
+}
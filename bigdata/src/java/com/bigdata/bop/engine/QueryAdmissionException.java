@@ -0,0 +1,64 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Exception thrown if a query is not admitted by the {@link QueryEngine}
+ * because the wait queue is full or because the query could not be admitted
+ * before the admission timeout.
+ * 
+ * @see QueryEngine#setMaxRunningQueries(int)
+ * @see QueryEngine#setMaxQueuedQueries(int)
+ * @see QueryEngine#setAdmissionTimeout(long)
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class QueryAdmissionException extends RejectedExecutionException {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 
+     */
+    public QueryAdmissionException() {
+    }
+
+    /**
+     * @param message
+     */
+    public QueryAdmissionException(String message) {
+        super(message);
+    }
+
+}
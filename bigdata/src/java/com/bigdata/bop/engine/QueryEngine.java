@@ -61,6 +61,8 @@ import com.bigdata.bop.IQueryAttributes;
 import com.bigdata.bop.PipelineOp;
 import com.bigdata.bop.bindingSet.ListBindingSet;
 import com.bigdata.bop.fed.QueryEngineFactory;
+import com.bigdata.bop.joinGraph.rto.JoinGraph;
+import com.bigdata.bop.joinGraph.rto.SampleCache;
 import com.bigdata.btree.BTree;
 import com.bigdata.btree.IndexSegment;
 import com.bigdata.btree.view.FusedView;
@@ -253,8 +255,44 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
                 + ".runningQueryClass";
 
 //        String DEFAULT_RUNNING_QUERY_CLASS = StandaloneChainedRunningQuery.class.getName();
+        /*
+         * Note: Specify WorkStealingRunningQuery to run the operator tasks on
+         * a work stealing pool rather than the shared executor service.
+         */
         String DEFAULT_RUNNING_QUERY_CLASS = ChunkedRunningQuery.class.getName();
 
+        /**
+         * The maximum #of bytes which may be used by a query marked by this
+         * annotation -or- ZERO (0) if the memory used by the query is not
+         * bounded (default {@value #DEFAULT_MAX_QUERY_MEMORY}). This includes
+         * both the solutions buffered on the JVM heap for the operators of the
+         * query and the native memory allocated by those operators. What is
+         * done when the query exceeds this budget is decided by the
+         * {@link IQueryMemoryPolicy}.
+         * 
+         * @see QueryEngine#setMaxMemory(long)
+         * @see QueryEngine#setMemoryPolicy(IQueryMemoryPolicy)
+         */
+        String MAX_QUERY_MEMORY = QueryEngine.class.getName()
+                + ".maxQueryMemory";
+
+        long DEFAULT_MAX_QUERY_MEMORY = 0L;
+
+        /**
+         * The {@link QueryPriority} of a query marked by this annotation
+         * (optional). A query which has this annotation must be admitted by
+         * the {@link QueryEngine} before it runs and will wait if the #of
+         * running queries is at the limit. Queries without this annotation,
+         * including the subqueries issued by the operators of a running
+         * query, are not subject to admission control.
+         * 
+         * @see QueryEngine#setMaxRunningQueries(int)
+         * @see QueryEngine#setMaxQueuedQueries(int)
+         * @see QueryEngine#setAdmissionTimeout(long)
+         */
+        String QUERY_PRIORITY = QueryEngine.class.getName()
+                + ".queryPriority";
+
     }
 
     /**
@@ -268,6 +306,17 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
 
         // Note: This counter is not otherwise tracked.
         counters.deadlineQueueSize.set(deadlineQueue.size());
+
+        // Note: This counter is not otherwise tracked.
+        counters.queryPlanCacheSize.set(queryPlanCache.size());
+
+        // Note: This counter is not otherwise tracked.
+        counters.queryMemoryBytes.set(memoryAccount.getBytes());
+
+        // Note: These counters are not otherwise tracked.
+        counters.sampleCacheSize.set(sampleCache.size());
+        counters.sampleCacheHitCount.set(sampleCache.getHitCount());
+        counters.sampleCacheMissCount.set(sampleCache.getMissCount());
         
         // global counters.
         root.attach(counters.getCounters());
@@ -368,6 +417,41 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
         return counters;
         
     }
+
+    /**
+     * Cache of compiled query plans.
+     */
+    private final QueryPlanCache queryPlanCache = new QueryPlanCache(
+            QueryPlanCache.DEFAULT_CAPACITY, counters);
+
+    /**
+     * The cache of compiled query plans for this {@link QueryEngine}. The cache
+     * is populated by the application, which is responsible for the choice of
+     * the key.
+     */
+    public QueryPlanCache getQueryPlanCache() {
+
+        return queryPlanCache;
+
+    }
+
+    /**
+     * Cache of the samples taken by the runtime query optimizer.
+     */
+    private final SampleCache sampleCache = new SampleCache(
+            SampleCache.DEFAULT_CAPACITY);
+
+    /**
+     * The cache of the vertex and edge samples taken by the runtime query
+     * optimizer for this {@link QueryEngine}.
+     * 
+     * @see JoinGraph.Annotations#SAMPLE_CACHE
+     */
+    public SampleCache getSampleCache() {
+
+        return sampleCache;
+
+    }
     
     /**
      * Access to the <strong>local</strong> indices.
@@ -904,6 +988,269 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
         
     }
     
+    /**
+     * The account against which the memory used by all queries running on
+     * this {@link QueryEngine} is charged. The account is not bounded unless
+     * {@link #setMaxMemory(long)} is used.
+     */
+    private final QueryMemoryAccount memoryAccount = new QueryMemoryAccount(
+            null/* parent */, 0L/* budget */);
+
+    /**
+     * The policy applied when a query or this {@link QueryEngine} exceeds its
+     * memory budget.
+     */
+    private volatile IQueryMemoryPolicy memoryPolicy = new DefaultQueryMemoryPolicy();
+
+    /**
+     * The account against which the memory used by all queries running on
+     * this {@link QueryEngine} is charged.
+     */
+    public QueryMemoryAccount getMemoryAccount() {
+
+        return memoryAccount;
+
+    }
+
+    /**
+     * Set the maximum #of bytes which may be used by all queries running on
+     * this {@link QueryEngine}.
+     * 
+     * @param maxMemory
+     *            The budget in bytes -or- ZERO (0) if the memory used by the
+     *            queries is not bounded.
+     * 
+     * @see Annotations#MAX_QUERY_MEMORY
+     */
+    public void setMaxMemory(final long maxMemory) {
+
+        memoryAccount.setBudget(maxMemory);
+
+    }
+
+    /**
+     * The maximum #of bytes which may be used by all queries running on this
+     * {@link QueryEngine} -or- ZERO (0) if the memory used by the queries is
+     * not bounded.
+     */
+    public long getMaxMemory() {
+
+        return memoryAccount.getBudget();
+
+    }
+
+    /**
+     * The policy applied when a query or this {@link QueryEngine} exceeds its
+     * memory budget.
+     */
+    public IQueryMemoryPolicy getMemoryPolicy() {
+
+        return memoryPolicy;
+
+    }
+
+    /**
+     * Set the policy applied when a query or this {@link QueryEngine} exceeds
+     * its memory budget.
+     * 
+     * @param memoryPolicy
+     *            The policy.
+     */
+    public void setMemoryPolicy(final IQueryMemoryPolicy memoryPolicy) {
+
+        if (memoryPolicy == null)
+            throw new IllegalArgumentException();
+
+        this.memoryPolicy = memoryPolicy;
+
+    }
+
+    /**
+     * Admission control for the queries having a
+     * {@link Annotations#QUERY_PRIORITY}.
+     */
+    private final QueryAdmissionController admissionController = new QueryAdmissionController(
+            counters);
+
+    /**
+     * The admitted queries which have not yet been released from the
+     * {@link #admissionController}.
+     */
+    private final ConcurrentHashMap<UUID, UUID> admittedQueries = new ConcurrentHashMap<UUID, UUID>();
+
+    /**
+     * The maximum time (milliseconds) that a query will wait to be admitted
+     * -or- ZERO (0) if there is no limit.
+     */
+    private volatile long admissionTimeout = 0L;
+
+    /**
+     * Set the maximum #of queries having a {@link Annotations#QUERY_PRIORITY}
+     * which may run at once. Additional queries wait to be admitted.
+     * 
+     * @param maxRunningQueries
+     *            The maximum -or- ZERO (0) if the #of running queries is not
+     *            bounded (this is the default).
+     */
+    public void setMaxRunningQueries(final int maxRunningQueries) {
+
+        admissionController.setMaxRunning(maxRunningQueries);
+
+    }
+
+    /**
+     * The maximum #of queries having a {@link Annotations#QUERY_PRIORITY}
+     * which may run at once -or- ZERO (0) if the #of running queries is not
+     * bounded.
+     */
+    public int getMaxRunningQueries() {
+
+        return admissionController.getMaxRunning();
+
+    }
+
+    /**
+     * Set the maximum #of queries which may wait to be admitted. A query which
+     * arrives when the wait queue is full is rejected with a
+     * {@link QueryAdmissionException}.
+     * 
+     * @param maxQueuedQueries
+     *            The maximum -or- ZERO (0) if the wait queue is not bounded
+     *            (this is the default).
+     */
+    public void setMaxQueuedQueries(final int maxQueuedQueries) {
+
+        admissionController.setMaxQueued(maxQueuedQueries);
+
+    }
+
+    /**
+     * The maximum #of queries which may wait to be admitted -or- ZERO (0) if
+     * the wait queue is not bounded.
+     */
+    public int getMaxQueuedQueries() {
+
+        return admissionController.getMaxQueued();
+
+    }
+
+    /**
+     * Set the maximum time that a query will wait to be admitted. A query
+     * which is not admitted in time is rejected with a
+     * {@link QueryAdmissionException}. The wait is also bounded by the
+     * {@link BOp.Annotations#TIMEOUT} of the query.
+     * 
+     * @param admissionTimeout
+     *            The timeout (milliseconds) -or- ZERO (0) if there is no limit
+     *            (this is the default).
+     */
+    public void setAdmissionTimeout(final long admissionTimeout) {
+
+        if (admissionTimeout < 0)
+            throw new IllegalArgumentException();
+
+        this.admissionTimeout = admissionTimeout;
+
+    }
+
+    /**
+     * The maximum time (milliseconds) that a query will wait to be admitted
+     * -or- ZERO (0) if there is no limit.
+     */
+    public long getAdmissionTimeout() {
+
+        return admissionTimeout;
+
+    }
+
+    /**
+     * The #of queries which are waiting to be admitted.
+     */
+    public int getAdmissionQueueSize() {
+
+        return admissionController.getQueuedCount();
+
+    }
+
+    /**
+     * Release a query from the {@link #admissionController} if it was
+     * admitted and has not already been released.
+     */
+    private void releaseAdmission(final UUID queryId) {
+
+        if (admittedQueries.remove(queryId) != null) {
+
+            admissionController.release();
+
+        }
+
+    }
+
+    /**
+     * The pool used to run the operator tasks for a
+     * {@link WorkStealingRunningQuery}. This is created on demand.
+     */
+    private final AtomicReference<WorkStealingExecutor> workStealingExecutor = new AtomicReference<WorkStealingExecutor>();
+
+    /**
+     * Return the work stealing pool on which the operator tasks for a
+     * {@link WorkStealingRunningQuery} are run, creating it if necessary. The
+     * pool has one worker thread per core, plus spare workers while operator
+     * tasks are blocked.
+     */
+    final WorkStealingExecutor getWorkStealingExecutor() {
+
+        WorkStealingExecutor e = workStealingExecutor.get();
+
+        if (e == null) {
+
+            synchronized (workStealingExecutor) {
+
+                e = workStealingExecutor.get();
+
+                if (e == null) {
+
+                    if (shutdown)
+                        throw new IllegalStateException("Shutting down.");
+
+                    e = new WorkStealingExecutor(QueryEngine.class.getName()
+                            + ".workStealingExecutor", Runtime.getRuntime()
+                            .availableProcessors(), counters);
+
+                    workStealingExecutor.set(e);
+
+                }
+
+            }
+
+        }
+
+        return e;
+
+    }
+
+    /**
+     * Halt the work stealing pool (if it was started).
+     */
+    private void shutdownWorkStealingExecutor() {
+
+        synchronized (workStealingExecutor) {
+
+            final WorkStealingExecutor e = workStealingExecutor.getAndSet(null);
+
+            if (e != null) {
+
+                if (log.isInfoEnabled())
+                    log.info("Terminating workStealingExecutor: " + this);
+
+                e.shutdownNow();
+
+            }
+
+        }
+
+    }
+    
     /**
      * Runnable submits chunks available for evaluation against running queries.
      * <p>
@@ -1058,6 +1405,9 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
         // normal termination.
         shutdown = true;
 
+        // reject any queries waiting to be admitted.
+        admissionController.shutdown();
+
         lock.lock();
         try {
             while (!runningQueries.isEmpty()) {
@@ -1074,6 +1424,9 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
         // hook for subclasses.
         didShutdown();
         
+        // stop the work stealing pool (no queries are running).
+        shutdownWorkStealingExecutor();
+        
         // stop the query engine.
         final Future<?> f = engineFuture.get();
         if (f != null) {
@@ -1123,6 +1476,9 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
         
         shutdown = true;
         
+        // reject any queries waiting to be admitted.
+        admissionController.shutdown();
+
         /*
          * Stop the QueryEngineTask: this is the task that accepts chunks that
          * are available for evaluation and assigns them to the
@@ -1157,6 +1513,9 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
             
         }
         
+        // stop the work stealing pool.
+        shutdownWorkStealingExecutor();
+        
         // clear the queues
         priorityQueue.clear();
         deadlineQueue.clear();
@@ -1606,54 +1965,86 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
         if (!queryId.equals(msg.getQueryId()))
             throw new IllegalArgumentException();
 
-        /*
-         * We are the query controller. Our reference will be reported as the
-         * proxy and our serviceUUID will be reported as the UUID of the query
-         * controller.
-         */
-        final AbstractRunningQuery runningQuery = newRunningQuery(queryId,
-                true/* controller */, getProxy()/* queryController */,
-                getServiceUUID(), query, msg/* realSource */);
+        // Note: The timeout includes the time spent waiting to be admitted.
+        final long begin = System.currentTimeMillis();
 
-        if (queryAttributes != null) {
+        final long timeout = query.getProperty(BOp.Annotations.TIMEOUT,
+                BOp.Annotations.DEFAULT_TIMEOUT);
 
-            /*
-             * Propagate any initial attributes to the query.
-             */
-            
-            final IQueryAttributes tmp = runningQuery.getAttributes();
+        if (timeout < 0)
+            throw new IllegalArgumentException(BOp.Annotations.TIMEOUT);
+
+        final String priority = query.getProperty(Annotations.QUERY_PRIORITY,
+                null/* defaultValue */);
+
+        if (priority != null) {
 
-            for (Map.Entry<Object, Object> e : queryAttributes.entrySet()) {
+            // verify query engine is running.
+            assertRunning();
 
-                tmp.put(e.getKey(), e.getValue());
+            // Wait until the query may run.
+            final long admissionTimeout = this.admissionTimeout;
+
+            admissionController.admit(QueryPriority.valueOf(priority), Math
+                    .min(admissionTimeout == 0L ? Long.MAX_VALUE
+                            : admissionTimeout, timeout));
+
+            if (admittedQueries.putIfAbsent(queryId, queryId) != null) {
+
+                admissionController.release();
+
+                throw new RuntimeException("Query exists with that UUID: uuid="
+                        + queryId);
 
             }
 
         }
-        
-        final long timeout = query.getProperty(BOp.Annotations.TIMEOUT,
-                BOp.Annotations.DEFAULT_TIMEOUT);
 
-        if (timeout < 0)
-            throw new IllegalArgumentException(BOp.Annotations.TIMEOUT);
-
-        if (timeout != Long.MAX_VALUE) {
+        boolean started = false;
+        try {
 
-            // Compute the deadline (may overflow if timeout is very large).
-            final long deadline = System.currentTimeMillis() + timeout;
+            /*
+             * We are the query controller. Our reference will be reported as the
+             * proxy and our serviceUUID will be reported as the UUID of the query
+             * controller.
+             */
+            final AbstractRunningQuery runningQuery = newRunningQuery(queryId,
+                    true/* controller */, getProxy()/* queryController */,
+                    getServiceUUID(), query, msg/* realSource */);
 
-            if (deadline > 0) {
+            if (queryAttributes != null) {
 
                 /*
-                 * Impose a deadline on the query.
+                 * Propagate any initial attributes to the query.
                  */
-                runningQuery.setDeadline(deadline);
+                
+                final IQueryAttributes tmp = runningQuery.getAttributes();
+
+                for (Map.Entry<Object, Object> e : queryAttributes.entrySet()) {
+
+                    tmp.put(e.getKey(), e.getValue());
+
+                }
 
             }
+            
+            if (timeout != Long.MAX_VALUE) {
 
-        }
+                // Compute the deadline (may overflow if timeout is very large).
+                final long deadline = begin + timeout;
 
-        // Note: ChunkTask verifies this.
+                if (deadline > 0) {
+
+                    /*
+                     * Impose a deadline on the query.
+                     */
+                    runningQuery.setDeadline(deadline);
+
+                }
+
+            }
+
+            // Note: ChunkTask verifies this.
 //        /*
 //         * Verify that all bops from the identified bop to the root have an
 //         * assigned bop. This is required in order for us to be able to target
@@ -1661,42 +2052,58 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
 //         */
 //        BOpUtility.verifyPipline(msg.getBOpId(), query);
 
-        // verify query engine is running.
-        assertRunning();
+            // verify query engine is running.
+            assertRunning();
 
-        // add to running query table.
-        if (putIfAbsent(queryId, runningQuery) != runningQuery) {
+            // add to running query table.
+            if (putIfAbsent(queryId, runningQuery) != runningQuery) {
 
-            /*
-             * UUIDs should not collide when assigned randomly. However, the
-             * UUID may be imposed by an exterior process, such as a SPARQL end
-             * point, so it can access metadata about the running query even
-             * when it is not a direct client of the QueryEngine. This provides
-             * a safety check against UUID collisions which might be non-random.
-             */
-            throw new RuntimeException("Query exists with that UUID: uuid="
-                + runningQuery.getQueryId());
-            
-        }
+                /*
+                 * UUIDs should not collide when assigned randomly. However, the
+                 * UUID may be imposed by an exterior process, such as a SPARQL end
+                 * point, so it can access metadata about the running query even
+                 * when it is not a direct client of the QueryEngine. This provides
+                 * a safety check against UUID collisions which might be non-random.
+                 */
+                throw new RuntimeException("Query exists with that UUID: uuid="
+                    + runningQuery.getQueryId());
+                
+            }
 
 //        final String tag = query.getProperty(QueryHints.TAG,
 //                QueryHints.DEFAULT_TAG);
 //
 //        final Counters c = tag == null ? null : getCounters(tag);
 
-        // track #of started queries.
-        counters.queryStartCount.increment();
+            // track #of started queries.
+            counters.queryStartCount.increment();
 
 //        if (c != null)
 //            c.startCount.increment();
 
-        // notify query start
-        runningQuery.startQuery(msg);
-        
-        // tell query to consume the initial chunk.
-        acceptChunk(msg);
-        
-        return runningQuery;
+            // notify query start
+            runningQuery.startQuery(msg);
+            
+            // tell query to consume the initial chunk.
+            acceptChunk(msg);
+            
+            started = true;
+
+            return runningQuery;
+
+        } finally {
+
+            if (!started && priority != null) {
+
+                /*
+                 * The query was admitted but did not start. Note: If the query
+                 * was started, then it is released when it halts.
+                 */
+                releaseAdmission(queryId);
+
+            }
+
+        }
 
     }
 
@@ -1909,6 +2316,9 @@ public class QueryEngine implements IQueryPeer, IQueryClient, ICounterSetAccess
             // remove from the set of running queries.
             runningQueries.remove(q.getQueryId(), q);
 
+            // admit the next waiting query (if any).
+            releaseAdmission(q.getQueryId());
+
             if(runningQueries.isEmpty()) {
 
                 // Signal that no queries are running.
@@ -27,6 +27,7 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.bop.engine;
 
+import com.bigdata.bop.joinGraph.rto.SampleCache;
 import com.bigdata.counters.CAT;
 import com.bigdata.counters.CounterSet;
 import com.bigdata.counters.ICounterSetAccess;
@@ -107,6 +108,184 @@ public class QueryEngineCounters implements ICounterSetAccess {
      */
     protected final CAT deadlineQueueSize = new CAT();
 
+    /**
+     * The #of query plans in the {@link QueryPlanCache}.
+     */
+    protected final CAT queryPlanCacheSize = new CAT();
+
+    /**
+     * The #of times that a query plan was found in the {@link QueryPlanCache}.
+     */
+    protected final CAT queryPlanCacheHitCount = new CAT();
+
+    /**
+     * The #of times that a query plan was not found in the
+     * {@link QueryPlanCache}.
+     */
+    protected final CAT queryPlanCacheMissCount = new CAT();
+
+    /**
+     * The #of samples in the {@link SampleCache}.
+     */
+    protected final CAT sampleCacheSize = new CAT();
+
+    /**
+     * The #of times that a sample was found in the {@link SampleCache}.
+     */
+    protected final CAT sampleCacheHitCount = new CAT();
+
+    /**
+     * The #of times that a sample was not found in the {@link SampleCache}.
+     */
+    protected final CAT sampleCacheMissCount = new CAT();
+
+    /**
+     * The total time (nanoseconds) that operator evaluation tasks (chunk
+     * tasks) spent waiting for a thread after they were submitted.
+     */
+    protected final CAT operatorQueueLatencyNanos = new CAT();
+
+    /**
+     * The #of operator evaluation tasks (chunk tasks) for which the queue
+     * latency was measured.
+     */
+    protected final CAT operatorQueuedCount = new CAT();
+
+    /**
+     * The #of operator evaluation tasks which were run by the worker thread
+     * which submitted them.
+     * 
+     * @see WorkStealingRunningQuery
+     */
+    protected final CAT operatorLocalTaskCount = new CAT();
+
+    /**
+     * The #of operator evaluation tasks which were stolen by an idle worker
+     * thread.
+     * 
+     * @see WorkStealingRunningQuery
+     */
+    protected final CAT operatorStolenTaskCount = new CAT();
+
+    /**
+     * The #of spare worker threads which were started because the workers
+     * were blocked inside of operator evaluation tasks.
+     * 
+     * @see WorkStealingRunningQuery
+     */
+    protected final CAT operatorSpareWorkerCount = new CAT();
+
+    /**
+     * The #of bytes charged against the memory account of the
+     * {@link QueryEngine} by the running queries.
+     * 
+     * @see QueryMemoryAccount
+     */
+    protected final CAT queryMemoryBytes = new CAT();
+
+    /**
+     * The #of queries which were asked to spill by the
+     * {@link IQueryMemoryPolicy}.
+     */
+    protected final CAT queryMemorySpillCount = new CAT();
+
+    /**
+     * The #of queries which were cancelled by the {@link IQueryMemoryPolicy}.
+     */
+    protected final CAT queryMemoryCancelCount = new CAT();
+
+    /**
+     * The #of queries which are waiting to be admitted.
+     * 
+     * @see QueryAdmissionController
+     */
+    protected final CAT admissionQueueSize = new CAT();
+
+    /**
+     * The #of queries which were rejected because the admission queue was
+     * full.
+     */
+    protected final CAT admissionRejectedCount = new CAT();
+
+    /**
+     * The #of queries which were not admitted before their timeout.
+     */
+    protected final CAT admissionTimeoutCount = new CAT();
+
+    /**
+     * The upper bounds (milliseconds) of the buckets of the histogram of the
+     * time that the admitted queries waited to be admitted. The last bucket
+     * reports the waits longer than the last upper bound.
+     */
+    static final long[] ADMISSION_WAIT_BUCKETS = new long[] { 1, 10, 100,
+            1000, 10000 };
+
+    /**
+     * The #of admitted queries, indexed by the ordinal of the
+     * {@link QueryPriority}.
+     */
+    private final CAT[] admittedCount = newCATs(QueryPriority.values().length);
+
+    /**
+     * The total time (nanoseconds) that the admitted queries waited to be
+     * admitted, indexed by the ordinal of the {@link QueryPriority}.
+     */
+    private final CAT[] admissionWaitNanos = newCATs(QueryPriority.values().length);
+
+    /**
+     * The histogram of the time that the admitted queries waited to be
+     * admitted, indexed by the ordinal of the {@link QueryPriority} and then
+     * by the bucket.
+     * 
+     * @see #ADMISSION_WAIT_BUCKETS
+     */
+    private final CAT[][] admissionWaitHistogram = newCATs(
+            QueryPriority.values().length, ADMISSION_WAIT_BUCKETS.length + 1);
+
+    private static CAT[] newCATs(final int n) {
+        final CAT[] a = new CAT[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = new CAT();
+        }
+        return a;
+    }
+
+    private static CAT[][] newCATs(final int n, final int m) {
+        final CAT[][] a = new CAT[n][];
+        for (int i = 0; i < n; i++) {
+            a[i] = newCATs(m);
+        }
+        return a;
+    }
+
+    /**
+     * Record the time that a query waited to be admitted.
+     * 
+     * @param priority
+     *            The priority class of the query.
+     * @param nanos
+     *            The wait time (nanoseconds).
+     */
+    protected void admissionWait(final QueryPriority priority, final long nanos) {
+
+        final int i = priority.ordinal();
+
+        admittedCount[i].increment();
+
+        admissionWaitNanos[i].add(nanos);
+
+        final long millis = nanos / 1000000;
+
+        int j = 0;
+        while (j < ADMISSION_WAIT_BUCKETS.length
+                && millis >= ADMISSION_WAIT_BUCKETS[j]) {
+            j++;
+        }
+
+        admissionWaitHistogram[i][j].increment();
+
+    }
+
     @Override
     public CounterSet getCounters() {
 
@@ -214,6 +393,190 @@ public class QueryEngineCounters implements ICounterSetAccess {
             }
         });
 
+        // The #of cached query plans.
+        root.addCounter("queryPlanCacheSize", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(queryPlanCacheSize.get());
+            }
+        });
+
+        // #of query plan cache hits.
+        root.addCounter("queryPlanCacheHitCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(queryPlanCacheHitCount.get());
+            }
+        });
+
+        // #of query plan cache misses.
+        root.addCounter("queryPlanCacheMissCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(queryPlanCacheMissCount.get());
+            }
+        });
+
+        // The #of cached RTO samples.
+        root.addCounter("sampleCacheSize", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(sampleCacheSize.get());
+            }
+        });
+
+        // #of RTO sample cache hits.
+        root.addCounter("sampleCacheHitCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(sampleCacheHitCount.get());
+            }
+        });
+
+        // #of RTO sample cache misses.
+        root.addCounter("sampleCacheMissCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(sampleCacheMissCount.get());
+            }
+        });
+
+        // average time (ms) that an operator task waited for a thread.
+        root.addCounter("operatorQueueLatencyMillis", new Instrument<Double>() {
+            @Override
+            public void sample() {
+                final long nanos = operatorQueueLatencyNanos.get();
+                final long n = operatorQueuedCount.get();
+                final double d = n == 0 ? 0d : (nanos / (1000000d * n));
+                setValue(d);
+            }
+        });
+
+        // total time (ms) that operator tasks waited for a thread.
+        root.addCounter("operatorQueueLatencyTotalMillis", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(operatorQueueLatencyNanos.get() / 1000000);
+            }
+        });
+
+        // #of operator tasks run by the worker which submitted them.
+        root.addCounter("operatorLocalTaskCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(operatorLocalTaskCount.get());
+            }
+        });
+
+        // #of operator tasks stolen by an idle worker.
+        root.addCounter("operatorStolenTaskCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(operatorStolenTaskCount.get());
+            }
+        });
+
+        // #of spare workers started for blocked operator tasks.
+        root.addCounter("operatorSpareWorkerCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(operatorSpareWorkerCount.get());
+            }
+        });
+
+        // #of bytes used by the running queries.
+        root.addCounter("queryMemoryBytes", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(queryMemoryBytes.get());
+            }
+        });
+
+        // #of queries asked to spill by the memory policy.
+        root.addCounter("queryMemorySpillCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(queryMemorySpillCount.get());
+            }
+        });
+
+        // #of queries cancelled by the memory policy.
+        root.addCounter("queryMemoryCancelCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(queryMemoryCancelCount.get());
+            }
+        });
+
+        // #of queries waiting to be admitted.
+        root.addCounter("admissionQueueSize", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(admissionQueueSize.get());
+            }
+        });
+
+        // #of queries rejected because the admission queue was full.
+        root.addCounter("admissionRejectedCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(admissionRejectedCount.get());
+            }
+        });
+
+        // #of queries not admitted before their timeout.
+        root.addCounter("admissionTimeoutCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(admissionTimeoutCount.get());
+            }
+        });
+
+        // admission wait times for each priority class.
+        for (QueryPriority p : QueryPriority.values()) {
+
+            final CounterSet tmp = root.makePath("admission/" + p);
+
+            final int i = p.ordinal();
+
+            // #of queries admitted.
+            tmp.addCounter("admittedCount", new Instrument<Long>() {
+                @Override
+                public void sample() {
+                    setValue(admittedCount[i].get());
+                }
+            });
+
+            // average admission wait time (ms).
+            tmp.addCounter("waitMillis", new Instrument<Double>() {
+                @Override
+                public void sample() {
+                    final long n = admittedCount[i].get();
+                    setValue(n == 0 ? 0d : admissionWaitNanos[i].get()
+                            / (n * 1000000d));
+                }
+            });
+
+            // histogram of the admission wait times.
+            for (int j = 0; j <= ADMISSION_WAIT_BUCKETS.length; j++) {
+
+                final CAT bucket = admissionWaitHistogram[i][j];
+
+                final String name = j < ADMISSION_WAIT_BUCKETS.length ? "lt"
+                        + ADMISSION_WAIT_BUCKETS[j] + "ms" : "ge"
+                        + ADMISSION_WAIT_BUCKETS[j - 1] + "ms";
+
+                tmp.addCounter("waitHistogram/" + name, new Instrument<Long>() {
+                    @Override
+                    public void sample() {
+                        setValue(bucket.get());
+                    }
+                });
+
+            }
+
+        }
+
         return root;
 
     }
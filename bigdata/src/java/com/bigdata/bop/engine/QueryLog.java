@@ -292,6 +292,8 @@ public class QueryLog {
         // dynamics based on elapsed wall clock time.
         sb.append("\tsolutions/ms");
         sb.append("\tmutations/ms");
+        // memory used by the query (summary only).
+        sb.append("\tpeakMemory");
         //
         // cost model(s)
         //
@@ -675,6 +677,10 @@ public class QueryLog {
         // mutations/ms
         sb.append('\t');
         sb.append(elapsed == 0 ? 0 : stats.mutationCount.get() / elapsed);
+        // peakMemory
+        sb.append('\t');
+        if (summary)
+            sb.append(q.getMemoryAccount().getPeakBytes());
 
         sb.append('\n');
 
@@ -887,6 +893,9 @@ public class QueryLog {
         if(mutationStats) {
             w.write("<th>");w.write(cdata("mutations/ms"));w.write("</th>");
         }
+        if(detailedStats) {
+            w.write("<th>peakMemory</th>"); // memory used by the query.
+        }
         //
         // cost model(s)
         //
@@ -1519,6 +1528,13 @@ public class QueryLog {
                     .toString(stats.mutationCount.get() / elapsed)));
             w.write(TDx);
         }
+        // peakMemory
+        if (detailedStats) {
+            w.write(TD);
+            if (summary)
+                w.write(Long.toString(q.getMemoryAccount().getPeakBytes()));
+            w.write(TDx);
+        }
         w.write("</tr\n>");
 
     }
@@ -0,0 +1,352 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bigdata.rwstore.sector.IMemoryManager;
+
+/**
+ * Tracks the memory used by an {@link IRunningQuery} (or, when it has no
+ * parent, by all queries running on a {@link QueryEngine}) against an
+ * optional budget. The usage is the sum of the bytes charged for the
+ * solutions buffered on the JVM heap and the native memory allocated from the
+ * query's {@link IMemoryManager}. All changes to a query's account are also
+ * applied to the account of the {@link QueryEngine}.
+ * <p>
+ * The account only reports the usage. The decision to switch the operators of
+ * a query into spill mode or to cancel the query is made by the
+ * {@link IQueryMemoryPolicy}.
+ * 
+ * @see QueryEngine.Annotations#MAX_QUERY_MEMORY
+ * @see QueryEngine#setMaxMemory(long)
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class QueryMemoryAccount {
+
+    /**
+     * The account of the {@link QueryEngine} (optional).
+     */
+    private final QueryMemoryAccount parent;
+
+    /**
+     * The budget in bytes -or- ZERO (0) if the account is not bounded.
+     */
+    private volatile long budget;
+
+    /**
+     * The #of bytes charged for the solutions buffered on the JVM heap.
+     */
+    private final AtomicLong heapBytes = new AtomicLong();
+
+    /**
+     * The #of bytes allocated on the native heap.
+     */
+    private final AtomicLong nativeBytes = new AtomicLong();
+
+    /**
+     * The maximum of {@link #getBytes()} over the life of the account.
+     */
+    private final AtomicLong peakBytes = new AtomicLong();
+
+    /**
+     * Set once the operators should spill to disk (or to the native heap)
+     * rather than buffering more solutions on the JVM heap.
+     */
+    private volatile boolean spill = false;
+
+    /**
+     * Set by {@link #close()}. Charges made after the account was closed are
+     * ignored.
+     * <p>
+     * Note: Guarded by the monitor on this object.
+     */
+    private boolean closed = false;
+
+    /**
+     * @param parent
+     *            The account to which all charges are propagated (optional).
+     * @param budget
+     *            The budget in bytes -or- ZERO (0) if the account is not
+     *            bounded.
+     */
+    public QueryMemoryAccount(final QueryMemoryAccount parent, final long budget) {
+
+        if (budget < 0)
+            throw new IllegalArgumentException();
+
+        this.parent = parent;
+
+        this.budget = budget;
+
+    }
+
+    /**
+     * The account to which all charges are propagated -or- <code>null</code>
+     * if this is the account of the {@link QueryEngine}.
+     */
+    public QueryMemoryAccount getParent() {
+
+        return parent;
+
+    }
+
+    /**
+     * The budget in bytes -or- ZERO (0) if the account is not bounded.
+     */
+    public long getBudget() {
+
+        return budget;
+
+    }
+
+    /**
+     * Set the budget.
+     * 
+     * @param budget
+     *            The budget in bytes -or- ZERO (0) if the account is not
+     *            bounded.
+     */
+    public void setBudget(final long budget) {
+
+        if (budget < 0)
+            throw new IllegalArgumentException();
+
+        this.budget = budget;
+
+    }
+
+    /**
+     * The #of bytes currently charged against the account.
+     */
+    public long getBytes() {
+
+        return heapBytes.get() + nativeBytes.get();
+
+    }
+
+    /**
+     * The #of bytes charged for the solutions buffered on the JVM heap.
+     */
+    public long getHeapBytes() {
+
+        return heapBytes.get();
+
+    }
+
+    /**
+     * The #of bytes allocated on the native heap.
+     */
+    public long getNativeBytes() {
+
+        return nativeBytes.get();
+
+    }
+
+    /**
+     * The maximum #of bytes which were charged against the account at any
+     * one time.
+     */
+    public long getPeakBytes() {
+
+        return peakBytes.get();
+
+    }
+
+    /**
+     * Return <code>true</code> iff the account is bounded and the #of bytes
+     * charged exceeds its budget.
+     */
+    public boolean isOverBudget() {
+
+        final long b = budget;
+
+        return b != 0L && getBytes() > b;
+
+    }
+
+    /**
+     * Charge bytes for solutions buffered on the JVM heap.
+     * 
+     * @param nbytes
+     *            The #of bytes.
+     */
+    synchronized public void charge(final long nbytes) {
+
+        if (nbytes < 0)
+            throw new IllegalArgumentException();
+
+        if (nbytes == 0 || closed)
+            return;
+
+        addHeapBytes(nbytes);
+
+    }
+
+    /**
+     * Release bytes previously charged using {@link #charge(long)}.
+     * 
+     * @param nbytes
+     *            The #of bytes.
+     */
+    synchronized public void release(final long nbytes) {
+
+        if (nbytes < 0)
+            throw new IllegalArgumentException();
+
+        if (nbytes == 0 || closed)
+            return;
+
+        addHeapBytes(-nbytes);
+
+    }
+
+    /**
+     * Set the #of bytes allocated on the native heap. The difference from the
+     * previous value is applied to the parent.
+     * 
+     * @param nbytes
+     *            The #of bytes (for example, from
+     *            {@link IMemoryManager#getSlotBytes()}).
+     */
+    synchronized public void setNativeBytes(final long nbytes) {
+
+        if (nbytes < 0)
+            throw new IllegalArgumentException();
+
+        if (closed)
+            return;
+
+        addNativeBytes(nbytes - nativeBytes.get());
+
+    }
+
+    /**
+     * Apply a change in the #of bytes buffered on the JVM heap to this
+     * account and its parent.
+     */
+    private void addHeapBytes(final long delta) {
+
+        heapBytes.addAndGet(delta);
+
+        if (delta > 0)
+            updatePeak();
+
+        if (parent != null)
+            parent.addHeapBytes(delta);
+
+    }
+
+    /**
+     * Apply a change in the #of bytes allocated on the native heap to this
+     * account and its parent.
+     */
+    private void addNativeBytes(final long delta) {
+
+        if (delta == 0)
+            return;
+
+        nativeBytes.addAndGet(delta);
+
+        if (delta > 0)
+            updatePeak();
+
+        if (parent != null)
+            parent.addNativeBytes(delta);
+
+    }
+
+    private void updatePeak() {
+
+        final long n = getBytes();
+
+        long p;
+        while (n > (p = peakBytes.get())) {
+
+            if (peakBytes.compareAndSet(p, n))
+                break;
+
+        }
+
+    }
+
+    /**
+     * Request that the operators spill rather than buffer more solutions on
+     * the JVM heap.
+     * 
+     * @return <code>true</code> iff spill mode was not already requested.
+     */
+    public boolean requestSpill() {
+
+        if (spill)
+            return false;
+
+        spill = true;
+
+        return true;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the operators should spill rather than
+     * buffer more solutions on the JVM heap.
+     */
+    public boolean isSpillRequested() {
+
+        return spill;
+
+    }
+
+    /**
+     * Release everything charged against this account from the parent. The
+     * peak usage is retained for reporting.
+     */
+    synchronized public void close() {
+
+        if (closed)
+            return;
+
+        closed = true;
+
+        addHeapBytes(-heapBytes.get());
+
+        addNativeBytes(-nativeBytes.get());
+
+    }
+
+    public String toString() {
+
+        return getClass().getSimpleName() + "{bytes=" + getBytes()
+                + ",peakBytes=" + getPeakBytes() + ",budget=" + budget
+                + ",spill=" + spill + "}";
+
+    }
+
+}
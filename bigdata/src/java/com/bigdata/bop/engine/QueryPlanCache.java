@@ -0,0 +1,449 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.lang.reflect.Constructor;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpBase;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.ImmutableBOp;
+import com.bigdata.bop.NamedSolutionSetRefUtility;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.controller.INamedSolutionSetRef;
+
+/**
+ * A bounded LRU cache of compiled query plans. The cache is owned by the
+ * {@link QueryEngine} and is shared by all queries which it evaluates. The
+ * application is responsible for choosing a key which captures everything on
+ * which the query plan depends (the query, the KB instance, and the commit
+ * point against which the plan was generated).
+ * <p>
+ * A cached query plan has the {@link UUID} of the query for which it was
+ * generated and the timestamp of the view against which it was generated
+ * baked into its annotations. {@link CachedQueryPlan#getQueryPlan(UUID, long)}
+ * re-binds those values so the plan may be reused by a new query.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class QueryPlanCache {
+
+    /**
+     * The default capacity of the cache.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * The counters on which cache hits and misses are reported.
+     */
+    private final QueryEngineCounters counters;
+
+    /**
+     * The cache (access order, guarded by synchronized(this)).
+     */
+    private final LinkedHashMap<Object, CachedQueryPlan> map;
+
+    /**
+     *
+     * @param capacity
+     *            The maximum #of cached query plans.
+     * @param counters
+     *            The counters on which cache hits and misses are reported.
+     */
+    public QueryPlanCache(final int capacity,
+            final QueryEngineCounters counters) {
+
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+
+        if (counters == null)
+            throw new IllegalArgumentException();
+
+        this.counters = counters;
+
+        this.map = new LinkedHashMap<Object, CachedQueryPlan>(16/* initialCapacity */,
+                .75f/* loadFactor */, true/* accessOrder */) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<Object, CachedQueryPlan> eldest) {
+
+                return size() > capacity;
+
+            }
+
+        };
+
+    }
+
+    /**
+     * Return the cached query plan for that key (if any). The outcome is
+     * reported as a cache hit or miss.
+     *
+     * @param key
+     *            The key.
+     *
+     * @return The cached query plan -or- <code>null</code> if there is no
+     *         query plan for that key.
+     */
+    public CachedQueryPlan get(final Object key) {
+
+        if (key == null)
+            throw new IllegalArgumentException();
+
+        final CachedQueryPlan e;
+        synchronized (this) {
+            e = map.get(key);
+        }
+
+        if (e == null) {
+            counters.queryPlanCacheMissCount.increment();
+        } else {
+            counters.queryPlanCacheHitCount.increment();
+        }
+
+        return e;
+
+    }
+
+    /**
+     * Add a query plan to the cache.
+     *
+     * @param key
+     *            The key.
+     * @param e
+     *            The query plan.
+     */
+    public void put(final Object key, final CachedQueryPlan e) {
+
+        if (key == null)
+            throw new IllegalArgumentException();
+
+        if (e == null)
+            throw new IllegalArgumentException();
+
+        synchronized (this) {
+            map.put(key, e);
+        }
+
+    }
+
+    /**
+     * Discard all cached query plans.
+     */
+    public void clear() {
+
+        synchronized (this) {
+            map.clear();
+        }
+
+    }
+
+    /**
+     * The #of cached query plans.
+     */
+    public int size() {
+
+        synchronized (this) {
+            return map.size();
+        }
+
+    }
+
+    /**
+     * A cached query plan.
+     * <p>
+     * Note: Applications may extend this class in order to associate additional
+     * state with the query plan (e.g., the optimized AST from which it was
+     * generated).
+     */
+    public static class CachedQueryPlan {
+
+        private final PipelineOp queryPlan;
+
+        private final UUID queryId;
+
+        private final long timestamp;
+
+        /**
+         *
+         * @param queryPlan
+         *            The query plan.
+         * @param queryId
+         *            The {@link UUID} of the query for which that plan was
+         *            generated.
+         * @param timestamp
+         *            The timestamp of the view against which that plan was
+         *            generated.
+         */
+        public CachedQueryPlan(final PipelineOp queryPlan, final UUID queryId,
+                final long timestamp) {
+
+            if (queryPlan == null)
+                throw new IllegalArgumentException();
+
+            if (queryId == null)
+                throw new IllegalArgumentException();
+
+            this.queryPlan = queryPlan;
+            this.queryId = queryId;
+            this.timestamp = timestamp;
+
+        }
+
+        /**
+         * Return a copy of the cached query plan in which the {@link UUID} of
+         * the query and the timestamp of the view have been re-bound. Only
+         * those operators which are modified are copied.
+         *
+         * @param newQueryId
+         *            The {@link UUID} of the new query.
+         * @param newTimestamp
+         *            The timestamp of the view for the new query.
+         *
+         * @return The query plan for the new query.
+         */
+        public PipelineOp getQueryPlan(final UUID newQueryId,
+                final long newTimestamp) {
+
+            if (newQueryId == null)
+                throw new IllegalArgumentException();
+
+            return (PipelineOp) rebind(queryPlan, queryId, newQueryId,
+                    timestamp, newTimestamp);
+
+        }
+
+    }
+
+    /**
+     * Suffix used by the annotations which carry the timestamp of a view.
+     *
+     * @see com.bigdata.bop.ITimestampAnnotations#TIMESTAMP
+     */
+    private static final String TIMESTAMP_SUFFIX = ".timestamp";
+
+    /**
+     * Recursively re-bind the query {@link UUID} and the timestamp of the view
+     * on an operator tree.
+     *
+     * @return The given operator if nothing was changed and otherwise a copy
+     *         of that operator.
+     */
+    static BOp rebind(final BOp op, final UUID oldQueryId,
+            final UUID newQueryId, final long oldTimestamp,
+            final long newTimestamp) {
+
+        if (!(op instanceof BOpBase) || op instanceof IVariableOrConstant<?>) {
+            // Variables, constants, etc.
+            return op;
+        }
+
+        if (op instanceof ImmutableBOp) {
+            // Does not support the copy-on-write mutation API.
+            return rebindImmutable((ImmutableBOp) op, oldQueryId, newQueryId,
+                    oldTimestamp, newTimestamp);
+        }
+
+        BOpBase tmp = (BOpBase) op;
+
+        final int arity = op.arity();
+
+        for (int i = 0; i < arity; i++) {
+
+            final BOp arg = op.get(i);
+
+            final BOp newArg = rebind(arg, oldQueryId, newQueryId,
+                    oldTimestamp, newTimestamp);
+
+            if (newArg != arg)
+                tmp = tmp.setArg(i, newArg);
+
+        }
+
+        for (Map.Entry<String, Object> e : op.annotations().entrySet()) {
+
+            final String name = e.getKey();
+
+            final Object val = e.getValue();
+
+            final Object newVal = rebindValue(name, val, oldQueryId,
+                    newQueryId, oldTimestamp, newTimestamp);
+
+            if (newVal != val)
+                tmp = tmp.setProperty(name, newVal);
+
+        }
+
+        return tmp;
+
+    }
+
+    /**
+     * Re-bind an {@link ImmutableBOp} (such as a value expression which has
+     * the timestamp of the view in its annotations). Since the annotations of
+     * an {@link ImmutableBOp} can not be set, the operator is rebuilt using
+     * its shallow copy constructor.
+     */
+    private static BOp rebindImmutable(final ImmutableBOp op,
+            final UUID oldQueryId, final UUID newQueryId,
+            final long oldTimestamp, final long newTimestamp) {
+
+        boolean dirty = false;
+
+        final int arity = op.arity();
+
+        final BOp[] args = arity == 0 ? BOp.NOARGS : new BOp[arity];
+
+        for (int i = 0; i < arity; i++) {
+
+            final BOp arg = op.get(i);
+
+            args[i] = rebind(arg, oldQueryId, newQueryId, oldTimestamp,
+                    newTimestamp);
+
+            if (args[i] != arg)
+                dirty = true;
+
+        }
+
+        final LinkedHashMap<String, Object> anns = new LinkedHashMap<String, Object>();
+
+        for (Map.Entry<String, Object> e : op.annotations().entrySet()) {
+
+            final String name = e.getKey();
+
+            final Object val = e.getValue();
+
+            final Object newVal = rebindValue(name, val, oldQueryId,
+                    newQueryId, oldTimestamp, newTimestamp);
+
+            if (newVal != val)
+                dirty = true;
+
+            anns.put(name, newVal);
+
+        }
+
+        if (!dirty)
+            return op;
+
+        try {
+
+            final Constructor<? extends BOp> ctor = op.getClass()
+                    .getConstructor(BOp[].class, Map.class);
+
+            return ctor.newInstance(args, anns);
+
+        } catch (Exception ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+    }
+
+    private static Object rebindValue(final String name, final Object val,
+            final UUID oldQueryId, final UUID newQueryId,
+            final long oldTimestamp, final long newTimestamp) {
+
+        if (val instanceof BOp) {
+
+            return rebind((BOp) val, oldQueryId, newQueryId, oldTimestamp,
+                    newTimestamp);
+
+        } else if (val instanceof UUID) {
+
+            if (val.equals(oldQueryId))
+                return newQueryId;
+
+        } else if (val instanceof Long) {
+
+            if (oldTimestamp != newTimestamp
+                    && ((Long) val).longValue() == oldTimestamp
+                    && name.endsWith(TIMESTAMP_SUFFIX))
+                return Long.valueOf(newTimestamp);
+
+        } else if (val instanceof INamedSolutionSetRef) {
+
+            final INamedSolutionSetRef ref = (INamedSolutionSetRef) val;
+
+            if (ref.getQueryId() != null) {
+
+                if (ref.getQueryId().equals(oldQueryId))
+                    return NamedSolutionSetRefUtility.newInstance(newQueryId,
+                            ref.getLocalName(), ref.getJoinVars());
+
+            } else if (oldTimestamp != newTimestamp
+                    && ref.getTimestamp() == oldTimestamp) {
+
+                return NamedSolutionSetRefUtility.newInstance(
+                        ref.getNamespace(), newTimestamp, ref.getLocalName(),
+                        ref.getJoinVars());
+
+            }
+
+        } else if (val instanceof Object[]) {
+
+            final Object[] a = (Object[]) val;
+
+            Object[] b = null;
+
+            for (int i = 0; i < a.length; i++) {
+
+                final Object x = rebindValue(name, a[i], oldQueryId,
+                        newQueryId, oldTimestamp, newTimestamp);
+
+                if (x != a[i]) {
+
+                    if (b == null)
+                        b = Arrays.copyOf(a, a.length);
+
+                    b[i] = x;
+
+                }
+
+            }
+
+            if (b != null)
+                return b;
+
+        }
+
+        return val;
+
+    }
+
+}
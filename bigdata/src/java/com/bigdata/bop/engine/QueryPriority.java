@@ -0,0 +1,55 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+/**
+ * The priority classes used by the {@link QueryEngine} to decide which
+ * waiting query is admitted next when the #of running queries is bounded.
+ * Queries in a class are admitted in the order in which they arrived, and a
+ * waiting query is only admitted once no query of a higher priority class is
+ * waiting.
+ * 
+ * @see QueryEngine.Annotations#QUERY_PRIORITY
+ * @see QueryEngine#setMaxRunningQueries(int)
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public enum QueryPriority {
+
+    /**
+     * Queries for which a user is waiting (highest priority).
+     */
+    Interactive,
+
+    /**
+     * Long running or offline queries (lowest priority).
+     */
+    Batch;
+
+}
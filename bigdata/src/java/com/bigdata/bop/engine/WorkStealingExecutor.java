@@ -0,0 +1,654 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A fixed pool of worker threads with work stealing which is used to run the
+ * operator tasks for a {@link WorkStealingRunningQuery}.
+ * <p>
+ * Each worker has its own deque. A task submitted by a worker for the same
+ * query as the task which that worker is currently running is pushed onto the
+ * head of that worker's deque, so a chunk produced by an operator is normally
+ * consumed on the same thread (and while its solutions are still in that
+ * core's cache). Other tasks are placed onto a shared queue which is drained
+ * round-robin by query so that one query can not starve the others. An idle
+ * worker first takes from its own deque, then from the shared queue, and
+ * finally steals from the tail of another worker's deque.
+ * <p>
+ * In order to preserve fairness, a worker takes from the shared queue after it
+ * has run {@link #MAX_LOCAL_RUN} tasks in a row from its own deque.
+ * <p>
+ * Operator tasks may block, e.g., when the queue for the target operator is
+ * full or while an operator waits for a subquery. The task which would
+ * unblock them may be queued behind them, so the pool compensates for blocked
+ * workers. A monitor thread checks the workers every
+ * {@link #DEFAULT_COMPENSATION_DELAY} milliseconds. When tasks are waiting and
+ * fewer than <i>nthreads</i> workers are able to run them because the others
+ * have been blocked inside of a task since the last check, a spare worker is
+ * started. A spare worker exits once it has been idle for
+ * {@link #SPARE_KEEP_ALIVE} milliseconds. Like the shared executor service,
+ * the #of threads is therefore not bounded while tasks are blocked.
+ * <p>
+ * Note: This is used in place of a <code>ForkJoinPool</code>, which is not
+ * available for the Java 6 target.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+class WorkStealingExecutor {
+
+    private static final transient Logger log = Logger
+            .getLogger(WorkStealingExecutor.class);
+
+    /**
+     * The maximum #of tasks which a worker will run in a row from its own
+     * deque before it checks the shared queue.
+     */
+    static final int MAX_LOCAL_RUN = 16;
+
+    /**
+     * The default #of milliseconds between checks for blocked workers.
+     */
+    static final long DEFAULT_COMPENSATION_DELAY = 10L;
+
+    /**
+     * The #of milliseconds which a spare worker waits for a task before it
+     * exits.
+     */
+    static final long SPARE_KEEP_ALIVE = 1000L;
+
+    private final String name;
+
+    private final QueryEngineCounters counters;
+
+    /**
+     * The #of workers which should be able to run tasks at any given time.
+     */
+    private final int parallelism;
+
+    /**
+     * The #of milliseconds between checks for blocked workers.
+     */
+    private final long compensationDelay;
+
+    /**
+     * The core workers followed by the spare workers (if any).
+     */
+    private final CopyOnWriteArrayList<Worker> workers = new CopyOnWriteArrayList<Worker>();
+
+    /**
+     * Used to assign an ordinal to each worker.
+     */
+    private final AtomicInteger nworkers = new AtomicInteger();
+
+    /**
+     * The thread which checks for blocked workers.
+     */
+    private final Thread monitor;
+
+    /**
+     * The tasks which have not been assigned to a worker, by query. The
+     * queries are served round-robin.
+     * <p>
+     * Note: Guarded by its own monitor.
+     */
+    private final LinkedHashMap<Object, LinkedList<Task>> shared = new LinkedHashMap<Object, LinkedList<Task>>();
+
+    /**
+     * One permit for each task which has been submitted but not yet taken by
+     * a worker.
+     */
+    private final Semaphore pending = new Semaphore(0);
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param name
+     *            The prefix for the names of the worker threads.
+     * @param nthreads
+     *            The #of worker threads.
+     * @param counters
+     *            The counters to be updated.
+     */
+    WorkStealingExecutor(final String name, final int nthreads,
+            final QueryEngineCounters counters) {
+
+        this(name, nthreads, DEFAULT_COMPENSATION_DELAY, counters);
+
+    }
+
+    /**
+     * @param name
+     *            The prefix for the names of the worker threads.
+     * @param nthreads
+     *            The #of worker threads.
+     * @param compensationDelay
+     *            The #of milliseconds between checks for blocked workers.
+     * @param counters
+     *            The counters to be updated.
+     */
+    WorkStealingExecutor(final String name, final int nthreads,
+            final long compensationDelay, final QueryEngineCounters counters) {
+
+        if (nthreads <= 0)
+            throw new IllegalArgumentException();
+
+        if (compensationDelay <= 0)
+            throw new IllegalArgumentException();
+
+        if (counters == null)
+            throw new IllegalArgumentException();
+
+        this.name = name;
+
+        this.counters = counters;
+
+        this.parallelism = nthreads;
+
+        this.compensationDelay = compensationDelay;
+
+        for (int i = 0; i < nthreads; i++) {
+
+            workers.add(new Worker(name + "-" + i, false/* spare */));
+
+        }
+
+        for (Worker w : workers) {
+
+            w.start();
+
+        }
+
+        monitor = new Thread(name + "-monitor") {
+            @Override
+            public void run() {
+                while (!shutdown) {
+                    try {
+                        Thread.sleep(WorkStealingExecutor.this.compensationDelay);
+                    } catch (InterruptedException ex) {
+                        // Shutdown.
+                        continue;
+                    }
+                    compensate();
+                }
+            }
+        };
+
+        monitor.setDaemon(true);
+
+        monitor.start();
+
+    }
+
+    /**
+     * The #of worker threads which should be able to run tasks at any given
+     * time.
+     */
+    int getPoolSize() {
+
+        return parallelism;
+
+    }
+
+    /**
+     * The #of worker threads, including any spare workers.
+     */
+    int getWorkerCount() {
+
+        return workers.size();
+
+    }
+
+    /**
+     * Submit a task.
+     *
+     * @param key
+     *            The key for the query (used for fairness and locality).
+     * @param r
+     *            The task.
+     *
+     * @throws RejectedExecutionException
+     *             if the executor has been shutdown.
+     */
+    void execute(final Object key, final Runnable r) {
+
+        if (key == null || r == null)
+            throw new IllegalArgumentException();
+
+        if (shutdown)
+            throw new RejectedExecutionException();
+
+        final Task t = new Task(key, r);
+
+        final Thread current = Thread.currentThread();
+
+        if (current instanceof Worker && ((Worker) current).owner() == this
+                && key.equals(((Worker) current).currentKey)) {
+
+            // Keep the work for this query on this thread.
+            ((Worker) current).deque.addFirst(t);
+
+            counters.operatorLocalTaskCount.increment();
+
+        } else {
+
+            synchronized (shared) {
+
+                LinkedList<Task> tasks = shared.get(key);
+
+                if (tasks == null)
+                    shared.put(key, tasks = new LinkedList<Task>());
+
+                tasks.add(t);
+
+            }
+
+        }
+
+        pending.release();
+
+    }
+
+    /**
+     * Take the next task from the shared queue. The query whose task is taken
+     * moves to the end of the round-robin order.
+     */
+    private Task pollShared() {
+
+        synchronized (shared) {
+
+            final Iterator<Map.Entry<Object, LinkedList<Task>>> itr = shared
+                    .entrySet().iterator();
+
+            if (!itr.hasNext())
+                return null;
+
+            final Map.Entry<Object, LinkedList<Task>> e = itr.next();
+
+            final LinkedList<Task> tasks = e.getValue();
+
+            final Task t = tasks.removeFirst();
+
+            itr.remove();
+
+            if (!tasks.isEmpty())
+                shared.put(e.getKey(), tasks);
+
+            return t;
+
+        }
+
+    }
+
+    /**
+     * Start a spare worker if there are tasks waiting to run and fewer than
+     * {@link #getPoolSize()} workers are able to run them.
+     * <p>
+     * Note: This is only invoked by the monitor thread.
+     */
+    private void compensate() {
+
+        if (shutdown || pending.availablePermits() == 0)
+            return;
+
+        int available = 0;
+
+        for (Worker w : workers) {
+
+            if (!w.isBlocked())
+                available++;
+
+        }
+
+        if (available >= parallelism)
+            return;
+
+        final Worker w = new Worker(name + "-spare-"
+                + nworkers.get(), true/* spare */);
+
+        workers.add(w);
+
+        counters.operatorSpareWorkerCount.increment();
+
+        if (log.isInfoEnabled())
+            log.info("Starting spare worker: available=" + available
+                    + ", parallelism=" + parallelism + ", pending="
+                    + pending.availablePermits());
+
+        w.start();
+
+    }
+
+    /**
+     * Halt the worker threads. Tasks which have not started are discarded.
+     */
+    void shutdownNow() {
+
+        shutdown = true;
+
+        monitor.interrupt();
+
+        for (Worker w : workers) {
+
+            w.interrupt();
+
+        }
+
+        synchronized (shared) {
+
+            shared.clear();
+
+        }
+
+    }
+
+    /**
+     * A submitted task.
+     */
+    private static class Task {
+
+        final Object key;
+
+        final Runnable r;
+
+        Task(final Object key, final Runnable r) {
+
+            this.key = key;
+
+            this.r = r;
+
+        }
+
+    }
+
+    /**
+     * A worker thread.
+     */
+    private class Worker extends Thread {
+
+        private final int index;
+
+        /**
+         * <code>true</code> iff this worker was started to compensate for a
+         * blocked worker.
+         */
+        private final boolean spare;
+
+        private final LinkedBlockingDeque<Task> deque = new LinkedBlockingDeque<Task>();
+
+        /**
+         * The key for the query whose task is currently running on this worker
+         * -or- <code>null</code> if the worker is idle.
+         */
+        private volatile Object currentKey = null;
+
+        /**
+         * The #of tasks started by this worker.
+         */
+        private volatile long ntasks = 0L;
+
+        /**
+         * The value of {@link #ntasks} when the monitor last saw this worker
+         * waiting inside of a task -or- <code>-1</code>.
+         * <p>
+         * Note: This is only used by the monitor thread.
+         */
+        private long waitingTask = -1L;
+
+        /**
+         * The #of tasks run in a row from this worker's deque.
+         */
+        private int localRun = 0;
+
+        Worker(final String name, final boolean spare) {
+
+            super(name);
+
+            this.index = nworkers.getAndIncrement();
+
+            this.spare = spare;
+
+            setDaemon(true);
+
+        }
+
+        WorkStealingExecutor owner() {
+
+            return WorkStealingExecutor.this;
+
+        }
+
+        /**
+         * Return <code>true</code> iff this worker has been waiting inside of
+         * the same task on this check and on the previous check.
+         * <p>
+         * Note: This is only invoked by the monitor thread.
+         */
+        boolean isBlocked() {
+
+            final long n = ntasks;
+
+            boolean waiting = false;
+
+            if (currentKey != null) {
+
+                switch (getState()) {
+                case BLOCKED:
+                case WAITING:
+                case TIMED_WAITING:
+                    waiting = true;
+                    break;
+                default:
+                    break;
+                }
+
+            }
+
+            if (!waiting) {
+
+                waitingTask = -1L;
+
+                return false;
+
+            }
+
+            if (waitingTask == n)
+                return true;
+
+            waitingTask = n;
+
+            return false;
+
+        }
+
+        @Override
+        public void run() {
+
+            try {
+
+                while (!shutdown) {
+
+                    try {
+
+                        if (!spare) {
+
+                            pending.acquire();
+
+                        } else if (!pending.tryAcquire(SPARE_KEEP_ALIVE,
+                                TimeUnit.MILLISECONDS)) {
+
+                            /*
+                             * Idle. Only this worker adds to its deque, so it
+                             * may exit once the tasks on its deque have been
+                             * stolen.
+                             */
+                            if (deque.isEmpty())
+                                return;
+
+                            continue;
+
+                        }
+
+                    } catch (InterruptedException ex) {
+
+                        /*
+                         * Shutdown -or- a stale interrupt from cancelling a
+                         * task which was running on this worker.
+                         */
+                        continue;
+
+                    }
+
+                    /*
+                     * A task is available somewhere since we hold a permit.
+                     * Note: it might not be visible yet if the submitter has
+                     * not yet returned from the deque or the shared queue.
+                     */
+                    Task t;
+                    while ((t = next()) == null) {
+
+                        if (shutdown)
+                            return;
+
+                        Thread.yield();
+
+                    }
+
+                    runTask(t);
+
+                }
+
+            } finally {
+
+                if (spare)
+                    workers.remove(this);
+
+            }
+
+        }
+
+        /**
+         * Return the next task for this worker.
+         */
+        private Task next() {
+
+            Task t;
+
+            if (localRun < MAX_LOCAL_RUN && (t = deque.pollFirst()) != null) {
+
+                localRun++;
+
+                return t;
+
+            }
+
+            if ((t = pollShared()) != null) {
+
+                localRun = 0;
+
+                return t;
+
+            }
+
+            if ((t = deque.pollFirst()) != null) {
+
+                localRun++;
+
+                return t;
+
+            }
+
+            // Steal from the tail of another worker's deque.
+            final Worker[] a = workers.toArray(new Worker[0]);
+
+            for (int i = 1; i <= a.length; i++) {
+
+                final Worker w = a[(index + i) % a.length];
+
+                if (w == this)
+                    continue;
+
+                if ((t = w.deque.pollLast()) != null) {
+
+                    localRun = 0;
+
+                    counters.operatorStolenTaskCount.increment();
+
+                    return t;
+
+                }
+
+            }
+
+            return null;
+
+        }
+
+        private void runTask(final Task t) {
+
+            currentKey = t.key;
+
+            ntasks++;
+
+            try {
+
+                t.r.run();
+
+            } catch (Throwable ex) {
+
+                // Note: ChunkFutureTask reports its own errors to the query.
+                log.error(ex, ex);
+
+            } finally {
+
+                currentKey = null;
+
+                // Clear the interrupt status if the task was cancelled.
+                if (!shutdown)
+                    Thread.interrupted();
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.util.UUID;
+
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.PipelineOp;
+
+/**
+ * A {@link ChunkedRunningQuery} whose operator tasks are run on the
+ * {@link QueryEngine}'s {@link WorkStealingExecutor} rather than on the
+ * executor service of the local index manager. The output of an operator task
+ * is normally consumed by the next operator on the same worker thread and the
+ * pool is shared fairly among the concurrent queries which use this class.
+ * <p>
+ * This class is selected using {@link QueryEngine.Annotations#RUNNING_QUERY_CLASS}.
+ * Operator tasks for other queries continue to run on the shared executor
+ * service.
+ *
+ * @see QueryEngineCounters#operatorQueueLatencyNanos
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class WorkStealingRunningQuery extends ChunkedRunningQuery {
+
+    /**
+     * @param queryEngine
+     *            The {@link QueryEngine} on which the query is running.
+     * @param queryId
+     *            The unique identifier for the query.
+     * @param controller
+     *            <code>true</code> iff the {@link QueryEngine} is the query
+     *            controller for this query.
+     * @param clientProxy
+     *            The query controller.
+     * @param query
+     *            The query.
+     * @param realSource
+     *            The initial chunk (optional).
+     */
+    public WorkStealingRunningQuery(final QueryEngine queryEngine,
+            final UUID queryId, final boolean controller,
+            final IQueryClient clientProxy, final PipelineOp query,
+            final IChunkMessage<IBindingSet> realSource) {
+
+        super(queryEngine, queryId, controller, clientProxy, query, realSource);
+
+    }
+
+    /**
+     * Overridden to run the task on the work stealing pool.
+     */
+    @Override
+    protected void execute(final Runnable r) {
+
+        getQueryEngine().getWorkStealingExecutor().execute(getQueryId(), r);
+
+    }
+
+}
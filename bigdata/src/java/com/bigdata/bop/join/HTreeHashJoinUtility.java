@@ -454,9 +454,15 @@ public class HTreeHashJoinUtility implements IHashJoinUtility {
     
     /**
      * Setup the {@link IndexMetadata} for {@link #rightSolutions} or
-     * {@link #joinSet}.
+     * {@link #joinSet}. The keys are int32 hash codes and duplicate keys are
+     * permitted. This is also used by other operators which buffer encoded
+     * solutions in an {@link HTree} under an int32 hash code.
+     * 
+     * @param op
+     *            The operator whose {@link HTreeAnnotations} are used to
+     *            configure the {@link HTree}.
      */
-    static private HTreeIndexMetadata getIndexMetadata(final PipelineOp op) {
+    static public HTreeIndexMetadata getIndexMetadata(final PipelineOp op) {
 
 		final HTreeIndexMetadata metadata = new HTreeIndexMetadata(
 				UUID.randomUUID());
@@ -1026,6 +1032,13 @@ public class HTreeHashJoinUtility implements IHashJoinUtility {
             // true iff there are no join variables.
             final boolean noJoinVars = joinVars.length == 0;
             
+            // true iff this is a semi-join (EXISTS) or an anti-join (NOT EXISTS).
+            final boolean semiJoin = joinType.isSemiOrAntiJoin();
+
+            // true iff we only need to test whether the solutions are compatible.
+            final boolean testOnly = semiJoin
+                    && (constraints == null || constraints.length == 0);
+            
             final AtomicInteger vectorSize = new AtomicInteger();
             
             while (it.hasNext()) {
@@ -1165,10 +1178,20 @@ public class HTreeHashJoinUtility implements IHashJoinUtility {
                                 final IBindingSet leftSolution = a[i].bset;
                                 
                                 // Join.
-                                final IBindingSet outSolution = BOpContext
-                                        .bind(leftSolution, rightSolution,
-                                                constraints,
-                                                selectVars);
+                                final IBindingSet outSolution;
+                                if (testOnly) {
+                                    /*
+                                     * Semi-join or anti-join without
+                                     * constraints. Only the test is required.
+                                     */
+                                    outSolution = BOpContext.isCompatible(
+                                            leftSolution, rightSolution) ? rightSolution
+                                            : null;
+                                } else {
+                                    outSolution = BOpContext.bind(
+                                            leftSolution, rightSolution,
+                                            constraints, selectVars);
+                                }
 
                                 nJoinsConsidered.increment();
 
@@ -1277,6 +1300,14 @@ public class HTreeHashJoinUtility implements IHashJoinUtility {
                                     throw new AssertionError();
                                 }
 
+                                if (semiJoin && outSolution != null) {
+                                    /*
+                                     * The right solution joins. Stop probing
+                                     * it against the other left solutions.
+                                     */
+                                    break;
+                                }
+
                             } // next left in the same bucket.
 
                         } // next rightSolution with the same hash code.
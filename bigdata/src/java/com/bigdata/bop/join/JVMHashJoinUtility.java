@@ -542,6 +542,13 @@ public class JVMHashJoinUtility implements IHashJoinUtility {
         // true iff there are no join variables.
         final boolean noJoinVars = joinVars.length == 0;
 
+        // true iff this is a semi-join (EXISTS) or an anti-join (NOT EXISTS).
+        final boolean semiJoin = joinType.isSemiOrAntiJoin();
+
+        // true iff we only need to test whether the solutions are compatible.
+        final boolean testOnly = semiJoin
+                && (constraints == null || constraints.length == 0);
+
         try {
 
             while (leftItr.hasNext()) {
@@ -571,6 +578,14 @@ public class JVMHashJoinUtility implements IHashJoinUtility {
 
                         final SolutionHit right = ritr.next();
 
+                        if (semiJoin && right.nhits.get() > 0L) {
+                            /*
+                             * This solution is already known to join, so we do
+                             * not need to probe it again.
+                             */
+                            continue;
+                        }
+
                         nrightConsidered.increment();
 
                         if (log.isDebugEnabled())
@@ -590,6 +605,17 @@ public class JVMHashJoinUtility implements IHashJoinUtility {
 
                         }
 
+                        if (testOnly) {
+                            /*
+                             * Semi-join or anti-join without constraints. Note
+                             * the hit without materializing the joined
+                             * solution.
+                             */
+                            if (BOpContext.isCompatible(left, right.solution))
+                                right.nhits.increment();
+                            continue;
+                        }
+
                         // See if the solutions join.
                         final IBindingSet outSolution = BOpContext.bind(//
                                 right.solution,//
@@ -0,0 +1,476 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.join;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IElement;
+import com.bigdata.bop.IPredicate;
+import com.bigdata.bop.IQueryAttributes;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.ap.Predicate;
+import com.bigdata.bop.controller.INamedSolutionSetRef;
+import com.bigdata.relation.accesspath.ElementFilter;
+import com.bigdata.relation.accesspath.IElementFilter;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * A compact Bloom filter over the distinct values of a join variable in the
+ * build side of a hash join. The filter is used for sideways information
+ * passing (SIP): it is pushed down into the access path of a join on the probe
+ * side of the hash join so that tuples which can not possibly join are
+ * dropped within the index scan rather than being turned into intermediate
+ * solutions which are then rejected by the hash join.
+ * <p>
+ * The filters are computed lazily the first time they are requested for a
+ * given hash index and are then cached on the {@link IQueryAttributes}. This
+ * means that no work is done for a hash index which is never probed by an
+ * access path carrying the {@link PipelineJoin.Annotations#SIP_FILTERS}
+ * annotation.
+ * <p>
+ * Note: A Bloom filter has false positives but no false negatives. The hash
+ * join still makes the final decision, so the filter only needs to be
+ * conservative. If any solution in the hash index does not bind a given join
+ * variable then no filter is created for that variable since such solutions
+ * join with everything.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ * 
+ * @see PipelineJoin.Annotations#SIP_FILTERS
+ */
+public class JoinKeyBloomFilter implements Serializable {
+
+    private static final transient Logger log = Logger
+            .getLogger(JoinKeyBloomFilter.class);
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The #of bits allocated per distinct key. Together with
+     * {@link #HASH_FUNCTION_COUNT} this gives a false positive rate of ~1%.
+     */
+    static final int BITS_PER_KEY = 10;
+
+    /**
+     * The #of hash functions.
+     */
+    static final int HASH_FUNCTION_COUNT = 4;
+
+    /**
+     * Filters are not built for hash indices having more than this many
+     * solutions. Such hash indices are unlikely to be selective enough to
+     * make the filter worth its memory.
+     */
+    static final long MAX_SOLUTIONS = 1L << 24;
+
+    /**
+     * The bits.
+     */
+    private final long[] bits;
+
+    /**
+     * The bit mask (the #of bits is always a power of 2).
+     */
+    private final int mask;
+
+    /**
+     * @param capacity
+     *            The expected #of keys.
+     */
+    public JoinKeyBloomFilter(final long capacity) {
+
+        if (capacity < 0 || capacity > MAX_SOLUTIONS)
+            throw new IllegalArgumentException();
+
+        long nbits = 64;
+
+        while (nbits < capacity * BITS_PER_KEY)
+            nbits <<= 1;
+
+        this.bits = new long[(int) (nbits >>> 6)];
+
+        this.mask = (int) (nbits - 1);
+
+    }
+
+    /**
+     * Add a value to the filter.
+     * 
+     * @param value
+     *            The value (required).
+     */
+    public void add(final Object value) {
+
+        final int h1 = mix(value.hashCode());
+
+        final int h2 = (h1 >>> 16) | 1;
+
+        for (int i = 0; i < HASH_FUNCTION_COUNT; i++) {
+
+            final int bit = (h1 + i * h2) & mask;
+
+            bits[bit >>> 6] |= 1L << bit;
+
+        }
+
+    }
+
+    /**
+     * Return <code>false</code> iff the value was definitely not added to the
+     * filter.
+     * 
+     * @param value
+     *            The value (required).
+     */
+    public boolean contains(final Object value) {
+
+        final int h1 = mix(value.hashCode());
+
+        final int h2 = (h1 >>> 16) | 1;
+
+        for (int i = 0; i < HASH_FUNCTION_COUNT; i++) {
+
+            final int bit = (h1 + i * h2) & mask;
+
+            if ((bits[bit >>> 6] & (1L << bit)) == 0)
+                return false;
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * The #of bits in the filter.
+     */
+    public int getBitLength() {
+
+        return mask + 1;
+
+    }
+
+    /**
+     * Spread the bits of a hash code (the murmur3 finalizer).
+     */
+    private static int mix(int h) {
+
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+
+        return h;
+
+    }
+
+    public String toString() {
+
+        return getClass().getSimpleName() + "{nbits=" + getBitLength() + "}";
+
+    }
+
+    /**
+     * Build a filter for each join variable of the hash index. The hash index
+     * MUST be complete (no more solutions will be added).
+     * 
+     * @param state
+     *            The hash index.
+     * 
+     * @return A map from the join variables to their filters. Join variables
+     *         which are not bound in every solution are not included in the
+     *         map. The map will be empty if the hash index is too large to be
+     *         worth filtering.
+     */
+    public static Map<IVariable<?>, JoinKeyBloomFilter> newInstance(
+            final IHashJoinUtility state) {
+
+        final IVariable<?>[] joinVars = state.getJoinVars();
+
+        final long n = state.getRightSolutionCount();
+
+        if (joinVars.length == 0 || n > MAX_SOLUTIONS)
+            return Collections.emptyMap();
+
+        final Map<IVariable<?>, JoinKeyBloomFilter> filters = new LinkedHashMap<IVariable<?>, JoinKeyBloomFilter>();
+
+        for (IVariable<?> var : joinVars) {
+
+            filters.put(var, new JoinKeyBloomFilter(n));
+
+        }
+
+        final ICloseableIterator<IBindingSet> itr = state.indexScan();
+
+        try {
+
+            while (itr.hasNext() && !filters.isEmpty()) {
+
+                final IBindingSet bset = itr.next();
+
+                for (IVariable<?> var : joinVars) {
+
+                    final JoinKeyBloomFilter filter = filters.get(var);
+
+                    if (filter == null)
+                        continue;
+
+                    final IConstant<?> c = bset.get(var);
+
+                    if (c == null) {
+
+                        // Solution joins with anything on this variable.
+                        filters.remove(var);
+
+                        continue;
+
+                    }
+
+                    filter.add(c.get());
+
+                }
+
+            }
+
+        } finally {
+
+            itr.close();
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info("nsolutions=" + n + ", filters=" + filters);
+
+        return filters;
+
+    }
+
+    /**
+     * Return the filters for the identified hash index, building them if
+     * necessary.
+     * 
+     * @param context
+     *            The evaluation context.
+     * @param namedSetRef
+     *            The hash index.
+     * 
+     * @return The filters -or- <code>null</code> if the hash index does not
+     *         exist (or has not been built yet).
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<IVariable<?>, JoinKeyBloomFilter> getFilters(
+            final BOpContext<IBindingSet> context,
+            final INamedSolutionSetRef namedSetRef) {
+
+        final IQueryAttributes attrs = context.getQueryAttributes(namedSetRef
+                .getQueryId());
+
+        if (attrs == null)
+            return null;
+
+        final AttributeKey key = new AttributeKey(namedSetRef);
+
+        Map<IVariable<?>, JoinKeyBloomFilter> filters = (Map<IVariable<?>, JoinKeyBloomFilter>) attrs
+                .get(key);
+
+        if (filters == null) {
+
+            final Object state = attrs.get(namedSetRef);
+
+            if (!(state instanceof IHashJoinUtility))
+                return null;
+
+            filters = newInstance((IHashJoinUtility) state);
+
+            final Object old = attrs.putIfAbsent(key, filters);
+
+            if (old != null) {
+
+                // Lost a race.
+                filters = (Map<IVariable<?>, JoinKeyBloomFilter>) old;
+
+            }
+
+        }
+
+        return filters;
+
+    }
+
+    /**
+     * Add an {@link IPredicate.Annotations#INDEX_LOCAL_FILTER} to the
+     * predicate for each variable in the predicate which is a join variable
+     * of one of the identified hash indices for which a filter is available.
+     * 
+     * @param context
+     *            The evaluation context.
+     * @param pred
+     *            The predicate.
+     * @param namedSetRefs
+     *            The hash indices.
+     * 
+     * @return The predicate, which may have been modified.
+     */
+    public static <E> IPredicate<E> addFilters(
+            final BOpContext<IBindingSet> context, IPredicate<E> pred,
+            final INamedSolutionSetRef[] namedSetRefs) {
+
+        if (!(pred instanceof Predicate))
+            return pred;
+
+        for (INamedSolutionSetRef namedSetRef : namedSetRefs) {
+
+            final Map<IVariable<?>, JoinKeyBloomFilter> filters = getFilters(
+                    context, namedSetRef);
+
+            if (filters == null || filters.isEmpty())
+                continue;
+
+            final int arity = pred.arity();
+
+            for (int i = 0; i < arity; i++) {
+
+                final IVariableOrConstant<?> t = pred.get(i);
+
+                if (t == null || !t.isVar())
+                    continue;
+
+                final JoinKeyBloomFilter filter = filters.get(t);
+
+                if (filter == null)
+                    continue;
+
+                pred = ((Predicate<E>) pred).addIndexLocalFilter(ElementFilter
+                        .newInstance(new ElementTest(i, filter)));
+
+                if (log.isDebugEnabled())
+                    log.debug("var=" + t + ", namedSet=" + namedSetRef);
+
+            }
+
+        }
+
+        return pred;
+
+    }
+
+    /**
+     * Rejects elements whose value at the given index is not in the filter.
+     */
+    private static class ElementTest implements IElementFilter<IElement> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+
+        private final JoinKeyBloomFilter filter;
+
+        ElementTest(final int index, final JoinKeyBloomFilter filter) {
+
+            this.index = index;
+
+            this.filter = filter;
+
+        }
+
+        @Override
+        public boolean isValid(final Object e) {
+
+            final Object value = ((IElement) e).get(index);
+
+            return value == null || filter.contains(value);
+
+        }
+
+        @Override
+        public boolean canAccept(final Object o) {
+
+            return o instanceof IElement;
+
+        }
+
+        public String toString() {
+
+            return "SIP{index=" + index + ", filter=" + filter + "}";
+
+        }
+
+    }
+
+    /**
+     * The key under which the filters are cached on the
+     * {@link IQueryAttributes}.
+     */
+    private static class AttributeKey {
+
+        private final INamedSolutionSetRef namedSetRef;
+
+        AttributeKey(final INamedSolutionSetRef namedSetRef) {
+
+            this.namedSetRef = namedSetRef;
+
+        }
+
+        @Override
+        public int hashCode() {
+
+            return namedSetRef.hashCode() + 1;
+
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+
+            if (this == o)
+                return true;
+
+            if (!(o instanceof AttributeKey))
+                return false;
+
+            return namedSetRef.equals(((AttributeKey) o).namedSetRef);
+
+        }
+
+    }
+
+}
@@ -106,4 +106,17 @@ public enum JoinTypeEnum {
 
     }
 
+    /**
+     * Return <code>true</code> iff this is a semi-join ({@link #Exists}) or an
+     * anti-join ({@link #NotExists}). Such joins only need to know whether
+     * some solution joins with each indexed solution, so the probe for an
+     * indexed solution stops at its first match and the joined solutions are
+     * not materialized (unless there are join constraints).
+     */
+    public boolean isSemiOrAntiJoin() {
+
+        return this == Exists || this == NotExists;
+
+    }
+
 }
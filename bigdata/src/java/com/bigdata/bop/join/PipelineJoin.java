@@ -55,6 +55,7 @@ import com.bigdata.bop.IShardwisePipelineOp;
 import com.bigdata.bop.IVariable;
 import com.bigdata.bop.NV;
 import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.controller.INamedSolutionSetRef;
 import com.bigdata.bop.engine.AbstractRunningQuery;
 import com.bigdata.bop.engine.QueryTimeoutException;
 import com.bigdata.btree.BytesUtil;
@@ -221,6 +222,22 @@ public class PipelineJoin<E> extends PipelineOp implements
 
         boolean DEFAULT_REORDER_ACCESS_PATHS = true;
 
+        /**
+         * An optional {@link INamedSolutionSetRef}[] identifying hash indices
+         * which will be joined against the solutions produced by this join.
+         * When present, a {@link JoinKeyBloomFilter} is obtained for each
+         * join variable of those hash indices which is also a variable of the
+         * access path and the access path is filtered against it so that
+         * tuples which can not join are dropped within the index scan
+         * (sideways information passing).
+         * <p>
+         * Note: This annotation is on the <em>predicate</em>.
+         * 
+         * @see JoinKeyBloomFilter
+         */
+        String SIP_FILTERS = (PipelineJoin.class.getName() + ".sipFilters")
+                .intern();
+
 	}
 
 	/**
@@ -514,7 +531,7 @@ public class PipelineJoin<E> extends PipelineOp implements
 				throw new IllegalArgumentException();
 
 			this.joinOp = joinOp;
-			this.predicate = joinOp.getPredicate();
+			this.predicate = addSIPFilters(joinOp.getPredicate(), context);
 			this.constraints = joinOp.constraints();
 			this.maxParallelChunks = joinOp.getMaxParallelChunks();
 			if (maxParallelChunks < 0)
@@ -556,6 +573,23 @@ public class PipelineJoin<E> extends PipelineOp implements
 
 		}
 
+        /**
+         * Attach the filters for any {@link Annotations#SIP_FILTERS} to the
+         * predicate.
+         */
+        private IPredicate<E> addSIPFilters(final IPredicate<E> pred,
+                final BOpContext<IBindingSet> context) {
+
+            final INamedSolutionSetRef[] namedSetRefs = (INamedSolutionSetRef[]) pred
+                    .getProperty(Annotations.SIP_FILTERS);
+
+            if (namedSetRefs == null || namedSetRefs.length == 0)
+                return pred;
+
+            return JoinKeyBloomFilter.addFilters(context, pred, namedSetRefs);
+
+        }
+
 		@Override
 		public String toString() {
 
@@ -656,6 +690,25 @@ public class PipelineJoin<E> extends PipelineOp implements
 
 		}
 
+		/**
+		 * Check whether this {@link JoinTask} -or- the query has been halted.
+		 * The query is halted once its LIMIT is satisfied by a downstream
+		 * SLICE. The {@link InterruptedException} causes the access path
+		 * iterator to be closed immediately rather than once the current
+		 * chunk has been processed and the interrupt is noticed.
+		 * 
+		 * @throws InterruptedException
+		 *             if the query is done.
+		 */
+		protected void haltedOrQueryDone() throws InterruptedException {
+
+			halted();
+
+			if (context.getRunningQuery().isDone())
+				throw new InterruptedException();
+
+		}
+
 		/**
 		 * Consume {@link IBindingSet} chunks from the {@link #source}.
 		 * 
@@ -854,7 +907,7 @@ public class PipelineJoin<E> extends PipelineOp implements
             // }
             while (source.hasNext()) {
 
-                halted();
+                haltedOrQueryDone();
 
                 // read the chunk.
                 final IBindingSet[] chunk = source.next();
@@ -1543,7 +1596,7 @@ public class PipelineJoin<E> extends PipelineOp implements
 		    @Override
 			public Void call() throws Exception {
 
-				halted();
+				haltedOrQueryDone();
 
 				if (limit != Long.MAX_VALUE && exactOutputCount.get() > limit) {
 					// break query @ limit.
@@ -1619,7 +1672,7 @@ public class PipelineJoin<E> extends PipelineOp implements
 
 					while (itr.hasNext()) {
 
-						halted();
+						haltedOrQueryDone();
 						
 						final Object[] chunk = itr.nextChunk();
 
@@ -1735,7 +1788,7 @@ public class PipelineJoin<E> extends PipelineOp implements
 
                     while (itr.hasNext()) {
 
-                        halted();
+                        haltedOrQueryDone();
                         
                         int naccepted = 0;
                         
@@ -1908,6 +1961,8 @@ public class PipelineJoin<E> extends PipelineOp implements
 						final List<Object[]> chunks = new LinkedList<Object[]>();
 						while (itr.hasNext()) {
 
+							haltedOrQueryDone();
+
 							final Object[] chunk = (Object[]) itr.nextChunk();
 
 							// add to list of chunks.
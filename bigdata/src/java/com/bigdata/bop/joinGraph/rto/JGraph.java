@@ -53,7 +53,6 @@ import com.bigdata.bop.engine.QueryEngine;
 import com.bigdata.bop.joinGraph.NoSolutionsException;
 import com.bigdata.bop.joinGraph.PartitionedJoinGroup;
 import com.bigdata.bop.rdf.join.DataSetJoin;
-import com.bigdata.rdf.sparql.ast.eval.AST2BOpRTO;
 import com.bigdata.util.concurrent.ExecutionExceptions;
 
 /**
@@ -1058,7 +1057,7 @@ public class JGraph {
                          * cardinality vertex.
                          */
 
-                        edgeSample = AST2BOpRTO.cutoffJoin(//
+                        edgeSample = Path.cutoffJoin(//
                                 queryEngine, //
                                 joinGraph, //
                                 limit,//
@@ -1098,7 +1097,7 @@ public class JGraph {
                          * edge of the path.
                          */
 
-                        edgeSample = AST2BOpRTO.cutoffJoin(//
+                        edgeSample = Path.cutoffJoin(//
                                 queryEngine,//
                                 joinGraph,//
                                 limit,//
@@ -1522,7 +1521,8 @@ public class JGraph {
             
             final int limit = e.getValue().get();
             
-            tasks.add(new SampleVertexTask(queryEngine, v, limit, sampleType));
+            tasks.add(new SampleVertexTask(queryEngine, v, limit, sampleType,
+                    joinGraph.getSampleCache(queryEngine)));
 
         }
 
@@ -1578,21 +1578,24 @@ public class JGraph {
         private final Vertex v;
         private final int limit;
         private final SampleType sampleType;
+        private final SampleCache cache;
         
         public SampleVertexTask(final QueryEngine queryEngine, final Vertex v,
-                final int limit, final SampleType sampleType) {
+                final int limit, final SampleType sampleType,
+                final SampleCache cache) {
 
             this.queryEngine = queryEngine;
             this.v = v;
             this.limit = limit;
             this.sampleType = sampleType;
+            this.cache = cache;
 
         }
         
         @Override
         public Void call() throws Exception {
 
-            v.sample(queryEngine, limit, sampleType);
+            v.sample(queryEngine, limit, sampleType, cache);
 
             return null;
         }
@@ -1772,7 +1775,7 @@ public class JGraph {
             final IPredicate<?>[] preds = new IPredicate[] { v.pred, vp.pred };
 
             // cutoff join of the edge (v,vp)
-            final EdgeSample edgeSample = AST2BOpRTO.cutoffJoin(//
+            final EdgeSample edgeSample = Path.cutoffJoin(//
                     queryEngine,// 
                     joinGraph,//
                     limit, // sample limit
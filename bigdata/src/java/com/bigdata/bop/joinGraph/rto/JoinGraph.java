@@ -27,12 +27,19 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.bop.joinGraph.rto;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
 
+import org.apache.log4j.Logger;
+
 import com.bigdata.bop.BOp;
 import com.bigdata.bop.BOpContext;
 import com.bigdata.bop.BOpUtility;
@@ -49,6 +56,7 @@ import com.bigdata.bop.controller.AbstractSubqueryOp;
 import com.bigdata.bop.engine.AbstractRunningQuery;
 import com.bigdata.bop.engine.IRunningQuery;
 import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.joinGraph.PartitionedJoinGroup;
 import com.bigdata.rdf.sparql.ast.JoinGroupNode;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpRTO;
@@ -86,6 +94,13 @@ import cutthecrap.utils.striterators.ICloseableIterator;
  * their results into the main query. This would require an AST optimizer to
  * modify the AST. (Currently the RTO is integrated when the query plan is
  * generated in {@link AST2BOpUtility} rather than as an AST optimizer.)
+ * <p>
+ * When {@link Annotations#ADAPTIVE_THRESHOLD} is specified, the selected join
+ * path is instead executed one join at a time. The output of each join is
+ * materialized and compared with the cardinality which the RTO estimated for
+ * that join. If the estimate was wrong by more than the threshold, then the
+ * remaining joins are re-ordered using cutoff joins against the materialized
+ * intermediate solutions rather than the samples.
  * 
  * @see http://arxiv.org/PS_cache/arxiv/pdf/0810/0810.4809v1.pdf, XQuery Join
  *      Graph Isolation.
@@ -102,8 +117,8 @@ public class JoinGraph extends PipelineOp {
 
 	private static final long serialVersionUID = 1L;
 
-//    private static final transient Logger log = Logger
-//            .getLogger(JoinGraph.class);
+    private static final transient Logger log = Logger
+            .getLogger(JoinGraph.class);
 
     /**
 	 * Known annotations.
@@ -179,7 +194,41 @@ public class JoinGraph extends PipelineOp {
          * the selected join path.
          */
         String NT = JoinGraph.class.getName() + ".nt";
-        
+
+        /**
+         * When positive, the selected join path is executed in a checkpointed
+         * mode (default {@value #DEFAULT_ADAPTIVE_THRESHOLD}, which disables
+         * this mode). The output of each join is materialized and compared
+         * with the cardinality estimated by the RTO for that join. Once the
+         * ratio of the observed and estimated cardinalities (in either
+         * direction) exceeds this threshold, each of the remaining joins is
+         * chosen by cutoff evaluation against a sample of the materialized
+         * intermediate solutions.
+         * <p>
+         * Note: The estimates are made for a single empty source solution
+         * (bottom-up evaluation), so they are scaled by the #of source
+         * solutions for the {@link JoinGraph}.
+         * <p>
+         * Note: This mode trades the pipelined evaluation of the join path for
+         * the ability to recover from a bad join ordering. It is therefore
+         * useful for join graphs over skewed data where the samples can be
+         * misleading.
+         */
+        String ADAPTIVE_THRESHOLD = JoinGraph.class.getName()
+                + ".adaptiveThreshold";
+
+        double DEFAULT_ADAPTIVE_THRESHOLD = 0d;
+
+        /**
+         * When <code>true</code>, the vertex and edge samples are taken from
+         * (and added to) the {@link SampleCache} of the {@link QueryEngine} so
+         * they may be reused by later queries against the same commit point
+         * (default {@value #DEFAULT_SAMPLE_CACHE}).
+         */
+        String SAMPLE_CACHE = JoinGraph.class.getName() + ".sampleCache";
+
+        boolean DEFAULT_SAMPLE_CACHE = true;
+
 	}
 
     /**
@@ -210,6 +259,27 @@ public class JoinGraph extends PipelineOp {
          */
         String QUERY_PLAN = JoinGraph.class.getName() + ".queryPlan";
 
+        /**
+         * The estimated cardinality of each prefix of the join path selected
+         * by the RTO, expressed as a <code>long[]</code> (output). An element
+         * is <code>-1L</code> if there is no estimate for that prefix.
+         * 
+         * @see Annotations#ADAPTIVE_THRESHOLD
+         */
+        String ESTIMATED_CARDINALITIES = JoinGraph.class.getName()
+                + ".estimatedCardinalities";
+
+        /**
+         * The #of joins of the selected join path which were executed before
+         * the remaining joins were re-planned, expressed as an
+         * {@link Integer} (output). This is not set unless the remaining joins
+         * were re-planned.
+         * 
+         * @see Annotations#ADAPTIVE_THRESHOLD
+         */
+        String REPLANNED_AFTER = JoinGraph.class.getName()
+                + ".replannedAfter";
+
 	}
 	
     /*
@@ -271,6 +341,38 @@ public class JoinGraph extends PipelineOp {
 	    
 	}
 
+    /**
+     * @see Annotations#ADAPTIVE_THRESHOLD
+     */
+    public double getAdaptiveThreshold() {
+
+        return getProperty(Annotations.ADAPTIVE_THRESHOLD,
+                Annotations.DEFAULT_ADAPTIVE_THRESHOLD);
+
+    }
+
+    /**
+     * @see Annotations#SAMPLE_CACHE
+     */
+    public boolean isSampleCache() {
+
+        return getProperty(Annotations.SAMPLE_CACHE,
+                Annotations.DEFAULT_SAMPLE_CACHE);
+
+    }
+
+    /**
+     * Return the {@link SampleCache} to be used by the RTO -or-
+     * <code>null</code> if the samples are not to be cached.
+     * 
+     * @see Annotations#SAMPLE_CACHE
+     */
+    SampleCache getSampleCache(final QueryEngine queryEngine) {
+
+        return isSampleCache() ? queryEngine.getSampleCache() : null;
+
+    }
+
     /**
      * Return the set of variables that are known to have already been
      * materialized at the point in the overall query plan where the RTO is
@@ -346,6 +448,47 @@ public class JoinGraph extends PipelineOp {
         
     }
 
+    /**
+     * Return the estimated cardinality of each prefix of the computed join
+     * path.
+     * 
+     * @see Attributes#ESTIMATED_CARDINALITIES
+     */
+    public long[] getEstimatedCardinalities(final IRunningQuery q) {
+
+        return (long[]) q.getAttributes().get(
+                getId() + "-" + Attributes.ESTIMATED_CARDINALITIES);
+
+    }
+
+    private void setEstimatedCardinalities(final IRunningQuery q,
+            final long[] estCard) {
+
+        q.getAttributes().put(
+                getId() + "-" + Attributes.ESTIMATED_CARDINALITIES, estCard);
+
+    }
+
+    /**
+     * Return the #of joins which were executed before the remaining joins
+     * were re-planned -or- <code>null</code> if they were not re-planned.
+     * 
+     * @see Attributes#REPLANNED_AFTER
+     */
+    public Integer getReplannedAfter(final IRunningQuery q) {
+
+        return (Integer) q.getAttributes().get(
+                getId() + "-" + Attributes.REPLANNED_AFTER);
+
+    }
+
+    private void setReplannedAfter(final IRunningQuery q, final int njoins) {
+
+        q.getAttributes().put(getId() + "-" + Attributes.REPLANNED_AFTER,
+                Integer.valueOf(njoins));
+
+    }
+
     /**
      * Deep copy constructor.
      * 
@@ -391,6 +534,9 @@ public class JoinGraph extends PipelineOp {
         if (getNEdges() <= 0)
             throw new IllegalArgumentException(Annotations.NEDGES);
 
+        if (getAdaptiveThreshold() < 0d)
+            throw new IllegalArgumentException(Annotations.ADAPTIVE_THRESHOLD);
+
         /*
          * TODO Check DONE_SET, NT, JOIN_NODES. These annotations are required
          * for the new code path. We should check for their presence. However,
@@ -471,6 +617,10 @@ public class JoinGraph extends PipelineOp {
                 final Path path = g.runtimeOptimizer(context.getRunningQuery()
                         .getQueryEngine(), edgeSamples);
 
+                // Set attribute for the estimated cardinality of each join.
+                setEstimatedCardinalities(context.getRunningQuery(),
+                        getEstimatedCardinalities(path, edgeSamples));
+
                 /*
                  * Release samples.
                  * 
@@ -520,11 +670,26 @@ public class JoinGraph extends PipelineOp {
 
             }
 	        
+            final double threshold = getAdaptiveThreshold();
+
+            if (threshold > 0d) {
+
+                // Run the join path one join at a time.
+                runAdaptive(threshold);
+
+                return null;
+
+            }
+
             // The query plan.
             final PipelineOp queryOp = getQueryPlan(context.getRunningQuery());
             
+            // Fully materialize the upstream solutions.
+            final IBindingSet[] bindingSets = BOpUtility.toArray(
+                    context.getSource(), context.getStats());
+
             // Run the query, blocking until it is done.
-	        JoinGraph.runSubquery(context, queryOp);
+	        JoinGraph.runSubquery(context, queryOp, bindingSets);
 
 //	        final long elapsed_queryExecution = System.nanoTime() - mark;
 //	        
@@ -538,8 +703,228 @@ public class JoinGraph extends PipelineOp {
 
 	    }
 
+        /**
+         * Checkpointed evaluation of the selected join path. Each join is run
+         * as a subquery and its output is materialized. Until the observed
+         * cardinality of some join departs from the estimate by more than the
+         * threshold, the joins are run in the order selected by the RTO. After
+         * that, the next join is always chosen by cutoff evaluation of each
+         * remaining vertex against a sample of the materialized solutions.
+         * The last join writes directly onto the sink.
+         * 
+         * @param threshold
+         *            The threshold for re-planning the remaining joins.
+         * 
+         * @see Annotations#ADAPTIVE_THRESHOLD
+         */
+        private void runAdaptive(final double threshold) throws Exception {
+
+            final IRunningQuery q = context.getRunningQuery();
+
+            final QueryEngine queryEngine = q.getQueryEngine();
+
+            final long[] estCard = getEstimatedCardinalities(q);
+
+            // The joins which have been executed, in the order executed.
+            final List<IPredicate<?>> done = new ArrayList<IPredicate<?>>();
+
+            // The joins which remain, in the order selected by the RTO.
+            final List<IPredicate<?>> todo = new LinkedList<IPredicate<?>>(
+                    Arrays.asList(getPath(q).getPredicates()));
+
+            // The variables which are known to be materialized.
+            final Set<IVariable<?>> doneSet = new LinkedHashSet<IVariable<?>>(
+                    getDoneSet());
+
+            // Fully materialize the upstream solutions.
+            IBindingSet[] solutions = BOpUtility.toArray(context.getSource(),
+                    context.getStats());
+
+            // The estimates are for a single (empty) source solution.
+            final long nsource = solutions.length;
+
+            boolean replan = false;
+
+            while (!todo.isEmpty() && solutions.length != 0) {
+
+                final IPredicate<?> pred = replan ? chooseNext(queryEngine,
+                        done, todo, solutions) : todo.get(0);
+
+                todo.remove(pred);
+
+                done.add(pred);
+
+                final PipelineOp queryOp = AST2BOpRTO.compileJoinGraphStep(
+                        queryEngine, JoinGraph.this,
+                        done.toArray(new IPredicate<?>[done.size()]), doneSet);
+
+                if (todo.isEmpty()) {
+
+                    // Run the last join, blocking until it is done.
+                    JoinGraph.runSubquery(context, queryOp, solutions);
+
+                    break;
+
+                }
+
+                // Run the join, materializing its output.
+                solutions = JoinGraph.runStage(context, queryOp, solutions);
+
+                if (!replan) {
+
+                    final long est = estCard == null ? -1L
+                            : estCard[done.size() - 1];
+
+                    if (est >= 0L
+                            && getError(solutions.length, est * nsource) > threshold) {
+
+                        if (log.isInfoEnabled())
+                            log.info("Re-planning: pred=" + pred.getId()
+                                    + ", estCard=" + est * nsource
+                                    + ", actual=" + solutions.length
+                                    + ", remaining=" + todo.size());
+
+                        setReplannedAfter(q, done.size());
+
+                        replan = true;
+
+                    }
+
+                }
+
+            }
+
+        }
+
+        /**
+         * Choose the next join from the remaining vertices. Each remaining
+         * vertex which shares variables with the executed joins (directly or
+         * through the constraints) is sampled by a cutoff join against a
+         * sample of the materialized intermediate solutions. The vertex having
+         * the lowest estimated cardinality is selected. If there are no such
+         * vertices, then the next remaining vertex is selected.
+         * 
+         * @param queryEngine
+         *            The query engine.
+         * @param done
+         *            The joins which have been executed.
+         * @param todo
+         *            The joins which remain.
+         * @param solutions
+         *            The materialized output of the executed joins.
+         * 
+         * @return The next join.
+         */
+        private IPredicate<?> chooseNext(final QueryEngine queryEngine,
+                final List<IPredicate<?>> done,
+                final List<IPredicate<?>> todo, final IBindingSet[] solutions)
+                throws Exception {
+
+            if (todo.size() == 1)
+                return todo.get(0);
+
+            final IPredicate<?>[] path = done.toArray(new IPredicate<?>[done
+                    .size()]);
+
+            final IConstraint[] constraints = getConstraints();
+
+            final int limit = getLimit();
+
+            final SolutionSetSample sample = new SolutionSetSample(solutions,
+                    limit);
+
+            IPredicate<?> best = null;
+
+            long bestCard = Long.MAX_VALUE;
+
+            for (IPredicate<?> v : todo) {
+
+                if (!PartitionedJoinGroup.canJoinUsingConstraints(path, v,
+                        constraints)) {
+
+                    // Unconstrained join.
+                    continue;
+
+                }
+
+                final IPredicate<?>[] a = Arrays.copyOf(path, path.length + 1);
+
+                a[path.length] = v;
+
+                final EdgeSample edgeSample = AST2BOpRTO.cutoffJoin(
+                        queryEngine, JoinGraph.this, limit, a, constraints,
+                        false/* pathIsComplete */, sample);
+
+                edgeSample.releaseSample();
+
+                if (log.isDebugEnabled())
+                    log.debug("pred=" + v.getId() + ", sample=" + edgeSample);
+
+                if (edgeSample.estCard < bestCard) {
+
+                    best = v;
+
+                    bestCard = edgeSample.estCard;
+
+                }
+
+            }
+
+            sample.releaseSample();
+
+            return best == null ? todo.get(0) : best;
+
+        }
+
 	} // class JoinGraphTask
 
+    /**
+     * Return the estimated cardinality of each prefix of the join path.
+     * 
+     * @param path
+     *            The join path selected by the RTO.
+     * @param edgeSamples
+     *            The samples taken by the RTO.
+     * 
+     * @see Attributes#ESTIMATED_CARDINALITIES
+     */
+    static private long[] getEstimatedCardinalities(final Path path,
+            final Map<PathIds, EdgeSample> edgeSamples) {
+
+        final int[] ids = path.getVertexIds();
+
+        final long[] a = new long[ids.length];
+
+        for (int i = 0; i < ids.length; i++) {
+
+            final SampleBase sample;
+            if (i == 0) {
+                sample = path.vertices[0].sample;
+            } else if (i == ids.length - 1) {
+                sample = path.edgeSample;
+            } else {
+                sample = edgeSamples.get(new PathIds(Arrays.copyOf(ids, i + 1)));
+            }
+
+            a[i] = sample == null ? -1L : sample.estCard;
+
+        }
+
+        return a;
+
+    }
+
+    /**
+     * Return the ratio of the larger to the smaller of the observed and the
+     * estimated cardinality.
+     */
+    static double getError(final long actual, final long estimate) {
+
+        return Math.max(actual, estimate)
+                / (double) Math.max(1L, Math.min(actual, estimate));
+
+    }
+
     /**
      * Execute the selected join path.
      * <p>
@@ -550,7 +935,8 @@ public class JoinGraph extends PipelineOp {
      */
     static private void runSubquery(
             final BOpContext<IBindingSet> parentContext,
-            final PipelineOp queryOp) throws Exception {
+            final PipelineOp queryOp, final IBindingSet[] bindingSets)
+            throws Exception {
 
         if(parentContext==null)
             throw new IllegalArgumentException();
@@ -567,10 +953,6 @@ public class JoinGraph extends PipelineOp {
 
         ICloseableIterator<IBindingSet[]> subquerySolutionItr = null;
 
-        // Fully materialize the upstream solutions.
-        final IBindingSet[] bindingSets = BOpUtility.toArray(
-                parentContext.getSource(), parentContext.getStats());
-
         /*
          * Run on all available upstream solutions.
          * 
@@ -635,4 +1017,69 @@ public class JoinGraph extends PipelineOp {
 
     }
 
+    /**
+     * Execute one join of the selected join path, returning its fully
+     * materialized output. The join is run as a subquery in the same manner
+     * as {@link #runSubquery(BOpContext, PipelineOp, IBindingSet[])}.
+     * 
+     * @return The solutions. This will be empty if the parent query was
+     *         interrupted.
+     */
+    static private IBindingSet[] runStage(
+            final BOpContext<IBindingSet> parentContext,
+            final PipelineOp queryOp, final IBindingSet[] bindingSets)
+            throws Exception {
+
+        final QueryEngine queryEngine = parentContext.getRunningQuery()
+                .getQueryEngine();
+
+        ICloseableIterator<IBindingSet[]> subquerySolutionItr = null;
+
+        final IRunningQuery runningSubquery = queryEngine.eval(queryOp,
+                bindingSets);
+
+        try {
+
+            // Declare the child query to the parent.
+            ((AbstractRunningQuery) parentContext.getRunningQuery())
+                    .addChild(runningSubquery);
+
+            // Iterator visiting the subquery solutions.
+            subquerySolutionItr = runningSubquery.iterator();
+
+            // Materialize the solutions.
+            final IBindingSet[] solutions = BOpUtility.toArray(
+                    subquerySolutionItr, null/* stats */);
+
+            // verify no problems.
+            runningSubquery.get();
+
+            return solutions;
+
+        } catch (Throwable t) {
+
+            if (Haltable.isTerminationByInterrupt(t)) {
+
+                // normal termination.
+                return BOpUtility.EMPTY_CHUNK;
+
+            }
+
+            /*
+             * Propagate the error to the parent and rethrow the first cause
+             * error out of the subquery.
+             */
+            throw new RuntimeException(parentContext.getRunningQuery().halt(t));
+
+        } finally {
+
+            runningSubquery.cancel(true/* mayInterruptIfRunning */);
+
+            if (subquerySolutionItr != null)
+                subquerySolutionItr.close();
+
+        }
+
+    }
+
 }
@@ -25,12 +25,15 @@ package com.bigdata.bop.joinGraph.rto;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.bigdata.bop.BOp;
 import com.bigdata.bop.BOpUtility;
 import com.bigdata.bop.IConstraint;
 import com.bigdata.bop.IPredicate;
+import com.bigdata.bop.IVariable;
 import com.bigdata.bop.engine.QueryEngine;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpRTO;
 
@@ -685,7 +688,7 @@ public class Path {
             
         }
 
-        final EdgeSample edgeSample2 = AST2BOpRTO.cutoffJoin(//
+        final EdgeSample edgeSample2 = cutoffJoin(//
                 queryEngine,//
                 joinGraph,//
                 limit, //
@@ -746,6 +749,8 @@ public class Path {
      * @return The result of sampling that edge.
      * 
      * @throws Exception
+     * 
+     * @see JoinGraph.Annotations#SAMPLE_CACHE
      */
     static public EdgeSample cutoffJoin(//
             final QueryEngine queryEngine,//
@@ -757,9 +762,38 @@ public class Path {
             final SampleBase sourceSample//
     ) throws Exception {
 
+        /*
+         * Note: The cutoff join of an edge with constraints is not cached since
+         * the key does not capture the constraints.
+         */
+        final SampleCache cache = constraints == null
+                || constraints.length == 0 ? joinGraph
+                .getSampleCache(queryEngine) : null;
+
+        final Map<IVariable<?>, IVariable<?>> vars = new HashMap<IVariable<?>, IVariable<?>>();
+
+        final SampleCache.Key key = cache == null ? null : cache.newEdgeKey(
+                queryEngine, path, limit, joinGraph.getSampleType(), vars);
+
+        if (key != null) {
+
+            final EdgeSample edgeSample = cache.getEdgeSample(key, vars,
+                    sourceSample);
+
+            if (edgeSample != null)
+                return edgeSample;
+
+        }
+
         // Note: Delegated to the AST/RTO integration class.
-        return AST2BOpRTO.cutoffJoin(queryEngine, joinGraph, limit, path,
-                constraints, pathIsComplete, sourceSample);
+        final EdgeSample edgeSample = AST2BOpRTO.cutoffJoin(queryEngine,
+                joinGraph, limit, path, constraints, pathIsComplete,
+                sourceSample);
+
+        if (key != null)
+            cache.putEdgeSample(key, vars, edgeSample);
+
+        return edgeSample;
 
     }
 
@@ -0,0 +1,658 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.joinGraph.rto;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IPredicate;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.ap.Predicate;
+import com.bigdata.bop.ap.SampleIndex.SampleType;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.counters.CAT;
+import com.bigdata.journal.ICommitRecord;
+import com.bigdata.journal.IIndexManager;
+import com.bigdata.journal.IJournal;
+import com.bigdata.journal.ITx;
+import com.bigdata.journal.TimestampUtility;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpBase;
+
+/**
+ * A bounded LRU cache of the {@link VertexSample}s and {@link EdgeSample}s
+ * taken by the RTO. The cache is owned by the {@link QueryEngine} and is shared
+ * by all queries which it evaluates, so a predicate (or a join path) which is
+ * sampled repeatedly is only sampled once for a given commit point.
+ * <p>
+ * The key is the shape of the {@link IPredicate}s: the variables are renamed
+ * in order of their first appearance and the annotations which are specific
+ * to a query (the bop identifier, the timestamp of the view, etc.) are
+ * removed. The constants are retained since they determine the access path
+ * which is sampled. The key also includes the commit time of the view against
+ * which the sample was taken. Samples are only cached for read-only views of
+ * an {@link IJournal}. The entries for earlier commit points are discarded
+ * when a sample is first cached for a later commit point.
+ * <p>
+ * The following are not cached: predicates having annotations whose values
+ * could reference variables (filters, {@link IPredicate.Annotations#RANGE},
+ * etc.) and edges of join graphs having constraints.
+ * 
+ * @see JoinGraph.Annotations#SAMPLE_CACHE
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class SampleCache {
+
+    /**
+     * The default capacity of the cache.
+     */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * The annotations which are specific to a given query and which are
+     * removed from the predicates when forming the key.
+     */
+    private static final String[] QUERY_ANNOTATIONS = new String[] {
+            BOp.Annotations.BOP_ID,//
+            IPredicate.Annotations.TIMESTAMP,//
+            AST2BOpBase.Annotations.ORIGINAL_INDEX,//
+            AST2BOpBase.Annotations.ESTIMATED_CARDINALITY,//
+    };
+
+    /**
+     * The cache (access order, guarded by synchronized(this)).
+     */
+    private final LinkedHashMap<Key, Object> map;
+
+    /**
+     * The most recent commit time for which a sample was cached (guarded by
+     * synchronized(this)).
+     */
+    private long lastCommitTime = -1L;
+
+    private final CAT hitCount = new CAT();
+
+    private final CAT missCount = new CAT();
+
+    /**
+     * @param capacity
+     *            The maximum #of cached samples.
+     */
+    public SampleCache(final int capacity) {
+
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+
+        this.map = new LinkedHashMap<Key, Object>(16/* initialCapacity */,
+                .75f/* loadFactor */, true/* accessOrder */) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<Key, Object> eldest) {
+
+                return size() > capacity;
+
+            }
+
+        };
+
+    }
+
+    /**
+     * The #of cached samples.
+     */
+    public int size() {
+
+        synchronized (this) {
+            return map.size();
+        }
+
+    }
+
+    /**
+     * The #of times that a sample was found in the cache.
+     */
+    public long getHitCount() {
+
+        return hitCount.get();
+
+    }
+
+    /**
+     * The #of times that a sample was not found in the cache.
+     */
+    public long getMissCount() {
+
+        return missCount.get();
+
+    }
+
+    /**
+     * Discard all cached samples.
+     */
+    public void clear() {
+
+        synchronized (this) {
+            map.clear();
+        }
+
+    }
+
+    /**
+     * Return the key for the sample of a vertex -or- <code>null</code> if the
+     * sample may not be cached.
+     * 
+     * @param queryEngine
+     *            The query engine on which the sample is taken.
+     * @param pred
+     *            The vertex.
+     * @param sampleType
+     *            The type of sample.
+     */
+    Key newVertexKey(final QueryEngine queryEngine,
+            final IPredicate<?> pred, final SampleType sampleType) {
+
+        return newKey(queryEngine, new IPredicate<?>[] { pred },
+                0/* limit */, sampleType,
+                new HashMap<IVariable<?>, IVariable<?>>());
+
+    }
+
+    /**
+     * Return the key for the sample of the last edge in a join path -or-
+     * <code>null</code> if the sample may not be cached.
+     * 
+     * @param queryEngine
+     *            The query engine on which the sample is taken.
+     * @param path
+     *            The join path.
+     * @param limit
+     *            The limit for the cutoff join.
+     * @param sampleType
+     *            The type of sample taken for the vertices.
+     * @param vars
+     *            The mapping from the variables in the join path onto the
+     *            variables in the key is reported here.
+     */
+    Key newEdgeKey(final QueryEngine queryEngine,
+            final IPredicate<?>[] path, final int limit,
+            final SampleType sampleType,
+            final Map<IVariable<?>, IVariable<?>> vars) {
+
+        return newKey(queryEngine, path, limit, sampleType, vars);
+
+    }
+
+    private Key newKey(final QueryEngine queryEngine,
+            final IPredicate<?>[] path, final int limit,
+            final SampleType sampleType,
+            final Map<IVariable<?>, IVariable<?>> vars) {
+
+        if (queryEngine.getFederation() != null) {
+            // Not supported for scale-out.
+            return null;
+        }
+
+        final long commitTime = getCommitTime(queryEngine.getIndexManager(),
+                path[0].getTimestamp());
+
+        if (commitTime == -1L)
+            return null;
+
+        final IPredicate<?>[] a = normalize(path, vars);
+
+        if (a == null)
+            return null;
+
+        return new Key(commitTime, sampleType, limit, a);
+
+    }
+
+    /**
+     * Return the cached sample of a vertex -or- <code>null</code> if there is
+     * no cached sample for that vertex which is exact or was taken with at
+     * least the given limit.
+     */
+    VertexEntry getVertexSample(final Key key, final int limit) {
+
+        final Object e;
+        synchronized (this) {
+            e = map.get(key);
+        }
+
+        if (e instanceof VertexEntry) {
+
+            final VertexEntry t = (VertexEntry) e;
+
+            if (t.estimateEnum == EstimateEnum.Exact || t.limit >= limit) {
+
+                hitCount.increment();
+
+                return t;
+
+            }
+
+        }
+
+        missCount.increment();
+
+        return null;
+
+    }
+
+    /**
+     * Cache the sample of a vertex.
+     */
+    void putVertexSample(final Key key, final VertexEntry e) {
+
+        put(key, e);
+
+    }
+
+    /**
+     * Return the cached sample of an edge -or- <code>null</code> if there is
+     * no cached sample for that edge.
+     * 
+     * @param key
+     *            The key.
+     * @param vars
+     *            The mapping from the variables in the join path onto the
+     *            variables in the key.
+     * @param sourceSample
+     *            The source sample for the cutoff join.
+     */
+    EdgeSample getEdgeSample(final Key key,
+            final Map<IVariable<?>, IVariable<?>> vars,
+            final SampleBase sourceSample) {
+
+        final Object e;
+        synchronized (this) {
+            e = map.get(key);
+        }
+
+        if (!(e instanceof EdgeEntry)) {
+
+            missCount.increment();
+
+            return null;
+
+        }
+
+        hitCount.increment();
+
+        final EdgeEntry t = (EdgeEntry) e;
+
+        final Map<IVariable<?>, IVariable<?>> inverse = new HashMap<IVariable<?>, IVariable<?>>();
+
+        for (Map.Entry<IVariable<?>, IVariable<?>> x : vars.entrySet()) {
+
+            inverse.put(x.getValue(), x.getKey());
+
+        }
+
+        return new EdgeSample(sourceSample, t.inputCount, t.tuplesRead,
+                t.sumRangeCount, t.outputCount, t.adjCard, t.f, t.estCard,
+                t.estRead, t.limit, t.estimateEnum, rename(t.sample, inverse));
+
+    }
+
+    /**
+     * Cache the sample of an edge. The sample is not cached if its solutions
+     * bind variables which do not appear in the join path.
+     * 
+     * @param key
+     *            The key.
+     * @param vars
+     *            The mapping from the variables in the join path onto the
+     *            variables in the key.
+     * @param edgeSample
+     *            The sample.
+     */
+    void putEdgeSample(final Key key,
+            final Map<IVariable<?>, IVariable<?>> vars,
+            final EdgeSample edgeSample) {
+
+        final IBindingSet[] sample = edgeSample.getSample();
+
+        if (sample == null)
+            return;
+
+        final IBindingSet[] a = rename(sample, vars);
+
+        if (a == null)
+            return;
+
+        put(key, new EdgeEntry(edgeSample, a));
+
+    }
+
+    private void put(final Key key, final Object e) {
+
+        synchronized (this) {
+
+            if (key.commitTime > lastCommitTime) {
+
+                if (lastCommitTime != -1L) {
+
+                    // Discard the samples for the earlier commit points.
+                    final Iterator<Key> itr = map.keySet().iterator();
+
+                    while (itr.hasNext()) {
+
+                        if (itr.next().commitTime < key.commitTime)
+                            itr.remove();
+
+                    }
+
+                }
+
+                lastCommitTime = key.commitTime;
+
+            }
+
+            map.put(key, e);
+
+        }
+
+    }
+
+    /**
+     * Return a copy of the predicates in which the variables have been renamed
+     * in order of their first appearance and the annotations which are
+     * specific to the query have been removed -or- <code>null</code> if the
+     * predicates can not be normalized.
+     * 
+     * @param preds
+     *            The predicates.
+     * @param vars
+     *            The mapping from the original variables onto the renamed
+     *            variables is reported here.
+     */
+    @SuppressWarnings("rawtypes")
+    static IPredicate<?>[] normalize(final IPredicate<?>[] preds,
+            final Map<IVariable<?>, IVariable<?>> vars) {
+
+        final IPredicate<?>[] a = new IPredicate[preds.length];
+
+        for (int i = 0; i < preds.length; i++) {
+
+            if (!(preds[i] instanceof Predicate))
+                return null;
+
+            Predicate<?> p = ((Predicate<?>) preds[i])
+                    .clearAnnotations(QUERY_ANNOTATIONS);
+
+            for (Object v : p.annotations().values()) {
+
+                if (v instanceof BOp || v instanceof BOp[]) {
+
+                    // Could reference a variable.
+                    return null;
+
+                }
+
+            }
+
+            for (int j = 0; j < p.arity(); j++) {
+
+                final IVariableOrConstant<?> t = p.get(j);
+
+                if (t == null || !t.isVar())
+                    continue;
+
+                IVariable<?> v = vars.get(t);
+
+                if (v == null) {
+
+                    vars.put((IVariable<?>) t, v = Var.var("_" + vars.size()));
+
+                }
+
+                p = p.setArg(j, (IVariableOrConstant) v);
+
+            }
+
+            a[i] = p;
+
+        }
+
+        return a;
+
+    }
+
+    /**
+     * Return a copy of the solutions in which the variables have been renamed
+     * -or- <code>null</code> if some variable is not in the mapping.
+     */
+    @SuppressWarnings("rawtypes")
+    static IBindingSet[] rename(final IBindingSet[] a,
+            final Map<IVariable<?>, IVariable<?>> vars) {
+
+        final IBindingSet[] b = new IBindingSet[a.length];
+
+        for (int i = 0; i < a.length; i++) {
+
+            final IBindingSet bset = new ListBindingSet();
+
+            final Iterator<Map.Entry<IVariable, IConstant>> itr = a[i]
+                    .iterator();
+
+            while (itr.hasNext()) {
+
+                final Map.Entry<IVariable, IConstant> e = itr.next();
+
+                final IVariable<?> v = vars.get(e.getKey());
+
+                if (v == null)
+                    return null;
+
+                bset.set(v, e.getValue());
+
+            }
+
+            b[i] = bset;
+
+        }
+
+        return b;
+
+    }
+
+    /**
+     * Return the commit time for a view -or- <code>-1L</code> if the view is
+     * not a read-only view of an {@link IJournal}.
+     * 
+     * @param indexManager
+     *            The index manager.
+     * @param timestamp
+     *            The timestamp of the view.
+     */
+    static long getCommitTime(final IIndexManager indexManager,
+            final long timestamp) {
+
+        if (!(indexManager instanceof IJournal)) {
+            // Not supported for temporary stores.
+            return -1L;
+        }
+
+        final IJournal jnl = (IJournal) indexManager;
+
+        if (timestamp == ITx.READ_COMMITTED) {
+
+            return jnl.getLastCommitTime();
+
+        }
+
+        if (!TimestampUtility.isReadOnly(timestamp)) {
+            // Unisolated or read/write transaction.
+            return -1L;
+        }
+
+        final ICommitRecord commitRecord = jnl.getCommitRecord(timestamp);
+
+        if (commitRecord == null)
+            return -1L;
+
+        return commitRecord.getTimestamp();
+
+    }
+
+    /**
+     * The key for a cached sample.
+     */
+    static final class Key {
+
+        private final long commitTime;
+
+        private final SampleType sampleType;
+
+        private final int limit;
+
+        private final IPredicate<?>[] preds;
+
+        private final int hashCode;
+
+        Key(final long commitTime, final SampleType sampleType,
+                final int limit, final IPredicate<?>[] preds) {
+
+            this.commitTime = commitTime;
+            this.sampleType = sampleType;
+            this.limit = limit;
+            this.preds = preds;
+
+            int h = Arrays.hashCode(preds);
+            h = 31 * h + (int) (commitTime ^ (commitTime >>> 32));
+            h = 31 * h + sampleType.hashCode();
+            h = 31 * h + limit;
+            this.hashCode = h;
+
+        }
+
+        @Override
+        public int hashCode() {
+
+            return hashCode;
+
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+
+            if (this == o)
+                return true;
+
+            if (!(o instanceof Key))
+                return false;
+
+            final Key t = (Key) o;
+
+            return hashCode == t.hashCode && commitTime == t.commitTime
+                    && limit == t.limit && sampleType == t.sampleType
+                    && Arrays.equals(preds, t.preds);
+
+        }
+
+    }
+
+    /**
+     * A cached sample of a vertex. The sampled elements are cached rather than
+     * the solutions since they do not depend on the names of the variables.
+     */
+    static final class VertexEntry {
+
+        final long rangeCount;
+
+        final int limit;
+
+        final EstimateEnum estimateEnum;
+
+        final Object[] elements;
+
+        VertexEntry(final long rangeCount, final int limit,
+                final EstimateEnum estimateEnum, final Object[] elements) {
+
+            this.rangeCount = rangeCount;
+            this.limit = limit;
+            this.estimateEnum = estimateEnum;
+            this.elements = elements;
+
+        }
+
+    }
+
+    /**
+     * A cached sample of an edge. The solutions use the variables of the key.
+     * <p>
+     * Note: The {@link EdgeSample} itself is not cached since its solutions
+     * are released once the RTO is done with them.
+     */
+    private static final class EdgeEntry {
+
+        final int inputCount;
+        final long tuplesRead;
+        final long sumRangeCount;
+        final long outputCount;
+        final long adjCard;
+        final double f;
+        final long estCard;
+        final long estRead;
+        final int limit;
+        final EstimateEnum estimateEnum;
+        final IBindingSet[] sample;
+
+        EdgeEntry(final EdgeSample s, final IBindingSet[] sample) {
+
+            this.inputCount = s.inputCount;
+            this.tuplesRead = s.tuplesRead;
+            this.sumRangeCount = s.sumRangeCount;
+            this.outputCount = s.outputCount;
+            this.adjCard = s.adjCard;
+            this.f = s.f;
+            this.estCard = s.estCard;
+            this.estRead = s.estRead;
+            this.limit = s.limit;
+            this.estimateEnum = s.estimateEnum;
+            this.sample = sample;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.joinGraph.rto;
+
+import java.util.Random;
+
+import com.bigdata.bop.IBindingSet;
+
+/**
+ * A sample of a fully materialized intermediate solution set. This is used to
+ * re-plan the remaining joins of a join graph from the actual output of the
+ * joins which have already been executed.
+ * <p>
+ * The estimated cardinality is the exact size of the solution set. The sample
+ * is the entire solution set if it has no more than <i>limit</i> solutions
+ * (and the estimate is {@link EstimateEnum#Exact}) and is otherwise a uniform
+ * random sample of <i>limit</i> solutions.
+ *
+ * @see JoinGraph.Annotations#ADAPTIVE_THRESHOLD
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class SolutionSetSample extends SampleBase {
+
+    /**
+     * @param solutions
+     *            The materialized solution set.
+     * @param limit
+     *            The maximum size of the sample.
+     */
+    public SolutionSetSample(final IBindingSet[] solutions, final int limit) {
+
+        super(solutions.length, limit,
+                solutions.length <= limit ? EstimateEnum.Exact
+                        : EstimateEnum.Normal, sample(solutions, limit));
+
+    }
+
+    /**
+     * Return a uniform random sample of up to <i>limit</i> solutions.
+     */
+    static private IBindingSet[] sample(final IBindingSet[] solutions,
+            final int limit) {
+
+        if (solutions.length <= limit)
+            return solutions;
+
+        // Reservoir sampling.
+        final Random r = new Random();
+
+        final IBindingSet[] a = new IBindingSet[limit];
+
+        System.arraycopy(solutions, 0, a, 0, limit);
+
+        for (int i = limit; i < solutions.length; i++) {
+
+            final int j = r.nextInt(i + 1);
+
+            if (j < limit)
+                a[j] = solutions[i];
+
+        }
+
+        return a;
+
+    }
+
+}
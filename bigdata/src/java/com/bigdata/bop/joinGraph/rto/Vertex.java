@@ -116,10 +116,28 @@ public class Vertex implements Serializable {
      * @param limit
      *            The sample cutoff.
      */
-    @SuppressWarnings("unchecked")
     public void sample(final QueryEngine queryEngine, final int limit,
             final SampleType sampleType) {
 
+        sample(queryEngine, limit, sampleType, null/* cache */);
+
+    }
+
+    /**
+     * Take a sample of the vertex, updating {@link #sample} as a side-effect.
+     * If the sample is already exact, then this is a NOP. If the vertex was
+     * already sampled to that limit, then this is a NOP (you have to raise the
+     * limit to re-sample the vertex).
+     * 
+     * @param limit
+     *            The sample cutoff.
+     * @param cache
+     *            The cache of samples taken for earlier queries (optional).
+     */
+    @SuppressWarnings("unchecked")
+    public void sample(final QueryEngine queryEngine, final int limit,
+            final SampleType sampleType, final SampleCache cache) {
+
         if (queryEngine == null)
             throw new IllegalArgumentException();
 
@@ -186,6 +204,28 @@ public class Vertex implements Serializable {
          * imposing the DISTINCT SPO (for default graph APs) and do not need to
          * do anything (for named graph AP)s.
          */
+        final SampleCache.Key key = cache == null ? null : cache.newVertexKey(
+                queryEngine, pred, sampleType);
+
+        if (key != null) {
+
+            final SampleCache.VertexEntry e = cache.getVertexSample(key, limit);
+
+            if (e != null) {
+
+                sample = new VertexSample(e.rangeCount, e.limit,
+                        e.estimateEnum, elementsToBindingSets(pred, e.elements));
+
+                if (log.isTraceEnabled())
+                    log.trace("Cached: id=" + pred.getId() + ", sample="
+                            + sample);
+
+                return;
+
+            }
+
+        }
+
         final BOpContextBase context = new BOpContextBase(queryEngine);
 
         final IRelation r = context.getRelation(pred);
@@ -223,9 +263,14 @@ public class Vertex implements Serializable {
                 itr.close();
             }
 
+            final Object[] elements = tmp.toArray(new Object[tmp.size()]);
+
             sample = new VertexSample(rangeCount, limit, EstimateEnum.Exact,
-                    elementsToBindingSets(pred, tmp.toArray(new Object[tmp
-                            .size()])));
+                    elementsToBindingSets(pred, elements));
+
+            if (key != null)
+                cache.putVertexSample(key, new SampleCache.VertexEntry(
+                        rangeCount, limit, EstimateEnum.Exact, elements));
 
         } else {
 
@@ -241,8 +286,14 @@ public class Vertex implements Serializable {
                                     sampleType.name())//
                             ));
 
+            final Object[] elements = sampleOp.eval(context);
+
             sample = new VertexSample(rangeCount, limit, EstimateEnum.Normal,
-                    elementsToBindingSets(pred, sampleOp.eval(context)));
+                    elementsToBindingSets(pred, elements));
+
+            if (key != null)
+                cache.putVertexSample(key, new SampleCache.VertexEntry(
+                        rangeCount, limit, EstimateEnum.Normal, elements));
 
         }
 
@@ -29,6 +29,8 @@ package com.bigdata.bop.paths;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -49,6 +51,7 @@ import com.bigdata.bop.IVariableOrConstant;
 import com.bigdata.bop.NV;
 import com.bigdata.bop.PipelineOp;
 import com.bigdata.bop.bindingSet.EmptyBindingSet;
+import com.bigdata.bop.bindingSet.ListBindingSet;
 import com.bigdata.bop.engine.AbstractRunningQuery;
 import com.bigdata.bop.engine.IRunningQuery;
 import com.bigdata.bop.engine.QueryEngine;
@@ -81,6 +84,13 @@ import cutthecrap.utils.striterators.ICloseableIterator;
  * solutions from the hash index; and (c) hash joining the solutions from the
  * sub-section of the query plan back against the hash index to reunite the
  * solutions from the subquery with those in the parent context.
+ * <p>
+ * When the input side of the path is bound for every source solution, the
+ * operator may instead use a {@link FrontierPathSearch} (see
+ * {@link Annotations#FRONTIER_SEARCH}). Each round runs the subquery once for
+ * the distinct vertices on the frontier rather than once per intermediate
+ * solution, each vertex is expanded at most once, and when the output side of
+ * the path is also bound the search proceeds from both ends.
  * 
  * @author <a href="mailto:mpersonick@users.sourceforge.net">Mike Personick</a>
  */
@@ -143,6 +153,23 @@ public class ArbitraryLengthPathOp extends PipelineOp {
          */
         String VARS_TO_DROP = Annotations.class.getName() + ".varsToDrop";
         
+        /**
+         * When <code>true</code> and the input side of the path is bound for
+         * each source solution, the path is evaluated by a
+         * {@link FrontierPathSearch} which expands the distinct vertices on
+         * the frontier in each round and searches from both ends when both
+         * ends of the path are bound.
+         * <p>
+         * Note: The frontier search runs the subquery for the vertices on the
+         * frontier without the other bindings of the source solutions. It
+         * must not be enabled when the subquery uses any variable other than
+         * the transitivity variables and its own internal variables (e.g.,
+         * the context variable for <code>GRAPH ?g</code>).
+         */
+        String FRONTIER_SEARCH = Annotations.class.getName() + ".frontierSearch";
+        
+        boolean DEFAULT_FRONTIER_SEARCH = false;
+        
     }
 
     /**
@@ -200,6 +227,7 @@ public class ArbitraryLengthPathOp extends PipelineOp {
         private final Gearing forwardGearing, reverseGearing;
         private final long lowerBound, upperBound;
         private IVariable<?>[] varsToDrop;
+        private final boolean frontierSearch;
         
         public ArbitraryLengthPathTask(final ArbitraryLengthPathOp controllerOp,
                 final BOpContext<IBindingSet> context) {
@@ -249,6 +277,10 @@ public class ArbitraryLengthPathOp extends PipelineOp {
         	this.varsToDrop = (IVariable<?>[]) controllerOp
                     .getProperty(Annotations.VARS_TO_DROP);
             
+            this.frontierSearch = controllerOp.getProperty(
+                    Annotations.FRONTIER_SEARCH,
+                    Annotations.DEFAULT_FRONTIER_SEARCH);
+            
         }
 
         public Void call() throws Exception {
@@ -301,9 +333,6 @@ public class ArbitraryLengthPathOp extends PipelineOp {
             final Map<SolutionKey, IBindingSet> solutionsOut = 
             		new LinkedHashMap<SolutionKey, IBindingSet>();
             
-            final QueryEngine queryEngine = this.context
-                    .getRunningQuery().getQueryEngine();
-
             /*
              * The input to each round of transitive chaining.
              */
@@ -440,165 +469,15 @@ public class ArbitraryLengthPathOp extends PipelineOp {
 	        		log.debug("first round input: " + childSolutionIn);
 	        }
         	
-            for (int i = 0; i < upperBound; i++) {
-            	
-				long sizeBefore = solutionsOut.size();
-
-            	// The subquery
-                IRunningQuery runningSubquery = null;
-            	// The iterator draining the subquery
-                ICloseableIterator<IBindingSet[]> subquerySolutionItr = null;
+            if (frontierSearch && canSearchFrontier(gearing, nextRoundInput)) {
 
-                try {
-            	
-                	/*
-                	 * TODO replace with code that does the PipelineJoins manually
-                	 */
-                    runningSubquery = queryEngine.eval(subquery,
-                            nextRoundInput.toArray(new IBindingSet[nextRoundInput.size()]));
-
-					long count = 0L;
-					try {
+                searchFrontier(gearing, nextRoundInput, solutionsOut);
 
-                        // Declare the child query to the parent.
-                        ((AbstractRunningQuery) context.getRunningQuery())
-                                .addChild(runningSubquery);
-
-                        // clear the input set to make room for the next round
-	                    nextRoundInput.clear();
-	                    
-						// Iterator visiting the subquery solutions.
-						subquerySolutionItr = runningSubquery.iterator();
-						
-				        while (subquerySolutionItr.hasNext()) {
-
-				            final IBindingSet[] chunk = subquerySolutionItr.next();
-
-			            	for (IBindingSet bs : chunk) {
-				            	
-			            		count++;
-			            		
-			            		if (log.isDebugEnabled()) {
-			            			log.debug("round " + i + " solution: " + bs);
-			            		}
-			            		
-			            		if (gearing.inVar != null && !bs.isBound(gearing.inVar)) {
-	
-				            		/*
-				            		 * Must be the first round.  The first
-				            		 * round when there are no incoming
-				            		 * binding (from the parent or previous
-				            		 * rounds) is the only time the inVar
-				            		 * won't be set.
-				            		 */
-				            		bs.set(gearing.inVar, bs.get(gearing.tVarIn));
-					            	
-				            		if (log.isDebugEnabled()) {
-				            			log.debug("adding binding for inVar: " + bs);
-				            		}
-				            		
-				            	}
-			            		
-			            		// drop the intermediate variables
-			            		dropVars(bs);
-			            		
-//				            	solutionsOut.add(solution);
-			            		solutionsOut.put(newSolutionKey(gearing, bs), bs);
-			            		
-			            		/*
-			            		 * Remap the solution as input to the next round.
-			            		 */
-			            		final IBindingSet input = bs.clone();
-			            		
-			            		input.set(gearing.tVarIn, bs.get(gearing.tVarOut));
-			            		
-			            		input.clear(gearing.tVarOut);
-			            		
-			            		nextRoundInput.add(input);
-
-			            		if (log.isDebugEnabled()) {
-			            			log.debug("remapped as input for next round: " + input);
-			            		}
-			            		
-				            }
-				            
-				        }
-				        
-				        // finished with the iterator
-				        subquerySolutionItr.close();
-
-						// wait for the subquery to halt / test for errors.
-						runningSubquery.get();
-						
-				        if (log.isDebugEnabled()) {
-				        	log.debug("done with round " + i + 
-				        			", count=" + count + 
-				        			", totalBefore=" + sizeBefore + 
-				        			", totalAfter=" + solutionsOut.size() +
-				        			", totalNew=" + (solutionsOut.size() - sizeBefore));
-				        }
-				        
-						// we've reached fixed point
-						if (solutionsOut.size() == sizeBefore) {
-							
-							break;
-							
-						}
-					
-					} catch (InterruptedException ex) {
-
-						// this thread was interrupted, so cancel the subquery.
-						runningSubquery
-								.cancel(true/* mayInterruptIfRunning */);
-
-						// rethrow the exception.
-						throw ex;
-						
-					}
-					
-                } catch (Throwable t) {
-
-					if (runningSubquery == null
-							|| runningSubquery.getCause() != null) {
-						/*
-						 * If things fail before we start the subquery, or if a
-						 * subquery fails (due to abnormal termination), then
-						 * propagate the error to the parent and rethrow the
-						 * first cause error out of the subquery.
-						 * 
-						 * Note: IHaltable#getCause() considers exceptions
-						 * triggered by an interrupt to be normal termination.
-						 * Such exceptions are NOT propagated here and WILL NOT
-						 * cause the parent query to terminate.
-						 */
-                        throw new RuntimeException(ArbitraryLengthPathTask.this.context
-                                .getRunningQuery().halt(
-                                        runningSubquery == null ? t
-                                                : runningSubquery.getCause()));
-                    }
-					
-//					return runningSubquery;
-                    
-                } finally {
-
-					try {
-
-						// ensure subquery is halted.
-						if (runningSubquery != null)
-							runningSubquery
-									.cancel(true/* mayInterruptIfRunning */);
-						
-					} finally {
+            } else {
 
-						// ensure the subquery solution iterator is closed.
-						if (subquerySolutionItr != null)
-							subquerySolutionItr.close();
+                runRounds(gearing, nextRoundInput, solutionsOut);
 
-					}
-					
-                }
-					
-            } // fixed point for loop
+            }
             
             /*
     		 * Handle the case where there is a constant on the output side of 
@@ -926,6 +805,461 @@ public class ArbitraryLengthPathOp extends PipelineOp {
                 
         } // processChunk method
 
+        /**
+         * Compute the transitive closure by running the subquery in rounds,
+         * using the output of each round as the input for the next round,
+         * until the solutions reach a fixed point.
+         */
+        @SuppressWarnings("unchecked")
+        private void runRounds(final Gearing gearing,
+                final Set<IBindingSet> nextRoundInput,
+                final Map<SolutionKey, IBindingSet> solutionsOut)
+                throws Exception {
+
+            final QueryEngine queryEngine = this.context
+                    .getRunningQuery().getQueryEngine();
+
+            for (int i = 0; i < upperBound; i++) {
+            	
+				long sizeBefore = solutionsOut.size();
+
+            	// The subquery
+                IRunningQuery runningSubquery = null;
+            	// The iterator draining the subquery
+                ICloseableIterator<IBindingSet[]> subquerySolutionItr = null;
+
+                try {
+            	
+                	/*
+                	 * TODO replace with code that does the PipelineJoins manually
+                	 */
+                    runningSubquery = queryEngine.eval(subquery,
+                            nextRoundInput.toArray(new IBindingSet[nextRoundInput.size()]));
+
+					long count = 0L;
+					try {
+
+                        // Declare the child query to the parent.
+                        ((AbstractRunningQuery) context.getRunningQuery())
+                                .addChild(runningSubquery);
+
+                        // clear the input set to make room for the next round
+	                    nextRoundInput.clear();
+	                    
+						// Iterator visiting the subquery solutions.
+						subquerySolutionItr = runningSubquery.iterator();
+						
+				        while (subquerySolutionItr.hasNext()) {
+
+				            final IBindingSet[] chunk = subquerySolutionItr.next();
+
+			            	for (IBindingSet bs : chunk) {
+				            	
+			            		count++;
+			            		
+			            		if (log.isDebugEnabled()) {
+			            			log.debug("round " + i + " solution: " + bs);
+			            		}
+			            		
+			            		if (gearing.inVar != null && !bs.isBound(gearing.inVar)) {
+	
+				            		/*
+				            		 * Must be the first round.  The first
+				            		 * round when there are no incoming
+				            		 * binding (from the parent or previous
+				            		 * rounds) is the only time the inVar
+				            		 * won't be set.
+				            		 */
+				            		bs.set(gearing.inVar, bs.get(gearing.tVarIn));
+					            	
+				            		if (log.isDebugEnabled()) {
+				            			log.debug("adding binding for inVar: " + bs);
+				            		}
+				            		
+				            	}
+			            		
+			            		// drop the intermediate variables
+			            		dropVars(bs);
+			            		
+//				            	solutionsOut.add(solution);
+			            		solutionsOut.put(newSolutionKey(gearing, bs), bs);
+			            		
+			            		/*
+			            		 * Remap the solution as input to the next round.
+			            		 */
+			            		final IBindingSet input = bs.clone();
+			            		
+			            		input.set(gearing.tVarIn, bs.get(gearing.tVarOut));
+			            		
+			            		input.clear(gearing.tVarOut);
+			            		
+			            		nextRoundInput.add(input);
+
+			            		if (log.isDebugEnabled()) {
+			            			log.debug("remapped as input for next round: " + input);
+			            		}
+			            		
+				            }
+				            
+				        }
+				        
+				        // finished with the iterator
+				        subquerySolutionItr.close();
+
+						// wait for the subquery to halt / test for errors.
+						runningSubquery.get();
+						
+				        if (log.isDebugEnabled()) {
+				        	log.debug("done with round " + i + 
+				        			", count=" + count + 
+				        			", totalBefore=" + sizeBefore + 
+				        			", totalAfter=" + solutionsOut.size() +
+				        			", totalNew=" + (solutionsOut.size() - sizeBefore));
+				        }
+				        
+						// we've reached fixed point
+						if (solutionsOut.size() == sizeBefore) {
+							
+							break;
+							
+						}
+					
+					} catch (InterruptedException ex) {
+
+						// this thread was interrupted, so cancel the subquery.
+						runningSubquery
+								.cancel(true/* mayInterruptIfRunning */);
+
+						// rethrow the exception.
+						throw ex;
+						
+					}
+					
+                } catch (Throwable t) {
+
+					if (runningSubquery == null
+							|| runningSubquery.getCause() != null) {
+						/*
+						 * If things fail before we start the subquery, or if a
+						 * subquery fails (due to abnormal termination), then
+						 * propagate the error to the parent and rethrow the
+						 * first cause error out of the subquery.
+						 * 
+						 * Note: IHaltable#getCause() considers exceptions
+						 * triggered by an interrupt to be normal termination.
+						 * Such exceptions are NOT propagated here and WILL NOT
+						 * cause the parent query to terminate.
+						 */
+                        throw new RuntimeException(ArbitraryLengthPathTask.this.context
+                                .getRunningQuery().halt(
+                                        runningSubquery == null ? t
+                                                : runningSubquery.getCause()));
+                    }
+					
+//					return runningSubquery;
+                    
+                } finally {
+
+					try {
+
+						// ensure subquery is halted.
+						if (runningSubquery != null)
+							runningSubquery
+									.cancel(true/* mayInterruptIfRunning */);
+						
+					} finally {
+
+						// ensure the subquery solution iterator is closed.
+						if (subquerySolutionItr != null)
+							subquerySolutionItr.close();
+
+					}
+					
+                }
+					
+            } // fixed point for loop
+
+        }
+
+        /**
+         * Return <code>true</code> iff the input side of the path is bound for
+         * each of the solutions to be expanded, in which case the path may be
+         * evaluated by a {@link FrontierPathSearch}.
+         */
+        private boolean canSearchFrontier(final Gearing gearing,
+                final Set<IBindingSet> nextRoundInput) {
+
+            if (nextRoundInput.isEmpty())
+                return false;
+
+            for (IBindingSet bs : nextRoundInput) {
+
+                if (!bs.isBound(gearing.tVarIn))
+                    return false;
+
+            }
+
+            return true;
+
+        }
+
+        /**
+         * Evaluate the path using a {@link FrontierPathSearch}. Solutions
+         * whose output side is bound (by a constant or by the source solution)
+         * are decided by a bidirectional search. The other solutions are
+         * joined with the vertices reachable from their seed.
+         * 
+         * @param gearing
+         *            The gearing.
+         * @param nextRoundInput
+         *            The solutions to be expanded. The transitivity variable
+         *            on the input side is bound to the seed.
+         * @param solutionsOut
+         *            The solutions are written onto this map.
+         */
+        @SuppressWarnings("unchecked")
+        private void searchFrontier(final Gearing gearing,
+                final Set<IBindingSet> nextRoundInput,
+                final Map<SolutionKey, IBindingSet> solutionsOut)
+                throws Exception {
+
+            final FrontierPathSearch search = new FrontierPathSearch(
+                    new FrontierPathSearch.IExpander() {
+                        public Map<IConstant<?>, Set<IConstant<?>>> expand(
+                                final Collection<IConstant<?>> nodes,
+                                final boolean forward) throws Exception {
+                            return runSubquery(gearing, nodes, forward);
+                        }
+                    }, upperBound);
+
+            final List<IBindingSet> bound = new ArrayList<IBindingSet>();
+
+            final List<IBindingSet> unbound = new ArrayList<IBindingSet>();
+
+            for (IBindingSet bs : nextRoundInput) {
+
+                if (getTarget(gearing, bs) != null)
+                    bound.add(bs);
+                else
+                    unbound.add(bs);
+
+            }
+
+            if (!bound.isEmpty()) {
+
+                final int n = bound.size();
+
+                final IConstant<?>[] sources = new IConstant<?>[n];
+
+                final IConstant<?>[] targets = new IConstant<?>[n];
+
+                for (int i = 0; i < n; i++) {
+
+                    sources[i] = bound.get(i).get(gearing.tVarIn);
+
+                    targets[i] = getTarget(gearing, bound.get(i));
+
+                }
+
+                final boolean[] connected = search.connected(sources, targets);
+
+                for (int i = 0; i < n; i++) {
+
+                    if (!connected[i])
+                        continue;
+
+                    final IBindingSet bs = bound.get(i).clone();
+
+                    bs.set(gearing.tVarOut, targets[i]);
+
+                    solutionsOut.put(newSolutionKey(gearing, bs), bs);
+
+                }
+
+            }
+
+            if (!unbound.isEmpty()) {
+
+                final Set<IConstant<?>> seeds = new LinkedHashSet<IConstant<?>>();
+
+                for (IBindingSet bs : unbound) {
+
+                    seeds.add(bs.get(gearing.tVarIn));
+
+                }
+
+                final Map<IConstant<?>, Set<IConstant<?>>> reachable = search
+                        .reachable(seeds);
+
+                for (IBindingSet in : unbound) {
+
+                    for (IConstant<?> node : reachable.get(in
+                            .get(gearing.tVarIn))) {
+
+                        final IBindingSet bs = in.clone();
+
+                        bs.set(gearing.tVarOut, node);
+
+                        solutionsOut.put(newSolutionKey(gearing, bs), bs);
+
+                    }
+
+                }
+
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("frontier search: solutionsIn="
+                        + nextRoundInput.size() + ", rounds="
+                        + search.getRoundCount() + ", solutionsOut="
+                        + solutionsOut.size());
+            }
+
+        }
+
+        /**
+         * Return the binding for the output side of the path for the solution
+         * -or- <code>null</code> if the output side is not bound.
+         */
+        private IConstant<?> getTarget(final Gearing gearing,
+                final IBindingSet bs) {
+
+            if (gearing.outConst != null)
+                return gearing.outConst;
+
+            return bs.get(gearing.outVar);
+
+        }
+
+        /**
+         * Run the subquery once for a batch of vertices, binding each vertex
+         * on the transitivity variable for the input side of the path (forward)
+         * or the output side of the path (reverse).
+         * 
+         * @return The neighbors of each vertex.
+         */
+        @SuppressWarnings("unchecked")
+        private Map<IConstant<?>, Set<IConstant<?>>> runSubquery(
+                final Gearing gearing, final Collection<IConstant<?>> nodes,
+                final boolean forward) throws Exception {
+
+            final IVariable<?> bindVar = forward ? gearing.tVarIn
+                    : gearing.tVarOut;
+
+            final IVariable<?> readVar = forward ? gearing.tVarOut
+                    : gearing.tVarIn;
+
+            final IBindingSet[] chunkIn = new IBindingSet[nodes.size()];
+
+            {
+                int i = 0;
+                for (IConstant<?> node : nodes) {
+                    final IBindingSet bs = new ListBindingSet();
+                    bs.set(bindVar, node);
+                    chunkIn[i++] = bs;
+                }
+            }
+
+            final Map<IConstant<?>, Set<IConstant<?>>> ret = new HashMap<IConstant<?>, Set<IConstant<?>>>();
+
+            final QueryEngine queryEngine = this.context
+                    .getRunningQuery().getQueryEngine();
+
+            // The subquery
+            IRunningQuery runningSubquery = null;
+            // The iterator draining the subquery
+            ICloseableIterator<IBindingSet[]> subquerySolutionItr = null;
+
+            try {
+
+                runningSubquery = queryEngine.eval(subquery, chunkIn);
+
+                try {
+
+                    // Declare the child query to the parent.
+                    ((AbstractRunningQuery) context.getRunningQuery())
+                            .addChild(runningSubquery);
+
+                    // Iterator visiting the subquery solutions.
+                    subquerySolutionItr = runningSubquery.iterator();
+
+                    while (subquerySolutionItr.hasNext()) {
+
+                        final IBindingSet[] chunk = subquerySolutionItr.next();
+
+                        for (IBindingSet bs : chunk) {
+
+                            final IConstant<?> x = bs.get(bindVar);
+
+                            final IConstant<?> y = bs.get(readVar);
+
+                            if (x == null || y == null)
+                                continue;
+
+                            Set<IConstant<?>> s = ret.get(x);
+
+                            if (s == null)
+                                ret.put(x, s = new LinkedHashSet<IConstant<?>>());
+
+                            s.add(y);
+
+                        }
+
+                    }
+
+                    // finished with the iterator
+                    subquerySolutionItr.close();
+
+                    // wait for the subquery to halt / test for errors.
+                    runningSubquery.get();
+
+                } catch (InterruptedException ex) {
+
+                    // this thread was interrupted, so cancel the subquery.
+                    runningSubquery.cancel(true/* mayInterruptIfRunning */);
+
+                    // rethrow the exception.
+                    throw ex;
+
+                }
+
+            } catch (Throwable t) {
+
+                if (runningSubquery == null
+                        || runningSubquery.getCause() != null) {
+                    /*
+                     * Propagate the error to the parent and rethrow the first
+                     * cause error out of the subquery (as for the rounds).
+                     */
+                    throw new RuntimeException(ArbitraryLengthPathTask.this.context
+                            .getRunningQuery().halt(
+                                    runningSubquery == null ? t
+                                            : runningSubquery.getCause()));
+                }
+
+            } finally {
+
+                try {
+
+                    // ensure subquery is halted.
+                    if (runningSubquery != null)
+                        runningSubquery
+                                .cancel(true/* mayInterruptIfRunning */);
+
+                } finally {
+
+                    // ensure the subquery solution iterator is closed.
+                    if (subquerySolutionItr != null)
+                        subquerySolutionItr.close();
+
+                }
+
+            }
+
+            return ret;
+
+        }
+
         /**
          * Is it possible to bind the out of the gearing to the seed?
          * This may be because it is an unbound variable, or it may be that it is already the seed 
@@ -0,0 +1,468 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.paths;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.IConstant;
+
+/**
+ * Frontier based evaluation of an arbitrary length path. The path is treated
+ * as a graph whose vertices are the bindings (IVs) of the transitivity
+ * variables. Each round expands the entire frontier of vertices which have not
+ * yet been expanded using a single call to the {@link IExpander}, so the index
+ * probes for a round are batched into a single subquery rather than being
+ * issued once per source solution. Each vertex is expanded at most once in
+ * each direction and the visited vertices are tracked in sets of
+ * {@link IConstant}s rather than in maps of binding sets.
+ * <p>
+ * When both ends of the path are bound, {@link #connected(IConstant[], IConstant[])}
+ * runs a bidirectional breadth first search which expands whichever side has
+ * the smaller frontier. For deep hierarchies this visits far fewer vertices
+ * than computing the closure from the source and then filtering on the
+ * target.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @see ArbitraryLengthPathOp
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+class FrontierPathSearch {
+
+    private static final Logger log = Logger.getLogger(FrontierPathSearch.class);
+
+    /**
+     * Interface for expanding a frontier by one step along the path.
+     */
+    interface IExpander {
+
+        /**
+         * Expand each of the given vertices by one step along the path.
+         *
+         * @param nodes
+         *            The distinct vertices to be expanded.
+         * @param forward
+         *            When <code>true</code> the path is followed from its
+         *            input side to its output side. Otherwise the path is
+         *            followed in reverse.
+         *
+         * @return The neighbors of each of the given vertices. Vertices
+         *         without any neighbors may be omitted.
+         */
+        Map<IConstant<?>, Set<IConstant<?>>> expand(
+                Collection<IConstant<?>> nodes, boolean forward)
+                throws Exception;
+
+    }
+
+    private final IExpander expander;
+
+    private final long upperBound;
+
+    /**
+     * The neighbors of each vertex which has been expanded in the forward
+     * (respectively reverse) direction.
+     */
+    private final Map<IConstant<?>, Set<IConstant<?>>> succ, pred;
+
+    /**
+     * The #of calls to the {@link IExpander}.
+     */
+    private int roundCount = 0;
+
+    /**
+     *
+     * @param expander
+     *            Used to expand the frontier.
+     * @param upperBound
+     *            The maximum #of steps along the path.
+     */
+    FrontierPathSearch(final IExpander expander, final long upperBound) {
+
+        if (expander == null)
+            throw new IllegalArgumentException();
+
+        if (upperBound < 0)
+            throw new IllegalArgumentException();
+
+        this.expander = expander;
+
+        this.upperBound = upperBound;
+
+        this.succ = new HashMap<IConstant<?>, Set<IConstant<?>>>();
+
+        this.pred = new HashMap<IConstant<?>, Set<IConstant<?>>>();
+
+    }
+
+    /**
+     * The #of calls to the {@link IExpander}.
+     */
+    int getRoundCount() {
+
+        return roundCount;
+
+    }
+
+    /**
+     * Return the set of vertices reachable from each seed in between one and
+     * <i>upperBound</i> steps along the path. The seed itself is only reported
+     * if it lies on a cycle.
+     *
+     * @param seeds
+     *            The seeds.
+     *
+     * @return A map from each seed to the vertices reachable from that seed.
+     */
+    Map<IConstant<?>, Set<IConstant<?>>> reachable(
+            final Collection<IConstant<?>> seeds) throws Exception {
+
+        /*
+         * Expand the frontier for all seeds at once. A vertex is expanded in
+         * the round in which it is first reached from any seed. Since that is
+         * its minimum distance over all seeds, every vertex which is within
+         * [upperBound-1] steps of some seed is expanded.
+         */
+        {
+
+            final Set<IConstant<?>> visited = new HashSet<IConstant<?>>(seeds);
+
+            List<IConstant<?>> frontier = new ArrayList<IConstant<?>>(visited);
+
+            for (long depth = 0; depth < upperBound && !frontier.isEmpty(); depth++) {
+
+                expand(frontier, true/* forward */);
+
+                final List<IConstant<?>> next = new ArrayList<IConstant<?>>();
+
+                for (IConstant<?> x : frontier) {
+
+                    for (IConstant<?> y : succ.get(x)) {
+
+                        if (visited.add(y))
+                            next.add(y);
+
+                    }
+
+                }
+
+                if (log.isDebugEnabled())
+                    log.debug("depth=" + depth + ", frontier="
+                            + frontier.size() + ", next=" + next.size()
+                            + ", visited=" + visited.size());
+
+                frontier = next;
+
+            }
+
+        }
+
+        /*
+         * Breadth first search from each seed over the expanded vertices.
+         */
+        final Map<IConstant<?>, Set<IConstant<?>>> ret = new LinkedHashMap<IConstant<?>, Set<IConstant<?>>>();
+
+        for (IConstant<?> seed : seeds) {
+
+            if (ret.containsKey(seed))
+                continue;
+
+            final Set<IConstant<?>> reached = new LinkedHashSet<IConstant<?>>();
+
+            final Set<IConstant<?>> expanded = new HashSet<IConstant<?>>();
+
+            expanded.add(seed);
+
+            List<IConstant<?>> frontier = Collections
+                    .<IConstant<?>> singletonList(seed);
+
+            for (long depth = 0; depth < upperBound && !frontier.isEmpty(); depth++) {
+
+                final List<IConstant<?>> next = new ArrayList<IConstant<?>>();
+
+                for (IConstant<?> x : frontier) {
+
+                    for (IConstant<?> y : succ.get(x)) {
+
+                        reached.add(y);
+
+                        if (expanded.add(y))
+                            next.add(y);
+
+                    }
+
+                }
+
+                frontier = next;
+
+            }
+
+            ret.put(seed, reached);
+
+        }
+
+        return ret;
+
+    }
+
+    /**
+     * Decide for each (source,target) pair whether the target is reachable
+     * from the source in between one and <i>upperBound</i> steps along the
+     * path. The pairs are decided by a bidirectional breadth first search. The
+     * searches for all pairs advance together so each round makes at most one
+     * call to the {@link IExpander} in each direction.
+     *
+     * @param sources
+     *            The sources.
+     * @param targets
+     *            The targets (correlated with the sources).
+     *
+     * @return Whether or not the target is reachable from the source for each
+     *         pair.
+     */
+    boolean[] connected(final IConstant<?>[] sources,
+            final IConstant<?>[] targets) throws Exception {
+
+        if (sources.length != targets.length)
+            throw new IllegalArgumentException();
+
+        // One search per distinct (source,target) pair.
+        final Map<List<IConstant<?>>, Search> searches = new LinkedHashMap<List<IConstant<?>>, Search>();
+
+        final Search[] a = new Search[sources.length];
+
+        for (int i = 0; i < sources.length; i++) {
+
+            final List<IConstant<?>> key = new ArrayList<IConstant<?>>(2);
+
+            key.add(sources[i]);
+
+            key.add(targets[i]);
+
+            Search s = searches.get(key);
+
+            if (s == null)
+                searches.put(key, s = new Search(sources[i], targets[i]));
+
+            a[i] = s;
+
+        }
+
+        while (true) {
+
+            final Set<IConstant<?>> fwd = new LinkedHashSet<IConstant<?>>();
+
+            final Set<IConstant<?>> rev = new LinkedHashSet<IConstant<?>>();
+
+            for (Search s : searches.values()) {
+
+                if (s.done)
+                    continue;
+
+                // Expand the side with the smaller frontier.
+                s.forward = s.ffrontier.size() <= s.rfrontier.size();
+
+                if (s.forward)
+                    fwd.addAll(s.ffrontier);
+                else
+                    rev.addAll(s.rfrontier);
+
+            }
+
+            if (fwd.isEmpty() && rev.isEmpty())
+                break;
+
+            expand(fwd, true/* forward */);
+
+            expand(rev, false/* forward */);
+
+            for (Search s : searches.values()) {
+
+                if (!s.done)
+                    s.step();
+
+            }
+
+        }
+
+        final boolean[] ret = new boolean[a.length];
+
+        for (int i = 0; i < a.length; i++) {
+
+            ret[i] = a[i].found;
+
+        }
+
+        return ret;
+
+    }
+
+    /**
+     * Expand those vertices which have not already been expanded in the given
+     * direction.
+     */
+    private void expand(final Collection<IConstant<?>> nodes,
+            final boolean forward) throws Exception {
+
+        final Map<IConstant<?>, Set<IConstant<?>>> adj = forward ? succ : pred;
+
+        final List<IConstant<?>> todo = new ArrayList<IConstant<?>>(nodes.size());
+
+        for (IConstant<?> x : nodes) {
+
+            if (!adj.containsKey(x))
+                todo.add(x);
+
+        }
+
+        if (todo.isEmpty())
+            return;
+
+        final Map<IConstant<?>, Set<IConstant<?>>> m = expander.expand(todo,
+                forward);
+
+        roundCount++;
+
+        for (IConstant<?> x : todo) {
+
+            final Set<IConstant<?>> y = m.get(x);
+
+            adj.put(x, y == null ? Collections.<IConstant<?>> emptySet() : y);
+
+        }
+
+    }
+
+    /**
+     * The state of a bidirectional search for a single (source,target) pair.
+     */
+    private class Search {
+
+        private final Set<IConstant<?>> fvisited, rvisited;
+
+        private List<IConstant<?>> ffrontier, rfrontier;
+
+        /**
+         * The sum of the depths of the forward and reverse searches.
+         */
+        private long depth = 0;
+
+        /**
+         * The side to be expanded in the current round.
+         */
+        private boolean forward;
+
+        private boolean done, found;
+
+        Search(final IConstant<?> source, final IConstant<?> target) {
+
+            fvisited = new HashSet<IConstant<?>>();
+
+            rvisited = new HashSet<IConstant<?>>();
+
+            fvisited.add(source);
+
+            rvisited.add(target);
+
+            ffrontier = Collections.<IConstant<?>> singletonList(source);
+
+            rfrontier = Collections.<IConstant<?>> singletonList(target);
+
+            done = upperBound < 1;
+
+        }
+
+        /**
+         * Advance the chosen side by one step.
+         * <p>
+         * Note: Every neighbor is tested against the other side, including
+         * those which were already visited on this side. This is what detects
+         * a cycle when the source and the target are the same vertex. Any path
+         * found this way has at least one step and at most <code>depth+1</code>
+         * steps.
+         */
+        void step() {
+
+            final List<IConstant<?>> frontier = forward ? ffrontier : rfrontier;
+
+            final Set<IConstant<?>> visited = forward ? fvisited : rvisited;
+
+            final Set<IConstant<?>> other = forward ? rvisited : fvisited;
+
+            final Map<IConstant<?>, Set<IConstant<?>>> adj = forward ? succ
+                    : pred;
+
+            final List<IConstant<?>> next = new ArrayList<IConstant<?>>();
+
+            for (IConstant<?> x : frontier) {
+
+                for (IConstant<?> y : adj.get(x)) {
+
+                    if (other.contains(y)) {
+
+                        found = done = true;
+
+                        return;
+
+                    }
+
+                    if (visited.add(y))
+                        next.add(y);
+
+                }
+
+            }
+
+            depth++;
+
+            if (forward)
+                ffrontier = next;
+            else
+                rfrontier = next;
+
+            if (next.isEmpty() || depth >= upperBound)
+                done = true;
+
+        }
+
+    }
+
+}
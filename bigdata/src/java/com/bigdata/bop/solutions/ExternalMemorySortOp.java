@@ -0,0 +1,915 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+package com.bigdata.bop.solutions;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.IBind;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IQueryAttributes;
+import com.bigdata.bop.IValueExpression;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.engine.IQueryMemoryPolicy;
+import com.bigdata.bop.engine.IRunningQuery;
+import com.bigdata.bop.engine.QueryMemoryAccount;
+import com.bigdata.io.DataInputBuffer;
+import com.bigdata.io.DataOutputBuffer;
+import com.bigdata.rdf.error.SparqlTypeErrorException;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.encoder.IVSolutionSetDecoder;
+import com.bigdata.rdf.internal.encoder.IVSolutionSetEncoder;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+import com.bigdata.rwstore.sector.IMemoryManager;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * An external memory merge sort for binding sets. Like the
+ * {@link MemorySortOp}, the as-bound values of the {@link ISortOrder} value
+ * expressions are computed as the solutions arrive and solutions having a type
+ * error are dropped. However, rather than buffering all solutions on the JVM
+ * heap, at most {@link Annotations#RUN_CAPACITY} solutions are buffered at any
+ * time. When that buffer fills up, the solutions are sorted and written onto
+ * the native heap using a child allocation context of the query's
+ * {@link IMemoryManager}. Each such sorted run is encoded as a sequence of
+ * blocks using an {@link IVSolutionSetEncoder}, which preserves the
+ * {@link IV}s together with any cached RDF values such that the
+ * {@link IVComparator} may be used to compare the decoded solutions.
+ * <p>
+ * Once the last chunk of source solutions has been observed, the sorted runs
+ * are combined using a k-way merge which reads only one block from each run
+ * at a time. If no run was ever spilled onto the native heap, then the
+ * solutions are sorted on the JVM heap and this operator behaves exactly like
+ * the {@link MemorySortOp}.
+ * <p>
+ * Solutions with the same as-bound values for the {@link ISortOrder}s are
+ * written out in the same order in which they were received (the sort and the
+ * merge are both stable).
+ *
+ * @see MemorySortOp
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class ExternalMemorySortOp extends SortOp {
+
+    private static final transient Logger log = Logger
+            .getLogger(ExternalMemorySortOp.class);
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    public interface Annotations extends SortOp.Annotations {
+
+        /**
+         * The maximum #of solutions which will be buffered on the JVM heap
+         * before they are sorted and spilled onto the native heap as a sorted
+         * run (default {@value #DEFAULT_RUN_CAPACITY}). This is the memory
+         * budget for the operator on the JVM heap. The merge phase requires
+         * one block of decoded solutions per sorted run.
+         */
+        String RUN_CAPACITY = ExternalMemorySortOp.class.getName()
+                + ".runCapacity";
+
+        int DEFAULT_RUN_CAPACITY = 100000;
+
+        /**
+         * The #of solutions which will be encoded into each block of a sorted
+         * run (default {@value #DEFAULT_BLOCK_CAPACITY}). Each block is a
+         * single allocation on the {@link IMemoryManager}.
+         */
+        String BLOCK_CAPACITY = ExternalMemorySortOp.class.getName()
+                + ".blockCapacity";
+
+        int DEFAULT_BLOCK_CAPACITY = 1000;
+
+    }
+
+    /**
+     * Constructor required for {@link com.bigdata.bop.BOpUtility#deepCopy(FilterNode)}.
+     */
+    public ExternalMemorySortOp(final ExternalMemorySortOp op) {
+        super(op);
+    }
+
+    /**
+     * Required shallow copy constructor.
+     */
+    public ExternalMemorySortOp(final BOp[] args,
+            final Map<String, Object> annotations) {
+
+        super(args, annotations);
+
+        switch (getEvaluationContext()) {
+        case CONTROLLER:
+            break;
+        default:
+            throw new UnsupportedOperationException(
+                    Annotations.EVALUATION_CONTEXT + "="
+                            + getEvaluationContext());
+        }
+
+        if (getMaxParallel() != 1)
+            throw new UnsupportedOperationException(Annotations.MAX_PARALLEL
+                    + "=" + getMaxParallel());
+
+        if (!isLastPassRequested()) {
+            throw new UnsupportedOperationException(Annotations.LAST_PASS
+                    + "=" + isLastPassRequested());
+        }
+
+        // ORDER_BY must preserve order.
+        if (isReorderSolutions())
+            throw new UnsupportedOperationException(
+                    Annotations.REORDER_SOLUTIONS + "=" + isReorderSolutions());
+
+        if (getRunCapacity() <= 0)
+            throw new IllegalArgumentException(Annotations.RUN_CAPACITY + "="
+                    + getRunCapacity());
+
+        if (getBlockCapacity() <= 0)
+            throw new IllegalArgumentException(Annotations.BLOCK_CAPACITY
+                    + "=" + getBlockCapacity());
+
+        // required parameter.
+        getValueComparator();
+
+        // validate required parameter.
+        for (ISortOrder<?> s : getSortOrder()) {
+
+            final IValueExpression<?> expr = s.getExpr();
+
+            if (expr instanceof IVariableOrConstant<?>)
+                continue;
+
+            if (expr instanceof IBind<?>)
+                continue;
+
+            throw new IllegalArgumentException(
+                    "Value expression not wrapped by bind: " + expr);
+
+        }
+
+    }
+
+    public ExternalMemorySortOp(final BOp[] args, final NV... annotations) {
+
+        this(args, NV.asMap(annotations));
+
+    }
+
+    /**
+     * @see Annotations#RUN_CAPACITY
+     */
+    public int getRunCapacity() {
+
+        return getProperty(Annotations.RUN_CAPACITY,
+                Annotations.DEFAULT_RUN_CAPACITY);
+
+    }
+
+    /**
+     * @see Annotations#BLOCK_CAPACITY
+     */
+    public int getBlockCapacity() {
+
+        return getProperty(Annotations.BLOCK_CAPACITY,
+                Annotations.DEFAULT_BLOCK_CAPACITY);
+
+    }
+
+    @Override
+    public FutureTask<Void> eval(final BOpContext<IBindingSet> context) {
+
+        return new FutureTask<Void>(new SortTask(this, context));
+
+    }
+
+    /**
+     * A sorted run of solutions which has been written onto the native heap.
+     * The run is a sequence of blocks. Each block is a single allocation on
+     * the {@link IMemoryManager} containing up to
+     * {@link Annotations#BLOCK_CAPACITY} solutions. The blocks MUST be decoded
+     * in order since the {@link IVSolutionSetEncoder} builds up its schema and
+     * its {@link IV} to RDF Value cache incrementally.
+     */
+    private static class SortedRun {
+
+        /**
+         * The addresses of the blocks.
+         */
+        final List<Long> addrs = new ArrayList<Long>();
+
+        /**
+         * The #of solutions in each block.
+         */
+        final List<Integer> counts = new ArrayList<Integer>();
+
+        /**
+         * The #of solutions in the run.
+         */
+        long size = 0L;
+
+    }
+
+    /**
+     * The state of the operator. This is stored on the
+     * {@link IQueryAttributes} since the operator is invoked once per chunk of
+     * source solutions.
+     */
+    private static class SortState {
+
+        /**
+         * The solutions buffered on the JVM heap and not yet written onto a
+         * sorted run.
+         */
+        final List<IBindingSet> solutions = new ArrayList<IBindingSet>();
+
+        /**
+         * The sorted runs which have been written onto the native heap.
+         */
+        final List<SortedRun> runs = new ArrayList<SortedRun>();
+
+        /**
+         * The allocation context for the sorted runs. This is a child of the
+         * {@link IMemoryManager} for the {@link IRunningQuery}. It is created
+         * lazily when the first run is spilled.
+         */
+        IMemoryManager mmgr = null;
+
+    }
+
+    /**
+     * Task executing on the node.
+     */
+    static private class SortTask implements Callable<Void> {
+
+        private final ExternalMemorySortOp op;
+
+        private final BOpContext<IBindingSet> context;
+
+        private final BOpStats stats;
+
+        private final ISortOrder<?>[] sortOrder;
+
+        private final Comparator<IBindingSet> comparator;
+
+        private final int runCapacity;
+
+        private final int blockCapacity;
+
+        /**
+         * The {@link IQueryAttributes} for the {@link IRunningQuery} off which
+         * we will hang the operator state.
+         */
+        private final IQueryAttributes attrs;
+
+        /**
+         * The name of the key under which the {@link #state} is stored in the
+         * {@link IQueryAttributes}.
+         */
+        private final String key;
+
+        private transient SortState state;
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        SortTask(final ExternalMemorySortOp op,
+                final BOpContext<IBindingSet> context) {
+
+            this.op = op;
+
+            this.context = context;
+
+            this.stats = context.getStats();
+
+            this.sortOrder = op.getSortOrder();
+
+            this.comparator = new BindingSetComparator(sortOrder,
+                    op.getValueComparator());
+
+            this.runCapacity = op.getRunCapacity();
+
+            this.blockCapacity = op.getBlockCapacity();
+
+            this.attrs = context.getQueryAttributes();
+
+            this.key = Integer.toString(op.getId());
+
+            SortState state = (SortState) attrs.get(key);
+
+            if (state == null) {
+
+                state = new SortState();
+
+                if (attrs.putIfAbsent(key, state) != null)
+                    throw new AssertionError();
+
+            }
+
+            this.state = state;
+
+        }
+
+        void release() {
+
+            if (log.isInfoEnabled())
+                log.info("Releasing state");
+
+            attrs.remove(key);
+
+            if (state.mmgr != null) {
+
+                // Release the native memory for the sorted runs.
+                state.mmgr.clear();
+
+            }
+
+            state = null;
+
+        }
+
+        @Override
+        public Void call() throws Exception {
+
+            final ICloseableIterator<IBindingSet[]> itr = context.getSource();
+
+            final IBlockingBuffer<IBindingSet[]> sink = context.getSink();
+
+            final boolean lastInvocation = context.isLastInvocation();
+
+            try {
+
+                acceptSolutions(itr);
+
+                if (lastInvocation) {
+
+                    doOrderBy(sink);
+
+                }
+
+            } catch (Throwable t) {
+
+                log.error(t, t);
+
+                throw new RuntimeException(t);
+
+            } finally {
+
+                if (lastInvocation) {
+
+                    // Discard the operator's internal state.
+                    release();
+
+                }
+
+                sink.close();
+
+            }
+
+            // Done.
+            return null;
+
+        }
+
+        /**
+         * Evaluate the value expressions for each input solution, drop any
+         * solution for which there is a type error, and buffer the as-bound
+         * solutions. Each time the buffer reaches the
+         * {@link Annotations#RUN_CAPACITY}, the buffered solutions are sorted
+         * and spilled onto the native heap. Once the query has been asked to
+         * spill by the {@link IQueryMemoryPolicy}, the buffered solutions are
+         * spilled after each chunk instead.
+         *
+         * @param itr
+         *            The source solutions.
+         */
+        private void acceptSolutions(
+                final ICloseableIterator<IBindingSet[]> itr) {
+
+            final QueryMemoryAccount account = context.getRunningQuery()
+                    .getMemoryAccount();
+
+            try {
+
+                while (itr.hasNext()) {
+
+                    final IBindingSet[] a = itr.next();
+
+                    stats.chunksIn.increment();
+                    stats.unitsIn.add(a.length);
+
+                    for (IBindingSet bset : a) {
+
+                        // Note: Necessary scope for type error reporting.
+                        IValueExpression<?> expr = null;
+
+                        try {
+
+                            for (ISortOrder<?> s : sortOrder) {
+
+                                /*
+                                 * Evaluate. A BIND() will have side-effect on
+                                 * [bset].
+                                 */
+                                (expr = s.getExpr()).get(bset);
+
+                            }
+
+                        } catch (SparqlTypeErrorException ex) {
+
+                            // drop solution with type error.
+                            TypeErrorLog.handleTypeError(ex, expr, stats);
+
+                            continue;
+
+                        }
+
+                        // add to the set of solutions to be sorted.
+                        state.solutions.add(bset);
+
+                        if (state.solutions.size() >= runCapacity) {
+
+                            spillRun();
+
+                        }
+
+                    } // next source solution
+
+                    if (account.isSpillRequested()
+                            && !state.solutions.isEmpty()) {
+
+                        // Do not buffer solutions on the JVM heap.
+                        spillRun();
+
+                    }
+
+                }
+
+                if (log.isInfoEnabled())
+                    log.info("Buffered " + state.solutions.size()
+                            + " solutions, spilled runs=" + state.runs.size());
+
+            } finally {
+
+                itr.close();
+
+            }
+
+        } // acceptSolutions
+
+        /**
+         * Sort the solutions buffered on the JVM heap.
+         */
+        private IBindingSet[] sortBuffered() {
+
+            final IBindingSet[] all = state.solutions
+                    .toArray(new IBindingSet[state.solutions.size()]);
+
+            state.solutions.clear();
+
+            final long begin = System.currentTimeMillis();
+
+            Arrays.sort(all, comparator);
+
+            final long elapsed = System.currentTimeMillis() - begin;
+
+            if (log.isInfoEnabled())
+                log.info("Sorted " + all.length + " solutions in " + elapsed
+                        + "ms.");
+
+            return all;
+
+        }
+
+        /**
+         * Sort the solutions buffered on the JVM heap and write them onto the
+         * native heap as a new {@link SortedRun}.
+         */
+        private void spillRun() {
+
+            final IBindingSet[] all = sortBuffered();
+
+            if (state.mmgr == null) {
+
+                state.mmgr = context.getRunningQuery().getMemoryManager()
+                        .createAllocationContext();
+
+            }
+
+            final SortedRun run = new SortedRun();
+
+            final IVSolutionSetEncoder encoder = new IVSolutionSetEncoder();
+
+            final DataOutputBuffer buf = new DataOutputBuffer();
+
+            int n = 0;
+
+            for (IBindingSet bset : all) {
+
+                encoder.encodeSolution(buf, bset);
+
+                if (++n == blockCapacity) {
+
+                    writeBlock(run, buf, n);
+
+                    n = 0;
+
+                }
+
+            }
+
+            if (n > 0) {
+
+                writeBlock(run, buf, n);
+
+            }
+
+            encoder.release();
+
+            state.runs.add(run);
+
+            if (log.isInfoEnabled())
+                log.info("Spilled run: #runs=" + state.runs.size()
+                        + ", size=" + run.size + ", #blocks="
+                        + run.addrs.size() + ", userBytes="
+                        + state.mmgr.getUserBytes());
+
+        }
+
+        /**
+         * Write the encoded solutions onto the native heap as a single block
+         * and reset the buffer.
+         */
+        private void writeBlock(final SortedRun run,
+                final DataOutputBuffer buf, final int n) {
+
+            final long addr = state.mmgr.allocate(ByteBuffer.wrap(
+                    buf.array(), 0/* off */, buf.pos()));
+
+            run.addrs.add(addr);
+
+            run.counts.add(n);
+
+            run.size += n;
+
+            buf.reset();
+
+        }
+
+        /**
+         * Sort the solutions based on the as-bound value expressions.
+         *
+         * @param sink
+         *            Where to write the results.
+         */
+        private void doOrderBy(final IBlockingBuffer<IBindingSet[]> sink) {
+
+            if (state.runs.isEmpty()) {
+
+                /*
+                 * Nothing was spilled, so the solutions are sorted on the JVM
+                 * heap (this is the same as the MemorySortOp).
+                 */
+
+                final IBindingSet[] all = sortBuffered();
+
+                dropComputedVars(all);
+
+                // write output and flush.
+                sink.add(all);
+                sink.flush();
+
+                return;
+
+            }
+
+            if (log.isInfoEnabled())
+                log.info("Merging: #runs=" + state.runs.size()
+                        + ", buffered=" + state.solutions.size());
+
+            final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+                    state.runs.size() + 1, new RunReaderComparator(comparator));
+
+            int index = 0;
+
+            for (SortedRun run : state.runs) {
+
+                final RunReader r = new NativeRunReader(index++, state.mmgr,
+                        run);
+
+                if (r.advance())
+                    queue.add(r);
+
+            }
+
+            if (!state.solutions.isEmpty()) {
+
+                /*
+                 * The solutions which are still on the JVM heap are sorted and
+                 * merged directly. This run comes last so ties are broken in
+                 * favor of the solutions which were received first.
+                 */
+
+                final RunReader r = new HeapRunReader(index++, sortBuffered());
+
+                if (r.advance())
+                    queue.add(r);
+
+            }
+
+            final int chunkCapacity = op.getChunkCapacity();
+
+            IBindingSet[] chunk = new IBindingSet[chunkCapacity];
+
+            int n = 0;
+
+            RunReader r;
+
+            while ((r = queue.poll()) != null) {
+
+                chunk[n++] = r.head;
+
+                if (n == chunkCapacity) {
+
+                    dropComputedVars(chunk);
+
+                    sink.add(chunk);
+
+                    chunk = new IBindingSet[chunkCapacity];
+
+                    n = 0;
+
+                }
+
+                if (r.advance()) {
+
+                    // Reinsert the run with its new head.
+                    queue.add(r);
+
+                }
+
+            }
+
+            if (n > 0) {
+
+                final IBindingSet[] a = new IBindingSet[n];
+
+                System.arraycopy(chunk, 0/* srcPos */, a, 0/* destPos */, n);
+
+                dropComputedVars(a);
+
+                sink.add(a);
+
+            }
+
+            sink.flush();
+
+        }
+
+        /**
+         * Drop variables for computed value expressions.
+         */
+        private void dropComputedVars(final IBindingSet[] a) {
+
+            for (IBindingSet bset : a) {
+                for (ISortOrder<?> s : sortOrder) {
+                    final IValueExpression<?> expr = s.getExpr();
+                    if (expr instanceof IBind) {
+                        bset.clear(((IBind<?>) expr).getVar());
+                    }
+                }
+            }
+
+        }
+
+    } // SortTask
+
+    /**
+     * Reader for a sorted run. The reader exposes the current solution in the
+     * run (the head of the run) for use by the k-way merge.
+     */
+    private static abstract class RunReader {
+
+        /**
+         * The ordinal index of the run. This is used to break ties during the
+         * merge such that the merge is stable.
+         */
+        final int index;
+
+        /**
+         * The current solution.
+         */
+        IBindingSet head;
+
+        protected RunReader(final int index) {
+
+            this.index = index;
+
+        }
+
+        /**
+         * Advance to the next solution in the run.
+         *
+         * @return <code>true</code> iff there was another solution, in which
+         *         case it is available as the {@link #head}.
+         */
+        abstract boolean advance();
+
+    }
+
+    /**
+     * Reader for a sorted run which is still on the JVM heap.
+     */
+    private static class HeapRunReader extends RunReader {
+
+        private final IBindingSet[] a;
+
+        private int i = 0;
+
+        HeapRunReader(final int index, final IBindingSet[] a) {
+
+            super(index);
+
+            this.a = a;
+
+        }
+
+        @Override
+        boolean advance() {
+
+            if (i == a.length) {
+
+                head = null;
+
+                return false;
+
+            }
+
+            head = a[i];
+
+            a[i++] = null; // release reference.
+
+            return true;
+
+        }
+
+    }
+
+    /**
+     * Reader for a sorted run on the native heap. Only one block is decoded at
+     * a time. The allocation for each block is released once it has been
+     * decoded.
+     */
+    private static class NativeRunReader extends RunReader {
+
+        private final IMemoryManager mmgr;
+
+        private final SortedRun run;
+
+        private final IVSolutionSetDecoder decoder;
+
+        /** The index of the next block to be read. */
+        private int blockIndex = 0;
+
+        /** The solutions in the current block. */
+        private IBindingSet[] block = null;
+
+        /** The index of the next solution in the current block. */
+        private int i = 0;
+
+        NativeRunReader(final int index, final IMemoryManager mmgr,
+                final SortedRun run) {
+
+            super(index);
+
+            this.mmgr = mmgr;
+
+            this.run = run;
+
+            this.decoder = new IVSolutionSetDecoder();
+
+        }
+
+        @Override
+        boolean advance() {
+
+            if (block == null || i == block.length) {
+
+                if (blockIndex == run.addrs.size()) {
+
+                    // Run is exhausted.
+                    decoder.release();
+
+                    head = null;
+
+                    block = null;
+
+                    return false;
+
+                }
+
+                block = readBlock(blockIndex++);
+
+                i = 0;
+
+            }
+
+            head = block[i];
+
+            block[i++] = null; // release reference.
+
+            return true;
+
+        }
+
+        private IBindingSet[] readBlock(final int blockIndex) {
+
+            final long addr = run.addrs.get(blockIndex);
+
+            final int n = run.counts.get(blockIndex);
+
+            final DataInputBuffer in = new DataInputBuffer(mmgr.read(addr));
+
+            // The data was copied, so the allocation may be released.
+            mmgr.free(addr);
+
+            final IBindingSet[] a = new IBindingSet[n];
+
+            for (int j = 0; j < n; j++) {
+
+                a[j] = decoder.decodeSolution(in, true/* resolveCachedValues */);
+
+            }
+
+            return a;
+
+        }
+
+    }
+
+    /**
+     * Orders the {@link RunReader}s by their current solution and then by the
+     * ordinal index of the run.
+     */
+    private static class RunReaderComparator implements Comparator<RunReader> {
+
+        private final Comparator<IBindingSet> comparator;
+
+        RunReaderComparator(final Comparator<IBindingSet> comparator) {
+
+            this.comparator = comparator;
+
+        }
+
+        @Override
+        public int compare(final RunReader o1, final RunReader o2) {
+
+            final int ret = comparator.compare(o1.head, o2.head);
+
+            if (ret != 0)
+                return ret;
+
+            return o1.index < o2.index ? -1 : o1.index > o2.index ? 1 : 0;
+
+        }
+
+    }
+
+}
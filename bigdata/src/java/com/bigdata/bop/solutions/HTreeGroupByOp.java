@@ -0,0 +1,963 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+package com.bigdata.bop.solutions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.HTreeAnnotations;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IQueryAttributes;
+import com.bigdata.bop.IValueExpression;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.aggregate.IAggregate;
+import com.bigdata.bop.ap.Predicate;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.join.HTreeHashJoinUtility;
+import com.bigdata.bop.solutions.MemoryGroupByOp.SolutionGroup;
+import com.bigdata.btree.BytesUtil;
+import com.bigdata.btree.ITuple;
+import com.bigdata.btree.ITupleIterator;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.htree.HTree;
+import com.bigdata.io.ByteArrayBuffer;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.encoder.IVBindingSetEncoderWithIVCache;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+import com.bigdata.relation.accesspath.UnsyncLocalOutputBuffer;
+import com.bigdata.rwstore.sector.IMemoryManager;
+import com.bigdata.rwstore.sector.MemStore;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * A generalized aggregation operator which buffers the solution groups on the
+ * native heap using the {@link HTree}. The operator may be used for any
+ * aggregation request having a GROUP BY clause and is intended for aggregations
+ * with a very large number of groups or a very large number of solutions, where
+ * the {@link MemoryGroupByOp} or the {@link PipelinedAggregationOp} would
+ * exhaust the JVM heap.
+ * <p>
+ * The groups are hash partitioned on the as-bound values of the GROUP BY value
+ * expressions. Each partition has its own {@link HTree} on its own allocation
+ * context of the {@link IMemoryManager} for the query. The {@link HTree} keys
+ * are the int32 hash codes of the groups and the values are the encoded
+ * solutions, so all solutions for a given group wind up under the same key in
+ * the same partition. The operator is invoked for each chunk of source
+ * solutions and the solutions are inserted into the partitions in parallel.
+ * Once the last chunk has been observed, the partitions are scanned in
+ * parallel. The tuples having the same key are visited together by the scan,
+ * so only the state of the groups sharing a given hash code is held on the
+ * JVM heap at any one time. The solutions themselves are never buffered on the
+ * JVM heap: pipelined aggregates are folded into the group state as the
+ * solutions are visited, and other aggregates re-read the solutions for their
+ * group from the {@link HTree}. The aggregated solutions for the partitions
+ * are combined on the sink.
+ * <p>
+ * Note: The query planner only uses this operator when the aggregates can not
+ * be pipelined. The {@link PipelinedAggregationOp} only keeps the state of the
+ * aggregates for each group and is preferred in that case.
+ * <p>
+ * Note: Since the partitions are scanned concurrently, the order in which the
+ * aggregated solutions are written onto the sink is not defined.
+ * <p>
+ * Note: This operator is specific to the RDF data model (it relies on encoded
+ * {@link IV}s).
+ *
+ * @see MemoryGroupByOp
+ * @see HTreeHashJoinUtility
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class HTreeGroupByOp extends GroupByOp {
+
+    private static final transient Logger log = Logger
+            .getLogger(HTreeGroupByOp.class);
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    public interface Annotations extends GroupByOp.Annotations,
+            HTreeAnnotations {
+
+        /**
+         * The #of hash partitions for the solution groups (default
+         * {@value #DEFAULT_PARTITION_COUNT}). This is also the maximum
+         * parallelism of the operator.
+         */
+        String PARTITION_COUNT = HTreeGroupByOp.class.getName()
+                + ".partitionCount";
+
+        int DEFAULT_PARTITION_COUNT = 4;
+
+        /**
+         * The namespace of the lexicon relation (required). This is used to
+         * buffer the cached RDF Values for the {@link IV}s on the native heap.
+         */
+        String RELATION_NAME = Predicate.Annotations.RELATION_NAME;
+
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns <code>false</code>. This is a generalized aggregation operator
+     * and may be used to evaluate any aggregation request having a GROUP BY
+     * clause.
+     */
+    @Override
+    final public boolean isPipelinedAggregationOp() {
+
+        return false;
+
+    }
+
+    /**
+     * Constructor required for {@link com.bigdata.bop.BOpUtility#deepCopy(FilterNode)}.
+     */
+    public HTreeGroupByOp(final HTreeGroupByOp op) {
+        super(op);
+    }
+
+    /**
+     * Required shallow copy constructor.
+     */
+    public HTreeGroupByOp(final BOp[] args,
+            final Map<String, Object> annotations) {
+
+        super(args, annotations);
+
+        switch (getEvaluationContext()) {
+        case CONTROLLER:
+            break;
+        default:
+            throw new UnsupportedOperationException(
+                    Annotations.EVALUATION_CONTEXT + "="
+                            + getEvaluationContext());
+        }
+
+        if (getMaxParallel() != 1)
+            throw new UnsupportedOperationException(Annotations.MAX_PARALLEL
+                    + "=" + getMaxParallel());
+
+        if (!isLastPassRequested())
+            throw new UnsupportedOperationException(Annotations.LAST_PASS
+                    + "=" + isLastPassRequested());
+
+        if (getPartitionCount() <= 0)
+            throw new IllegalArgumentException(Annotations.PARTITION_COUNT
+                    + "=" + getPartitionCount());
+
+        getRequiredProperty(Annotations.RELATION_NAME);
+
+        getRequiredProperty(Annotations.GROUP_BY_REWRITE);
+
+        if (getGroupByState().getGroupByClause() == null) {
+            /*
+             * Note: Without a GROUP BY clause all solutions fall into a single
+             * implicit group, so there is nothing to partition.
+             */
+            throw new IllegalArgumentException(
+                    "GROUP BY clause is required.");
+        }
+
+    }
+
+    public HTreeGroupByOp(final BOp[] args, final NV... annotations) {
+
+        this(args, NV.asMap(annotations));
+
+    }
+
+    /**
+     * @see Annotations#PARTITION_COUNT
+     */
+    public int getPartitionCount() {
+
+        return getProperty(Annotations.PARTITION_COUNT,
+                Annotations.DEFAULT_PARTITION_COUNT);
+
+    }
+
+    @Override
+    public FutureTask<Void> eval(final BOpContext<IBindingSet> context) {
+
+        return new FutureTask<Void>(new GroupByTask(this, context));
+
+    }
+
+    /**
+     * A solution paired with the hash code of its group.
+     */
+    private static class BS implements Comparable<BS> {
+
+        final int hashCode;
+
+        final IBindingSet bset;
+
+        BS(final int hashCode, final IBindingSet bset) {
+            this.hashCode = hashCode;
+            this.bset = bset;
+        }
+
+        @Override
+        public int compareTo(final BS o) {
+            if (hashCode < o.hashCode)
+                return -1;
+            if (hashCode > o.hashCode)
+                return 1;
+            return 0;
+        }
+
+    }
+
+    /**
+     * The incremental state of the aggregates for a solution group when the
+     * aggregates can be pipelined.
+     */
+    private static class GroupState {
+
+        /**
+         * The aggregates for the group. These are cloned to avoid side-effects
+         * across groups.
+         */
+        final LinkedHashMap<IAggregate<?>, IVariable<?>> aggExpr;
+
+        /**
+         * The intermediate solution for the group. The GROUP BY bindings are
+         * propagated onto this solution by the constructor.
+         */
+        final IBindingSet aggregates;
+
+        GroupState(final IValueExpression<?>[] groupBy,
+                final IGroupByRewriteState rewrite, final IBindingSet bset) {
+
+            this.aggExpr = new GroupByRewriter(rewrite).getAggExpr();
+
+            for (IAggregate<?> a : aggExpr.keySet()) {
+
+                a.reset();
+
+            }
+
+            this.aggregates = new ListBindingSet();
+
+            MemoryGroupByOp.propagateGroupBy(groupBy, bset, aggregates);
+
+        }
+
+    }
+
+    /**
+     * A hash partition of the solution groups. The partition is not
+     * thread-safe, but distinct partitions may be written and read
+     * concurrently.
+     */
+    private static class GroupByPartition {
+
+        /**
+         * The backing store (an allocation context on the native heap).
+         */
+        private final MemStore store;
+
+        /**
+         * The int32 hash code of the group to the encoded solutions.
+         */
+        private final HTree htree;
+
+        /**
+         * Encodes the solutions and buffers the cached RDF Values for the
+         * {@link IV}s on the {@link #store}.
+         */
+        private final IVBindingSetEncoderWithIVCache encoder;
+
+        private final IKeyBuilder keyBuilder;
+
+        GroupByPartition(final IMemoryManager mmgr, final HTreeGroupByOp op) {
+
+            this.store = new MemStore(mmgr.createAllocationContext());
+
+            this.encoder = new IVBindingSetEncoderWithIVCache(store,
+                    false/* filter */, op);
+
+            this.htree = HTree.create(store,
+                    HTreeHashJoinUtility.getIndexMetadata(op));
+
+            this.keyBuilder = htree.getIndexMetadata().getKeyBuilder();
+
+        }
+
+        /**
+         * Insert the solutions into the partition.
+         *
+         * @param a
+         *            The solutions (will be sorted by the hash code).
+         */
+        void insert(final BS[] a) {
+
+            // Insert solutions into HTree in key order.
+            Arrays.sort(a);
+
+            for (BS tmp : a) {
+
+                final byte[] key = keyBuilder.reset().append(tmp.hashCode)
+                        .getKey();
+
+                htree.insert(key, encoder.encodeSolution(tmp.bset));
+
+            }
+
+            // Vectored update of the IV cache.
+            encoder.flush();
+
+        }
+
+        /**
+         * Scan the partition, compute the aggregate for each group, and write
+         * the aggregated solutions onto the buffer. The tuples having the same
+         * key are visited together by the scan, so the groups for a given hash
+         * code are complete once the scan moves on to the next key.
+         * <p>
+         * The solutions for a group are never buffered on the JVM heap. When
+         * the aggregates can be pipelined, they are folded incrementally into
+         * the state of the group as the tuples are visited. Otherwise (DISTINCT
+         * aggregates or dependencies among the aggregates), each aggregate is
+         * computed by re-reading the solutions for the group from the
+         * {@link HTree}.
+         */
+        void aggregate(final IGroupByState groupByState,
+                final IGroupByRewriteState rewrite, final BOpStats stats,
+                final UnsyncLocalOutputBuffer<IBindingSet> out) {
+
+            final IValueExpression<?>[] groupBy = groupByState
+                    .getGroupByClause();
+
+            final boolean pipelined = !groupByState.isAnyDistinct()
+                    && !groupByState.isSelectDependency()
+                    && !groupByState.isNestedAggregates();
+
+            /*
+             * Note: The IAggregates have internal state, so each partition
+             * uses its own copy since the partitions are aggregated in
+             * parallel.
+             */
+            final IGroupByRewriteState rewrite2 = new GroupByRewriter(rewrite);
+
+            /*
+             * The groups having the current hash code. There is normally just
+             * one group per hash code, but there can be collisions. The value
+             * is the incremental state of the group when the aggregates are
+             * pipelined and null otherwise.
+             */
+            final Map<SolutionGroup, GroupState> groups = new LinkedHashMap<SolutionGroup, GroupState>();
+
+            byte[] lastKey = null;
+
+            final ITupleIterator<?> itr = htree.rangeIterator();
+
+            while (itr.hasNext()) {
+
+                final ITuple<?> t = itr.next();
+
+                final byte[] key = t.getKey();
+
+                if (lastKey != null && !BytesUtil.bytesEqual(lastKey, key)) {
+
+                    aggregateGroups(lastKey, groups, groupByState, rewrite2,
+                            stats, out);
+
+                }
+
+                lastKey = key;
+
+                final IBindingSet bset = decode(t);
+
+                /*
+                 * Note: The GROUP BY value expressions were successfully
+                 * evaluated when the solution was accepted, so this will not
+                 * drop the solution.
+                 */
+                final SolutionGroup g = SolutionGroup.newInstance(groupBy,
+                        bset, stats);
+
+                if (g == null)
+                    continue;
+
+                GroupState s = groups.get(g);
+
+                if (s == null && !groups.containsKey(g)) {
+
+                    s = pipelined ? new GroupState(groupBy, rewrite2, bset)
+                            : null;
+
+                    groups.put(g, s);
+
+                }
+
+                if (s != null) {
+
+                    // Fold the solution into the aggregates for the group.
+                    PipelinedAggregationOp.doAggregate(s.aggExpr, bset, stats);
+
+                }
+
+            }
+
+            if (lastKey != null) {
+
+                aggregateGroups(lastKey, groups, groupByState, rewrite2,
+                        stats, out);
+
+            }
+
+            out.flush();
+
+        }
+
+        /**
+         * Compute the aggregates for the given groups and then clear the
+         * groups.
+         * 
+         * @param key
+         *            The key under which the solutions for those groups are
+         *            stored.
+         */
+        private void aggregateGroups(final byte[] key,
+                final Map<SolutionGroup, GroupState> groups,
+                final IGroupByState groupByState,
+                final IGroupByRewriteState rewrite, final BOpStats stats,
+                final UnsyncLocalOutputBuffer<IBindingSet> out) {
+
+            for (Map.Entry<SolutionGroup, GroupState> e : groups.entrySet()) {
+
+                final GroupState s = e.getValue();
+
+                final IBindingSet bset;
+
+                if (s != null) {
+
+                    // Finalize the folded aggregates.
+                    PipelinedAggregationOp.finalizeAggregates(s.aggExpr,
+                            s.aggregates, stats);
+
+                    bset = MemoryGroupByOp.finish(s.aggregates, groupByState,
+                            rewrite, stats);
+
+                } else {
+
+                    // Re-read the solutions for the group for each aggregate.
+                    bset = MemoryGroupByOp.aggregate(new GroupSolutions(key,
+                            e.getKey(), groupByState.getGroupByClause(), stats),
+                            groupByState, rewrite, stats);
+
+                }
+
+                if (bset != null) {
+
+                    if (log.isDebugEnabled())
+                        log.debug("output: groupBy=" + e.getKey()
+                                + ", solution=" + bset);
+
+                    out.add(bset);
+
+                } else {
+
+                    if (log.isDebugEnabled())
+                        log.debug("output: groupBy=" + e.getKey()
+                                + " : dropped.");
+
+                }
+
+            }
+
+            groups.clear();
+
+        }
+
+        /**
+         * Decode the solution in the tuple.
+         */
+        private IBindingSet decode(final ITuple<?> t) {
+
+            final ByteArrayBuffer b = t.getValueBuffer();
+
+            return encoder.decodeSolution(b.array(), 0, b.limit(),
+                    true/* resolveCachedValues */);
+
+        }
+
+        /**
+         * The solutions for a group, read from the {@link HTree} each time
+         * they are visited.
+         */
+        private class GroupSolutions implements Iterable<IBindingSet> {
+
+            private final byte[] key;
+
+            private final SolutionGroup group;
+
+            private final IValueExpression<?>[] groupBy;
+
+            private final BOpStats stats;
+
+            GroupSolutions(final byte[] key, final SolutionGroup group,
+                    final IValueExpression<?>[] groupBy, final BOpStats stats) {
+
+                this.key = key;
+                this.group = group;
+                this.groupBy = groupBy;
+                this.stats = stats;
+
+            }
+
+            @Override
+            public Iterator<IBindingSet> iterator() {
+
+                final ITupleIterator<?> itr = htree.lookupAll(key);
+
+                return new Iterator<IBindingSet>() {
+
+                    private IBindingSet next = null;
+
+                    @Override
+                    public boolean hasNext() {
+
+                        while (next == null && itr.hasNext()) {
+
+                            final IBindingSet bset = decode(itr.next());
+
+                            // Skip solutions for colliding groups.
+                            if (group.equals(SolutionGroup.newInstance(
+                                    groupBy, bset, stats))) {
+
+                                next = bset;
+
+                            }
+
+                        }
+
+                        return next != null;
+
+                    }
+
+                    @Override
+                    public IBindingSet next() {
+
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+
+                        final IBindingSet tmp = next;
+
+                        next = null;
+
+                        return tmp;
+
+                    }
+
+                    @Override
+                    public void remove() {
+
+                        throw new UnsupportedOperationException();
+
+                    }
+
+                };
+
+            }
+
+        }
+
+        /**
+         * Discard the partition and release its native memory.
+         */
+        void release() {
+
+            encoder.release();
+
+            htree.close();
+
+            store.close();
+
+        }
+
+    }
+
+    /**
+     * The state of the operator. This is stored on the
+     * {@link IQueryAttributes} since the operator is invoked once per chunk of
+     * source solutions.
+     */
+    private static class HTreeGroupByState {
+
+        final GroupByPartition[] partitions;
+
+        HTreeGroupByState(final IMemoryManager mmgr, final HTreeGroupByOp op) {
+
+            this.partitions = new GroupByPartition[op.getPartitionCount()];
+
+            for (int i = 0; i < partitions.length; i++) {
+
+                partitions[i] = new GroupByPartition(mmgr, op);
+
+            }
+
+        }
+
+        void release() {
+
+            for (GroupByPartition p : partitions) {
+
+                p.release();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Task executing on the node.
+     */
+    static private class GroupByTask implements Callable<Void> {
+
+        private final HTreeGroupByOp op;
+
+        private final BOpContext<IBindingSet> context;
+
+        private final BOpStats stats;
+
+        private final IGroupByState groupByState;
+
+        private final IGroupByRewriteState rewrite;
+
+        private final IValueExpression<?>[] groupBy;
+
+        /**
+         * The {@link IQueryAttributes} on which the operator state is stored.
+         */
+        private final IQueryAttributes attrs;
+
+        /**
+         * The name of the key under which the {@link #state} is stored in the
+         * {@link IQueryAttributes}.
+         */
+        private final String key;
+
+        private final HTreeGroupByState state;
+
+        GroupByTask(final HTreeGroupByOp op,
+                final BOpContext<IBindingSet> context) {
+
+            this.op = op;
+
+            this.context = context;
+
+            this.stats = context.getStats();
+
+            this.groupByState = op.getGroupByState();
+
+            this.rewrite = op.getGroupByRewrite();
+
+            this.groupBy = groupByState.getGroupByClause();
+
+            this.attrs = context.getQueryAttributes();
+
+            this.key = Integer.toString(op.getId());
+
+            HTreeGroupByState state = (HTreeGroupByState) attrs.get(key);
+
+            if (state == null) {
+
+                state = new HTreeGroupByState(context.getRunningQuery()
+                        .getMemoryManager(), op);
+
+                if (attrs.putIfAbsent(key, state) != null)
+                    throw new AssertionError();
+
+            }
+
+            this.state = state;
+
+        }
+
+        @Override
+        public Void call() throws Exception {
+
+            final ICloseableIterator<IBindingSet[]> itr = context.getSource();
+
+            final IBlockingBuffer<IBindingSet[]> sink = context.getSink();
+
+            final boolean lastInvocation = context.isLastInvocation();
+
+            try {
+
+                acceptSolutions(itr);
+
+                if (lastInvocation) {
+
+                    aggregatePartitions(sink);
+
+                    sink.flush();
+
+                }
+
+                // done.
+                return null;
+
+            } finally {
+
+                if (lastInvocation) {
+
+                    // Discard the operator's internal state.
+                    attrs.remove(key);
+
+                    state.release();
+
+                }
+
+                sink.close();
+
+            }
+
+        }
+
+        /**
+         * Compute the GROUP BY value expressions for each source solution,
+         * drop any solution for which they can not be computed, and insert
+         * the other solutions into the partition for their group. The
+         * partitions are written in parallel each time a batch of solutions
+         * has been assigned to the partitions.
+         */
+        private void acceptSolutions(final ICloseableIterator<IBindingSet[]> itr)
+                throws Exception {
+
+            final int npartitions = state.partitions.length;
+
+            final List<List<BS>> buckets = new ArrayList<List<BS>>(npartitions);
+
+            for (int i = 0; i < npartitions; i++) {
+
+                buckets.add(new ArrayList<BS>());
+
+            }
+
+            // The #of solutions to buffer before writing on the partitions.
+            final int batchSize = op.getChunkCapacity() * npartitions;
+
+            int nbuffered = 0;
+
+            try {
+
+                while (itr.hasNext()) {
+
+                    final IBindingSet[] a = itr.next();
+
+                    stats.chunksIn.increment();
+                    stats.unitsIn.add(a.length);
+
+                    for (IBindingSet bset : a) {
+
+                        final SolutionGroup g = SolutionGroup.newInstance(
+                                groupBy, bset, stats);
+
+                        if (g == null) {
+
+                            // Drop the solution.
+                            if (log.isDebugEnabled())
+                                log.debug("Dropping solution: " + bset);
+
+                            continue;
+
+                        }
+
+                        final int h = g.hashCode();
+
+                        buckets.get((h & 0x7fffffff) % npartitions).add(new BS(h,
+                                bset));
+
+                        nbuffered++;
+
+                    }
+
+                    if (nbuffered >= batchSize) {
+
+                        insertBuckets(buckets);
+
+                        nbuffered = 0;
+
+                    }
+
+                }
+
+                if (nbuffered > 0) {
+
+                    insertBuckets(buckets);
+
+                }
+
+            } finally {
+
+                itr.close();
+
+            }
+
+        }
+
+        /**
+         * Write the buffered solutions onto their partitions in parallel and
+         * clear the buffers.
+         */
+        private void insertBuckets(final List<List<BS>> buckets)
+                throws Exception {
+
+            final List<FutureTask<Void>> tasks = new LinkedList<FutureTask<Void>>();
+
+            for (int i = 0; i < buckets.size(); i++) {
+
+                final List<BS> bucket = buckets.get(i);
+
+                if (bucket.isEmpty())
+                    continue;
+
+                final GroupByPartition p = state.partitions[i];
+
+                final BS[] a = bucket.toArray(new BS[bucket.size()]);
+
+                bucket.clear();
+
+                tasks.add(new FutureTask<Void>(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        p.insert(a);
+                        return null;
+                    }
+                }));
+
+            }
+
+            runTasks(tasks);
+
+        }
+
+        /**
+         * Compute the aggregates for each partition in parallel. Each
+         * partition writes its aggregated solutions onto the sink.
+         */
+        private void aggregatePartitions(
+                final IBlockingBuffer<IBindingSet[]> sink) throws Exception {
+
+            final List<FutureTask<Void>> tasks = new LinkedList<FutureTask<Void>>();
+
+            for (final GroupByPartition p : state.partitions) {
+
+                tasks.add(new FutureTask<Void>(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        p.aggregate(groupByState, rewrite, stats,
+                                new UnsyncLocalOutputBuffer<IBindingSet>(op
+                                        .getChunkCapacity(), sink));
+                        return null;
+                    }
+                }));
+
+            }
+
+            runTasks(tasks);
+
+        }
+
+        /**
+         * Run the tasks, using the {@link Executor} for the query engine when
+         * there is more than one task, and wait for them to complete. If any
+         * task fails then the remaining tasks are cancelled.
+         */
+        private void runTasks(final List<FutureTask<Void>> tasks)
+                throws Exception {
+
+            final Executor executor = context.getExecutorService();
+
+            if (executor == null || tasks.size() <= 1) {
+
+                // Run in the caller's thread.
+                for (FutureTask<Void> ft : tasks) {
+
+                    ft.run();
+
+                    ft.get();
+
+                }
+
+                return;
+
+            }
+
+            try {
+
+                for (FutureTask<Void> ft : tasks) {
+
+                    executor.execute(ft);
+
+                }
+
+                for (FutureTask<Void> ft : tasks) {
+
+                    // Check future.
+                    ft.get();
+
+                }
+
+            } finally {
+
+                // Cancel any tasks which are still running.
+                for (FutureTask<Void> ft : tasks) {
+
+                    ft.cancel(true/* mayInterruptIfRunning */);
+
+                }
+
+            }
+
+        }
+
+    } // GroupByTask
+
+}
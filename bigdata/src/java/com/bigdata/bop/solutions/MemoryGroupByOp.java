@@ -156,7 +156,7 @@ public class MemoryGroupByOp extends GroupByOp {
     /**
      * Wrapper used for the solution groups in the {@link ConcurrentHashMap}.
      */
-    private static class SolutionGroup {
+    static class SolutionGroup {
 
 		/** The hash code for {@link #vals}. */
 		private final int hash;
@@ -410,7 +410,8 @@ public class MemoryGroupByOp extends GroupByOp {
                     }
                     
                     // Compute the aggregate for that group.
-                    final IBindingSet bset = aggregate(m.solutions);
+                    final IBindingSet bset = aggregate(m.solutions,
+                            groupByState, rewrite, stats);
 
                     if (bset != null) {
 
@@ -455,7 +456,8 @@ public class MemoryGroupByOp extends GroupByOp {
                         final SolutionMultiSet m = e.getValue();
 
                         // Compute the aggregate for that group.
-                        final IBindingSet bset = aggregate(m.solutions);
+                        final IBindingSet bset = aggregate(m.solutions,
+                                groupByState, rewrite, stats);
 
                         if (bset != null) {
                             
@@ -508,191 +510,254 @@ public class MemoryGroupByOp extends GroupByOp {
 
         } // call()
 
+    } // GroupByTask
+
+    /**
+     * Compute the aggregate solution for a solution multiset (aka a group).
+     * <p>
+     * Note: This is also used by the {@link HTreeGroupByOp}.
+     * 
+     * @param solutions
+     *            The solutions in the group.
+     * @param groupByState
+     *            The {@link IGroupByState}.
+     * @param rewrite
+     *            The {@link IGroupByRewriteState}.
+     * @param stats
+     *            Used to report type errors.
+     * 
+     * @return The aggregate solution -or- <code>null</code> if the solution
+     *         for the group was dropped (type error or violated HAVING
+     *         constraint).
+     */
+    static IBindingSet aggregate(final Iterable<IBindingSet> solutions,
+            final IGroupByState groupByState,
+            final IGroupByRewriteState rewrite, final BOpStats stats) {
+
+        if (!solutions.iterator().hasNext()) {
+            // Drop empty group.
+            return null;
+        }
+
+        // The optional GROUP BY value expressions.
+        final IValueExpression<?>[] groupBy = groupByState.getGroupByClause();
+
         /**
-         * Compute the aggregate solution for a solution multiset (aka a group).
-         * 
-         * @return The aggregate solution -or- <code>null</code> if the solution
-         *         for the group was dropped (type error or violated HAVING
-         *         constraint).
+         * The intermediate solution with all bindings produced when
+         * evaluating this solution group. Evaluation begins by binding any
+         * bare variables or BINDs in the GROUP_BY clause, followed by
+         * evaluating all aggregates, and then finally evaluating the
+         * (rewritten) SELECT expressions. The rewritten HAVING clause (if
+         * any) may then be then be trivially evaluated. If the solution is
+         * not dropped, then only the SELECTed variables are projected out.
          */
-        private IBindingSet aggregate(final Iterable<IBindingSet> solutions) {
+        final IBindingSet aggregates = new ListBindingSet();
 
-            if (!solutions.iterator().hasNext()) {
-                // Drop empty group.
-                return null;
-            }
+        /**
+         * Propagate GROUP_BY expression onto [aggregates]. 
+         */
+        if (groupBy != null) {
 
-            /**
-             * The intermediate solution with all bindings produced when
-             * evaluating this solution group. Evaluation begins by binding any
-             * bare variables or BINDs in the GROUP_BY clause, followed by
-             * evaluating all aggregates, and then finally evaluating the
-             * (rewritten) SELECT expressions. The rewritten HAVING clause (if
-             * any) may then be then be trivially evaluated. If the solution is
-             * not dropped, then only the SELECTed variables are projected out.
-             */
-            final IBindingSet aggregates = new ListBindingSet();
-
-            /**
-             * Propagate GROUP_BY expression onto [aggregates]. 
-             */
-            if (groupBy != null) {
-
-                // The first solution in the group (must exist since the
-                // group was observed).
-                final IBindingSet aSolution = solutions.iterator().next();
-
-                for (IValueExpression<?> expr : groupBy) {
-
-                    if (expr instanceof IVariable<?>) {
-
-                        /**
-                         * Propagate bare variable used in GROUP_BY clause to
-                         * [aggregates].
-                         * 
-                         * <pre>
-                         * GROUP BY ?x
-                         * </pre>
-                         */
-
-                        final IVariable<?> var = (IVariable<?>) expr;
-
-                        // Note: MUST be a binding for each groupBy var.
-                        @SuppressWarnings({ "rawtypes", "unchecked" })
-                        final Constant<?> val = new Constant(var.get(aSolution));
-
-                        // Bind on [aggregates].
-                        aggregates.set(var, val);
-
-                    } else if (expr instanceof IBind<?>) {
-
-                        /**
-                         * Propagate BIND declared by GROUP_BY clause to
-                         * [aggregates].
-                         * 
-                         * <pre>
-                         * GROUP BY (2*?y as ?x)
-                         * </pre>
-                         */
-
-                        final IBind<?> bindExpr = (IBind<?>) expr;
-
-                        // Compute value expression.
-                        // Note: MUST be valid since group exists.
-                        @SuppressWarnings({ "rawtypes", "unchecked" })
-                        final Constant<?> val = new Constant(
-                                bindExpr.get(aSolution));
-
-                        // Variable to be projected out by SELECT.
-                        final IVariable<?> ovar = ((IBind<?>) expr).getVar();
-
-                        // Bind on [aggregates].
-                        aggregates.set(ovar, val);
+            // The first solution in the group (must exist since the
+            // group was observed).
+            final IBindingSet aSolution = solutions.iterator().next();
 
-                    }
+            propagateGroupBy(groupBy, aSolution, aggregates);
 
-                } // next GROUP_BY value expression
-
-            } // if(groupBy != null)
-
-            /**
-             * Compute the aggregates.
-             * 
-             * TODO This can be further optimized by computing the column
-             * projections of the different value expressions exactly once and
-             * then applying the aggregation functions to those column
-             * projections. As long as we adhere to the dependency ordering
-             * among those aggregates, we can compute them all in a single pass
-             * over the column projections.
-             * 
-             * TODO DISTINCT projections of columns projections can be modeled
-             * in a bunch of different ways, but if we need the original column
-             * projection as well as the DISTINCT of that column projection then
-             * it makes sense to either form the DISTINCT projection while
-             * building the column projection or as an after action.
-             */
-            {
-
-                final boolean nestedAggregates = groupByState.isNestedAggregates();
-                
-                final Iterator<Map.Entry<IAggregate<?>, IVariable<?>>> itr = rewrite
-                        .getAggExpr().entrySet().iterator();
+        } // if(groupBy != null)
 
-                while (itr.hasNext()) {
-                
-                    final Map.Entry<IAggregate<?>, IVariable<?>> e = itr.next();
-                    
-                    // Aggregate.
-                    doAggregate(e.getKey(), e.getValue(), nestedAggregates,
-                            aggregates, solutions, stats);
-                    
-                }
+        /**
+         * Compute the aggregates.
+         * 
+         * TODO This can be further optimized by computing the column
+         * projections of the different value expressions exactly once and
+         * then applying the aggregation functions to those column
+         * projections. As long as we adhere to the dependency ordering
+         * among those aggregates, we can compute them all in a single pass
+         * over the column projections.
+         * 
+         * TODO DISTINCT projections of columns projections can be modeled
+         * in a bunch of different ways, but if we need the original column
+         * projection as well as the DISTINCT of that column projection then
+         * it makes sense to either form the DISTINCT projection while
+         * building the column projection or as an after action.
+         */
+        {
+
+            final boolean nestedAggregates = groupByState.isNestedAggregates();
+            
+            final Iterator<Map.Entry<IAggregate<?>, IVariable<?>>> itr = rewrite
+                    .getAggExpr().entrySet().iterator();
+
+            while (itr.hasNext()) {
+            
+                final Map.Entry<IAggregate<?>, IVariable<?>> e = itr.next();
                 
-                if (log.isTraceEnabled())
-                    log.trace("aggregates: " + aggregates);
+                // Aggregate.
+                doAggregate(e.getKey(), e.getValue(), nestedAggregates,
+                        aggregates, solutions, stats);
                 
             }
+            
+            if (log.isTraceEnabled())
+                log.trace("aggregates: " + aggregates);
+            
+        }
 
-            // Evaluate SELECT expressions.
-            for (IValueExpression<?> expr : rewrite.getSelect2()) {
+        return finish(aggregates, groupByState, rewrite, stats);
 
-                try {
-                    expr.get(aggregates);
-                } catch (SparqlTypeErrorException ex) {
-                    TypeErrorLog.handleTypeError(ex, expr, stats);
-                    continue;
-                } catch (IllegalArgumentException ex) {
-                    /*
-                     * Note: This is a hack turning an IllegalArgumentException
-                     * which we presume is coming out of new Constant(null) into
-                     * an (implicit) SPARQL type error so we can drop the
-                     * binding for this SELECT expression. (Note that we are not
-                     * trying to drop the entire group!)
-                     */
-                    TypeErrorLog.handleTypeError(ex, expr, stats);
-                    continue;
-                }
+    }
+
+    /**
+     * Propagate any bare variables and any BINDs in the GROUP BY clause onto
+     * the intermediate solution for a group.
+     * <p>
+     * Note: This is also used by the {@link HTreeGroupByOp}.
+     * 
+     * @param groupBy
+     *            The GROUP BY value expressions.
+     * @param aSolution
+     *            Some solution in the group.
+     * @param aggregates
+     *            The intermediate solution for the group.
+     */
+    static void propagateGroupBy(final IValueExpression<?>[] groupBy,
+            final IBindingSet aSolution, final IBindingSet aggregates) {
+
+        for (IValueExpression<?> expr : groupBy) {
+
+            if (expr instanceof IVariable<?>) {
+
+                /**
+                 * Propagate bare variable used in GROUP_BY clause to
+                 * [aggregates].
+                 * 
+                 * <pre>
+                 * GROUP BY ?x
+                 * </pre>
+                 */
+
+                final IVariable<?> var = (IVariable<?>) expr;
+
+                // Note: MUST be a binding for each groupBy var.
+                @SuppressWarnings({ "rawtypes", "unchecked" })
+                final Constant<?> val = new Constant(var.get(aSolution));
+
+                // Bind on [aggregates].
+                aggregates.set(var, val);
+
+            } else if (expr instanceof IBind<?>) {
+
+                /**
+                 * Propagate BIND declared by GROUP_BY clause to
+                 * [aggregates].
+                 * 
+                 * <pre>
+                 * GROUP BY (2*?y as ?x)
+                 * </pre>
+                 */
+
+                final IBind<?> bindExpr = (IBind<?>) expr;
+
+                // Compute value expression.
+                // Note: MUST be valid since group exists.
+                @SuppressWarnings({ "rawtypes", "unchecked" })
+                final Constant<?> val = new Constant(
+                        bindExpr.get(aSolution));
+
+                // Variable to be projected out by SELECT.
+                final IVariable<?> ovar = ((IBind<?>) expr).getVar();
+
+                // Bind on [aggregates].
+                aggregates.set(ovar, val);
 
             }
 
-            /*
-             * Verify optional constraint(s).
-             * 
-             * TODO This could be done before fully computing the aggregates as
-             * we only need to have on hand those computed aggregates on which
-             * the HAVING clause depends.
-             */
-            {
-                final boolean drop;
-                final IConstraint[] having2 = rewrite.getHaving2();
-                if (having2 != null
-                        && !BOpUtility.isConsistent(having2, aggregates)) {
-                    // drop this solution.
-                    drop = true;
-                } else {
-                    drop = false;
-                }
+        } // next GROUP_BY value expression
 
-                if (log.isInfoEnabled())
-                    log.info((drop ? "drop" : "keep") + " : " + aggregates);
+    }
 
-                if (drop) {
+    /**
+     * Evaluate the (rewritten) SELECT expressions and the optional HAVING
+     * constraint(s) once the aggregates for a group have been bound on its
+     * intermediate solution.
+     * <p>
+     * Note: This is also used by the {@link HTreeGroupByOp}.
+     * 
+     * @param aggregates
+     *            The intermediate solution for the group.
+     * @param groupByState
+     *            The {@link IGroupByState}.
+     * @param rewrite
+     *            The {@link IGroupByRewriteState}.
+     * @param stats
+     *            Used to report type errors.
+     * 
+     * @return The aggregate solution -or- <code>null</code> if the solution
+     *         for the group was dropped (violated HAVING constraint).
+     */
+    static IBindingSet finish(final IBindingSet aggregates,
+            final IGroupByState groupByState,
+            final IGroupByRewriteState rewrite, final BOpStats stats) {
+
+        // Evaluate SELECT expressions.
+        for (IValueExpression<?> expr : rewrite.getSelect2()) {
+
+            try {
+                expr.get(aggregates);
+            } catch (SparqlTypeErrorException ex) {
+                TypeErrorLog.handleTypeError(ex, expr, stats);
+                continue;
+            } catch (IllegalArgumentException ex) {
+                /*
+                 * Note: This is a hack turning an IllegalArgumentException
+                 * which we presume is coming out of new Constant(null) into
+                 * an (implicit) SPARQL type error so we can drop the
+                 * binding for this SELECT expression. (Note that we are not
+                 * trying to drop the entire group!)
+                 */
+                TypeErrorLog.handleTypeError(ex, expr, stats);
+                continue;
+            }
 
-                    // Drop this solution.
-                    return null;
+        }
 
-                }
+        /*
+         * Verify optional constraint(s).
+         * 
+         * TODO This could be done before fully computing the aggregates as
+         * we only need to have on hand those computed aggregates on which
+         * the HAVING clause depends.
+         */
+        {
+            final boolean drop;
+            final IConstraint[] having2 = rewrite.getHaving2();
+            if (having2 != null
+                    && !BOpUtility.isConsistent(having2, aggregates)) {
+                // drop this solution.
+                drop = true;
+            } else {
+                drop = false;
             }
 
-            // project out only selected variables.
-            final IBindingSet out = aggregates.copy(groupByState
-                    .getSelectVars().toArray(new IVariable[0]));
+            if (log.isInfoEnabled())
+                log.info((drop ? "drop" : "keep") + " : " + aggregates);
+
+            if (drop) {
 
-            return out;
+                // Drop this solution.
+                return null;
 
+            }
         }
 
-    } // GroupByTask
+        // project out only selected variables.
+        final IBindingSet out = aggregates.copy(groupByState
+                .getSelectVars().toArray(new IVariable<?>[0]));
+
+        return out;
+
+    }
 
     /**
      * Apply the value expression to each solution in the group.
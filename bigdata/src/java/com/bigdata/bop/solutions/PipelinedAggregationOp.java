@@ -852,6 +852,8 @@ public class PipelinedAggregationOp extends GroupByOp {
      * <p>
      * Note: The {@link IAggregate} instances MUST be distinct within each group
      * to avoid side-effects across groups.
+     * <p>
+     * Note: This is also used by the {@link HTreeGroupByOp}.
      * 
      * @param aggExpr
      *            The aggregate expressions to be evaluated.
@@ -860,7 +862,7 @@ public class PipelinedAggregationOp extends GroupByOp {
      * @param stats
      *            Used to report type errors.
      */
-    static private void doAggregate(
+    static void doAggregate(
             final LinkedHashMap<IAggregate<?>, IVariable<?>> aggExpr,
             final IBindingSet bset,
             final BOpStats stats) {
@@ -897,13 +899,15 @@ public class PipelinedAggregationOp extends GroupByOp {
      * implicit group formed from all solutions when no GROUP_BY was given).
      * This invokes {@link IAggregate#done()} on each {@link IAggregate} in turn
      * and binds any non-<code>null</code> results onto <i>aggregates</i>.
+     * <p>
+     * Note: This is also used by the {@link HTreeGroupByOp}.
      * 
      * @param aggExpr
      *            The aggregate expressions to be evaluated.
      * @param aggregates
      *            The binding set where the aggregates will become bound.
      */
-    static private void finalizeAggregates(
+    static void finalizeAggregates(
             final LinkedHashMap<IAggregate<?>, IVariable<?>> aggExpr,
             final IBindingSet aggregates,
             final BOpStats stats) {
@@ -0,0 +1,565 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+package com.bigdata.bop.solutions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.IBind;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IQueryAttributes;
+import com.bigdata.bop.IValueExpression;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.engine.IRunningQuery;
+import com.bigdata.rdf.error.SparqlTypeErrorException;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * An ORDER BY operator fused with an OFFSET/LIMIT (aka Top-K). Rather than
+ * buffering all solutions and sorting them, this operator maintains a bounded
+ * priority queue containing the best <code>k := offset + limit</code>
+ * as-bound solutions seen so far. The head of the queue is the worst solution
+ * which is retained. Each new solution is compared against that head and is
+ * dropped immediately unless it would displace it. Thus the memory demand is
+ * <code>O(k)</code> regardless of the #of source solutions and the cost of
+ * processing a solution which can not make it into the result is a single
+ * comparison.
+ * <p>
+ * As for the {@link MemorySortOp}, the value expressions for the
+ * {@link ISortOrder}s are evaluated as the solutions arrive, solutions with
+ * type errors are dropped, and value expressions more complex than a variable
+ * or a constant must be wrapped by an {@link IBind}. Inline {@link IV}s are
+ * compared directly by the {@link IVComparator} without materialization.
+ * Non-inline {@link IV}s must have been materialized.
+ * <p>
+ * Once the last chunk of source solutions has been observed, the retained
+ * solutions are sorted, the first <i>offset</i> solutions are skipped, and the
+ * remaining (at most <i>limit</i>) solutions are written onto the sink. Ties
+ * are broken in favor of the solution which arrived first, so the result is
+ * the same as a stable sort followed by a {@link SliceOp}.
+ *
+ * @see MemorySortOp
+ * @see SliceOp
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TopKSortOp extends SortOp {
+
+    private static final transient Logger log = Logger
+            .getLogger(TopKSortOp.class);
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    public interface Annotations extends SortOp.Annotations {
+
+        /**
+         * The first solution to be returned to the caller (origin ZERO).
+         */
+        String OFFSET = TopKSortOp.class.getName() + ".offset";
+
+        long DEFAULT_OFFSET = 0L;
+
+        /**
+         * The maximum #of solutions to be returned to the caller (required).
+         * The sum of the {@link #OFFSET} and the {@link #LIMIT} is the #of
+         * solutions retained by the operator and may not exceed
+         * {@link TopKSortOp#MAX_K}.
+         */
+        String LIMIT = TopKSortOp.class.getName() + ".limit";
+
+    }
+
+    /**
+     * The maximum value for <code>offset + limit</code>.
+     */
+    public static final long MAX_K = Integer.MAX_VALUE - 8;
+
+    /**
+     * Constructor required for {@link com.bigdata.bop.BOpUtility#deepCopy(FilterNode)}.
+     */
+    public TopKSortOp(final TopKSortOp op) {
+        super(op);
+    }
+
+    /**
+     * Required shallow copy constructor.
+     */
+    public TopKSortOp(final BOp[] args, final Map<String, Object> annotations) {
+
+        super(args, annotations);
+
+        switch (getEvaluationContext()) {
+        case CONTROLLER:
+            break;
+        default:
+            throw new UnsupportedOperationException(
+                    Annotations.EVALUATION_CONTEXT + "="
+                            + getEvaluationContext());
+        }
+
+        if (getMaxParallel() != 1)
+            throw new UnsupportedOperationException(Annotations.MAX_PARALLEL
+                    + "=" + getMaxParallel());
+
+        if (!isLastPassRequested()) {
+            throw new UnsupportedOperationException(Annotations.LAST_PASS
+                    + "=" + isLastPassRequested());
+        }
+
+        // ORDER_BY must preserve order.
+        if (isReorderSolutions())
+            throw new UnsupportedOperationException(
+                    Annotations.REORDER_SOLUTIONS + "=" + isReorderSolutions());
+
+        final long offset = getOffset();
+
+        if (offset < 0)
+            throw new IllegalArgumentException(Annotations.OFFSET + "="
+                    + offset);
+
+        final long limit = getLimit();
+
+        if (limit < 0)
+            throw new IllegalArgumentException(Annotations.LIMIT + "=" + limit);
+
+        if (limit > MAX_K - offset)
+            throw new IllegalArgumentException(Annotations.OFFSET + "="
+                    + offset + ", " + Annotations.LIMIT + "=" + limit);
+
+        // required parameter.
+        getValueComparator();
+
+        // validate required parameter.
+        for (ISortOrder<?> s : getSortOrder()) {
+
+            final IValueExpression<?> expr = s.getExpr();
+
+            if (expr instanceof IVariableOrConstant<?>)
+                continue;
+
+            if (expr instanceof IBind<?>)
+                continue;
+
+            throw new IllegalArgumentException(
+                    "Value expression not wrapped by bind: " + expr);
+
+        }
+
+    }
+
+    public TopKSortOp(final BOp[] args, final NV... annotations) {
+
+        this(args, NV.asMap(annotations));
+
+    }
+
+    /**
+     * @see Annotations#OFFSET
+     */
+    public long getOffset() {
+
+        return getProperty(Annotations.OFFSET, Annotations.DEFAULT_OFFSET);
+
+    }
+
+    /**
+     * @see Annotations#LIMIT
+     */
+    public long getLimit() {
+
+        return (Long) getRequiredProperty(Annotations.LIMIT);
+
+    }
+
+    @Override
+    public FutureTask<Void> eval(final BOpContext<IBindingSet> context) {
+
+        return new FutureTask<Void>(new TopKTask(this, context));
+
+    }
+
+    /**
+     * A retained solution together with its arrival order.
+     */
+    private static class Entry {
+
+        final IBindingSet bset;
+
+        final long seq;
+
+        Entry(final IBindingSet bset, final long seq) {
+            this.bset = bset;
+            this.seq = seq;
+        }
+
+    }
+
+    /**
+     * Orders {@link Entry}s by the as-bound values of the solutions and then
+     * by their arrival order.
+     */
+    private static class EntryComparator implements Comparator<Entry> {
+
+        private final Comparator<IBindingSet> comparator;
+
+        EntryComparator(final Comparator<IBindingSet> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        public int compare(final Entry o1, final Entry o2) {
+
+            final int ret = comparator.compare(o1.bset, o2.bset);
+
+            if (ret != 0)
+                return ret;
+
+            return o1.seq < o2.seq ? -1 : o1.seq > o2.seq ? 1 : 0;
+
+        }
+
+    }
+
+    /**
+     * The state of the operator. This is stored on the
+     * {@link IQueryAttributes} since the operator is invoked once per chunk of
+     * source solutions.
+     */
+    private static class TopKState {
+
+        /**
+         * The retained solutions. The head of the queue is the worst retained
+         * solution.
+         */
+        final PriorityQueue<Entry> queue;
+
+        /**
+         * The #of solutions accepted to date. This is used to assign the
+         * arrival order.
+         */
+        long nseen = 0L;
+
+        TopKState(final int capacity, final Comparator<Entry> c) {
+
+            // Note: reverse order so the worst solution is at the head.
+            this.queue = new PriorityQueue<Entry>(Math.max(1, capacity),
+                    Collections.reverseOrder(c));
+
+        }
+
+    }
+
+    /**
+     * Task executing on the node.
+     */
+    static private class TopKTask implements Callable<Void> {
+
+        private final BOpContext<IBindingSet> context;
+
+        private final BOpStats stats;
+
+        private final ISortOrder<?>[] sortOrder;
+
+        private final EntryComparator comparator;
+
+        private final long offset;
+
+        private final long limit;
+
+        /**
+         * The #of solutions to be retained.
+         */
+        private final int k;
+
+        /**
+         * The {@link IQueryAttributes} for the {@link IRunningQuery} off which
+         * we will hang the operator state.
+         */
+        private final IQueryAttributes attrs;
+
+        /**
+         * The name of the key under which the {@link #state} is stored in the
+         * {@link IQueryAttributes}.
+         */
+        private final String key;
+
+        private transient TopKState state;
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        TopKTask(final TopKSortOp op, final BOpContext<IBindingSet> context) {
+
+            this.context = context;
+
+            this.stats = context.getStats();
+
+            this.sortOrder = op.getSortOrder();
+
+            this.comparator = new EntryComparator(new BindingSetComparator(
+                    sortOrder, op.getValueComparator()));
+
+            this.offset = op.getOffset();
+
+            this.limit = op.getLimit();
+
+            this.k = (int) (offset + limit);
+
+            this.attrs = context.getQueryAttributes();
+
+            this.key = Integer.toString(op.getId());
+
+            TopKState state = (TopKState) attrs.get(key);
+
+            if (state == null) {
+
+                /*
+                 * Note: The initial capacity is bounded since [k] is often much
+                 * larger than the #of solutions actually observed.
+                 */
+                state = new TopKState(Math.min(k + 1, 1000), comparator);
+
+                if (attrs.putIfAbsent(key, state) != null)
+                    throw new AssertionError();
+
+            }
+
+            this.state = state;
+
+        }
+
+        void release() {
+
+            if (log.isInfoEnabled())
+                log.info("Releasing state");
+
+            attrs.remove(key);
+
+            state = null;
+
+        }
+
+        @Override
+        public Void call() throws Exception {
+
+            final ICloseableIterator<IBindingSet[]> itr = context.getSource();
+
+            final IBlockingBuffer<IBindingSet[]> sink = context.getSink();
+
+            final boolean lastInvocation = context.isLastInvocation();
+
+            try {
+
+                acceptSolutions(itr);
+
+                if (lastInvocation) {
+
+                    doTopK(sink);
+
+                }
+
+            } catch (Throwable t) {
+
+                log.error(t, t);
+
+                throw new RuntimeException(t);
+
+            } finally {
+
+                if (lastInvocation) {
+
+                    // Discard the operator's internal state.
+                    release();
+
+                }
+
+                sink.close();
+
+            }
+
+            // Done.
+            return null;
+
+        }
+
+        /**
+         * Evaluate the value expressions for each input solution, drop any
+         * solution for which there is a type error, and retain the as-bound
+         * solution iff it is among the best <i>k</i> solutions seen so far.
+         *
+         * @param itr
+         *            The source solutions.
+         */
+        private void acceptSolutions(
+                final ICloseableIterator<IBindingSet[]> itr) {
+
+            final PriorityQueue<Entry> queue = state.queue;
+
+            long ndropped = 0L;
+
+            try {
+
+                while (itr.hasNext()) {
+
+                    final IBindingSet[] a = itr.next();
+
+                    stats.chunksIn.increment();
+                    stats.unitsIn.add(a.length);
+
+                    if (k == 0) {
+
+                        // Nothing will be retained.
+                        continue;
+
+                    }
+
+                    for (IBindingSet bset : a) {
+
+                        // Note: Necessary scope for type error reporting.
+                        IValueExpression<?> expr = null;
+
+                        try {
+
+                            for (ISortOrder<?> s : sortOrder) {
+
+                                /*
+                                 * Evaluate. A BIND() will have side-effect on
+                                 * [bset].
+                                 */
+                                (expr = s.getExpr()).get(bset);
+
+                            }
+
+                        } catch (SparqlTypeErrorException ex) {
+
+                            // drop solution with type error.
+                            TypeErrorLog.handleTypeError(ex, expr, stats);
+
+                            continue;
+
+                        }
+
+                        final Entry e = new Entry(bset, state.nseen++);
+
+                        if (queue.size() < k) {
+
+                            queue.add(e);
+
+                        } else if (comparator.compare(e, queue.peek()) < 0) {
+
+                            // Displace the worst retained solution.
+                            queue.poll();
+
+                            queue.add(e);
+
+                        } else {
+
+                            // Can not be in the top-k.
+                            ndropped++;
+
+                        }
+
+                    } // next source solution
+
+                }
+
+                if (log.isInfoEnabled())
+                    log.info("Retained " + queue.size() + " solutions, seen="
+                            + state.nseen + ", dropped=" + ndropped);
+
+            } finally {
+
+                itr.close();
+
+            }
+
+        } // acceptSolutions
+
+        /**
+         * Sort the retained solutions and write out the slice.
+         *
+         * @param sink
+         *            Where to write the results.
+         */
+        private void doTopK(final IBlockingBuffer<IBindingSet[]> sink) {
+
+            final Entry[] all = state.queue.toArray(new Entry[state.queue
+                    .size()]);
+
+            state.queue.clear();
+
+            Arrays.sort(all, comparator);
+
+            if (offset >= all.length) {
+
+                // Nothing in the slice.
+                sink.flush();
+
+                return;
+
+            }
+
+            final int n = (int) Math.min(limit, all.length - offset);
+
+            final IBindingSet[] a = new IBindingSet[n];
+
+            for (int i = 0; i < n; i++) {
+
+                final IBindingSet bset = a[i] = all[(int) offset + i].bset;
+
+                // Drop variables for computed value expressions.
+                for (ISortOrder<?> s : sortOrder) {
+                    final IValueExpression<?> expr = s.getExpr();
+                    if (expr instanceof IBind) {
+                        bset.clear(((IBind<?>) expr).getVar());
+                    }
+                }
+
+            }
+
+            // write output and flush.
+            sink.add(a);
+            sink.flush();
+
+        }
+
+    } // TopKTask
+
+}
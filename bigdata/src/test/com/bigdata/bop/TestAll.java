@@ -117,6 +117,9 @@ public class TestAll extends TestCase {
         // join graph processing (RTO, etc).
         suite.addTest(com.bigdata.bop.joinGraph.TestAll.suite());
 
+        // property paths.
+        suite.addTest(com.bigdata.bop.paths.TestAll.suite());
+
         /*
          * Note: This is tested later once we have gone through the core unit
          * tests for the services.
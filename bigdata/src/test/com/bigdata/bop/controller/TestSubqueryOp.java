@@ -58,6 +58,7 @@ import com.bigdata.bop.engine.AbstractQueryEngineTestCase;
 import com.bigdata.bop.engine.BOpStats;
 import com.bigdata.bop.engine.IRunningQuery;
 import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.engine.WorkStealingRunningQuery;
 import com.bigdata.bop.join.JoinTypeEnum;
 import com.bigdata.bop.join.PipelineJoin;
 import com.bigdata.bop.solutions.SliceOp;
@@ -742,6 +743,185 @@ public class TestSubqueryOp extends AbstractSubqueryTestCase {
 
     }
 
+    /**
+     * Variant of {@link #test_query_join2_optionals()} in which the query and
+     * the subquery are run using {@link WorkStealingRunningQuery}. The
+     * {@link SubqueryOp} blocks a worker while it waits for each subquery, so
+     * this verifies that the pool does not deadlock when the operator tasks
+     * block.
+     */
+    public void test_query_join2_optionals_workStealing() throws Exception {
+
+        // main query
+        final int startId = 1; // 
+        final int joinId1 = 2; //         : base join group.
+        final int predId1 = 3; // (a b)
+        final int joinGroup1 = 9;
+        final int sliceId = 8; // 
+
+        // subquery
+        final int joinId2 = 4; //         : joinGroup1
+        final int predId2 = 5; // (b c)   
+        final int joinId3 = 6; //         : joinGroup1
+        final int predId3 = 7; // (c d)
+
+        final IVariable<?> a = Var.var("a");
+        final IVariable<?> b = Var.var("b");
+        final IVariable<?> c = Var.var("c");
+        final IVariable<?> d = Var.var("d");
+
+        final PipelineOp startOp = new StartOp(new BOp[] {},
+                NV.asMap(new NV[] {//
+                        new NV(Predicate.Annotations.BOP_ID, startId),//
+                        new NV(SliceOp.Annotations.EVALUATION_CONTEXT,
+                                BOpEvaluationContext.CONTROLLER),//
+                        }));
+        
+        final Predicate<?> pred1Op = new Predicate<E>(
+                new IVariableOrConstant[] { a, b }, NV
+                .asMap(new NV[] {//
+                        new NV(Predicate.Annotations.RELATION_NAME,
+                                new String[] { namespace }),//
+                        new NV(Predicate.Annotations.BOP_ID, predId1),//
+                        new NV(Annotations.TIMESTAMP, ITx.READ_COMMITTED),//
+                }));
+        
+        final Predicate<?> pred2Op = new Predicate<E>(
+                new IVariableOrConstant[] { b, c }, NV
+                .asMap(new NV[] {//
+                        new NV(Predicate.Annotations.RELATION_NAME,
+                                new String[] { namespace }),//
+                        new NV(Predicate.Annotations.BOP_ID, predId2),//
+                        new NV(Annotations.TIMESTAMP, ITx.READ_COMMITTED),//
+                }));
+        
+        final Predicate<?> pred3Op = new Predicate<E>(
+                new IVariableOrConstant[] { c, d }, NV
+                .asMap(new NV[] {//
+                        new NV(Predicate.Annotations.RELATION_NAME,
+                                new String[] { namespace }),//
+                        new NV(Predicate.Annotations.BOP_ID, predId3),//
+                        new NV(Annotations.TIMESTAMP, ITx.READ_COMMITTED),//
+                }));
+        
+        final PipelineOp join1Op = new PipelineJoin<E>(//
+                new BOp[]{startOp},// 
+                        new NV(Predicate.Annotations.BOP_ID, joinId1),//
+                        new NV(PipelineJoin.Annotations.PREDICATE,pred1Op));
+
+        final PipelineOp subQuery;
+        {
+        final PipelineOp join2Op = new PipelineJoin<E>(//
+                new BOp[] { },//
+                new NV(Predicate.Annotations.BOP_ID, joinId2),//
+                new NV(PipelineJoin.Annotations.PREDICATE, pred2Op)//
+                );
+
+        final PipelineOp join3Op = new PipelineJoin<E>(//
+                new BOp[] { join2Op },//
+                new NV(Predicate.Annotations.BOP_ID, joinId3),//
+                new NV(PipelineJoin.Annotations.PREDICATE, pred3Op),//
+                new NV(QueryEngine.Annotations.RUNNING_QUERY_CLASS,
+                        WorkStealingRunningQuery.class.getName())//
+                );
+        subQuery = join3Op;
+        }
+
+        final PipelineOp joinGroup1Op = new SubqueryOp(new BOp[]{join1Op}, 
+                new NV(Predicate.Annotations.BOP_ID, joinGroup1),//
+                new NV(SubqueryOp.Annotations.SUBQUERY, subQuery),//
+                // join is optional.
+                new NV(SubqueryOp.Annotations.JOIN_TYPE, JoinTypeEnum.Optional)//
+        );
+        
+        final PipelineOp sliceOp = new SliceOp(//
+                new BOp[]{joinGroup1Op},
+                NV.asMap(new NV[] {//
+                        new NV(BOp.Annotations.BOP_ID, sliceId),//
+                        new NV(BOp.Annotations.EVALUATION_CONTEXT,
+                                BOpEvaluationContext.CONTROLLER),//
+                        new NV(PipelineOp.Annotations.SHARED_STATE,true),//
+                        new NV(PipelineOp.Annotations.REORDER_SOLUTIONS,false),//
+                        new NV(QueryEngine.Annotations.RUNNING_QUERY_CLASS,
+                                WorkStealingRunningQuery.class.getName())//
+                        }));
+
+        final PipelineOp query = sliceOp;
+
+        final IRunningQuery runningQuery = queryEngine.eval(UUID.randomUUID(),
+                query, new ListBindingSet());
+
+        assertTrue(runningQuery instanceof WorkStealingRunningQuery);
+
+        // the expected solutions.
+        final IBindingSet[] expected = new IBindingSet[] {//
+        // four solutions where the optional join succeeds.
+        new ListBindingSet(//
+                new IVariable[] { a, b, c, d },//
+                new IConstant[] { new Constant<String>("Paul"),
+                        new Constant<String>("Mary"),
+                        new Constant<String>("Brad"),
+                        new Constant<String>("Fred") }//
+        ),
+        new ListBindingSet(//
+                new IVariable[] { a, b, c, d },//
+                new IConstant[] { new Constant<String>("Paul"),
+                        new Constant<String>("Mary"),
+                        new Constant<String>("Brad"),
+                        new Constant<String>("Leon") }//
+        ),
+        new ListBindingSet(//
+                new IVariable[] { a, b, c, d },//
+                new IConstant[] { new Constant<String>("John"),
+                        new Constant<String>("Mary"),
+                        new Constant<String>("Brad"),
+                        new Constant<String>("Fred") }//
+        ),
+        new ListBindingSet(//
+                new IVariable[] { a, b, c, d },//
+                new IConstant[] { new Constant<String>("John"),
+                        new Constant<String>("Mary"),
+                        new Constant<String>("Brad"),
+                        new Constant<String>("Leon") }//
+        ),
+        // plus anything we read from the first access path which did not 
+        // pass the optional join
+        new ListBindingSet(//
+                new IVariable[] { a, b },//
+                new IConstant[] { new Constant<String>("Paul"),
+                        new Constant<String>("Brad") }//
+        ),
+        new ListBindingSet(//
+                new IVariable[] { a, b },//
+                new IConstant[] { new Constant<String>("John"),
+                        new Constant<String>("Brad") }//
+        ),
+        new ListBindingSet(//
+                new IVariable[] { a, b },//
+                new IConstant[] { new Constant<String>("Mary"),
+                        new Constant<String>("Brad") }//
+        ),
+        new ListBindingSet(//
+                new IVariable[] { a, b },//
+                new IConstant[] { new Constant<String>("Brad"),
+                        new Constant<String>("Fred") }//
+        ),
+        new ListBindingSet(//
+                new IVariable[] { a, b },//
+                new IConstant[] { new Constant<String>("Brad"),
+                        new Constant<String>("Leon") }//
+        )
+        };
+
+        AbstractQueryEngineTestCase.assertSameSolutionsAnyOrder(expected,
+                runningQuery);
+
+        assertTrue(runningQuery.isDone());
+        assertFalse(runningQuery.isCancelled());
+        runningQuery.get(); // verify nothing thrown.
+
+    }
+
     /**
      * Unit test for optional join group with a filter. Three joins are used and
      * target a {@link SliceOp}. The 2nd and 3rd joins are embedded in an
@@ -219,6 +219,14 @@ public class MockRunningQuery implements IRunningQuery {
         
     }
 
+    @Override
+    public QueryMemoryAccount getMemoryAccount() {
+        return memoryAccount;
+    }
+
+    private final QueryMemoryAccount memoryAccount = new QueryMemoryAccount(
+            null/* parent */, 0L/* budget */);
+
     @Override
     public IQueryAttributes getAttributes() {
 
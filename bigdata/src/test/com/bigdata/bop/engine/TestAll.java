@@ -99,6 +99,18 @@ public class TestAll extends TestCase {
         // test suite for query deadline ordering semantics.
         suite.addTestSuite(TestQueryDeadlineOrder.class);
 
+        // test suite for the query plan cache.
+        suite.addTestSuite(TestQueryPlanCache.class);
+
+        // test suite for the work stealing pool.
+        suite.addTestSuite(TestWorkStealingExecutor.class);
+
+        // test suite for per-query memory accounting.
+        suite.addTestSuite(TestQueryMemoryAccount.class);
+
+        // test suite for query admission control.
+        suite.addTestSuite(TestQueryAdmissionController.class);
+
         // test suite for query evaluation (basic JOINs).
         suite.addTestSuite(TestQueryEngine.class);
 
@@ -0,0 +1,311 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase2;
+
+/**
+ * Test suite for the {@link QueryAdmissionController}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestQueryAdmissionController extends TestCase2 {
+
+    public TestQueryAdmissionController() {
+
+    }
+
+    public TestQueryAdmissionController(final String name) {
+        super(name);
+    }
+
+    /**
+     * Queries are admitted immediately when the #of running queries is not
+     * bounded.
+     */
+    public void test_unbounded() throws InterruptedException {
+
+        final QueryAdmissionController c = new QueryAdmissionController(
+                new QueryEngineCounters());
+
+        for (int i = 0; i < 100; i++) {
+
+            c.admit(QueryPriority.Batch, 0L/* timeout */);
+
+        }
+
+        assertEquals(100, c.getRunningCount());
+
+        assertEquals(0, c.getQueuedCount());
+
+    }
+
+    /**
+     * A query waits until a running query is released.
+     */
+    public void test_waitForRelease() throws InterruptedException {
+
+        final QueryAdmissionController c = new QueryAdmissionController(
+                new QueryEngineCounters());
+
+        c.setMaxRunning(1);
+
+        c.admit(QueryPriority.Interactive, 0L/* timeout */);
+
+        final CountDownLatch admitted = new CountDownLatch(1);
+
+        final Thread t = new Thread() {
+            public void run() {
+                try {
+                    c.admit(QueryPriority.Interactive, Long.MAX_VALUE);
+                    admitted.countDown();
+                } catch (InterruptedException ex) {
+                    // ignore.
+                }
+            }
+        };
+
+        t.start();
+
+        awaitQueued(c, 1);
+
+        assertEquals(1, admitted.getCount());
+
+        c.release();
+
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, c.getRunningCount());
+
+        assertEquals(0, c.getQueuedCount());
+
+    }
+
+    /**
+     * Waiting interactive queries are admitted before waiting batch queries.
+     */
+    public void test_priority() throws InterruptedException {
+
+        final QueryAdmissionController c = new QueryAdmissionController(
+                new QueryEngineCounters());
+
+        c.setMaxRunning(1);
+
+        c.admit(QueryPriority.Interactive, 0L/* timeout */);
+
+        final List<QueryPriority> order = new CopyOnWriteArrayList<QueryPriority>();
+
+        final CountDownLatch done = new CountDownLatch(2);
+
+        final Thread batch = newWaiter(c, QueryPriority.Batch, order, done);
+
+        batch.start();
+
+        awaitQueued(c, 1);
+
+        final Thread interactive = newWaiter(c, QueryPriority.Interactive,
+                order, done);
+
+        interactive.start();
+
+        awaitQueued(c, 2);
+
+        // Release the running query. The interactive query runs next.
+        c.release();
+
+        awaitQueued(c, 1);
+
+        final long deadline = System.currentTimeMillis() + 5000;
+
+        while (done.getCount() != 1) {
+
+            if (System.currentTimeMillis() > deadline)
+                fail("Interactive query did not run.");
+
+            Thread.sleep(5);
+
+        }
+
+        // Release the interactive query. The batch query runs next.
+        c.release();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(QueryPriority.Interactive, order.get(0));
+
+        assertEquals(QueryPriority.Batch, order.get(1));
+
+    }
+
+    /**
+     * A query is rejected if the wait queue is full.
+     */
+    public void test_queueFull() throws InterruptedException {
+
+        final QueryEngineCounters counters = new QueryEngineCounters();
+
+        final QueryAdmissionController c = new QueryAdmissionController(
+                counters);
+
+        c.setMaxRunning(1);
+
+        c.setMaxQueued(1);
+
+        c.admit(QueryPriority.Interactive, 0L/* timeout */);
+
+        final Thread t = newWaiter(c, QueryPriority.Interactive,
+                new CopyOnWriteArrayList<QueryPriority>(), new CountDownLatch(
+                        1));
+
+        t.start();
+
+        awaitQueued(c, 1);
+
+        try {
+            c.admit(QueryPriority.Interactive, Long.MAX_VALUE);
+            fail("Expecting: " + QueryAdmissionException.class);
+        } catch (QueryAdmissionException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        assertEquals(1L, counters.admissionRejectedCount.get());
+
+        c.release();
+
+        t.join(5000);
+
+    }
+
+    /**
+     * A query is rejected if it is not admitted before its timeout.
+     */
+    public void test_timeout() throws InterruptedException {
+
+        final QueryEngineCounters counters = new QueryEngineCounters();
+
+        final QueryAdmissionController c = new QueryAdmissionController(
+                counters);
+
+        c.setMaxRunning(1);
+
+        c.admit(QueryPriority.Interactive, 0L/* timeout */);
+
+        try {
+            c.admit(QueryPriority.Interactive, 50L/* timeout */);
+            fail("Expecting: " + QueryAdmissionException.class);
+        } catch (QueryAdmissionException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        assertEquals(1L, counters.admissionTimeoutCount.get());
+
+        assertEquals(0, c.getQueuedCount());
+
+        assertEquals(0L, counters.admissionQueueSize.get());
+
+        assertEquals(1, c.getRunningCount());
+
+    }
+
+    /**
+     * Raising the limit admits waiting queries.
+     */
+    public void test_raiseLimit() throws InterruptedException {
+
+        final QueryAdmissionController c = new QueryAdmissionController(
+                new QueryEngineCounters());
+
+        c.setMaxRunning(1);
+
+        c.admit(QueryPriority.Interactive, 0L/* timeout */);
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        newWaiter(c, QueryPriority.Batch,
+                new CopyOnWriteArrayList<QueryPriority>(), done).start();
+
+        awaitQueued(c, 1);
+
+        c.setMaxRunning(0);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(2, c.getRunningCount());
+
+    }
+
+    /**
+     * Return a thread which waits to be admitted and then records its
+     * priority.
+     */
+    private Thread newWaiter(final QueryAdmissionController c,
+            final QueryPriority priority, final List<QueryPriority> order,
+            final CountDownLatch done) {
+
+        return new Thread() {
+            public void run() {
+                try {
+                    c.admit(priority, Long.MAX_VALUE);
+                    order.add(priority);
+                    done.countDown();
+                } catch (InterruptedException ex) {
+                    // ignore.
+                }
+            }
+        };
+
+    }
+
+    /**
+     * Wait until the given #of queries are waiting to be admitted.
+     */
+    private void awaitQueued(final QueryAdmissionController c, final int n)
+            throws InterruptedException {
+
+        final long deadline = System.currentTimeMillis() + 5000;
+
+        while (c.getQueuedCount() != n) {
+
+            if (System.currentTimeMillis() > deadline)
+                fail("queued=" + c.getQueuedCount() + ", expected=" + n);
+
+            Thread.sleep(5);
+
+        }
+
+    }
+
+}
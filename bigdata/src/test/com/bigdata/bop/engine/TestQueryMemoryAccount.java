@@ -0,0 +1,191 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import junit.framework.TestCase2;
+
+/**
+ * Test suite for the {@link QueryMemoryAccount} and the
+ * {@link DefaultQueryMemoryPolicy}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestQueryMemoryAccount extends TestCase2 {
+
+    public TestQueryMemoryAccount() {
+
+    }
+
+    public TestQueryMemoryAccount(final String name) {
+        super(name);
+    }
+
+    /**
+     * Charges and releases are applied to the account and its parent and the
+     * peak usage is tracked.
+     */
+    public void test_chargeRelease() {
+
+        final QueryMemoryAccount engine = new QueryMemoryAccount(null, 0L);
+
+        final QueryMemoryAccount a = new QueryMemoryAccount(engine, 0L);
+
+        final QueryMemoryAccount b = new QueryMemoryAccount(engine, 0L);
+
+        a.charge(100);
+        b.charge(50);
+
+        assertEquals(100L, a.getBytes());
+        assertEquals(50L, b.getBytes());
+        assertEquals(150L, engine.getBytes());
+
+        a.release(60);
+
+        assertEquals(40L, a.getBytes());
+        assertEquals(100L, a.getPeakBytes());
+        assertEquals(90L, engine.getBytes());
+        assertEquals(150L, engine.getPeakBytes());
+
+    }
+
+    /**
+     * The native memory is set rather than charged and only the difference is
+     * applied to the parent.
+     */
+    public void test_nativeBytes() {
+
+        final QueryMemoryAccount engine = new QueryMemoryAccount(null, 0L);
+
+        final QueryMemoryAccount a = new QueryMemoryAccount(engine, 0L);
+
+        a.charge(10);
+        a.setNativeBytes(1000);
+        a.setNativeBytes(1000);
+
+        assertEquals(1010L, a.getBytes());
+        assertEquals(1000L, a.getNativeBytes());
+        assertEquals(1010L, engine.getBytes());
+
+        a.setNativeBytes(400);
+
+        assertEquals(410L, a.getBytes());
+        assertEquals(410L, engine.getBytes());
+        assertEquals(1010L, engine.getPeakBytes());
+
+    }
+
+    /**
+     * Closing the account releases its charges from the parent. Charges made
+     * after the account was closed are ignored.
+     */
+    public void test_close() {
+
+        final QueryMemoryAccount engine = new QueryMemoryAccount(null, 0L);
+
+        final QueryMemoryAccount a = new QueryMemoryAccount(engine, 0L);
+
+        final QueryMemoryAccount b = new QueryMemoryAccount(engine, 0L);
+
+        a.charge(100);
+        a.setNativeBytes(200);
+        b.charge(5);
+
+        a.close();
+
+        assertEquals(5L, engine.getBytes());
+        assertEquals(300L, a.getPeakBytes());
+
+        a.release(100);
+        a.charge(7);
+        a.setNativeBytes(9);
+
+        assertEquals(0L, a.getBytes());
+        assertEquals(5L, engine.getBytes());
+
+    }
+
+    /**
+     * The budget is only enforced when it is non-zero.
+     */
+    public void test_budget() {
+
+        final QueryMemoryAccount a = new QueryMemoryAccount(null, 0L);
+
+        a.charge(Long.MAX_VALUE / 2);
+
+        assertFalse(a.isOverBudget());
+
+        a.setBudget(100);
+
+        assertTrue(a.isOverBudget());
+
+        try {
+            new QueryMemoryAccount(null, -1L);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * A query over its own budget is cancelled. A query is asked to spill
+     * when the engine is over its budget.
+     */
+    public void test_defaultPolicy() {
+
+        final IQueryMemoryPolicy policy = new DefaultQueryMemoryPolicy();
+
+        final QueryMemoryAccount engine = new QueryMemoryAccount(null, 1000L);
+
+        final QueryMemoryAccount a = new QueryMemoryAccount(engine, 100L);
+
+        a.charge(50);
+
+        assertEquals(IQueryMemoryPolicy.Action.None, policy.decide(null, a));
+
+        a.charge(51);
+
+        assertEquals(IQueryMemoryPolicy.Action.Cancel, policy.decide(null, a));
+
+        final QueryMemoryAccount b = new QueryMemoryAccount(engine, 0L);
+
+        b.charge(1000);
+
+        assertEquals(IQueryMemoryPolicy.Action.Spill, policy.decide(null, b));
+
+        b.requestSpill();
+
+        // Still over budget, but not by more than the cancel factor.
+        assertEquals(IQueryMemoryPolicy.Action.None, policy.decide(null, b));
+
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.util.UUID;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.NamedSolutionSetRefUtility;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.ap.E;
+import com.bigdata.bop.ap.Predicate;
+import com.bigdata.bop.bset.StartOp;
+import com.bigdata.bop.controller.INamedSolutionSetRef;
+import com.bigdata.bop.engine.QueryPlanCache.CachedQueryPlan;
+import com.bigdata.bop.join.PipelineJoin;
+
+/**
+ * Test suite for the {@link QueryPlanCache}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestQueryPlanCache extends TestCase2 {
+
+    public TestQueryPlanCache() {
+
+    }
+
+    public TestQueryPlanCache(final String name) {
+        super(name);
+    }
+
+    private static final String NAMED_SET_REF = "test.namedSetRef";
+
+    private PipelineOp newQuery(final UUID queryId, final long timestamp) {
+
+        final Predicate<E> pred = new Predicate<E>(new IVariableOrConstant[] {
+                new Constant<String>("Mary"), Var.var("value") }, NV
+                .asMap(new NV[] {//
+                        new NV(Predicate.Annotations.RELATION_NAME,
+                                new String[] { "ns" }),//
+                        new NV(Predicate.Annotations.BOP_ID, 3),//
+                        new NV(Predicate.Annotations.TIMESTAMP, timestamp),//
+                }));
+
+        final PipelineOp startOp = new StartOp(new BOp[] {}, NV
+                .asMap(new NV[] {//
+                        new NV(Predicate.Annotations.BOP_ID, 1),//
+                        new NV(NAMED_SET_REF, NamedSolutionSetRefUtility
+                                .newInstance(queryId, "set",
+                                        IVariable.EMPTY)),//
+                }));
+
+        return new PipelineJoin<E>(new BOp[] { startOp },//
+                new NV(Predicate.Annotations.BOP_ID, 2),//
+                new NV(PipelineJoin.Annotations.PREDICATE, pred),//
+                new NV(QueryEngine.Annotations.QUERY_ID, queryId));
+
+    }
+
+    /**
+     * Verify that the query {@link UUID} and the timestamp of the view are
+     * re-bound on a cached query plan and that the cached query plan is not
+     * modified.
+     */
+    public void test_rebind() {
+
+        final UUID queryId1 = UUID.randomUUID();
+        final UUID queryId2 = UUID.randomUUID();
+        final long timestamp1 = 10L;
+        final long timestamp2 = 12L;
+
+        final PipelineOp query1 = newQuery(queryId1, timestamp1);
+
+        final CachedQueryPlan e = new CachedQueryPlan(query1, queryId1,
+                timestamp1);
+
+        final PipelineOp query2 = e.getQueryPlan(queryId2, timestamp2);
+
+        assertEquals(newQuery(queryId2, timestamp2), query2);
+
+        // The cached query plan is not modified.
+        assertEquals(newQuery(queryId1, timestamp1), query1);
+
+        assertEquals(queryId2, ((INamedSolutionSetRef) query2.get(0)
+                .getProperty(NAMED_SET_REF)).getQueryId());
+
+    }
+
+    /**
+     * Verify the LRU semantics of the cache and the hit and miss counters.
+     */
+    public void test_lru() {
+
+        final QueryEngineCounters counters = new QueryEngineCounters();
+
+        final QueryPlanCache cache = new QueryPlanCache(2/* capacity */,
+                counters);
+
+        final UUID queryId = UUID.randomUUID();
+
+        final CachedQueryPlan a = new CachedQueryPlan(newQuery(queryId, 1L),
+                queryId, 1L);
+        final CachedQueryPlan b = new CachedQueryPlan(newQuery(queryId, 2L),
+                queryId, 2L);
+        final CachedQueryPlan c = new CachedQueryPlan(newQuery(queryId, 3L),
+                queryId, 3L);
+
+        assertNull(cache.get("a"));
+        cache.put("a", a);
+        cache.put("b", b);
+        assertEquals(2, cache.size());
+
+        // touch [a] so [b] is the LRU entry.
+        assertTrue(a == cache.get("a"));
+
+        cache.put("c", c);
+        assertEquals(2, cache.size());
+
+        assertTrue(a == cache.get("a"));
+        assertNull(cache.get("b"));
+        assertTrue(c == cache.get("c"));
+
+        assertEquals(3L, counters.queryPlanCacheHitCount.get());
+        assertEquals(2L, counters.queryPlanCacheMissCount.get());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+
+    }
+
+}
@@ -0,0 +1,353 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase2;
+
+/**
+ * Test suite for the {@link WorkStealingExecutor}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestWorkStealingExecutor extends TestCase2 {
+
+    public TestWorkStealingExecutor() {
+
+    }
+
+    public TestWorkStealingExecutor(final String name) {
+        super(name);
+    }
+
+    /**
+     * All submitted tasks are run.
+     */
+    public void test_runsAllTasks() throws InterruptedException {
+
+        final WorkStealingExecutor e = new WorkStealingExecutor(getName(), 4,
+                new QueryEngineCounters());
+
+        try {
+
+            final int n = 1000;
+
+            final CountDownLatch done = new CountDownLatch(n);
+
+            for (int i = 0; i < n; i++) {
+
+                e.execute(Integer.valueOf(i % 7), new Runnable() {
+                    public void run() {
+                        done.countDown();
+                    }
+                });
+
+            }
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        } finally {
+
+            e.shutdownNow();
+
+        }
+
+    }
+
+    /**
+     * A task submitted by a worker for the same query is run by that worker.
+     */
+    public void test_locality() throws InterruptedException {
+
+        final QueryEngineCounters counters = new QueryEngineCounters();
+
+        final WorkStealingExecutor e = new WorkStealingExecutor(getName(), 1,
+                counters);
+
+        try {
+
+            final CountDownLatch done = new CountDownLatch(2);
+
+            final Thread[] threads = new Thread[2];
+
+            e.execute("q1", new Runnable() {
+                public void run() {
+                    threads[0] = Thread.currentThread();
+                    e.execute("q1", new Runnable() {
+                        public void run() {
+                            threads[1] = Thread.currentThread();
+                            done.countDown();
+                        }
+                    });
+                    done.countDown();
+                }
+            });
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            assertTrue(threads[0] == threads[1]);
+
+            assertEquals(1L, counters.operatorLocalTaskCount.get());
+
+        } finally {
+
+            e.shutdownNow();
+
+        }
+
+    }
+
+    /**
+     * Queued tasks are taken round-robin by query.
+     */
+    public void test_fairness() throws InterruptedException {
+
+        /*
+         * Note: The worker is deliberately blocked below, so a long delay is
+         * used to keep a spare worker from taking the queued tasks.
+         */
+        final WorkStealingExecutor e = new WorkStealingExecutor(getName(), 1,
+                60000L/* compensationDelay */, new QueryEngineCounters());
+
+        try {
+
+            final CountDownLatch blocked = new CountDownLatch(1);
+
+            final CountDownLatch release = new CountDownLatch(1);
+
+            final List<String> order = new CopyOnWriteArrayList<String>();
+
+            final CountDownLatch done = new CountDownLatch(4);
+
+            // occupy the only worker.
+            e.execute("x", new Runnable() {
+                public void run() {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+            for (String s : new String[] { "a1", "a2", "a3", "b1" }) {
+
+                final String label = s;
+
+                e.execute(s.substring(0, 1), new Runnable() {
+                    public void run() {
+                        order.add(label);
+                        done.countDown();
+                    }
+                });
+
+            }
+
+            release.countDown();
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            assertEquals(Arrays.asList("a1", "b1", "a2", "a3"), order);
+
+        } finally {
+
+            e.shutdownNow();
+
+        }
+
+    }
+
+    /**
+     * Idle workers steal the tasks queued by a busy worker.
+     */
+    public void test_stealing() throws InterruptedException {
+
+        final QueryEngineCounters counters = new QueryEngineCounters();
+
+        final WorkStealingExecutor e = new WorkStealingExecutor(getName(), 4,
+                counters);
+
+        try {
+
+            final int n = 64;
+
+            final CountDownLatch done = new CountDownLatch(n);
+
+            final AtomicInteger running = new AtomicInteger();
+
+            e.execute("q1", new Runnable() {
+                public void run() {
+                    // queue work locally, then stay busy until it is done.
+                    for (int i = 0; i < n; i++) {
+                        e.execute("q1", new Runnable() {
+                            public void run() {
+                                running.incrementAndGet();
+                                done.countDown();
+                            }
+                        });
+                    }
+                    try {
+                        done.await();
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            assertEquals(n, running.get());
+
+            assertEquals((long) n, counters.operatorStolenTaskCount.get());
+
+        } finally {
+
+            e.shutdownNow();
+
+        }
+
+    }
+
+    /**
+     * A task which blocks until a task which it submitted for the same query
+     * has run does not deadlock the pool. The child task is queued on the
+     * deque of the only worker, so it can only run on a spare worker which is
+     * started while that worker is blocked.
+     */
+    public void test_compensation() throws InterruptedException {
+
+        final QueryEngineCounters counters = new QueryEngineCounters();
+
+        final WorkStealingExecutor e = new WorkStealingExecutor(getName(), 1,
+                counters);
+
+        try {
+
+            final CountDownLatch child = new CountDownLatch(1);
+
+            final CountDownLatch done = new CountDownLatch(1);
+
+            e.execute("q1", new Runnable() {
+                public void run() {
+                    e.execute("q1", new Runnable() {
+                        public void run() {
+                            child.countDown();
+                        }
+                    });
+                    try {
+                        // block the only worker until the child has run.
+                        if (child.await(10, TimeUnit.SECONDS))
+                            done.countDown();
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+
+            assertTrue(done.await(20, TimeUnit.SECONDS));
+
+            assertTrue(counters.operatorSpareWorkerCount.get() > 0L);
+
+        } finally {
+
+            e.shutdownNow();
+
+        }
+
+    }
+
+    /**
+     * A spare worker exits once it has been idle for
+     * {@link WorkStealingExecutor#SPARE_KEEP_ALIVE} milliseconds.
+     */
+    public void test_spareWorkerExits() throws InterruptedException {
+
+        final WorkStealingExecutor e = new WorkStealingExecutor(getName(), 1,
+                new QueryEngineCounters());
+
+        try {
+
+            final CountDownLatch release = new CountDownLatch(1);
+
+            final CountDownLatch done = new CountDownLatch(1);
+
+            // occupy the only worker.
+            e.execute("x", new Runnable() {
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            });
+
+            // run by a spare worker.
+            e.execute("y", new Runnable() {
+                public void run() {
+                    done.countDown();
+                }
+            });
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+
+            assertEquals(2, e.getWorkerCount());
+
+            release.countDown();
+
+            final long deadline = System.currentTimeMillis()
+                    + WorkStealingExecutor.SPARE_KEEP_ALIVE * 10;
+
+            while (e.getWorkerCount() > 1
+                    && System.currentTimeMillis() < deadline) {
+
+                Thread.sleep(50);
+
+            }
+
+            assertEquals(1, e.getWorkerCount());
+
+        } finally {
+
+            e.shutdownNow();
+
+        }
+
+    }
+
+}
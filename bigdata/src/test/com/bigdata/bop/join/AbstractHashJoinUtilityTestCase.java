@@ -1881,6 +1881,60 @@ abstract public class AbstractHashJoinUtilityTestCase extends TestCase {
                 left, right, expected);
 
     }
+
+    /**
+     * Unit test for EXISTS where more than one solution joins with the same
+     * solution in the hash index. The semi-join stops probing that solution
+     * at the first match, and it is still reported exactly once.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_exists_02() {
+
+        final ExistsSetup setup = new ExistsSetup(getName());
+        
+        final IVariable<?> person = Var.var("person");
+        final IVariable<?> name = Var.var("name");
+        
+        // the join variables.
+        final IVariable<?>[] joinVars = new IVariable[]{person};
+
+        // the variables projected by the join (iff non-null).
+        final IVariable<?>[] selectVars = null;
+
+        // the join constraints.
+        final IConstraint[] constraints = null;
+
+        // The left solutions (the pipeline).
+        final List<IBindingSet> right = setup.getLeft1();
+
+        // The right solutions (the hash index).
+        final List<IBindingSet> left = new LinkedList<IBindingSet>();
+        {
+            IBindingSet tmp;
+
+            tmp = new ListBindingSet();
+            tmp.set(person, new Constant<IV>(setup.alice));
+            tmp.set(name, new Constant<IV>(setup.aliceLabel));
+            left.add(tmp);
+
+            tmp = new ListBindingSet();
+            tmp.set(person, new Constant<IV>(setup.alice));
+            tmp.set(name, new Constant<IV>(setup.foafPerson));
+            left.add(tmp);
+        }
+
+        // The expected solutions to the join.
+        final IBindingSet[] expected = new IBindingSet[] {//
+                new ListBindingSet(//
+                        new IVariable[] { person},//
+                        new IConstant[] { new Constant<IV>(setup.alice) }//
+                ),//
+        };
+
+        doHashJoinTest(JoinTypeEnum.Exists, joinVars, selectVars, constraints,
+                left, right, expected);
+
+    }
     
     /**
      * Unit tests for NOT EXISTS based on Sesame <code>sparql11-exists-05</code>
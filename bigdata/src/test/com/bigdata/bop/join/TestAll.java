@@ -79,6 +79,9 @@ public class TestAll extends TestCase {
         suite.addTestSuite(TestHTreeHashIndexOp.class);
         suite.addTestSuite(TestHTreeSolutionSetHashJoin.class);
 
+        // Test suite for the sideways information passing filter.
+        suite.addTestSuite(TestJoinKeyBloomFilter.class);
+
         /*
          * Test suite for a nested loop join using an index scan for each source
          * solution read from the pipeline.
@@ -0,0 +1,173 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.join;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.striterator.Chunkerator;
+
+/**
+ * Test suite for {@link JoinKeyBloomFilter}.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestJoinKeyBloomFilter extends TestCase2 {
+
+    public TestJoinKeyBloomFilter() {
+    }
+
+    public TestJoinKeyBloomFilter(final String name) {
+        super(name);
+    }
+
+    /**
+     * Verify that there are no false negatives and that the false positive
+     * rate is small.
+     */
+    public void test_filter() {
+
+        final int n = 10000;
+
+        final JoinKeyBloomFilter filter = new JoinKeyBloomFilter(n);
+
+        for (int i = 0; i < n; i++) {
+
+            filter.add(Integer.valueOf(i * 2));
+
+        }
+
+        for (int i = 0; i < n; i++) {
+
+            assertTrue(filter.contains(Integer.valueOf(i * 2)));
+
+        }
+
+        int nfalsePositives = 0;
+
+        for (int i = 0; i < n; i++) {
+
+            if (filter.contains(Integer.valueOf(i * 2 + 1)))
+                nfalsePositives++;
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info("falsePositives=" + nfalsePositives + " of " + n);
+
+        assertTrue("falsePositives=" + nfalsePositives, nfalsePositives < n / 20);
+
+    }
+
+    /**
+     * Verify that the filters are built from the join variables of a hash
+     * index and that no filter is built for a join variable which is not bound
+     * in all solutions.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_newInstance() {
+
+        final IVariable<?> x = Var.var("x");
+        final IVariable<?> y = Var.var("y");
+
+        final PipelineOp op = new MockPipelineOp(BOp.NOARGS, //
+                new NV(HashJoinAnnotations.JOIN_VARS, new IVariable[] { x }),//
+                new NV(JoinAnnotations.SELECT, null),//
+                new NV(JoinAnnotations.CONSTRAINTS, null)//
+        );
+
+        final IHashJoinUtility state = new JVMHashJoinUtility(op,
+                JoinTypeEnum.Normal);
+
+        try {
+
+            final IBindingSet[] right = new IBindingSet[] {//
+                    new ListBindingSet(new IVariable[] { x, y },
+                            new Constant[] { new Constant<String>("a"),
+                                    new Constant<String>("b") }),//
+                    new ListBindingSet(new IVariable[] { x },
+                            new Constant[] { new Constant<String>("c") }),//
+            };
+
+            state.acceptSolutions(
+                    new Chunkerator<IBindingSet>(Arrays.asList(right)
+                            .iterator()), new BOpStats());
+
+            final Map<IVariable<?>, JoinKeyBloomFilter> filters = JoinKeyBloomFilter
+                    .newInstance(state);
+
+            assertEquals(1, filters.size());
+
+            final JoinKeyBloomFilter filter = filters.get(x);
+
+            assertNotNull(filter);
+
+            assertTrue(filter.contains("a"));
+
+            assertTrue(filter.contains("c"));
+
+        } finally {
+
+            state.release();
+
+        }
+
+    }
+
+    private static class MockPipelineOp extends PipelineOp {
+
+        private static final long serialVersionUID = 1L;
+
+        public MockPipelineOp(final BOp[] args, final NV... anns) {
+
+            super(args, NV.asMap(anns));
+
+        }
+
+        @Override
+        public FutureTask<Void> eval(BOpContext<IBindingSet> context) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -63,6 +63,9 @@ public class TestAll extends TestCase {
         // runtime query optimizer operator.
         suite.addTestSuite(TestJoinGraph.class);
 
+        // cache of the samples taken by the runtime query optimizer.
+        suite.addTestSuite(TestSampleCache.class);
+
         // runtime query optimizer behavior.
         // FIXME This test suite is empty. Either test at the AST eval level or add tests here.
 //        suite.addTestSuite(TestJGraph.class);
@@ -27,17 +27,24 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.bop.joinGraph.rto;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import junit.framework.TestCase2;
 
 import com.bigdata.bop.BOp;
 import com.bigdata.bop.BOpEvaluationContext;
 import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
 import com.bigdata.bop.IConstraint;
 import com.bigdata.bop.IPredicate;
 import com.bigdata.bop.IVariable;
 import com.bigdata.bop.NV;
 import com.bigdata.bop.Var;
 import com.bigdata.bop.ap.Predicate;
+import com.bigdata.bop.bindingSet.ListBindingSet;
 import com.bigdata.bop.constraint.Constraint;
 import com.bigdata.bop.constraint.NEConstant;
 
@@ -285,6 +292,92 @@ public class TestJoinGraph extends TestCase2 {
             }
         }
 
+        // Correct rejection [adaptiveThreshold].
+        {
+            try {
+                final IPredicate[] vertices = new IPredicate[] {
+                        new Predicate(new BOp[] { Var.var("x"), Var.var("y") }),//
+                        new Predicate(new BOp[] { Var.var("y"), Var.var("z") }),//
+                };
+                new JoinGraph(new BOp[0],//
+                        new NV(JoinGraph.Annotations.VERTICES, vertices),//
+                        new NV(JoinGraph.Annotations.ADAPTIVE_THRESHOLD, -1d),//
+                        new NV(JoinGraph.Annotations.CONTROLLER, true), //
+                        new NV(JoinGraph.Annotations.EVALUATION_CONTEXT,
+                                BOpEvaluationContext.CONTROLLER)//
+                );
+                fail("Expecting: " + IllegalArgumentException.class);
+            } catch (IllegalArgumentException ex) {
+                if (log.isInfoEnabled())
+                    log.info("Ignoring expected exception: " + ex);
+            }
+        }
+
+    }
+
+    /**
+     * Unit test for the error ratio used to decide when to re-plan the
+     * remaining joins in the checkpointed execution mode.
+     */
+    public void test_getError() {
+
+        assertEquals(1d, JoinGraph.getError(10L, 10L), 0d);
+
+        // Symmetric.
+        assertEquals(100d, JoinGraph.getError(1000L, 10L), 0d);
+        assertEquals(100d, JoinGraph.getError(10L, 1000L), 0d);
+
+        // An empty result (or estimate) is treated as one solution.
+        assertEquals(50d, JoinGraph.getError(0L, 50L), 0d);
+        assertEquals(50d, JoinGraph.getError(50L, 0L), 0d);
+        assertEquals(1d, JoinGraph.getError(0L, 0L), 0d);
+
+    }
+
+    /**
+     * Unit test for the sample of a materialized intermediate solution set.
+     */
+    public void test_solutionSetSample() {
+
+        final IBindingSet[] solutions = new IBindingSet[20];
+
+        for (int i = 0; i < solutions.length; i++) {
+
+            solutions[i] = new ListBindingSet(
+                    new IVariable[] { Var.var("x") },
+                    new IConstant[] { new Constant<Integer>(i) });
+
+        }
+
+        // The entire solution set fits within the limit.
+        {
+            final SolutionSetSample sample = new SolutionSetSample(solutions,
+                    20/* limit */);
+
+            assertEquals(20L, sample.estCard);
+            assertEquals(EstimateEnum.Exact, sample.estimateEnum);
+            assertEquals(20, sample.getSample().length);
+
+        }
+
+        // A random sample.
+        {
+            final SolutionSetSample sample = new SolutionSetSample(solutions,
+                    5/* limit */);
+
+            assertEquals(20L, sample.estCard);
+            assertEquals(EstimateEnum.Normal, sample.estimateEnum);
+            assertEquals(5, sample.getSample().length);
+
+            // No duplicates and all taken from the solution set.
+            final Set<IBindingSet> set = new HashSet<IBindingSet>(
+                    Arrays.asList(sample.getSample()));
+
+            assertEquals(5, set.size());
+            assertTrue(Arrays.asList(solutions).containsAll(set));
+
+        }
+
     }
 
 }
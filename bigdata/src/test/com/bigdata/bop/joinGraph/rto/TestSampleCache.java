@@ -0,0 +1,222 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.joinGraph.rto;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IPredicate;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.ap.Predicate;
+import com.bigdata.bop.ap.SampleIndex.SampleType;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.constraint.NEConstant;
+
+/**
+ * Unit tests for the {@link SampleCache}.
+ * 
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestSampleCache extends TestCase2 {
+
+    /**
+     * 
+     */
+    public TestSampleCache() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestSampleCache(String name) {
+        super(name);
+    }
+
+    /**
+     * Predicates which differ only in the names of their variables and their
+     * bop identifiers have the same normalized form.
+     */
+    public void test_normalize() {
+
+        final IPredicate<?>[] a = new IPredicate[] {
+                new Predicate(new BOp[] { Var.var("x"), new Constant<String>("a") },
+                        new NV(BOp.Annotations.BOP_ID, 1)),//
+                new Predicate(new BOp[] { Var.var("y"), Var.var("x") },
+                        new NV(BOp.Annotations.BOP_ID, 2)),//
+        };
+
+        final IPredicate<?>[] b = new IPredicate[] {
+                new Predicate(new BOp[] { Var.var("s"), new Constant<String>("a") },
+                        new NV(BOp.Annotations.BOP_ID, 5)),//
+                new Predicate(new BOp[] { Var.var("o"), Var.var("s") },
+                        new NV(BOp.Annotations.BOP_ID, 6)),//
+        };
+
+        final Map<IVariable<?>, IVariable<?>> avars = new HashMap<IVariable<?>, IVariable<?>>();
+
+        final Map<IVariable<?>, IVariable<?>> bvars = new HashMap<IVariable<?>, IVariable<?>>();
+
+        final IPredicate<?>[] na = SampleCache.normalize(a, avars);
+
+        final IPredicate<?>[] nb = SampleCache.normalize(b, bvars);
+
+        assertNotNull(na);
+        assertNotNull(nb);
+
+        assertEquals(Var.var("_0"), avars.get(Var.var("x")));
+        assertEquals(Var.var("_1"), avars.get(Var.var("y")));
+        assertEquals(Var.var("_0"), bvars.get(Var.var("s")));
+        assertEquals(Var.var("_1"), bvars.get(Var.var("o")));
+
+        final SampleCache.Key ka = new SampleCache.Key(10L/* commitTime */,
+                SampleType.RANDOM, 100/* limit */, na);
+
+        final SampleCache.Key kb = new SampleCache.Key(10L/* commitTime */,
+                SampleType.RANDOM, 100/* limit */, nb);
+
+        assertEquals(ka, kb);
+        assertEquals(ka.hashCode(), kb.hashCode());
+
+        // Different commit time.
+        assertFalse(ka.equals(new SampleCache.Key(11L/* commitTime */,
+                SampleType.RANDOM, 100/* limit */, nb)));
+
+        // Different constant.
+        final IPredicate<?>[] c = new IPredicate[] {
+                new Predicate(new BOp[] { Var.var("x"), new Constant<String>("b") }),//
+                new Predicate(new BOp[] { Var.var("y"), Var.var("x") }),//
+        };
+
+        assertFalse(ka.equals(new SampleCache.Key(10L/* commitTime */,
+                SampleType.RANDOM, 100/* limit */, SampleCache.normalize(c,
+                        new HashMap<IVariable<?>, IVariable<?>>()))));
+
+    }
+
+    /**
+     * A predicate having an annotation which could reference a variable is
+     * not normalized.
+     */
+    public void test_normalize_filter() {
+
+        final IPredicate<?>[] a = new IPredicate[] {//
+        new Predicate(new BOp[] { Var.var("x"), Var.var("y") },
+                new NV(IPredicate.Annotations.INDEX_LOCAL_FILTER,
+                        new NEConstant(Var.var("y"), new Constant<String>("a")))),//
+        };
+
+        assertNull(SampleCache.normalize(a,
+                new HashMap<IVariable<?>, IVariable<?>>()));
+
+    }
+
+    /**
+     * Renaming the variables of a sample.
+     */
+    public void test_rename() {
+
+        final Map<IVariable<?>, IVariable<?>> vars = new HashMap<IVariable<?>, IVariable<?>>();
+
+        vars.put(Var.var("x"), Var.var("_0"));
+
+        final IBindingSet bset = new ListBindingSet();
+
+        bset.set(Var.var("x"), new Constant<String>("a"));
+
+        final IBindingSet[] a = SampleCache.rename(new IBindingSet[] { bset },
+                vars);
+
+        assertEquals(1, a.length);
+        assertEquals(new Constant<String>("a"), a[0].get(Var.var("_0")));
+        assertNull(a[0].get(Var.var("x")));
+
+        // Not renamed if some variable is not mapped.
+        bset.set(Var.var("y"), new Constant<String>("b"));
+
+        assertNull(SampleCache.rename(new IBindingSet[] { bset }, vars));
+
+    }
+
+    /**
+     * The samples for earlier commit points are discarded when a sample is
+     * cached for a later commit point and the least recently used samples are
+     * evicted once the capacity is exceeded.
+     */
+    public void test_eviction() {
+
+        final SampleCache cache = new SampleCache(2/* capacity */);
+
+        final SampleCache.Key k1 = newKey(1L/* commitTime */, "a");
+        final SampleCache.Key k2 = newKey(1L/* commitTime */, "b");
+        final SampleCache.Key k3 = newKey(1L/* commitTime */, "c");
+
+        final SampleCache.VertexEntry e = new SampleCache.VertexEntry(
+                10L/* rangeCount */, 100/* limit */, EstimateEnum.Exact,
+                new Object[0]);
+
+        cache.putVertexSample(k1, e);
+        cache.putVertexSample(k2, e);
+        assertEquals(2, cache.size());
+
+        // touch k1 so k2 is the LRU entry.
+        assertTrue(e == cache.getVertexSample(k1, 100/* limit */));
+        assertEquals(1L, cache.getHitCount());
+
+        cache.putVertexSample(k3, e);
+        assertEquals(2, cache.size());
+        assertNull(cache.getVertexSample(k2, 100/* limit */));
+        assertEquals(1L, cache.getMissCount());
+        assertNotNull(cache.getVertexSample(k1, 100/* limit */));
+
+        // a later commit point discards the earlier samples.
+        cache.putVertexSample(newKey(2L/* commitTime */, "a"), e);
+        assertEquals(1, cache.size());
+        assertNull(cache.getVertexSample(k1, 100/* limit */));
+
+    }
+
+    private static SampleCache.Key newKey(final long commitTime,
+            final String c) {
+
+        return new SampleCache.Key(commitTime, SampleType.RANDOM,
+                0/* limit */, SampleCache.normalize(
+                        new IPredicate[] { new Predicate(new BOp[] {
+                                Var.var("x"), new Constant<String>(c) }) },
+                        new HashMap<IVariable<?>, IVariable<?>>()));
+
+    }
+
+}
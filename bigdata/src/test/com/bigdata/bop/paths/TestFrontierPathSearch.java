@@ -0,0 +1,267 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 16, 2026
+ */
+
+package com.bigdata.bop.paths;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IConstant;
+
+/**
+ * Test suite for the {@link FrontierPathSearch}.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestFrontierPathSearch extends TestCase2 {
+
+    public TestFrontierPathSearch() {
+
+    }
+
+    public TestFrontierPathSearch(final String name) {
+        super(name);
+    }
+
+    /**
+     * An in-memory graph which records each vertex which it is asked to
+     * expand.
+     */
+    private static class Graph implements FrontierPathSearch.IExpander {
+
+        private final Map<IConstant<?>, Set<IConstant<?>>> succ = new HashMap<IConstant<?>, Set<IConstant<?>>>();
+
+        private final Map<IConstant<?>, Set<IConstant<?>>> pred = new HashMap<IConstant<?>, Set<IConstant<?>>>();
+
+        private final Set<IConstant<?>> expandedForward = new HashSet<IConstant<?>>();
+
+        private final Set<IConstant<?>> expandedReverse = new HashSet<IConstant<?>>();
+
+        void add(final String s, final String o) {
+
+            add(succ, c(s), c(o));
+
+            add(pred, c(o), c(s));
+
+        }
+
+        private static void add(final Map<IConstant<?>, Set<IConstant<?>>> m,
+                final IConstant<?> x, final IConstant<?> y) {
+
+            Set<IConstant<?>> s = m.get(x);
+
+            if (s == null)
+                m.put(x, s = new LinkedHashSet<IConstant<?>>());
+
+            s.add(y);
+
+        }
+
+        public Map<IConstant<?>, Set<IConstant<?>>> expand(
+                final Collection<IConstant<?>> nodes, final boolean forward) {
+
+            final Map<IConstant<?>, Set<IConstant<?>>> ret = new HashMap<IConstant<?>, Set<IConstant<?>>>();
+
+            for (IConstant<?> x : nodes) {
+
+                // Each vertex is expanded at most once in each direction.
+                assertTrue((forward ? expandedForward : expandedReverse).add(x));
+
+                final Set<IConstant<?>> y = (forward ? succ : pred).get(x);
+
+                if (y != null)
+                    ret.put(x, y);
+
+            }
+
+            return ret;
+
+        }
+
+    }
+
+    private static IConstant<?> c(final String s) {
+
+        return new Constant<String>(s);
+
+    }
+
+    private static Set<IConstant<?>> set(final String... a) {
+
+        final Set<IConstant<?>> s = new HashSet<IConstant<?>>();
+
+        for (String x : a)
+            s.add(c(x));
+
+        return s;
+
+    }
+
+    /**
+     * A chain with a cycle: a -> b -> c -> d -> b, plus e -> a.
+     */
+    private Graph newGraph() {
+
+        final Graph g = new Graph();
+
+        g.add("a", "b");
+        g.add("b", "c");
+        g.add("c", "d");
+        g.add("d", "b");
+        g.add("e", "a");
+
+        return g;
+
+    }
+
+    /**
+     * Unbounded closure from several seeds. The seeds share vertices, which
+     * are expanded only once.
+     */
+    public void test_reachable() throws Exception {
+
+        final Graph g = newGraph();
+
+        final FrontierPathSearch search = new FrontierPathSearch(g,
+                Long.MAX_VALUE);
+
+        final Map<IConstant<?>, Set<IConstant<?>>> m = search
+                .reachable(Arrays.asList(new IConstant<?>[] { c("a"), c("c"),
+                        c("e") }));
+
+        assertEquals(set("b", "c", "d"), m.get(c("a")));
+
+        // [c] lies on a cycle.
+        assertEquals(set("b", "c", "d"), m.get(c("c")));
+
+        assertEquals(set("a", "b", "c", "d"), m.get(c("e")));
+
+        assertEquals(set("a", "b", "c", "d", "e"), g.expandedForward);
+
+        // One round per level rather than one per seed.
+        assertEquals(2, search.getRoundCount());
+
+    }
+
+    /**
+     * Closure with an upper bound on the #of steps.
+     */
+    public void test_reachable_upperBound() throws Exception {
+
+        final Graph g = newGraph();
+
+        final FrontierPathSearch search = new FrontierPathSearch(g, 2L);
+
+        final Map<IConstant<?>, Set<IConstant<?>>> m = search
+                .reachable(Arrays.asList(new IConstant<?>[] { c("e"), c("b") }));
+
+        assertEquals(set("a", "b"), m.get(c("e")));
+
+        assertEquals(set("c", "d"), m.get(c("b")));
+
+    }
+
+    /**
+     * Bidirectional search when both ends are bound.
+     */
+    public void test_connected() throws Exception {
+
+        final Graph g = newGraph();
+
+        // fan out from [a] so the reverse search is used.
+        g.add("a", "f");
+        g.add("a", "g");
+        g.add("a", "h");
+
+        final FrontierPathSearch search = new FrontierPathSearch(g,
+                Long.MAX_VALUE);
+
+        final boolean[] ret = search.connected(new IConstant<?>[] {//
+                c("e"), c("d"), c("a"), c("b"), c("a"), c("e") },
+                new IConstant<?>[] {//
+                c("d"), c("a"), c("a"), c("b"), c("x"), c("d") });
+
+        assertTrue(ret[0]);
+
+        // wrong direction.
+        assertFalse(ret[1]);
+
+        // no cycle through [a].
+        assertFalse(ret[2]);
+
+        // cycle through [b].
+        assertTrue(ret[3]);
+
+        // not a vertex.
+        assertFalse(ret[4]);
+
+        // duplicate pair.
+        assertTrue(ret[5]);
+
+        // the reverse search is used.
+        assertFalse(g.expandedReverse.isEmpty());
+
+    }
+
+    /**
+     * Bidirectional search with an upper bound on the #of steps.
+     */
+    public void test_connected_upperBound() throws Exception {
+
+        final boolean[] ret = new FrontierPathSearch(newGraph(), 3L).connected(
+                new IConstant<?>[] { c("e"), c("e"), c("a") },
+                new IConstant<?>[] { c("c"), c("d"), c("a") });
+
+        // e -> a -> b -> c
+        assertTrue(ret[0]);
+
+        // e -> a -> b -> c -> d is too long.
+        assertFalse(ret[1]);
+
+        assertFalse(ret[2]);
+
+        // ZeroOrOne.
+        final boolean[] ret2 = new FrontierPathSearch(newGraph(), 1L)
+                .connected(new IConstant<?>[] { c("a"), c("a") },
+                        new IConstant<?>[] { c("b"), c("c") });
+
+        assertTrue(ret2[0]);
+
+        assertFalse(ret2[1]);
+
+    }
+
+}
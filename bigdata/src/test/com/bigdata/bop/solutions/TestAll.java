@@ -88,6 +88,10 @@ public class TestAll extends TestCase {
         // in-memory sort operator.
         suite.addTestSuite(TestMemorySortOp.class);
 
+        // external memory sort operator.
+        suite.addTestSuite(TestExternalMemorySortOp.class);
+        suite.addTestSuite(TestTopKSortOp.class);
+
         /*
          * Aggregation
          */
@@ -101,8 +105,8 @@ public class TestAll extends TestCase {
         // In-memory generalized aggregation operator
         suite.addTestSuite(TestMemoryGroupByOp.class);
 
-        // FIXME Enable test for Native memory generalized aggregation operator
-//        suite.addTestSuite(TestHTreeGroupByOp.class);
+        // Native memory generalized aggregation operator
+        suite.addTestSuite(TestHTreeGroupByOp.class);
 
         // Pipelined aggregation operator.
         suite.addTestSuite(TestPipelinedAggregationOp.class);
@@ -0,0 +1,461 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+package com.bigdata.bop.solutions;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.FutureTask;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.BOpEvaluationContext;
+import com.bigdata.bop.Bind;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IQueryContext;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.engine.AbstractQueryEngineTestCase;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.engine.BlockingBufferWithStats;
+import com.bigdata.bop.engine.IRunningQuery;
+import com.bigdata.bop.engine.MockRunningQuery;
+import com.bigdata.journal.ITx;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.VTE;
+import com.bigdata.rdf.internal.constraints.MathBOp;
+import com.bigdata.rdf.internal.impl.TermId;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+import com.bigdata.rdf.model.BigdataLiteral;
+import com.bigdata.rdf.model.BigdataValueFactory;
+import com.bigdata.rdf.model.BigdataValueFactoryImpl;
+import com.bigdata.rdf.sparql.ast.GlobalAnnotations;
+import com.bigdata.relation.accesspath.IAsynchronousIterator;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+import com.bigdata.relation.accesspath.ThickAsynchronousIterator;
+
+/**
+ * Unit tests for the {@link ExternalMemorySortOp}. The tests use a very small
+ * {@link ExternalMemorySortOp.Annotations#RUN_CAPACITY} in order to force the
+ * operator to spill sorted runs onto the native heap and then merge them.
+ *
+ * @see TestMemorySortOp
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestExternalMemorySortOp extends TestCase2 {
+
+    /**
+     *
+     */
+    public TestExternalMemorySortOp() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestExternalMemorySortOp(String name) {
+        super(name);
+    }
+
+    private long termId = 1;
+
+    private IV<BigdataLiteral, ?> makeIV(final BigdataLiteral lit) {
+
+        final IV<BigdataLiteral, ?> iv = new TermId<BigdataLiteral>(
+                VTE.LITERAL, termId++);
+
+        iv.setValue(lit);
+
+        return iv;
+
+    }
+
+    private SortOp newSortOp(final ISortOrder<?>[] sors, final int runCapacity,
+            final int blockCapacity) {
+
+        return new ExternalMemorySortOp(new BOp[] {}, NV.asMap(new NV[] {//
+                new NV(ExternalMemorySortOp.Annotations.BOP_ID, 1),//
+                new NV(ExternalMemorySortOp.Annotations.SORT_ORDER, sors),//
+                new NV(ExternalMemorySortOp.Annotations.VALUE_COMPARATOR,
+                        new IVComparator()),//
+                new NV(ExternalMemorySortOp.Annotations.EVALUATION_CONTEXT,
+                        BOpEvaluationContext.CONTROLLER),//
+                new NV(ExternalMemorySortOp.Annotations.MAX_PARALLEL, 1),//
+                new NV(PipelineOp.Annotations.REORDER_SOLUTIONS, false),//
+                new NV(ExternalMemorySortOp.Annotations.LAST_PASS, true),//
+                new NV(ExternalMemorySortOp.Annotations.RUN_CAPACITY,
+                        runCapacity),//
+                new NV(ExternalMemorySortOp.Annotations.BLOCK_CAPACITY,
+                        blockCapacity),//
+                }));
+
+    }
+
+    /**
+     * Run the operator against the data and verify the ordered solutions.
+     *
+     * @return The statistics for the operator.
+     */
+    private BOpStats runSort(final SortOp query, final IBindingSet[][] data,
+            final IBindingSet[] expected) {
+
+        final BOpStats stats = query.newStats();
+
+        final IAsynchronousIterator<IBindingSet[]> source = new ThickAsynchronousIterator<IBindingSet[]>(
+                data);
+
+        final IBlockingBuffer<IBindingSet[]> sink = new BlockingBufferWithStats<IBindingSet[]>(
+                query, stats);
+
+        final UUID queryId = UUID.randomUUID();
+        final MockQueryContext queryContext = new MockQueryContext(queryId);
+        try {
+            final IRunningQuery runningQuery = new MockRunningQuery(
+                    null/* fed */, null/* indexManager */,
+                    (IQueryContext) queryContext);
+
+            final BOpContext<IBindingSet> context = new BOpContext<IBindingSet>(
+                    runningQuery, -1/* partitionId */, stats, query/* op */,
+                    true/* lastInvocation */, source, sink, null/* sink2 */
+            );
+
+            final FutureTask<Void> ft = query.eval(context);
+            // Run the query.
+            {
+                final Thread t = new Thread() {
+                    public void run() {
+                        ft.run();
+                    }
+                };
+                t.setDaemon(true);
+                t.start();
+            }
+
+            // Check the solutions.
+            AbstractQueryEngineTestCase.assertSameSolutions(expected,
+                    sink.iterator(), ft);
+
+            // The native memory for the sorted runs was released.
+            assertEquals(0L, queryContext.getMemoryManager()
+                    .getAllocationCount());
+
+        } finally {
+            queryContext.close();
+        }
+
+        return stats;
+
+    }
+
+    /**
+     * Correct rejection tests for the constructor.
+     */
+    public void test_ctor_correctRejection() {
+
+        final IVariable<?> x = Var.var("x");
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+        new SortOrder(x, true/* asc */) };
+
+        // run capacity must be positive.
+        try {
+            newSortOp(sors, 0/* runCapacity */, 10/* blockCapacity */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        // block capacity must be positive.
+        try {
+            newSortOp(sors, 10/* runCapacity */, 0/* blockCapacity */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        // w/ illegal evaluation context.
+        try {
+            new ExternalMemorySortOp(new BOp[] {}, NV.asMap(new NV[] {//
+                    new NV(ExternalMemorySortOp.Annotations.BOP_ID, 1),//
+                    new NV(ExternalMemorySortOp.Annotations.SORT_ORDER, sors),//
+                    new NV(ExternalMemorySortOp.Annotations.VALUE_COMPARATOR,
+                            new IVComparator()),//
+                    new NV(ExternalMemorySortOp.Annotations.EVALUATION_CONTEXT,
+                            BOpEvaluationContext.ANY),//
+                    new NV(ExternalMemorySortOp.Annotations.MAX_PARALLEL, 1),//
+                    new NV(PipelineOp.Annotations.REORDER_SOLUTIONS, false),//
+                    new NV(ExternalMemorySortOp.Annotations.LAST_PASS, true),//
+                    }));
+            fail("Expecting: " + UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * Test with materialized IVs. The run capacity forces the solutions to be
+     * spilled onto the native heap as several sorted runs.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testMaterializedIVs() {
+
+        final BigdataValueFactory f = BigdataValueFactoryImpl.getInstance(getName());
+
+        final IVariable<IV> x = Var.var ( "x" ) ;
+        final IVariable<IV> y = Var.var ( "y" ) ;
+        final IConstant<IV> a = new Constant<IV>(makeIV(f.createLiteral("a")));
+        final IConstant<IV> b = new Constant<IV>(makeIV(f.createLiteral("b")));
+        final IConstant<IV> c = new Constant<IV>(makeIV(f.createLiteral("c")));
+        final IConstant<IV> d = new Constant<IV>(makeIV(f.createLiteral("d")));
+        final IConstant<IV> e = new Constant<IV>(makeIV(f.createLiteral("e")));
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+                new SortOrder(x, true/*asc*/),//
+                new SortOrder(y, false/*asc*/)//
+                };
+
+        final SortOp query = newSortOp(sors, 3/* runCapacity */, 2/* blockCapacity */);
+
+        //
+        // the test data
+        //
+        final IBindingSet data [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, a } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, e } )
+            , new ListBindingSet ( new IVariable<?> [] { x },    new IConstant [] { c }    )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { d, a } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { d, b } )
+            , new ListBindingSet ( new IVariable<?> [] {},       new IConstant [] {}       )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, c } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, d } )
+            , new ListBindingSet ( new IVariable<?> [] { y },    new IConstant [] { a }    )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, b } )
+        } ;
+
+        //
+        // the expected solutions
+        //
+        final IBindingSet expected [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { y },    new IConstant [] { a }    )
+            , new ListBindingSet ( new IVariable<?> [] {},       new IConstant [] {}       )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, e } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, c } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, a } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, d } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, b } )
+            , new ListBindingSet ( new IVariable<?> [] { x },    new IConstant [] { c }    )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { d, b } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { d, a } )
+        } ;
+
+        final BOpStats stats = runSort(query, new IBindingSet[][] { data },
+                expected);
+
+        assertEquals ( 1, stats.chunksIn.get () ) ;
+        assertEquals ( 10, stats.unitsIn.get () ) ;
+        assertEquals ( 10, stats.unitsOut.get () ) ;
+
+    }
+
+    /**
+     * Unit test with inline {@link IV}s where the solutions fit within the
+     * run capacity. Nothing is spilled and the operator behaves like the
+     * {@link MemorySortOp}.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testInlineIVsNoSpill() {
+
+        final IVariable<IV> x = Var.var ( "x" ) ;
+        final IVariable<IV> y = Var.var ( "y" ) ;
+        final IConstant<IV> a = new Constant<IV>(new XSDNumericIV(1));
+        final IConstant<IV> b = new Constant<IV>(new XSDNumericIV(2));
+        final IConstant<IV> c = new Constant<IV>(new XSDNumericIV(3));
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+                new SortOrder(x, true/*asc*/),//
+                new SortOrder(y, false/*asc*/)//
+                };
+
+        final SortOp query = newSortOp(sors, 100/* runCapacity */, 10/* blockCapacity */);
+
+        final IBindingSet data [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, a } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, c } )
+            , new ListBindingSet ( new IVariable<?> [] { x },    new IConstant [] { c }    )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, b } )
+        } ;
+
+        final IBindingSet expected [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, c } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, b } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, a } )
+            , new ListBindingSet ( new IVariable<?> [] { x },    new IConstant [] { c }    )
+        } ;
+
+        final BOpStats stats = runSort(query, new IBindingSet[][] { data },
+                expected);
+
+        assertEquals ( 1, stats.chunksIn.get () ) ;
+        assertEquals ( 4, stats.unitsIn.get () ) ;
+        assertEquals ( 4, stats.unitsOut.get () ) ;
+        assertEquals ( 1, stats.chunksOut.get () ) ;
+
+    }
+
+    /**
+     * Test with computed value expressions. Solutions with type errors are
+     * dropped and the anonymous variables are cleared from the solutions
+     * which are read back from the sorted runs.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testComputedValueExpressions() {
+
+        final IVariable<IV> x = Var.var("x");
+        final IVariable<IV> y = Var.var("y");
+        final IVariable<IV> z = Var.var("z");
+        final IConstant<IV> _1 = new Constant<IV>(new XSDNumericIV(1));
+        final IConstant<IV> _2 = new Constant<IV>(new XSDNumericIV(2));
+        final IConstant<IV> _3 = new Constant<IV>(new XSDNumericIV(3));
+        final IConstant<IV> _4 = new Constant<IV>(new XSDNumericIV(4));
+        final IConstant<IV> _5 = new Constant<IV>(new XSDNumericIV(5));
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+                new SortOrder(new Bind(z,new MathBOp(x, y, MathBOp.MathOp.PLUS,new GlobalAnnotations(getName(), ITx.READ_COMMITTED))), false/* asc */),//
+                new SortOrder(y, false/* asc */) //
+        };
+
+        final SortOp query = newSortOp(sors, 2/* runCapacity */, 1/* blockCapacity */);
+
+        final IBindingSet data [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _1 } ) // x+y=2
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _5 } ) // x+y=6
+            , new ListBindingSet ( new IVariable<?> [] { x },    new IConstant [] { _3 }    )  // x+y=N/A
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _4, _1 } ) // x+y=5
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _4, _2 } ) // x+y=6
+            , new ListBindingSet ( new IVariable<?> [] {},       new IConstant [] {}       )   // x+y=N/A
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _3 } ) // x+y=4
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _2, _4 } ) // x+y=6
+            , new ListBindingSet ( new IVariable<?> [] { y },    new IConstant [] { _1 }    )  // x+y=N/A
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _2, _2 } ) // x+y=4
+        } ;
+
+        final IBindingSet expected [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _5 } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _2, _4 } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _4, _2 } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _4, _1 } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _3 } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _2, _2 } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _1 } )
+        } ;
+
+        final BOpStats stats = runSort(query, new IBindingSet[][] { data },
+                expected);
+
+        assertEquals ( 1, stats.chunksIn.get () ) ;
+        assertEquals ( 10, stats.unitsIn.get () ) ;
+        assertEquals ( 7, stats.unitsOut.get () ) ;
+
+    }
+
+    /**
+     * Stress test comparing the external memory sort against an in-memory
+     * stable sort of the same data. The solutions arrive in several chunks
+     * and there are many duplicate sort keys, which verifies that the merge
+     * is stable.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_stress() {
+
+        final Random r = new Random();
+
+        final IVariable<IV> x = Var.var("x");
+        final IVariable<IV> y = Var.var("y");
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+        new SortOrder(x, r.nextBoolean()/* asc */) };
+
+        final int nchunks = 10;
+        final int chunkSize = 500;
+
+        final IBindingSet[][] data = new IBindingSet[nchunks][];
+
+        final IBindingSet[] all = new IBindingSet[nchunks * chunkSize];
+
+        int n = 0;
+
+        for (int i = 0; i < nchunks; i++) {
+
+            data[i] = new IBindingSet[chunkSize];
+
+            for (int j = 0; j < chunkSize; j++, n++) {
+
+                final IBindingSet bset = new ListBindingSet();
+
+                bset.set(x, new Constant<IV>(new XSDNumericIV(r.nextInt(100))));
+
+                // The sequence number makes each solution distinct.
+                bset.set(y, new Constant<IV>(new XSDNumericIV(n)));
+
+                data[i][j] = bset;
+
+                all[n] = bset.clone();
+
+            }
+
+        }
+
+        // Note: Arrays.sort() is stable for objects.
+        Arrays.sort(all, new BindingSetComparator(sors, new IVComparator()));
+
+        final SortOp query = newSortOp(sors, 700/* runCapacity */, 64/* blockCapacity */);
+
+        final BOpStats stats = runSort(query, data, all);
+
+        assertEquals(nchunks, stats.chunksIn.get());
+        assertEquals(all.length, stats.unitsIn.get());
+        assertEquals(all.length, stats.unitsOut.get());
+
+    }
+
+}
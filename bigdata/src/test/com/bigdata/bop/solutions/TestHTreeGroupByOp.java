@@ -0,0 +1,545 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+package com.bigdata.bop.solutions;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.FutureTask;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.BOpEvaluationContext;
+import com.bigdata.bop.Bind;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IConstraint;
+import com.bigdata.bop.IQueryContext;
+import com.bigdata.bop.IValueExpression;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.engine.AbstractQueryEngineTestCase;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.engine.BlockingBufferWithStats;
+import com.bigdata.bop.engine.IRunningQuery;
+import com.bigdata.bop.engine.MockRunningQuery;
+import com.bigdata.bop.rdf.aggregate.COUNT;
+import com.bigdata.bop.rdf.aggregate.SUM;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.VTE;
+import com.bigdata.rdf.internal.impl.TermId;
+import com.bigdata.rdf.internal.impl.literal.XSDIntegerIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+import com.bigdata.rdf.model.BigdataLiteral;
+import com.bigdata.rdf.model.BigdataValueFactory;
+import com.bigdata.rdf.model.BigdataValueFactoryImpl;
+import com.bigdata.relation.accesspath.IAsynchronousIterator;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+import com.bigdata.relation.accesspath.ThickAsynchronousIterator;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * Unit tests for the {@link HTreeGroupByOp}. The generic aggregation semantics
+ * are shared with the {@link MemoryGroupByOp} and are tested by
+ * {@link TestMemoryGroupByOp}. These tests focus on the partitioning of the
+ * groups, the round trip of the solutions (including the cached RDF Values)
+ * through the native heap, and the release of the native memory.
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestHTreeGroupByOp extends TestCase2 {
+
+    /**
+     *
+     */
+    public TestHTreeGroupByOp() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestHTreeGroupByOp(String name) {
+        super(name);
+    }
+
+    private long termId = 1;
+
+    private IV<BigdataLiteral, ?> makeIV(final BigdataLiteral lit) {
+
+        final IV<BigdataLiteral, ?> iv = new TermId<BigdataLiteral>(
+                VTE.LITERAL, termId++);
+
+        iv.setValue(lit);
+
+        return iv;
+
+    }
+
+    private GroupByOp newFixture(final IValueExpression<?>[] select,
+            final IValueExpression<?>[] groupBy, final IConstraint[] having,
+            final int partitionCount) {
+
+        final IGroupByState groupByState = new GroupByState(//
+                select, groupBy, having);
+
+        final IGroupByRewriteState groupByRewrite = new GroupByRewriter(
+                groupByState);
+
+        return new HTreeGroupByOp(new BOp[] {}, NV.asMap(new NV[] {//
+                new NV(BOp.Annotations.BOP_ID, 1),//
+                new NV(BOp.Annotations.EVALUATION_CONTEXT,
+                        BOpEvaluationContext.CONTROLLER),//
+                new NV(PipelineOp.Annotations.PIPELINED, true),//
+                new NV(PipelineOp.Annotations.MAX_PARALLEL, 1),//
+                new NV(PipelineOp.Annotations.LAST_PASS, true),//
+                new NV(PipelineOp.Annotations.CHUNK_CAPACITY, 10),//
+                new NV(GroupByOp.Annotations.GROUP_BY_STATE, groupByState), //
+                new NV(GroupByOp.Annotations.GROUP_BY_REWRITE, groupByRewrite), //
+                new NV(HTreeGroupByOp.Annotations.PARTITION_COUNT,
+                        partitionCount), //
+                new NV(HTreeGroupByOp.Annotations.RELATION_NAME,
+                        new String[] { getName() }), //
+                }));
+
+    }
+
+    /**
+     * Run the operator.
+     *
+     * @param expected
+     *            The expected solutions (in any order) -or- <code>null</code>
+     *            if the caller will check the solutions.
+     *
+     * @return The statistics for the operator.
+     */
+    private BOpStats runGroupBy(final GroupByOp query,
+            final IBindingSet[][] data, final IBindingSet[] expected,
+            final Map<IConstant<?>, IBindingSet> actual) throws Exception {
+
+        final BOpStats stats = query.newStats();
+
+        final IAsynchronousIterator<IBindingSet[]> source = new ThickAsynchronousIterator<IBindingSet[]>(
+                data);
+
+        final IBlockingBuffer<IBindingSet[]> sink = new BlockingBufferWithStats<IBindingSet[]>(
+                query, stats);
+
+        final UUID queryId = UUID.randomUUID();
+        final MockQueryContext queryContext = new MockQueryContext(queryId);
+        try {
+            final IRunningQuery runningQuery = new MockRunningQuery(
+                    null/* fed */, null/* indexManager */,
+                    (IQueryContext) queryContext);
+
+            final BOpContext<IBindingSet> context = new BOpContext<IBindingSet>(
+                    runningQuery, -1/* partitionId */, stats, query/* op */,
+                    true/* lastInvocation */, source, sink, null/* sink2 */
+            );
+
+            final FutureTask<Void> ft = query.eval(context);
+            // Run the query.
+            {
+                final Thread t = new Thread() {
+                    public void run() {
+                        ft.run();
+                    }
+                };
+                t.setDaemon(true);
+                t.start();
+            }
+
+            if (expected != null) {
+
+                // Check the solutions.
+                AbstractQueryEngineTestCase.assertSameSolutionsAnyOrder(
+                        expected, sink.iterator(), ft);
+
+            } else {
+
+                // Collect the solutions by the first GROUP BY variable.
+                final IVariable<?> v = (IVariable<?>) query.getGroupByState()
+                        .getGroupByClause()[0];
+
+                final ICloseableIterator<IBindingSet[]> itr = sink.iterator();
+
+                try {
+                    while (itr.hasNext()) {
+                        for (IBindingSet bset : itr.next()) {
+                            assertNull(actual.put(bset.get(v), bset));
+                        }
+                    }
+                } finally {
+                    itr.close();
+                }
+
+                // Check the future.
+                ft.get();
+
+            }
+
+            // The native memory for the partitions was released.
+            assertEquals(0L, queryContext.getMemoryManager()
+                    .getAllocationCount());
+
+        } finally {
+            queryContext.close();
+        }
+
+        return stats;
+
+    }
+
+    /**
+     * Correct rejection test for an aggregation without a GROUP BY clause.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_ctor_correctRejection_noGroupBy() {
+
+        final IVariable<IV> x = Var.var("x");
+        final IVariable<IV> n = Var.var("n");
+
+        try {
+            newFixture(new IValueExpression[] { new Bind(n, new COUNT(
+                    false/* distinct */, x)) }, null/* groupBy */,
+                    null/* having */, 2/* partitionCount */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * <pre>
+     * SELECT ?org (SUM(?lprice) AS ?totalPrice) (COUNT(*) AS ?n)
+     * GROUP BY ?org
+     * </pre>
+     *
+     * The solutions arrive in more than one chunk and the groups are spread
+     * over several partitions.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_groupBy_with_aggregates() throws Exception {
+
+        final BigdataValueFactory f = BigdataValueFactoryImpl
+                .getInstance(getName());
+
+        final IVariable<IV> org = Var.var("org");
+        final IVariable<IV> book = Var.var("book");
+        final IVariable<IV> lprice = Var.var("lprice");
+        final IVariable<IV> totalPrice = Var.var("totalPrice");
+        final IVariable<IV> n = Var.var("n");
+        final IVariable<IV> star = Var.var("*");
+
+        final IConstant<IV> org1 = new Constant<IV>(makeIV(f.createLiteral("org1")));
+        final IConstant<IV> org2 = new Constant<IV>(makeIV(f.createLiteral("org2")));
+        final IConstant<IV> org3 = new Constant<IV>(makeIV(f.createLiteral("org3")));
+        final IConstant<IV> book1 = new Constant<IV>(makeIV(f.createLiteral("book1")));
+        final IConstant<IV> book2 = new Constant<IV>(makeIV(f.createLiteral("book2")));
+        final IConstant<IV> book3 = new Constant<IV>(makeIV(f.createLiteral("book3")));
+        final IConstant<IV> book4 = new Constant<IV>(makeIV(f.createLiteral("book4")));
+        final IConstant<IV> book5 = new Constant<IV>(makeIV(f.createLiteral("book5")));
+        final IConstant<IV> price5 = new Constant<IV>(new XSDNumericIV(5));
+        final IConstant<IV> price7 = new Constant<IV>(new XSDNumericIV(7));
+        final IConstant<IV> price9 = new Constant<IV>(new XSDNumericIV(9));
+
+        final GroupByOp query = newFixture(//
+                new IValueExpression[] {
+                        org,
+                        new Bind(totalPrice, new SUM(false/* distinct */,
+                                lprice)),
+                        new Bind(n, new COUNT(false/* distinct */, star)) }, // select
+                new IValueExpression[] { org }, // groupBy
+                null, // having
+                3 // partitionCount
+        );
+
+        final IBindingSet data1 [] = new IBindingSet []
+        {
+            new ListBindingSet ( new IVariable<?> [] { org, book, lprice }, new IConstant [] { org1, book1, price9 } )
+          , new ListBindingSet ( new IVariable<?> [] { org, book, lprice }, new IConstant [] { org2, book4, price7 } )
+          , new ListBindingSet ( new IVariable<?> [] { org, book, lprice }, new IConstant [] { org1, book2, price5 } )
+        };
+        final IBindingSet data2 [] = new IBindingSet []
+        {
+            new ListBindingSet ( new IVariable<?> [] { org, book, lprice }, new IConstant [] { org1, book3, price7 } )
+          , new ListBindingSet ( new IVariable<?> [] { book, lprice },      new IConstant [] { book5, price5 } ) // dropped.
+          , new ListBindingSet ( new IVariable<?> [] { org, book, lprice }, new IConstant [] { org3, book5, price5 } )
+        };
+
+        final IBindingSet expected[] = new IBindingSet[]
+        {
+              new ListBindingSet ( new IVariable<?> [] { org, totalPrice, n },  new IConstant [] { org1, integer(21), integer(3) } )
+            , new ListBindingSet ( new IVariable<?> [] { org, totalPrice, n },  new IConstant [] { org2, integer(7),  integer(1) } )
+            , new ListBindingSet ( new IVariable<?> [] { org, totalPrice, n },  new IConstant [] { org3, integer(5),  integer(1) } )
+        } ;
+
+        final BOpStats stats = runGroupBy(query, new IBindingSet[][] { data1,
+                data2 }, expected, null/* actual */);
+
+        assertEquals(2, stats.chunksIn.get());
+        assertEquals(6, stats.unitsIn.get());
+        assertEquals(3, stats.unitsOut.get());
+
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static IConstant<IV> integer(final long v) {
+
+        return new Constant<IV>(new XSDIntegerIV<BigdataLiteral>(
+                BigInteger.valueOf(v)));
+
+    }
+
+    /**
+     * Stress test with a large number of groups. The cached RDF Values for the
+     * GROUP BY variable must survive the round trip through the native heap.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_stress_manyGroups() throws Exception {
+
+        final Random r = new Random();
+
+        final BigdataValueFactory f = BigdataValueFactoryImpl
+                .getInstance(getName());
+
+        final IVariable<IV> g = Var.var("g");
+        final IVariable<IV> x = Var.var("x");
+        final IVariable<IV> n = Var.var("n");
+        final IVariable<IV> star = Var.var("*");
+
+        final int ngroups = 2000;
+
+        final IConstant<IV>[] groups = new IConstant[ngroups];
+
+        for (int i = 0; i < ngroups; i++) {
+
+            groups[i] = new Constant<IV>(makeIV(f.createLiteral("g" + i)));
+
+        }
+
+        final GroupByOp query = newFixture(//
+                new IValueExpression[] { g,
+                        new Bind(n, new COUNT(false/* distinct */, star)) }, // select
+                new IValueExpression[] { g }, // groupBy
+                null, // having
+                1 + r.nextInt(8) // partitionCount
+        );
+
+        final int nchunks = 20;
+        final int chunkSize = 500;
+
+        final IBindingSet[][] data = new IBindingSet[nchunks][];
+
+        final int[] counts = new int[ngroups];
+
+        for (int i = 0; i < nchunks; i++) {
+
+            data[i] = new IBindingSet[chunkSize];
+
+            for (int j = 0; j < chunkSize; j++) {
+
+                final int k = r.nextInt(ngroups);
+
+                counts[k]++;
+
+                data[i][j] = new ListBindingSet(new IVariable[] { g, x },
+                        new IConstant[] { groups[k],
+                                new Constant<IV>(new XSDNumericIV(j)) });
+
+            }
+
+        }
+
+        final Map<IConstant<?>, IBindingSet> actual = new HashMap<IConstant<?>, IBindingSet>();
+
+        final BOpStats stats = runGroupBy(query, data, null/* expected */,
+                actual);
+
+        int nexpected = 0;
+
+        for (int i = 0; i < ngroups; i++) {
+
+            if (counts[i] == 0)
+                continue;
+
+            nexpected++;
+
+            final IBindingSet bset = actual.get(groups[i]);
+
+            assertNotNull(bset);
+
+            assertEquals(integer(counts[i]), bset.get(n));
+
+            // The cached RDF Value was restored.
+            final IV<?, ?> iv = (IV<?, ?>) bset.get(g).get();
+
+            assertTrue(iv.hasValue());
+
+            assertEquals(groups[i].get().getValue(), iv.getValue());
+
+        }
+
+        assertEquals(nexpected, actual.size());
+        assertEquals(nchunks, stats.chunksIn.get());
+        assertEquals(nchunks * chunkSize, stats.unitsIn.get());
+        assertEquals(nexpected, stats.unitsOut.get());
+
+    }
+
+    /**
+     * A few very large groups. The solutions for a group must not be buffered
+     * on the JVM heap, so this uses more solutions per group than the other
+     * tests by several orders of magnitude.
+     * 
+     * <pre>
+     * SELECT ?g (SUM(?x) AS ?sum) (COUNT(*) AS ?n)
+     * GROUP BY ?g
+     * </pre>
+     */
+    public void test_largeGroups_pipelined() throws Exception {
+
+        doLargeGroupsTest(false/* distinct */);
+
+    }
+
+    /**
+     * A few very large groups with a DISTINCT aggregate, which can not be
+     * pipelined.
+     * 
+     * <pre>
+     * SELECT ?g (SUM(DISTINCT ?x) AS ?sum) (COUNT(*) AS ?n)
+     * GROUP BY ?g
+     * </pre>
+     */
+    public void test_largeGroups_distinct() throws Exception {
+
+        doLargeGroupsTest(true/* distinct */);
+
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void doLargeGroupsTest(final boolean distinct) throws Exception {
+
+        final BigdataValueFactory f = BigdataValueFactoryImpl
+                .getInstance(getName());
+
+        final IVariable<IV> g = Var.var("g");
+        final IVariable<IV> x = Var.var("x");
+        final IVariable<IV> sum = Var.var("sum");
+        final IVariable<IV> n = Var.var("n");
+        final IVariable<IV> star = Var.var("*");
+
+        final int ngroups = 3;
+
+        final IConstant<IV>[] groups = new IConstant[ngroups];
+
+        for (int i = 0; i < ngroups; i++) {
+
+            groups[i] = new Constant<IV>(makeIV(f.createLiteral("g" + i)));
+
+        }
+
+        final GroupByOp query = newFixture(//
+                new IValueExpression[] {
+                        g,
+                        new Bind(sum, new SUM(distinct, x)),
+                        new Bind(n, new COUNT(false/* distinct */, star)) }, // select
+                new IValueExpression[] { g }, // groupBy
+                null, // having
+                2 // partitionCount
+        );
+
+        final int nchunks = 200;
+        final int chunkSize = 1000;
+        final int nvalues = 100;
+
+        final IBindingSet[][] data = new IBindingSet[nchunks][];
+
+        final long[] counts = new long[ngroups];
+
+        final long[] sums = new long[ngroups];
+
+        final boolean[][] seen = new boolean[ngroups][nvalues];
+
+        for (int i = 0; i < nchunks; i++) {
+
+            data[i] = new IBindingSet[chunkSize];
+
+            for (int j = 0; j < chunkSize; j++) {
+
+                final int k = j % ngroups;
+
+                final int v = (i + j) % nvalues;
+
+                counts[k]++;
+
+                if (!distinct || !seen[k][v]) {
+
+                    sums[k] += v;
+
+                    seen[k][v] = true;
+
+                }
+
+                data[i][j] = new ListBindingSet(new IVariable[] { g, x },
+                        new IConstant[] { groups[k],
+                                new Constant<IV>(new XSDNumericIV(v)) });
+
+            }
+
+        }
+
+        final IBindingSet[] expected = new IBindingSet[ngroups];
+
+        for (int k = 0; k < ngroups; k++) {
+
+            expected[k] = new ListBindingSet(
+                    new IVariable[] { g, sum, n },
+                    new IConstant[] { groups[k], integer(sums[k]),
+                            integer(counts[k]) });
+
+        }
+
+        final BOpStats stats = runGroupBy(query, data, expected,
+                null/* actual */);
+
+        assertEquals(nchunks, stats.chunksIn.get());
+        assertEquals(nchunks * chunkSize, stats.unitsIn.get());
+        assertEquals(ngroups, stats.unitsOut.get());
+
+    }
+
+}
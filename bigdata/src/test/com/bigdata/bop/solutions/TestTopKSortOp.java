@@ -0,0 +1,460 @@
+/**
+
+Copyright (C) SYSTAP, LLC 2006-2012.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC
+     4501 Tower Road
+     Greensboro, NC 27410
+     licenses@bigdata.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+package com.bigdata.bop.solutions;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.FutureTask;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpContext;
+import com.bigdata.bop.BOpEvaluationContext;
+import com.bigdata.bop.Bind;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IQueryContext;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.NV;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.bop.engine.AbstractQueryEngineTestCase;
+import com.bigdata.bop.engine.BOpStats;
+import com.bigdata.bop.engine.BlockingBufferWithStats;
+import com.bigdata.bop.engine.IRunningQuery;
+import com.bigdata.bop.engine.MockRunningQuery;
+import com.bigdata.journal.ITx;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.VTE;
+import com.bigdata.rdf.internal.constraints.MathBOp;
+import com.bigdata.rdf.internal.impl.TermId;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+import com.bigdata.rdf.model.BigdataLiteral;
+import com.bigdata.rdf.model.BigdataValueFactory;
+import com.bigdata.rdf.model.BigdataValueFactoryImpl;
+import com.bigdata.rdf.sparql.ast.GlobalAnnotations;
+import com.bigdata.relation.accesspath.IAsynchronousIterator;
+import com.bigdata.relation.accesspath.IBlockingBuffer;
+import com.bigdata.relation.accesspath.ThickAsynchronousIterator;
+
+/**
+ * Unit tests for the {@link TopKSortOp}. The expected solutions are those
+ * which would be produced by an ORDER BY followed by a {@link SliceOp}.
+ *
+ * @see TestMemorySortOp
+ * @see TestSliceOp
+ *
+ * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
+ * @version $Id$
+ */
+public class TestTopKSortOp extends TestCase2 {
+
+    /**
+     *
+     */
+    public TestTopKSortOp() {
+    }
+
+    /**
+     * @param name
+     */
+    public TestTopKSortOp(String name) {
+        super(name);
+    }
+
+    private long termId = 1;
+
+    private IV<BigdataLiteral, ?> makeIV(final BigdataLiteral lit) {
+
+        final IV<BigdataLiteral, ?> iv = new TermId<BigdataLiteral>(
+                VTE.LITERAL, termId++);
+
+        iv.setValue(lit);
+
+        return iv;
+
+    }
+
+    private SortOp newSortOp(final ISortOrder<?>[] sors, final long offset,
+            final long limit) {
+
+        return new TopKSortOp(new BOp[] {}, NV.asMap(new NV[] {//
+                new NV(TopKSortOp.Annotations.BOP_ID, 1),//
+                new NV(TopKSortOp.Annotations.SORT_ORDER, sors),//
+                new NV(TopKSortOp.Annotations.VALUE_COMPARATOR,
+                        new IVComparator()),//
+                new NV(TopKSortOp.Annotations.EVALUATION_CONTEXT,
+                        BOpEvaluationContext.CONTROLLER),//
+                new NV(TopKSortOp.Annotations.MAX_PARALLEL, 1),//
+                new NV(PipelineOp.Annotations.REORDER_SOLUTIONS, false),//
+                new NV(TopKSortOp.Annotations.LAST_PASS, true),//
+                new NV(TopKSortOp.Annotations.OFFSET, offset),//
+                new NV(TopKSortOp.Annotations.LIMIT, limit),//
+                }));
+
+    }
+
+    /**
+     * Run the operator against the data and verify the ordered solutions.
+     *
+     * @return The statistics for the operator.
+     */
+    private BOpStats runSort(final SortOp query, final IBindingSet[][] data,
+            final IBindingSet[] expected) {
+
+        final BOpStats stats = query.newStats();
+
+        final IAsynchronousIterator<IBindingSet[]> source = new ThickAsynchronousIterator<IBindingSet[]>(
+                data);
+
+        final IBlockingBuffer<IBindingSet[]> sink = new BlockingBufferWithStats<IBindingSet[]>(
+                query, stats);
+
+        final UUID queryId = UUID.randomUUID();
+        final MockQueryContext queryContext = new MockQueryContext(queryId);
+        try {
+            final IRunningQuery runningQuery = new MockRunningQuery(
+                    null/* fed */, null/* indexManager */,
+                    (IQueryContext) queryContext);
+
+            final BOpContext<IBindingSet> context = new BOpContext<IBindingSet>(
+                    runningQuery, -1/* partitionId */, stats, query/* op */,
+                    true/* lastInvocation */, source, sink, null/* sink2 */
+            );
+
+            final FutureTask<Void> ft = query.eval(context);
+            // Run the query.
+            {
+                final Thread t = new Thread() {
+                    public void run() {
+                        ft.run();
+                    }
+                };
+                t.setDaemon(true);
+                t.start();
+            }
+
+            // Check the solutions.
+            AbstractQueryEngineTestCase.assertSameSolutions(expected,
+                    sink.iterator(), ft);
+
+        } finally {
+            queryContext.close();
+        }
+
+        return stats;
+
+    }
+
+    /**
+     * Correct rejection tests for the constructor.
+     */
+    public void test_ctor_correctRejection() {
+
+        final IVariable<?> x = Var.var("x");
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+        new SortOrder(x, true/* asc */) };
+
+        // offset must be non-negative.
+        try {
+            newSortOp(sors, -1L/* offset */, 10L/* limit */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        // limit must be non-negative.
+        try {
+            newSortOp(sors, 0L/* offset */, -1L/* limit */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        // offset + limit must be bounded.
+        try {
+            newSortOp(sors, 10L/* offset */, Long.MAX_VALUE/* limit */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        // w/ illegal evaluation context.
+        try {
+            new TopKSortOp(new BOp[] {}, NV.asMap(new NV[] {//
+                    new NV(TopKSortOp.Annotations.BOP_ID, 1),//
+                    new NV(TopKSortOp.Annotations.SORT_ORDER, sors),//
+                    new NV(TopKSortOp.Annotations.VALUE_COMPARATOR,
+                            new IVComparator()),//
+                    new NV(TopKSortOp.Annotations.EVALUATION_CONTEXT,
+                            BOpEvaluationContext.ANY),//
+                    new NV(TopKSortOp.Annotations.MAX_PARALLEL, 1),//
+                    new NV(PipelineOp.Annotations.REORDER_SOLUTIONS, false),//
+                    new NV(TopKSortOp.Annotations.LAST_PASS, true),//
+                    new NV(TopKSortOp.Annotations.LIMIT, 10L),//
+                    }));
+            fail("Expecting: " + UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * Test with materialized IVs delivered in more than one chunk using both
+     * an OFFSET and a LIMIT.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testMaterializedIVs() {
+
+        final BigdataValueFactory f = BigdataValueFactoryImpl.getInstance(getName());
+
+        final IVariable<IV> x = Var.var ( "x" ) ;
+        final IVariable<IV> y = Var.var ( "y" ) ;
+        final IConstant<IV> a = new Constant<IV>(makeIV(f.createLiteral("a")));
+        final IConstant<IV> b = new Constant<IV>(makeIV(f.createLiteral("b")));
+        final IConstant<IV> c = new Constant<IV>(makeIV(f.createLiteral("c")));
+        final IConstant<IV> d = new Constant<IV>(makeIV(f.createLiteral("d")));
+        final IConstant<IV> e = new Constant<IV>(makeIV(f.createLiteral("e")));
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+                new SortOrder(x, true/*asc*/),//
+                new SortOrder(y, false/*asc*/)//
+                };
+
+        final SortOp query = newSortOp(sors, 2L/* offset */, 4L/* limit */);
+
+        //
+        // the test data
+        //
+        final IBindingSet data1 [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, a } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, e } )
+            , new ListBindingSet ( new IVariable<?> [] { x },    new IConstant [] { c }    )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { d, a } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { d, b } )
+        } ;
+        final IBindingSet data2 [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] {},       new IConstant [] {}       )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, c } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, d } )
+            , new ListBindingSet ( new IVariable<?> [] { y },    new IConstant [] { a }    )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, b } )
+        } ;
+
+        //
+        // the expected solutions (the full order is y=a, {}, (a,e), (a,c),
+        // (a,a), (b,d), (b,b), c, (d,b), (d,a)).
+        //
+        final IBindingSet expected [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, e } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, c } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { a, a } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { b, d } )
+        } ;
+
+        final BOpStats stats = runSort(query,
+                new IBindingSet[][] { data1, data2 }, expected);
+
+        assertEquals ( 2, stats.chunksIn.get () ) ;
+        assertEquals ( 10, stats.unitsIn.get () ) ;
+        assertEquals ( 4, stats.unitsOut.get () ) ;
+        assertEquals ( 1, stats.chunksOut.get () ) ;
+
+    }
+
+    /**
+     * Unit test where the OFFSET is beyond the #of solutions and unit test
+     * with a LIMIT of ZERO. No solutions are produced.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testEmptySlice() {
+
+        final IVariable<IV> x = Var.var ( "x" ) ;
+        final IConstant<IV> a = new Constant<IV>(new XSDNumericIV(1));
+        final IConstant<IV> b = new Constant<IV>(new XSDNumericIV(2));
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+                new SortOrder(x, true/*asc*/),//
+                };
+
+        final IBindingSet data [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x }, new IConstant [] { b } )
+            , new ListBindingSet ( new IVariable<?> [] { x }, new IConstant [] { a } )
+        } ;
+
+        {
+            final BOpStats stats = runSort(
+                    newSortOp(sors, 2L/* offset */, 10L/* limit */),
+                    new IBindingSet[][] { data }, new IBindingSet[0]);
+
+            assertEquals ( 2, stats.unitsIn.get () ) ;
+            assertEquals ( 0, stats.unitsOut.get () ) ;
+        }
+
+        {
+            final BOpStats stats = runSort(
+                    newSortOp(sors, 0L/* offset */, 0L/* limit */),
+                    new IBindingSet[][] { data }, new IBindingSet[0]);
+
+            assertEquals ( 2, stats.unitsIn.get () ) ;
+            assertEquals ( 0, stats.unitsOut.get () ) ;
+        }
+
+    }
+
+    /**
+     * Test with computed value expressions. Solutions with type errors are
+     * dropped and the anonymous variables are cleared from the solutions.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void testComputedValueExpressions() {
+
+        final IVariable<IV> x = Var.var("x");
+        final IVariable<IV> y = Var.var("y");
+        final IVariable<IV> z = Var.var("z");
+        final IConstant<IV> _1 = new Constant<IV>(new XSDNumericIV(1));
+        final IConstant<IV> _2 = new Constant<IV>(new XSDNumericIV(2));
+        final IConstant<IV> _3 = new Constant<IV>(new XSDNumericIV(3));
+        final IConstant<IV> _4 = new Constant<IV>(new XSDNumericIV(4));
+        final IConstant<IV> _5 = new Constant<IV>(new XSDNumericIV(5));
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+                new SortOrder(new Bind(z,new MathBOp(x, y, MathBOp.MathOp.PLUS,new GlobalAnnotations(getName(), ITx.READ_COMMITTED))), false/* asc */),//
+                new SortOrder(y, false/* asc */) //
+        };
+
+        final SortOp query = newSortOp(sors, 0L/* offset */, 3L/* limit */);
+
+        final IBindingSet data [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _1 } ) // x+y=2
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _5 } ) // x+y=6
+            , new ListBindingSet ( new IVariable<?> [] { x },    new IConstant [] { _3 }    )  // x+y=N/A
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _4, _1 } ) // x+y=5
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _4, _2 } ) // x+y=6
+            , new ListBindingSet ( new IVariable<?> [] {},       new IConstant [] {}       )   // x+y=N/A
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _3 } ) // x+y=4
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _2, _4 } ) // x+y=6
+            , new ListBindingSet ( new IVariable<?> [] { y },    new IConstant [] { _1 }    )  // x+y=N/A
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _2, _2 } ) // x+y=4
+        } ;
+
+        final IBindingSet expected [] = new IBindingSet []
+        {
+              new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _1, _5 } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _2, _4 } )
+            , new ListBindingSet ( new IVariable<?> [] { x, y }, new IConstant [] { _4, _2 } )
+        } ;
+
+        final BOpStats stats = runSort(query, new IBindingSet[][] { data },
+                expected);
+
+        assertEquals ( 1, stats.chunksIn.get () ) ;
+        assertEquals ( 10, stats.unitsIn.get () ) ;
+        assertEquals ( 3, stats.unitsOut.get () ) ;
+
+    }
+
+    /**
+     * Stress test comparing the Top-K operator against a stable sort of the
+     * same data followed by a slice. There are many duplicate sort keys,
+     * which verifies that ties are resolved in favor of the solution which
+     * arrived first.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_stress() {
+
+        final Random r = new Random();
+
+        final IVariable<IV> x = Var.var("x");
+        final IVariable<IV> y = Var.var("y");
+
+        final ISortOrder<?> sors[] = new ISortOrder[] { //
+        new SortOrder(x, r.nextBoolean()/* asc */) };
+
+        final int nchunks = 10;
+        final int chunkSize = 500;
+
+        final IBindingSet[][] data = new IBindingSet[nchunks][];
+
+        final IBindingSet[] all = new IBindingSet[nchunks * chunkSize];
+
+        int n = 0;
+
+        for (int i = 0; i < nchunks; i++) {
+
+            data[i] = new IBindingSet[chunkSize];
+
+            for (int j = 0; j < chunkSize; j++, n++) {
+
+                final IBindingSet bset = new ListBindingSet();
+
+                bset.set(x, new Constant<IV>(new XSDNumericIV(r.nextInt(100))));
+
+                // The sequence number makes each solution distinct.
+                bset.set(y, new Constant<IV>(new XSDNumericIV(n)));
+
+                data[i][j] = bset;
+
+                all[n] = bset.clone();
+
+            }
+
+        }
+
+        // Note: Arrays.sort() is stable for objects.
+        Arrays.sort(all, new BindingSetComparator(sors, new IVComparator()));
+
+        final int offset = r.nextInt(100);
+
+        final int limit = 1 + r.nextInt(200);
+
+        final IBindingSet[] expected = Arrays.copyOfRange(all, offset, offset
+                + limit);
+
+        final SortOp query = newSortOp(sors, offset, limit);
+
+        final BOpStats stats = runSort(query, data, expected);
+
+        assertEquals(nchunks, stats.chunksIn.get());
+        assertEquals(all.length, stats.unitsIn.get());
+        assertEquals(limit, stats.unitsOut.get());
+
+    }
+
+}